@@ -0,0 +1,47 @@
+package com.gaia3d.terrain.bench;
+
+import com.gaia3d.terrain.util.OctNormalFactory;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OctNormalFactory : the oct encoding of the vertex normals of the quantized meshes, per normal.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class OctNormalBenchmark {
+    private static final int NORMALS_COUNT = 4096;
+
+    private final Vector3f[] normals = new Vector3f[NORMALS_COUNT];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // the normals of a terrain point up, with both hemispheres to cover the folds of the encoding
+        Random random = new Random(42);
+        for (int i = 0; i < NORMALS_COUNT; i++) {
+            float z = i % 8 == 0 ? -random.nextFloat() : random.nextFloat();
+            normals[i] = new Vector3f(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, z).normalize();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NORMALS_COUNT)
+    public void encodeOctNormal(Blackhole blackhole) {
+        for (Vector3f normal : normals) {
+            blackhole.consume(OctNormalFactory.encodeOctNormal(normal));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NORMALS_COUNT)
+    public void encodeOctNormalByte(Blackhole blackhole) {
+        for (Vector3f normal : normals) {
+            blackhole.consume(OctNormalFactory.encodeOctNormalByte(normal));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.gaia3d.terrain.bench;
+
+import com.gaia3d.io.LittleEndianDataOutputStream;
+import com.gaia3d.quantized.mesh.QuantizedMesh;
+import com.gaia3d.quantized.mesh.QuantizedMeshManager;
+import com.gaia3d.terrain.tile.TileWgs84;
+import org.geotools.api.referencing.operation.TransformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The output of a tile : the quantized mesh made from the refined mesh, and its encoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class QuantizedMeshBenchmark {
+
+    @Param({"6"})
+    private int refineIterations;
+
+    @Param({"true", "false"})
+    private boolean calculateNormals;
+
+    private TileWgs84 tile;
+    private QuantizedMesh quantizedMesh;
+    private final QuantizedMeshManager quantizedMeshManager = new QuantizedMeshManager();
+    private final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(1 << 20);
+
+    @Setup(Level.Trial)
+    public void setUp() throws TransformException, IOException {
+        tile = new SyntheticTerrain().createRefinedTile(refineIterations);
+        quantizedMesh = quantizedMeshManager.getQuantizedMeshFromTile(tile, calculateNormals);
+    }
+
+    /**
+     * QuantizedMeshManager.getQuantizedMeshFromTile
+     */
+    @Benchmark
+    public QuantizedMesh getQuantizedMeshFromTile() {
+        return quantizedMeshManager.getQuantizedMeshFromTile(tile, calculateNormals);
+    }
+
+    /**
+     * QuantizedMesh.saveDataOutputStream, in memory
+     */
+    @Benchmark
+    public int saveDataOutputStream() throws IOException {
+        byteArrayOutputStream.reset();
+        LittleEndianDataOutputStream dataOutputStream = new LittleEndianDataOutputStream(byteArrayOutputStream);
+        quantizedMesh.saveDataOutputStream(dataOutputStream, calculateNormals);
+        dataOutputStream.flush();
+        return byteArrayOutputStream.size();
+    }
+}
@@ -0,0 +1,64 @@
+package com.gaia3d.terrain.bench;
+
+import com.gaia3d.terrain.structure.GeographicExtension;
+import com.gaia3d.terrain.tile.TileWgs84Raster;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tile rasters : the sampling of the elevation data into a raster, and the bilinear reads of the refinement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RasterBenchmark {
+    private static final int SAMPLES_COUNT = 4096;
+
+    @Param({"256"})
+    private int rasterTileSize;
+
+    private SyntheticTerrain syntheticTerrain;
+    private TileWgs84Raster tileRaster;
+    private final double[] sampleLonDegs = new double[SAMPLES_COUNT];
+    private final double[] sampleLatDegs = new double[SAMPLES_COUNT];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        syntheticTerrain = new SyntheticTerrain();
+        tileRaster = new TileWgs84Raster(syntheticTerrain.getTileIndices(), syntheticTerrain.getManager());
+        tileRaster.makeElevations(syntheticTerrain.getTerrainElevationDataManager(), rasterTileSize, rasterTileSize);
+
+        GeographicExtension tileExtension = syntheticTerrain.getTileExtension();
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES_COUNT; i++) {
+            sampleLonDegs[i] = tileExtension.getMinLongitudeDeg() + random.nextDouble() * tileExtension.getLongitudeRangeDegree();
+            sampleLatDegs[i] = tileExtension.getMinLatitudeDeg() + random.nextDouble() * tileExtension.getLatitudeRangeDegree();
+        }
+    }
+
+    /**
+     * TileWgs84Raster.makeElevations of a tile
+     */
+    @Benchmark
+    public TileWgs84Raster makeElevations() {
+        TileWgs84Raster raster = new TileWgs84Raster(syntheticTerrain.getTileIndices(), syntheticTerrain.getManager());
+        raster.makeElevations(syntheticTerrain.getTerrainElevationDataManager(), rasterTileSize, rasterTileSize);
+        return raster;
+    }
+
+    /**
+     * TileWgs84Raster.getElevationBilinear, per sample
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_COUNT)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public float getElevationBilinear() {
+        float sum = 0;
+        for (int i = 0; i < SAMPLES_COUNT; i++) {
+            sum += tileRaster.getElevationBilinear(sampleLonDegs[i], sampleLatDegs[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,108 @@
+package com.gaia3d.terrain.bench;
+
+import com.gaia3d.terrain.structure.TerrainHalfEdge;
+import com.gaia3d.terrain.structure.TerrainMesh;
+import com.gaia3d.terrain.structure.TerrainTriangle;
+import com.gaia3d.terrain.tile.TileMatrix;
+import com.gaia3d.terrain.types.TerrainObjectStatus;
+import org.geotools.api.referencing.operation.TransformException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The refinement of a tile : the error check of the triangles against the raster, and the split of the triangles.
+ * The split modifies its mesh, so it is timed in batches of new meshes made before each batch (SingleShotTime),
+ * instead of a setup per call that would weigh on these short calls. Its score is the time of a batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RefineBenchmark {
+    private static final int SPLIT_PASSES = 3;
+    private static final int SPLIT_BATCH_SIZE = 64;
+
+    @Param({"6"})
+    private int refineIterations;
+
+    private SyntheticTerrain syntheticTerrain;
+    private TileMatrix tileMatrix;
+    private List<TerrainTriangle> refinedTriangles;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws TransformException, IOException {
+        syntheticTerrain = new SyntheticTerrain();
+        tileMatrix = syntheticTerrain.createTileMatrix();
+        refinedTriangles = new ArrayList<>(syntheticTerrain.createRefinedTile(refineIterations).getMesh().triangles);
+    }
+
+    /**
+     * The initial meshes of a batch of the split benchmark, one per call
+     */
+    @State(Scope.Thread)
+    public static class SplitBatch {
+        private SyntheticTerrain syntheticTerrain;
+        private final List<TerrainMesh> meshes = new ArrayList<>();
+        private int nextMesh = 0;
+        private final List<TerrainTriangle> newTriangles = new ArrayList<>();
+        private final List<TerrainHalfEdge> listHalfEdges = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUpTrial() {
+            syntheticTerrain = new SyntheticTerrain();
+        }
+
+        @Setup(Level.Iteration)
+        public void setUpBatch() throws TransformException, IOException {
+            meshes.clear();
+            for (int i = 0; i < SPLIT_BATCH_SIZE; i++) {
+                meshes.add(syntheticTerrain.createInitialTile().getMesh());
+            }
+            nextMesh = 0;
+        }
+    }
+
+    /**
+     * TileMatrix.mustRefineTriangle over all the triangles of a refined tile
+     */
+    @Benchmark
+    public void mustRefineTriangle(Blackhole blackhole) throws TransformException, IOException {
+        for (TerrainTriangle triangle : refinedTriangles) {
+            triangle.setRefineChecked(false);
+            blackhole.consume(tileMatrix.mustRefineTriangle(triangle));
+        }
+    }
+
+    /**
+     * TerrainMesh.splitTriangle of all the triangles of an initial mesh, for a few passes
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(batchSize = SPLIT_BATCH_SIZE)
+    @Measurement(batchSize = SPLIT_BATCH_SIZE)
+    public int splitTriangle(SplitBatch splitBatch) throws TransformException, IOException {
+        TerrainMesh splitMesh = splitBatch.meshes.get(splitBatch.nextMesh++);
+        List<TerrainTriangle> newTriangles = splitBatch.newTriangles;
+        List<TerrainHalfEdge> listHalfEdges = splitBatch.listHalfEdges;
+        SyntheticTerrain syntheticTerrain = splitBatch.syntheticTerrain;
+        for (int pass = 0; pass < SPLIT_PASSES; pass++) {
+            int trianglesCount = splitMesh.triangles.size();
+            for (int i = 0; i < trianglesCount; i++) {
+                TerrainTriangle triangle = splitMesh.triangles.get(i);
+                if (triangle.getObjectStatus() == TerrainObjectStatus.DELETED) {
+                    continue;
+                }
+                newTriangles.clear();
+                listHalfEdges.clear();
+                splitMesh.splitTriangle(triangle, syntheticTerrain.getTerrainElevationDataManager(), newTriangles, listHalfEdges);
+            }
+            splitMesh.removeDeletedObjects();
+            splitMesh.setObjectsIdInList();
+        }
+        return splitMesh.triangles.size();
+    }
+}
@@ -0,0 +1,181 @@
+package com.gaia3d.terrain.bench;
+
+import com.gaia3d.command.GlobalOptions;
+import com.gaia3d.terrain.structure.GeographicExtension;
+import com.gaia3d.terrain.structure.TerrainHalfEdge;
+import com.gaia3d.terrain.structure.TerrainMesh;
+import com.gaia3d.terrain.structure.TerrainTriangle;
+import com.gaia3d.terrain.tile.*;
+import com.gaia3d.terrain.types.InterpolationType;
+import com.gaia3d.terrain.types.PriorityType;
+import com.gaia3d.terrain.types.TerrainObjectStatus;
+import com.gaia3d.terrain.util.TileWgs84Utils;
+import com.gaia3d.util.CelestialBody;
+import org.geotools.api.referencing.operation.TransformException;
+import org.joml.Vector2i;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A synthetic DEM for the benchmarks, without GeoTIFF files : one elevation grid in memory around a tile,
+ * plugged in the elevation data manager as if it was a loaded coverage.
+ * The elevation is a sum of sines : a few large ridges and a finer roughness, so the refinement has to split the triangles.
+ */
+public class SyntheticTerrain {
+    public static final int DEFAULT_DEPTH = 14;
+    public static final double DEFAULT_LONGITUDE = 127.5;
+    public static final double DEFAULT_LATITUDE = 37.5;
+    private static final int GRID_SIZE = 1024; // covers the tile and its 8 neighbors
+    private static final String GRID_NAME = "synthetic.tif";
+
+    private final TileWgs84Manager manager;
+    private final TerrainElevationDataManager terrainElevationDataManager;
+    private final TileIndices tileIndices;
+    private final GeographicExtension tileExtension;
+
+    public SyntheticTerrain() {
+        this(DEFAULT_DEPTH, DEFAULT_LONGITUDE, DEFAULT_LATITUDE);
+    }
+
+    public SyntheticTerrain(int depth, double longitude, double latitude) {
+        GlobalOptions globalOptions = GlobalOptions.getInstance();
+        globalOptions.setCelestialBody(CelestialBody.EARTH);
+        globalOptions.setInterpolationType(InterpolationType.BILINEAR);
+        globalOptions.setPriorityType(PriorityType.RESOLUTION);
+        globalOptions.setNoDataValue(-9999.0);
+        globalOptions.setIntensity(4.0);
+
+        this.manager = new TileWgs84Manager();
+        this.terrainElevationDataManager = new TerrainElevationDataManager();
+        this.terrainElevationDataManager.setTileWgs84Manager(manager);
+        this.manager.setTerrainElevationDataManager(terrainElevationDataManager);
+
+        boolean originIsLeftUp = manager.isOriginIsLeftUp();
+        this.tileIndices = TileWgs84Utils.selectTileIndices(depth, longitude, latitude, new TileIndices(), originIsLeftUp);
+        this.tileExtension = TileWgs84Utils.getGeographicExtentOfTileLXY(depth, tileIndices.getX(), tileIndices.getY(), null, manager.getImaginaryType(), originIsLeftUp);
+
+        TerrainElevationData terrainElevationData = createElevationData();
+        TerrainElevationDataQuadTree rootQuadTree = new TerrainElevationDataQuadTree(null);
+        rootQuadTree.addTerrainElevationData(terrainElevationData);
+        rootQuadTree.makeQuadTree(terrainElevationDataManager.getQuadtreeMaxDepth());
+        terrainElevationDataManager.setRootTerrainElevationDataQuadTree(rootQuadTree);
+    }
+
+    /**
+     * The elevation grid covers the tile and its neighbors, as the rasters of the border tiles of a block
+     */
+    private TerrainElevationData createElevationData() {
+        double lonRange = tileExtension.getLongitudeRangeDegree();
+        double latRange = tileExtension.getLatitudeRangeDegree();
+        double minLon = tileExtension.getMinLongitudeDeg() - lonRange;
+        double minLat = tileExtension.getMinLatitudeDeg() - latRange;
+        double maxLon = tileExtension.getMaxLongitudeDeg() + lonRange;
+        double maxLat = tileExtension.getMaxLatitudeDeg() + latRange;
+
+        WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_FLOAT, GRID_SIZE, GRID_SIZE, 1, null);
+        double minElevation = Double.MAX_VALUE;
+        double maxElevation = -Double.MAX_VALUE;
+        for (int row = 0; row < GRID_SIZE; row++) {
+            for (int col = 0; col < GRID_SIZE; col++) {
+                double elevation = getSyntheticElevation((double) col / GRID_SIZE, (double) row / GRID_SIZE);
+                raster.setSample(col, row, 0, elevation);
+                minElevation = Math.min(minElevation, elevation);
+                maxElevation = Math.max(maxElevation, elevation);
+            }
+        }
+
+        TerrainElevationData terrainElevationData = new TerrainElevationData(terrainElevationDataManager);
+        terrainElevationData.setGeotiffFileName(GRID_NAME);
+        terrainElevationData.setGeotiffFilePath(GRID_NAME);
+        terrainElevationData.getGeographicExtension().setDegrees(minLon, minLat, minElevation, maxLon, maxLat, maxElevation);
+        terrainElevationData.setRaster(raster);
+        terrainElevationData.setGridCoverage2DSize(new Vector2i(GRID_SIZE, GRID_SIZE));
+        // the pixel area of a coverage is read from its standardized file, that does not exist here
+        terrainElevationDataManager.getGridAreaMap().put(GRID_NAME, 1.0);
+        return terrainElevationData;
+    }
+
+    /**
+     * The elevation in meters at the unitary position (u, v) of the grid
+     */
+    public static double getSyntheticElevation(double u, double v) {
+        double ridges = 400.0 * Math.sin(u * Math.PI * 3.0) * Math.cos(v * Math.PI * 2.0);
+        double hills = 60.0 * Math.sin(u * Math.PI * 17.0 + v * Math.PI * 11.0);
+        double roughness = 8.0 * Math.sin(u * Math.PI * 97.0) * Math.sin(v * Math.PI * 89.0);
+        return 800.0 + ridges + hills + roughness;
+    }
+
+    /**
+     * A tile with its initial mesh : 4 corners, and the first splits of refineMeshInitial
+     */
+    public TileWgs84 createInitialTile() throws TransformException, IOException {
+        TileWgs84 tile = new TileWgs84(null, manager);
+        TileIndices indices = new TileIndices();
+        indices.copyFrom(tileIndices);
+        tile.setTileIndices(indices);
+        GeographicExtension geographicExtension = new GeographicExtension();
+        geographicExtension.copyFrom(tileExtension);
+        tile.setGeographicExtension(geographicExtension);
+        tile.createInitialMesh();
+        return tile;
+    }
+
+    /**
+     * A tile refined as the tiling does : the triangles that must be refined are split, for (iterations) passes
+     */
+    public TileWgs84 createRefinedTile(int iterations) throws TransformException, IOException {
+        TileWgs84 tile = createInitialTile();
+        TileMatrix tileMatrix = createTileMatrix();
+        TerrainMesh mesh = tile.getMesh();
+        List<TerrainTriangle> newTriangles = new ArrayList<>();
+        List<TerrainHalfEdge> listHalfEdges = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            boolean refined = false;
+            int trianglesCount = mesh.triangles.size();
+            for (int j = 0; j < trianglesCount; j++) {
+                TerrainTriangle triangle = mesh.triangles.get(j);
+                if (triangle.getObjectStatus() == TerrainObjectStatus.DELETED || !tileMatrix.mustRefineTriangle(triangle)) {
+                    continue;
+                }
+                newTriangles.clear();
+                listHalfEdges.clear();
+                mesh.splitTriangle(triangle, terrainElevationDataManager, newTriangles, listHalfEdges);
+                refined |= !newTriangles.isEmpty();
+            }
+            if (!refined) {
+                break;
+            }
+            mesh.removeDeletedObjects();
+            mesh.setObjectsIdInList();
+        }
+        mesh.calculateNormals(new ArrayList<>(), new ArrayList<>());
+        return tile;
+    }
+
+    public TileMatrix createTileMatrix() {
+        TileRange tileRange = new TileRange();
+        tileRange.set(tileIndices.getL(), tileIndices.getX(), tileIndices.getX(), tileIndices.getY(), tileIndices.getY());
+        return new TileMatrix(tileRange, manager);
+    }
+
+    public TileWgs84Manager getManager() {
+        return manager;
+    }
+
+    public TerrainElevationDataManager getTerrainElevationDataManager() {
+        return terrainElevationDataManager;
+    }
+
+    public TileIndices getTileIndices() {
+        return tileIndices;
+    }
+
+    public GeographicExtension getTileExtension() {
+        return tileExtension;
+    }
+}
@@ -0,0 +1,59 @@
+package com.gaia3d.terrain.bench;
+
+import com.gaia3d.io.BigEndianDataInputStream;
+import com.gaia3d.io.BigEndianDataOutputStream;
+import com.gaia3d.terrain.structure.TerrainMesh;
+import org.geotools.api.referencing.operation.TransformException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The temporary tile files : TerrainMesh.saveDataOutputStream / loadDataInputStream, in memory to leave the disk out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class TempTileBenchmark {
+
+    @Param({"6"})
+    private int refineIterations;
+
+    private TerrainMesh mesh;
+    private byte[] meshBytes;
+    private final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(1 << 20);
+
+    @Setup(Level.Trial)
+    public void setUp() throws TransformException, IOException {
+        mesh = new SyntheticTerrain().createRefinedTile(refineIterations).getMesh();
+        meshBytes = save();
+    }
+
+    private byte[] save() throws IOException {
+        byteArrayOutputStream.reset();
+        BigEndianDataOutputStream dataOutputStream = new BigEndianDataOutputStream(byteArrayOutputStream);
+        mesh.saveDataOutputStream(dataOutputStream);
+        dataOutputStream.flush();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Benchmark
+    public int saveDataOutputStream() throws IOException {
+        byteArrayOutputStream.reset();
+        BigEndianDataOutputStream dataOutputStream = new BigEndianDataOutputStream(byteArrayOutputStream);
+        mesh.saveDataOutputStream(dataOutputStream);
+        dataOutputStream.flush();
+        return byteArrayOutputStream.size();
+    }
+
+    @Benchmark
+    public TerrainMesh loadDataInputStream() throws IOException {
+        BigEndianDataInputStream dataInputStream = new BigEndianDataInputStream(new ByteArrayInputStream(meshBytes));
+        TerrainMesh loadedMesh = new TerrainMesh();
+        loadedMesh.loadDataInputStream(dataInputStream);
+        return loadedMesh;
+    }
+}
@@ -0,0 +1,366 @@
+package com.gaia3d.terrain.bench;
+
+import com.gaia3d.command.Configurator;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.cli.*;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates reproducible fractal DEMs as GeoTIFF files, to run the whole pipeline without real data.
+ * The base file covers the area, and the detail files overlap parts of it at a finer resolution : the base elevations
+ * upsampled, with a finer fractal added, as a high resolution survey over a national DEM.
+ * No-data holes are NaN samples, as the terrainer reads them as no-data.
+ * The same seed and parameters always give the same files.
+ */
+@Slf4j
+@Getter
+@Setter
+public class SyntheticDemGenerator {
+    public enum Algorithm {
+        DIAMOND_SQUARE, FBM
+    }
+
+    private Algorithm algorithm = Algorithm.DIAMOND_SQUARE;
+    private int width = 1024; // pixels of the base file
+    private int height = 1024;
+    private double pixelSize = 0.0005; // in the units of the crs : ~50 m in EPSG:4326
+    private String crsCode = "EPSG:4326";
+    private double minX = 127.0; // the left-down corner, in the units of the crs
+    private double minY = 37.0;
+    private long seed = 42;
+    private double roughness = 0.55; // the amplitude kept at each halving of the scale
+    private double baseElevation = 200.0;
+    private double reliefMeters = 1500.0;
+    private int holesCount = 3;
+    private int holeRadius = 12; // pixels
+    private int detailFilesCount = 2;
+    private int detailScale = 4; // the detail files have a pixel size (detailScale) times finer
+    private double detailCoverage = 0.25; // the part of the base width covered by a detail file
+
+    public static void main(String[] args) {
+        Configurator.initConsoleLogger();
+        Options options = createOptions();
+        try {
+            CommandLine command = new DefaultParser().parse(options, args);
+            if (command.hasOption("help") || !command.hasOption("output")) {
+                new HelpFormatter().printHelp("SyntheticDemGenerator", options);
+                return;
+            }
+            SyntheticDemGenerator generator = new SyntheticDemGenerator();
+            generator.configure(command);
+            generator.generate(new File(command.getOptionValue("output")));
+        } catch (ParseException e) {
+            log.error("Failed to parse command line options, Please check the arguments.", e);
+            throw new RuntimeException(e);
+        } catch (IOException | FactoryException e) {
+            log.error("Failed to generate the synthetic DEM.", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Options createOptions() {
+        Options options = new Options();
+        options.addOption("h", "help", false, "Print Help");
+        options.addOption("o", "output", true, "Output directory of the GeoTIFF files");
+        addGeneratorOptions(options);
+        return options;
+    }
+
+    /**
+     * The options of the generated files, shared with the throughput harness
+     */
+    public static void addGeneratorOptions(Options options) {
+        options.addOption("a", "algorithm", true, "diamondSquare or fbm (default : diamondSquare)");
+        options.addOption("sz", "size", true, "Width and height of the base file in pixels (default : 1024)");
+        options.addOption("ps", "pixelSize", true, "Pixel size of the base file in the units of the crs (default : 0.0005)");
+        options.addOption("crs", "crs", true, "CRS of the files (default : EPSG:4326)");
+        options.addOption("x", "minX", true, "Left of the base file in the units of the crs (default : 127.0)");
+        options.addOption("y", "minY", true, "Bottom of the base file in the units of the crs (default : 37.0)");
+        options.addOption("s", "seed", true, "Random seed (default : 42)");
+        options.addOption("r", "roughness", true, "Fractal roughness, 0 - 1 (default : 0.55)");
+        options.addOption("rm", "relief", true, "Relief in meters (default : 1500)");
+        options.addOption("nh", "holes", true, "Number of no-data holes in the base file (default : 3)");
+        options.addOption("df", "detailFiles", true, "Number of overlapping detail files (default : 2)");
+        options.addOption("ds", "detailScale", true, "Resolution ratio of the detail files (default : 4)");
+    }
+
+    public void configure(CommandLine command) {
+        if (command.hasOption("algorithm")) {
+            this.algorithm = command.getOptionValue("algorithm").equalsIgnoreCase("fbm") ? Algorithm.FBM : Algorithm.DIAMOND_SQUARE;
+        }
+        if (command.hasOption("size")) {
+            this.width = Integer.parseInt(command.getOptionValue("size"));
+            this.height = this.width;
+        }
+        if (command.hasOption("pixelSize")) {
+            this.pixelSize = Double.parseDouble(command.getOptionValue("pixelSize"));
+        }
+        if (command.hasOption("crs")) {
+            this.crsCode = command.getOptionValue("crs");
+        }
+        if (command.hasOption("minX")) {
+            this.minX = Double.parseDouble(command.getOptionValue("minX"));
+        }
+        if (command.hasOption("minY")) {
+            this.minY = Double.parseDouble(command.getOptionValue("minY"));
+        }
+        if (command.hasOption("seed")) {
+            this.seed = Long.parseLong(command.getOptionValue("seed"));
+        }
+        if (command.hasOption("roughness")) {
+            this.roughness = Double.parseDouble(command.getOptionValue("roughness"));
+        }
+        if (command.hasOption("relief")) {
+            this.reliefMeters = Double.parseDouble(command.getOptionValue("relief"));
+        }
+        if (command.hasOption("holes")) {
+            this.holesCount = Integer.parseInt(command.getOptionValue("holes"));
+        }
+        if (command.hasOption("detailFiles")) {
+            this.detailFilesCount = Integer.parseInt(command.getOptionValue("detailFiles"));
+        }
+        if (command.hasOption("detailScale")) {
+            this.detailScale = Integer.parseInt(command.getOptionValue("detailScale"));
+        }
+    }
+
+    /**
+     * A short description of the dataset, the key of the throughput baseline
+     */
+    public String getDatasetName() {
+        return String.format(Locale.US, "%s_%dx%d_%s_%s_s%d_h%d_d%dx%d", algorithm.name().toLowerCase(Locale.US), width, height,
+                pixelSize, crsCode.replace(':', '-'), seed, holesCount, detailFilesCount, detailScale);
+    }
+
+    /**
+     * Writes the base file and the detail files in the folder
+     */
+    public List<File> generate(File outputFolder) throws IOException, FactoryException {
+        if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+            throw new IOException("Failed to create the folder : " + outputFolder.getAbsolutePath());
+        }
+        CoordinateReferenceSystem crs = CRS.decode(crsCode, true);
+        Random random = new Random(seed);
+        List<File> files = new ArrayList<>();
+
+        float[][] base = makeFractal(width, height, reliefMeters, random);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                base[row][col] += (float) baseElevation;
+            }
+        }
+        makeHoles(base, random);
+        File baseFile = new File(outputFolder, "dem_base.tif");
+        writeGeoTiff(base, minX, minY, pixelSize, crs, baseFile);
+        files.add(baseFile);
+
+        double detailPixelSize = pixelSize / detailScale;
+        int detailWidth = (int) Math.round(width * detailCoverage) * detailScale;
+        for (int i = 0; i < detailFilesCount; i++) {
+            // anywhere over the base file, the detail files can overlap each other
+            int startCol = random.nextInt(Math.max(1, width - detailWidth / detailScale));
+            int startRow = random.nextInt(Math.max(1, height - detailWidth / detailScale));
+            float[][] detail = makeFractal(detailWidth, detailWidth, reliefMeters * Math.pow(roughness, log2(width)), random);
+            for (int row = 0; row < detailWidth; row++) {
+                for (int col = 0; col < detailWidth; col++) {
+                    double baseCol = startCol + (col + 0.5) / detailScale - 0.5;
+                    double baseRow = startRow + (row + 0.5) / detailScale - 0.5;
+                    detail[row][col] += sampleBilinear(base, baseCol, baseRow);
+                }
+            }
+            double detailMinX = minX + startCol * pixelSize;
+            double detailMinY = minY + (height - startRow) * pixelSize - detailWidth * detailPixelSize;
+            File detailFile = new File(outputFolder, "dem_detail_" + (i + 1) + ".tif");
+            writeGeoTiff(detail, detailMinX, detailMinY, detailPixelSize, crs, detailFile);
+            files.add(detailFile);
+        }
+        log.info("[Synthetic DEM] {} files generated in {} : {}", files.size(), outputFolder.getAbsolutePath(), getDatasetName());
+        return files;
+    }
+
+    private float[][] makeFractal(int cols, int rows, double amplitude, Random random) {
+        return algorithm == Algorithm.FBM ? makeFbm(cols, rows, amplitude, random) : makeDiamondSquare(cols, rows, amplitude, random);
+    }
+
+    /**
+     * Diamond-square on the smallest (2^n + 1) grid covering the raster, cropped
+     */
+    private float[][] makeDiamondSquare(int cols, int rows, double amplitude, Random random) {
+        int size = 1;
+        while (size + 1 < Math.max(cols, rows)) {
+            size *= 2;
+        }
+        int gridSize = size + 1;
+        double[][] grid = new double[gridSize][gridSize];
+        grid[0][0] = random.nextDouble() * amplitude;
+        grid[0][size] = random.nextDouble() * amplitude;
+        grid[size][0] = random.nextDouble() * amplitude;
+        grid[size][size] = random.nextDouble() * amplitude;
+
+        double scale = amplitude * 0.5;
+        for (int step = size; step > 1; step /= 2) {
+            int half = step / 2;
+            // diamond : the centers of the squares
+            for (int row = half; row < gridSize; row += step) {
+                for (int col = half; col < gridSize; col += step) {
+                    double average = (grid[row - half][col - half] + grid[row - half][col + half] + grid[row + half][col - half] + grid[row + half][col + half]) * 0.25;
+                    grid[row][col] = average + (random.nextDouble() * 2 - 1) * scale;
+                }
+            }
+            // square : the middles of the edges
+            for (int row = 0; row < gridSize; row += half) {
+                for (int col = (row / half) % 2 == 0 ? half : 0; col < gridSize; col += step) {
+                    double sum = 0;
+                    int count = 0;
+                    if (row >= half) { sum += grid[row - half][col]; count++; }
+                    if (row + half < gridSize) { sum += grid[row + half][col]; count++; }
+                    if (col >= half) { sum += grid[row][col - half]; count++; }
+                    if (col + half < gridSize) { sum += grid[row][col + half]; count++; }
+                    grid[row][col] = sum / count + (random.nextDouble() * 2 - 1) * scale;
+                }
+            }
+            scale *= roughness;
+        }
+
+        float[][] result = new float[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                result[row][col] = (float) grid[row][col];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fractional brownian motion : octaves of value noise in [0, 1], the amplitude multiplied by the roughness at each octave
+     */
+    private float[][] makeFbm(int cols, int rows, double amplitude, Random random) {
+        long noiseSeed = random.nextLong();
+        int octaves = log2(Math.max(cols, rows));
+        float[][] result = new float[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                double value = 0;
+                double octaveAmplitude = amplitude * 0.5;
+                double frequency = 2.0 / Math.max(cols, rows);
+                for (int octave = 0; octave < octaves; octave++) {
+                    value += (getValueNoise(col * frequency, row * frequency, noiseSeed + octave) + 1) * 0.5 * octaveAmplitude;
+                    octaveAmplitude *= roughness;
+                    frequency *= 2;
+                }
+                result[row][col] = (float) value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Value noise in [-1, 1] : random values at the integer lattice, smoothly interpolated
+     */
+    private static double getValueNoise(double x, double y, long noiseSeed) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        double fx = smooth(x - x0);
+        double fy = smooth(y - y0);
+        double v00 = getLatticeValue(x0, y0, noiseSeed);
+        double v10 = getLatticeValue(x0 + 1, y0, noiseSeed);
+        double v01 = getLatticeValue(x0, y0 + 1, noiseSeed);
+        double v11 = getLatticeValue(x0 + 1, y0 + 1, noiseSeed);
+        double v0 = v00 + (v10 - v00) * fx;
+        double v1 = v01 + (v11 - v01) * fx;
+        return v0 + (v1 - v0) * fy;
+    }
+
+    private static double smooth(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static double getLatticeValue(int x, int y, long noiseSeed) {
+        long hash = noiseSeed ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL);
+        hash = (hash ^ (hash >>> 31)) * 0xBF58476D1CE4E5B9L;
+        hash = hash ^ (hash >>> 29);
+        return ((hash >>> 11) * 0x1.0p-53) * 2 - 1;
+    }
+
+    private void makeHoles(float[][] raster, Random random) {
+        int rows = raster.length;
+        int cols = raster[0].length;
+        for (int i = 0; i < holesCount; i++) {
+            int centerCol = random.nextInt(cols);
+            int centerRow = random.nextInt(rows);
+            for (int row = Math.max(0, centerRow - holeRadius); row <= Math.min(rows - 1, centerRow + holeRadius); row++) {
+                for (int col = Math.max(0, centerCol - holeRadius); col <= Math.min(cols - 1, centerCol + holeRadius); col++) {
+                    int dx = col - centerCol;
+                    int dy = row - centerRow;
+                    if (dx * dx + dy * dy <= holeRadius * holeRadius) {
+                        raster[row][col] = Float.NaN;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The bilinear elevation at the pixel position, the no-data holes are filled with the base elevation
+     */
+    private float sampleBilinear(float[][] raster, double col, double row) {
+        int rows = raster.length;
+        int cols = raster[0].length;
+        col = Math.max(0, Math.min(cols - 1, col));
+        row = Math.max(0, Math.min(rows - 1, row));
+        int col0 = (int) col;
+        int row0 = (int) row;
+        int col1 = Math.min(col0 + 1, cols - 1);
+        int row1 = Math.min(row0 + 1, rows - 1);
+        double fx = col - col0;
+        double fy = row - row0;
+        double z0 = getValue(raster, row0, col0) + (getValue(raster, row0, col1) - getValue(raster, row0, col0)) * fx;
+        double z1 = getValue(raster, row1, col0) + (getValue(raster, row1, col1) - getValue(raster, row1, col0)) * fx;
+        return (float) (z0 + (z1 - z0) * fy);
+    }
+
+    private float getValue(float[][] raster, int row, int col) {
+        float value = raster[row][col];
+        return Float.isNaN(value) ? (float) baseElevation : value;
+    }
+
+    private static int log2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(1, value));
+    }
+
+    /**
+     * The row 0 of the raster is the top of the envelope
+     */
+    private void writeGeoTiff(float[][] raster, double minX, double minY, double pixelSize, CoordinateReferenceSystem crs, File file) throws IOException {
+        int rows = raster.length;
+        int cols = raster[0].length;
+        ReferencedEnvelope envelope = new ReferencedEnvelope(minX, minX + cols * pixelSize, minY, minY + rows * pixelSize, crs);
+        GridCoverage2D coverage = new GridCoverageFactory().create(file.getName(), raster, envelope);
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+            GeoTiffWriter writer = new GeoTiffWriter(outputStream);
+            writer.write(coverage, null);
+            writer.dispose();
+        } finally {
+            coverage.dispose(true);
+        }
+        log.info("[Synthetic DEM][I/O] {} : {} x {} pixels of {}", file.getName(), cols, rows, pixelSize);
+    }
+}
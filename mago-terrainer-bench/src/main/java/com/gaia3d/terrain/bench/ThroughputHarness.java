@@ -0,0 +1,337 @@
+package com.gaia3d.terrain.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gaia3d.command.Configurator;
+import com.gaia3d.command.MagoTerrainerMain;
+import com.gaia3d.terrain.util.TilingMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.cli.*;
+import org.geotools.api.referencing.FactoryException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end throughput regression harness.
+ * Generates a synthetic DEM (see SyntheticDemGenerator), runs MagoTerrainerMain on it in a child JVM, and records per depth
+ * the tiles, the tiles per second, the temp bytes and the output bytes, with the peak RSS and the peak heap of the run, in {WORK}/throughput.csv.
+ * With a baseline csv, the run fails (exit code 1) if the tiles per second drop, or the peaks grow, more than the tolerance.
+ */
+@Slf4j
+public class ThroughputHarness {
+    public static final String RESULT_FILE_NAME = "throughput.csv";
+    private static final String HEADER = "dataset,depth,tiles,seconds,tilesPerSecond,tempBytes,outputBytes,peakRssBytes,peakHeapBytes";
+    private static final String ALL_DEPTHS = "all";
+    private static final String TILE_EXTENSION = ".terrain";
+    private static final long RSS_SAMPLE_MILLIS = 200;
+
+    public static void main(String[] args) {
+        Configurator.initConsoleLogger();
+        Options options = createOptions();
+        try {
+            CommandLine command = new DefaultParser().parse(options, args);
+            if (command.hasOption("help") || !command.hasOption("work")) {
+                new HelpFormatter().printHelp("ThroughputHarness", options);
+                return;
+            }
+            int exitCode = new ThroughputHarness().run(command);
+            System.exit(exitCode);
+        } catch (ParseException e) {
+            log.error("Failed to parse command line options, Please check the arguments.", e);
+            throw new RuntimeException(e);
+        } catch (IOException | FactoryException e) {
+            log.error("Failed to run the throughput harness.", e);
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Options createOptions() {
+        Options options = new Options();
+        options.addOption("h", "help", false, "Print Help");
+        options.addOption("w", "work", true, "Work directory : the generated DEM, the output, and the results");
+        options.addOption("b", "baseline", true, "Baseline csv to compare the results with");
+        options.addOption("ub", "updateBaseline", false, "Write the results as the baseline, instead of comparing");
+        options.addOption("tol", "tolerance", true, "Allowed throughput drop and peak growth, 0 - 1 (default : 0.2)");
+        options.addOption("max", "maxDepth", true, "Maximum tile depth of the run (default : 14)");
+        options.addOption("xmx", "heap", true, "Max heap of the terrainer JVM (default : 2g)");
+        options.addOption("ta", "terrainerArgs", true, "More arguments for the terrainer, separated by commas (ex : --terrainerArgs=--mosaicSize,8,--calculateNormals)");
+        SyntheticDemGenerator.addGeneratorOptions(options);
+        return options;
+    }
+
+    /**
+     * @return 0, or 1 if the run failed or regressed
+     */
+    public int run(CommandLine command) throws IOException, FactoryException, InterruptedException {
+        File workFolder = new File(command.getOptionValue("work"));
+        SyntheticDemGenerator generator = new SyntheticDemGenerator();
+        generator.configure(command);
+        String dataset = generator.getDatasetName();
+
+        // the generated files are kept between the runs, they only depend on the parameters
+        File inputFolder = new File(workFolder, "input" + File.separator + dataset);
+        if (!inputFolder.isDirectory() || Objects.requireNonNull(inputFolder.list()).length == 0) {
+            generator.generate(inputFolder);
+        }
+        File outputFolder = new File(workFolder, "output");
+        deleteRecursively(outputFolder.toPath());
+
+        List<String> terrainerArgs = new ArrayList<>(List.of("--input", inputFolder.getAbsolutePath(), "--output", outputFolder.getAbsolutePath(), "--leaveTemp",
+                "--maxDepth", command.getOptionValue("maxDepth", "14")));
+        if (command.hasOption("terrainerArgs")) {
+            terrainerArgs.addAll(List.of(command.getOptionValue("terrainerArgs").trim().split(",")));
+        }
+        RunResult runResult = runTerrainer(terrainerArgs, command.getOptionValue("heap", "2g"), new File(workFolder, "terrainer.log"));
+        if (runResult.exitCode != 0) {
+            log.error("[Throughput] The terrainer failed with the exit code {}, see {}", runResult.exitCode, new File(workFolder, "terrainer.log"));
+            return 1;
+        }
+
+        List<Map<String, String>> records = makeRecords(dataset, outputFolder, runResult);
+        Path resultPath = workFolder.toPath().resolve(RESULT_FILE_NAME);
+        writeCsv(resultPath, records);
+        log.info("[Throughput] {} : {} tiles/s, peak RSS {} MB, results in {}", dataset, records.get(records.size() - 1).get("tilesPerSecond"),
+                runResult.peakRssBytes / (1024 * 1024), resultPath);
+
+        if (!command.hasOption("baseline")) {
+            return 0;
+        }
+        Path baselinePath = Path.of(command.getOptionValue("baseline"));
+        if (command.hasOption("updateBaseline") || !Files.exists(baselinePath)) {
+            updateBaseline(baselinePath, dataset, records);
+            log.info("[Throughput] Baseline written : {}", baselinePath);
+            return 0;
+        }
+        double tolerance = Double.parseDouble(command.getOptionValue("tolerance", "0.2"));
+        List<String> regressions = compare(readCsv(baselinePath), records, tolerance);
+        if (regressions.isEmpty()) {
+            log.info("[Throughput] No regression against the baseline {} (tolerance {})", baselinePath, tolerance);
+            return 0;
+        }
+        regressions.forEach(regression -> log.error("[Throughput] Regression : {}", regression));
+        return 1;
+    }
+
+    private static class RunResult {
+        private int exitCode;
+        private double seconds;
+        private long peakRssBytes = -1;
+    }
+
+    /**
+     * Runs the terrainer in a child JVM with the classpath of the harness, so every run starts from a cold JVM and a clean state.
+     * The peak RSS is the high water mark of the process, sampled until its end (Linux only, -1 elsewhere).
+     */
+    private RunResult runTerrainer(List<String> terrainerArgs, String maxHeap, File logFile) throws IOException, InterruptedException {
+        List<String> processCommand = new ArrayList<>();
+        processCommand.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        processCommand.add("-Xmx" + maxHeap);
+        processCommand.add("-Djava.awt.headless=true");
+        processCommand.add("-Dfile.encoding=UTF-8");
+        processCommand.add("-cp");
+        processCommand.add(System.getProperty("java.class.path"));
+        processCommand.add(MagoTerrainerMain.class.getName());
+        processCommand.addAll(terrainerArgs);
+        log.info("[Throughput] Running : {}", String.join(" ", terrainerArgs));
+
+        RunResult runResult = new RunResult();
+        long startNanos = System.nanoTime();
+        Process process = new ProcessBuilder(processCommand).redirectErrorStream(true).redirectOutput(logFile).start();
+        Path statusPath = Path.of("/proc", String.valueOf(process.pid()), "status");
+        while (process.isAlive()) {
+            runResult.peakRssBytes = Math.max(runResult.peakRssBytes, readHighWaterMark(statusPath));
+            process.waitFor(RSS_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        runResult.exitCode = process.exitValue();
+        runResult.seconds = (System.nanoTime() - startNanos) / 1e9;
+        return runResult;
+    }
+
+    /**
+     * VmHWM of /proc/{pid}/status, in bytes
+     */
+    private static long readHighWaterMark(Path statusPath) {
+        try {
+            for (String line : Files.readAllLines(statusPath, StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux, or the process just ended
+        }
+        return -1;
+    }
+
+    /**
+     * A record per depth, from the metrics of the run and the sizes of the temp and output folders, and a record of the whole run.
+     * The tiles and the output bytes are the unique tiles on the disk, {OUTPUT}/{depth} : the tiles_total and bytes_written_total
+     * counters also count the halo tiles rewritten by the neighbor blocks. Without the depth folder (archive output), the counters are used.
+     */
+    private List<Map<String, String>> makeRecords(String dataset, File outputFolder, RunResult runResult) throws IOException {
+        JsonNode metrics = new ObjectMapper().readTree(new File(outputFolder, TilingMetrics.JSON_FILE_NAME));
+        long peakHeapBytes = metrics.get("run").path("peakHeapBytes").asLong(-1);
+        Map<Integer, Long> tilesByDepth = getCounterByDepth(metrics, TilingMetrics.Counter.TILES.getMetricName());
+        Map<Integer, Long> outputBytesByDepth = getCounterByDepth(metrics, TilingMetrics.Counter.BYTES_WRITTEN.getMetricName());
+        Map<Integer, Double> secondsByDepth = new TreeMap<>();
+        for (JsonNode histogram : metrics.get("blockDurations")) {
+            secondsByDepth.put(histogram.get("depth").asInt(), histogram.get("sumSeconds").asDouble());
+        }
+
+        List<Map<String, String>> records = new ArrayList<>();
+        long totalTiles = 0;
+        long totalTempBytes = 0;
+        long totalOutputBytes = 0;
+        for (Map.Entry<Integer, Long> entry : tilesByDepth.entrySet()) {
+            int depth = entry.getKey();
+            long tiles = entry.getValue();
+            long outputBytes = outputBytesByDepth.getOrDefault(depth, 0L);
+            Path outputDepthPath = new File(outputFolder, String.valueOf(depth)).toPath();
+            if (Files.isDirectory(outputDepthPath)) {
+                tiles = getFileCount(outputDepthPath, TILE_EXTENSION);
+                outputBytes = getFolderBytes(outputDepthPath);
+            }
+            double seconds = secondsByDepth.getOrDefault(depth, 0.0);
+            long tempBytes = getFolderBytes(new File(outputFolder, "temp" + File.separator + "L" + depth).toPath());
+            records.add(makeRecord(dataset, String.valueOf(depth), tiles, seconds, tempBytes, outputBytes, -1, -1));
+            totalTiles += tiles;
+            totalTempBytes += tempBytes;
+            totalOutputBytes += outputBytes;
+        }
+        records.add(makeRecord(dataset, ALL_DEPTHS, totalTiles, runResult.seconds, totalTempBytes, totalOutputBytes, runResult.peakRssBytes, peakHeapBytes));
+        return records;
+    }
+
+    private Map<String, String> makeRecord(String dataset, String depth, long tiles, double seconds, long tempBytes, long outputBytes, long peakRssBytes, long peakHeapBytes) {
+        Map<String, String> record = new LinkedHashMap<>();
+        record.put("dataset", dataset);
+        record.put("depth", depth);
+        record.put("tiles", String.valueOf(tiles));
+        record.put("seconds", String.format(Locale.US, "%.3f", seconds));
+        record.put("tilesPerSecond", String.format(Locale.US, "%.1f", seconds > 0 ? tiles / seconds : 0));
+        record.put("tempBytes", String.valueOf(tempBytes));
+        record.put("outputBytes", String.valueOf(outputBytes));
+        record.put("peakRssBytes", String.valueOf(peakRssBytes));
+        record.put("peakHeapBytes", String.valueOf(peakHeapBytes));
+        return record;
+    }
+
+    private static Map<Integer, Long> getCounterByDepth(JsonNode metrics, String metricName) {
+        Map<Integer, Long> values = new TreeMap<>();
+        for (JsonNode counter : metrics.get("counters")) {
+            if (counter.get("name").asText().equals(metricName) && counter.has("depth")) {
+                values.merge(counter.get("depth").asInt(), counter.get("value").asLong(), Long::sum);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The regressions of the results against the baseline records of the same dataset.
+     * The depths of a few tiles are too short to be timed, only the whole run and the depths of more than a second are compared.
+     */
+    static List<String> compare(List<Map<String, String>> baseline, List<Map<String, String>> records, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Map<String, String> record : records) {
+            Map<String, String> baselineRecord = baseline.stream()
+                    .filter(candidate -> candidate.get("dataset").equals(record.get("dataset")) && candidate.get("depth").equals(record.get("depth")))
+                    .findFirst().orElse(null);
+            if (baselineRecord == null) {
+                continue;
+            }
+            String key = record.get("dataset") + " depth " + record.get("depth");
+            boolean timed = record.get("depth").equals(ALL_DEPTHS) || Double.parseDouble(baselineRecord.get("seconds")) >= 1.0;
+            double baselineThroughput = Double.parseDouble(baselineRecord.get("tilesPerSecond"));
+            double throughput = Double.parseDouble(record.get("tilesPerSecond"));
+            if (timed && baselineThroughput > 0 && throughput < baselineThroughput * (1 - tolerance)) {
+                regressions.add(String.format(Locale.US, "%s : %.1f tiles/s, baseline %.1f", key, throughput, baselineThroughput));
+            }
+            for (String peak : List.of("peakRssBytes", "peakHeapBytes")) {
+                long baselinePeak = Long.parseLong(baselineRecord.get(peak));
+                long currentPeak = Long.parseLong(record.get(peak));
+                if (baselinePeak > 0 && currentPeak > baselinePeak * (1 + tolerance)) {
+                    regressions.add(String.format(Locale.US, "%s : %s %d MB, baseline %d MB", key, peak, currentPeak >> 20, baselinePeak >> 20));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * The records of the dataset replace its previous records, the other datasets are kept
+     */
+    private void updateBaseline(Path baselinePath, String dataset, List<Map<String, String>> records) throws IOException {
+        List<Map<String, String>> baseline = Files.exists(baselinePath) ? readCsv(baselinePath) : new ArrayList<>();
+        baseline.removeIf(record -> record.get("dataset").equals(dataset));
+        baseline.addAll(records);
+        writeCsv(baselinePath, baseline);
+    }
+
+    static List<Map<String, String>> readCsv(Path csvPath) throws IOException {
+        List<String> lines = Files.readAllLines(csvPath, StandardCharsets.UTF_8);
+        List<Map<String, String>> records = new ArrayList<>();
+        if (lines.isEmpty()) {
+            return records;
+        }
+        String[] columns = lines.get(0).split(",");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] values = line.split(",", -1);
+            Map<String, String> record = new LinkedHashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                record.put(columns[i], i < values.length ? values[i] : "");
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void writeCsv(Path csvPath, List<Map<String, String>> records) throws IOException {
+        StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (Map<String, String> record : records) {
+            content.append(String.join(",", record.values())).append('\n');
+        }
+        if (csvPath.getParent() != null) {
+            Files.createDirectories(csvPath.getParent());
+        }
+        Files.writeString(csvPath, content.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static long getFolderBytes(Path folderPath) throws IOException {
+        if (!Files.isDirectory(folderPath)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(folderPath)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static long getFileCount(Path folderPath, String extension) throws IOException {
+        try (Stream<Path> paths = Files.walk(folderPath)) {
+            return paths.filter(path -> Files.isRegularFile(path) && path.getFileName().toString().endsWith(extension)).count();
+        }
+    }
+
+    private static void deleteRecursively(Path folderPath) throws IOException {
+        if (!Files.exists(folderPath)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folderPath)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
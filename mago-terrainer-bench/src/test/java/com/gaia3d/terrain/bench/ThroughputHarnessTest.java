@@ -0,0 +1,42 @@
+package com.gaia3d.terrain.bench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThroughputHarnessTest {
+    private static final String HEADER = "dataset,depth,tiles,seconds,tilesPerSecond,tempBytes,outputBytes,peakRssBytes,peakHeapBytes";
+
+    @Test
+    void compareWithBaseline(@TempDir Path tempDir) throws IOException {
+        Path baselinePath = tempDir.resolve("baseline.csv");
+        Files.writeString(baselinePath, HEADER + "\n"
+                + "dem,12,1000,10.0,100.0,5000,4000,-1,-1\n"
+                + "dem,13,10,0.1,100.0,50,40,-1,-1\n"
+                + "dem,all,1010,12.0,84.2,5050,4040,1000000000,500000000\n"
+                + "other,all,10,1.0,10.0,0,0,-1,-1\n");
+        List<Map<String, String>> baseline = ThroughputHarness.readCsv(baselinePath);
+        assertEquals(4, baseline.size());
+
+        Path resultPath = tempDir.resolve("result.csv");
+        // depth 12 is 30 % slower, depth 13 is too short to be timed, the peak heap grew 10 %
+        Files.writeString(resultPath, HEADER + "\n"
+                + "dem,12,1000,14.3,70.0,5000,4000,-1,-1\n"
+                + "dem,13,10,0.5,20.0,50,40,-1,-1\n"
+                + "dem,all,1010,12.5,80.8,5050,4040,1000000000,550000000\n");
+        List<Map<String, String>> records = ThroughputHarness.readCsv(resultPath);
+
+        List<String> regressions = ThroughputHarness.compare(baseline, records, 0.2);
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0).startsWith("dem depth 12 :"));
+        assertTrue(ThroughputHarness.compare(baseline, records, 0.35).isEmpty());
+        assertEquals(2, ThroughputHarness.compare(baseline, records, 0.05).size());
+    }
+}
@@ -11,6 +11,8 @@ public enum CommandOptions {
     LEAVE_TEMP("leaveTemp", "lt", false, "Leave temporary files for debugging"),
     JSON("json", "j", false, "Generate layer.json from terrain data"),
     CONTINUOUS("continue", "c", false, "Continue from last terrain generation. This option can be used when terrain creation is interrupted or fails."),
+    INCREMENTAL("incremental", "inc", false, "Regenerate only the tiles over the source GeoTIFFs added, modified or removed since the last run (compared with {OUTPUT}/source_manifest.csv). All the tiles are generated if the tiling options changed. With --archive, the whole archive is rewritten."),
+    PLAN("plan", "pl", false, "Dry run : print the tiles, blocks, memory, temp disk, output size and time estimated per depth (calibrated on a few sample blocks), and flag the heap or disk shortages. No tile is written."),
 
     /* Path Options */
     INPUT("input", "i", true, "[Required] Input directory path"),
@@ -31,18 +33,33 @@ public enum CommandOptions {
 
     /* Optimize Options */
     TILING_MOSAIC_SIZE("mosaicSize", "ms", true, "Tiling mosaic buffer size per tile. \n(default : 16)"),
+    AUTO_TUNE("autoTune", "at", false, "Choose the mosaic size of every depth from the heap, the container memory limit and the triangle density of the previous depth, and the writer threads from the container cpus. The --mosaicSize is used for the first depth. The chosen values are written in {OUTPUT}/tiling_tuning.csv"),
     RASTER_MAXIMUM_SIZE("rasterMaxSize", "mr", true, "Maximum raster size for split function. \n(default : 8192)"),
+    TILE_MAXIMUM_TRIANGLES("tileMaxTriangles", "mt", true, "Maximum triangles per tile. The highest-error triangles are refined first. \n(default : 0, unlimited)"),
+    TILE_MAXIMUM_BYTES("tileMaxBytes", "mb", true, "Maximum encoded bytes per tile, converted to a triangle budget after the enabled extensions. \n(default : 0, unlimited)"),
+    OUTPUT_GZIP("gzip", "gz", false, "Write the .terrain tiles gzip compressed, to be served with 'Content-Encoding: gzip'"),
+    GZIP_LEVEL("gzipLevel", "gzl", true, "Gzip compression level of the .terrain tiles \n(default : 6)(options: 1 - 9)"),
+    ARCHIVE("archive", "ar", false, "Write all the .terrain tiles and layer.json in a single indexed archive file {OUTPUT}/terrain.mta"),
+    SIZE_MANIFEST("sizeManifest", "sm", false, "Write the raw and stored size of every .terrain tile in {OUTPUT}/tile_sizes.csv (one row per tile, the halo rewrites of the neighbor blocks are not listed)"),
+    QUALITY_REPORT("qualityReport", "qr", false, "Write the size, vertical error, refinement iterations and time of every tile, and histograms per depth, in {OUTPUT}/tile_quality"),
+    KEEP_VERTEX_ORDER("keepVertexOrder", "kvo", false, "Keep the refinement order of the vertices and triangles of the .terrain tiles (no vertex cache reordering)"),
+    CHECKPOINT_SYNC("checkpointSync", "cks", false, "Force the tiles and the temp files to the disk at every block checkpoint of the tiling journal, so --continue is also safe after a power loss (slower)"),
+    WRITER_THREADS("writerThreads", "wt", true, "Number of tile output writer threads. 0 writes the tiles on the tiling thread. \n(default : 2)"),
 
     /* Experimental Options */
     //INPUT_CRS("inputCrs", "ic", true, "[Experimental] Input Coordinate Reference System, EPSG Code [4326, 3857...]"),
     //TILING_SCHEMA("tilingSchema", "ts", true, "[Experimental] Schema for the terrain data. [geodetic, mercator][default : geodetic]"),
     EXT_META_DATA("metadata", "md", false, "[Experimental] Generate metadata for the terrain data."),
+    METADATA_AVAILABILITY("metadataAvailability", "mda", true, "[Experimental] Depth interval of the tiles carrying the child availability in the metadata. layer.json lists the tiles down to this depth. \n(default : 10)"),
     EXT_WATER_MASK("waterMask", "wm", false, "[Experimental] Generate water mask for the terrain data."),
+    WATER_MASK_HEIGHT("waterMaskHeight", "wmh", true, "[Experimental] Elevations equal to or lower than this height are water in the water mask. No-data samples are always water. \n(default : none)"),
+    WATER_MASK_PATH("waterMaskPath", "wmp", true, "[Experimental] GeoTIFF of water polygons for the water mask, non-zero pixels are water"),
 
     /* Celestial Body Option */
     BODY("body", "b", true, "Celestial body for terrain generation \n(default : earth)(options: earth, moon)"),
 
     /* Debug Options */
+    TOPOLOGY_VALIDATION("topologyValidation", "tv", true, "[DEBUG] Topology validation level after tile merges and refinement \n(default : boundary-only, full with --debug)(options: off, sampled, boundary-only (alias boundary), full)\nboundary-only checks the merged vertices, but only a sample of the vertices while refining"),
     DEBUG("debug", "d", false, "[DEBUG] Print more detailed logs.");
 
     private final String longName;
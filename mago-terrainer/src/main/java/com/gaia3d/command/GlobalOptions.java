@@ -1,8 +1,13 @@
 package com.gaia3d.command;
 
 import com.gaia3d.basic.exception.Reporter;
+import com.gaia3d.quantized.mesh.QuantizedMesh;
+import com.gaia3d.terrain.tile.TilingJournal;
 import com.gaia3d.terrain.types.InterpolationType;
 import com.gaia3d.terrain.types.PriorityType;
+import com.gaia3d.terrain.types.TopologyValidationLevel;
+import com.gaia3d.terrain.util.GzipCompressor;
+import com.gaia3d.terrain.util.TilingAutoTuner;
 import com.gaia3d.util.CelestialBody;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -38,12 +43,15 @@ public class GlobalOptions {
     private static final int DEFAULT_MINIMUM_TILE_DEPTH = 0;
     private static final int DEFAULT_MAXIMUM_TILE_DEPTH = 14;
     private static final int DEFAULT_MOSAIC_SIZE = 16;
+    private static final int DEFAULT_WRITER_THREADS = 2;
+    private static final int DEFAULT_METADATA_AVAILABILITY = 10;
     private static final int DEFAULT_MAX_RASTER_SIZE = 4000;
     private static final double DEFAULT_INTENSITY = 4.0;
     private static final double DEFAULT_NO_DATA_VALUE = -9999.0;
     private static final CoordinateReferenceSystem DEFAULT_TARGET_CRS = DefaultGeographicCRS.WGS84;
     private static final CelestialBody DEFAULT_CELESTIAL_BODY = CelestialBody.EARTH;
     private static final TilingSchema DEFAULT_TILING_SCHEMA = TilingSchema.GEODETIC;
+    private static final TopologyValidationLevel DEFAULT_TOPOLOGY_VALIDATION_LEVEL = TopologyValidationLevel.BOUNDARY;
     private static final String DEFAULT_TEMP_DIR = "temp";
 
     /* Program Information */
@@ -62,6 +70,10 @@ public class GlobalOptions {
     private boolean debugMode = false;
     private boolean leaveTemp = false;
     private boolean isContinue = false;
+    private boolean isIncremental = false;
+    private boolean isCheckpointSync = false;
+    private boolean isPlan = false;
+    private TopologyValidationLevel topologyValidationLevel;
 
     /* Tiling options */
     private int minimumTileDepth;
@@ -74,11 +86,23 @@ public class GlobalOptions {
     /* Extensions */
     private boolean isCalculateNormalsExtension;
     private boolean isMetaDataExtension;
+    private int metadataAvailability;
     private boolean isWaterMaskExtension;
+    private Double waterMaskHeight; // null = only the no-data samples are water
+    private String waterMaskPath;
 
     /* Migration options */
     private int mosaicSize;
+    private boolean isAutoTune;
     private int maxRasterSize;
+    private int tileMaxTriangles; // 0 = unlimited
+    private int writerThreads; // 0 = synchronous writes
+    private boolean isGzipOutput;
+    private int gzipLevel;
+    private boolean isSizeManifest;
+    private boolean isQualityReport;
+    private boolean isArchiveOutput;
+    private boolean isOptimizeVertexOrder;
 
     /* Temporary paths for processing */
     private String rootTempPath;
@@ -127,28 +151,22 @@ public class GlobalOptions {
         if (command.hasOption(CommandOptions.TEMP_PATH.getLongName())) {
             String tempPath = command.getOptionValue(CommandOptions.TEMP_PATH.getLongName());
             String sufix = java.util.UUID.randomUUID().toString();
-            File tempFullPath = new File(tempPath, sufix);
-            File resizedDir = new File(tempFullPath, "resized");
-            File splitDir = new File(tempFullPath, "split");
-            File standardizeDir = new File(tempFullPath, "standardization");
-            File geoidDir = new File(tempFullPath, "geoid");
-            instance.setRootTempPath(tempFullPath.getAbsolutePath());
-            instance.setTileTempPath(tempFullPath.getAbsolutePath());
-            instance.setResizedTiffTempPath(resizedDir.getAbsolutePath());
-            instance.setSplitTiffTempPath(splitDir.getAbsolutePath());
-            instance.setStandardizeTempPath(standardizeDir.getAbsolutePath());
-            instance.setGeoidTempPath(geoidDir.getAbsolutePath());
+            setTempPaths(new File(tempPath, sufix));
         } else {
-            File tempDir = new File(instance.getOutputPath(), DEFAULT_TEMP_DIR);
-            File resizedDir = new File(tempDir, "resized");
-            File splitDir = new File(tempDir, "split");
-            File standardizeDir = new File(tempDir, "standardization");
-            instance.setRootTempPath(tempDir.getAbsolutePath());
-            instance.setTileTempPath(tempDir.getAbsolutePath());
-            instance.setResizedTiffTempPath(resizedDir.getAbsolutePath());
-            instance.setSplitTiffTempPath(splitDir.getAbsolutePath());
-            instance.setStandardizeTempPath(standardizeDir.getAbsolutePath());
-            instance.setGeoidTempPath(new File(tempDir, "geoid").getAbsolutePath());
+            setTempPaths(new File(instance.getOutputPath(), DEFAULT_TEMP_DIR));
+        }
+
+        // the continued tiling reuses the temp files of the interrupted run, found in its journal
+        if (command.hasOption(CommandOptions.CONTINUOUS.getLongName())) {
+            String journalTempPath = TilingJournal.readTempPath(instance.getOutputPath());
+            if (journalTempPath != null && new File(journalTempPath).isDirectory()) {
+                setTempPaths(new File(journalTempPath));
+            }
+        }
+
+        // the plan is a dry run, its temp files are kept apart from the temp files of a run
+        if (command.hasOption(CommandOptions.PLAN.getLongName())) {
+            setTempPaths(new File(instance.getRootTempPath(), "plan"));
         }
 
         if (command.hasOption(CommandOptions.GEOID_PATH.getLongName())) {
@@ -188,6 +206,33 @@ public class GlobalOptions {
         instance.setDebugMode(command.hasOption(CommandOptions.DEBUG.getLongName()));
         instance.setLeaveTemp(command.hasOption(CommandOptions.LEAVE_TEMP.getLongName()));
         instance.setContinue(command.hasOption(CommandOptions.CONTINUOUS.getLongName()));
+        instance.setIncremental(command.hasOption(CommandOptions.INCREMENTAL.getLongName()));
+        instance.setCheckpointSync(command.hasOption(CommandOptions.CHECKPOINT_SYNC.getLongName()));
+        if (instance.isIncremental() && instance.isContinue()) {
+            log.warn("* The incremental option can not be used with the continue option. The incremental option is ignored.");
+            instance.setIncremental(false);
+        }
+        instance.setPlan(command.hasOption(CommandOptions.PLAN.getLongName()));
+        if (instance.isPlan() && (instance.isContinue() || instance.isIncremental())) {
+            log.warn("* The plan estimates a complete run. The continue and incremental options are ignored.");
+            instance.setContinue(false);
+            instance.setIncremental(false);
+        }
+        if (command.hasOption(CommandOptions.TOPOLOGY_VALIDATION.getLongName())) {
+            String validationLevel = command.getOptionValue(CommandOptions.TOPOLOGY_VALIDATION.getLongName());
+            TopologyValidationLevel level;
+            try {
+                level = TopologyValidationLevel.fromString(validationLevel);
+            } catch (IllegalArgumentException e) {
+                log.warn("* Topology validation level is not valid. Set to {}.", DEFAULT_TOPOLOGY_VALIDATION_LEVEL.getArgumentName());
+                level = DEFAULT_TOPOLOGY_VALIDATION_LEVEL;
+            }
+            instance.setTopologyValidationLevel(level);
+        } else if (instance.isDebugMode()) {
+            instance.setTopologyValidationLevel(TopologyValidationLevel.FULL);
+        } else {
+            instance.setTopologyValidationLevel(DEFAULT_TOPOLOGY_VALIDATION_LEVEL);
+        }
         // Parse celestial body option
         if (command.hasOption(CommandOptions.BODY.getLongName())) {
             String bodyValue = command.getOptionValue(CommandOptions.BODY.getLongName());
@@ -317,10 +362,96 @@ public class GlobalOptions {
 
         instance.setCalculateNormalsExtension(command.hasOption(CommandOptions.EXT_CALCULATE_NORMALS.getLongName()));
         instance.setMetaDataExtension(command.hasOption(CommandOptions.EXT_META_DATA.getLongName()));
+        if (command.hasOption(CommandOptions.METADATA_AVAILABILITY.getLongName())) {
+            int metadataAvailability = Integer.parseInt(command.getOptionValue(CommandOptions.METADATA_AVAILABILITY.getLongName()));
+            if (metadataAvailability < 1) {
+                log.warn("* Metadata availability must be at least 1. Set to {}.", DEFAULT_METADATA_AVAILABILITY);
+                metadataAvailability = DEFAULT_METADATA_AVAILABILITY;
+            }
+            instance.setMetadataAvailability(metadataAvailability);
+        } else {
+            instance.setMetadataAvailability(DEFAULT_METADATA_AVAILABILITY);
+        }
         instance.setWaterMaskExtension(command.hasOption(CommandOptions.EXT_WATER_MASK.getLongName()));
+        if (command.hasOption(CommandOptions.WATER_MASK_HEIGHT.getLongName())) {
+            instance.setWaterMaskHeight(Double.parseDouble(command.getOptionValue(CommandOptions.WATER_MASK_HEIGHT.getLongName())));
+        } else {
+            instance.setWaterMaskHeight(null);
+        }
+        if (command.hasOption(CommandOptions.WATER_MASK_PATH.getLongName())) {
+            String waterMaskPath = command.getOptionValue(CommandOptions.WATER_MASK_PATH.getLongName());
+            if (!new File(waterMaskPath).isFile()) {
+                log.error("[ERROR] Water mask raster not found : {}", waterMaskPath);
+                throw new IllegalArgumentException("Water mask raster not found : " + waterMaskPath);
+            }
+            instance.setWaterMaskPath(waterMaskPath);
+        } else {
+            instance.setWaterMaskPath(null);
+        }
+        if ((instance.getWaterMaskHeight() != null || instance.getWaterMaskPath() != null) && !instance.isWaterMaskExtension()) {
+            log.warn("* The water mask sources are ignored without the waterMask extension.");
+        }
+
+        int tileMaxTriangles = 0;
+        if (command.hasOption(CommandOptions.TILE_MAXIMUM_TRIANGLES.getLongName())) {
+            tileMaxTriangles = Math.max(0, Integer.parseInt(command.getOptionValue(CommandOptions.TILE_MAXIMUM_TRIANGLES.getLongName())));
+        }
+        if (command.hasOption(CommandOptions.TILE_MAXIMUM_BYTES.getLongName())) {
+            int tileMaxBytes = Integer.parseInt(command.getOptionValue(CommandOptions.TILE_MAXIMUM_BYTES.getLongName()));
+            if (tileMaxBytes > 0) {
+                int metadataLevels = instance.isMetaDataExtension() ? instance.getMetadataAvailability() : 0;
+                int trianglesByBytes = QuantizedMesh.estimateMaxTrianglesForBytes(tileMaxBytes, instance.isCalculateNormalsExtension(), instance.isWaterMaskExtension(), metadataLevels);
+                if (trianglesByBytes <= QuantizedMesh.MIN_BUDGET_TRIANGLES) {
+                    log.warn("* The tile max bytes ({}) is too small for the enabled extensions, the tiles will be larger.", tileMaxBytes);
+                }
+                tileMaxTriangles = tileMaxTriangles > 0 ? Math.min(tileMaxTriangles, trianglesByBytes) : trianglesByBytes;
+            }
+        }
+        instance.setTileMaxTriangles(tileMaxTriangles);
+
+        instance.setGzipOutput(command.hasOption(CommandOptions.OUTPUT_GZIP.getLongName()));
+        if (command.hasOption(CommandOptions.GZIP_LEVEL.getLongName())) {
+            int gzipLevel = Integer.parseInt(command.getOptionValue(CommandOptions.GZIP_LEVEL.getLongName()));
+            if (gzipLevel < 1 || gzipLevel > 9) {
+                log.warn("* Gzip level must be between 1 and 9. Set to {}.", GzipCompressor.DEFAULT_LEVEL);
+                gzipLevel = GzipCompressor.DEFAULT_LEVEL;
+            }
+            instance.setGzipLevel(gzipLevel);
+        } else {
+            instance.setGzipLevel(GzipCompressor.DEFAULT_LEVEL);
+        }
+        instance.setSizeManifest(command.hasOption(CommandOptions.SIZE_MANIFEST.getLongName()));
+        instance.setQualityReport(command.hasOption(CommandOptions.QUALITY_REPORT.getLongName()));
+        instance.setArchiveOutput(command.hasOption(CommandOptions.ARCHIVE.getLongName()));
+        if (instance.isArchiveOutput() && instance.isContinue()) {
+            log.warn("* The archive output can not be continued. The tiles are written as files.");
+            instance.setArchiveOutput(false);
+        }
+
+        instance.setOptimizeVertexOrder(!command.hasOption(CommandOptions.KEEP_VERTEX_ORDER.getLongName()));
+
+        if (command.hasOption(CommandOptions.WRITER_THREADS.getLongName())) {
+            instance.setWriterThreads(Math.max(0, Integer.parseInt(command.getOptionValue(CommandOptions.WRITER_THREADS.getLongName()))));
+        } else {
+            instance.setWriterThreads(DEFAULT_WRITER_THREADS);
+        }
+
+        instance.setAutoTune(command.hasOption(CommandOptions.AUTO_TUNE.getLongName()));
+        if (instance.isAutoTune() && !command.hasOption(CommandOptions.WRITER_THREADS.getLongName())) {
+            instance.setWriterThreads(TilingAutoTuner.getInstance().chooseWriterThreads());
+        }
         printGlobalOptions();
     }
 
+    private static void setTempPaths(File tempDir) {
+        instance.setRootTempPath(tempDir.getAbsolutePath());
+        instance.setTileTempPath(tempDir.getAbsolutePath());
+        instance.setResizedTiffTempPath(new File(tempDir, "resized").getAbsolutePath());
+        instance.setSplitTiffTempPath(new File(tempDir, "split").getAbsolutePath());
+        instance.setStandardizeTempPath(new File(tempDir, "standardization").getAbsolutePath());
+        instance.setGeoidTempPath(new File(tempDir, "geoid").getAbsolutePath());
+    }
+
     protected static void printGlobalOptions() {
         log.info("Input Path: {}", instance.getInputPath());
         log.info("Output Path: {}", instance.getOutputPath());
@@ -336,6 +467,9 @@ public class GlobalOptions {
         MagoTerrainerMain.drawLine();
         log.info("Celestial Body: {}", instance.getCelestialBody().getDisplayName());
         log.info("Layer Json Generate: {}", instance.isLayerJsonGenerate());
+        log.info("Incremental: {}", instance.isIncremental());
+        log.info("Checkpoint Sync: {}", instance.isCheckpointSync());
+        log.info("Plan: {}", instance.isPlan());
         log.info("Tiling Schema: {}", instance.getTilingSchema());
         log.info("Minimum Tile Depth: {}", instance.getMinimumTileDepth());
         log.info("Maximum Tile Depth: {}", instance.getMaximumTileDepth());
@@ -345,12 +479,28 @@ public class GlobalOptions {
         log.info("NODATA Value: {}", instance.getNoDataValue());
         log.info("Extension Calculate Normals: {}", instance.isCalculateNormalsExtension());
         log.info("Extension Meta Data: {}", instance.isMetaDataExtension());
+        if (instance.isMetaDataExtension()) {
+            log.info("Metadata Availability: {}", instance.getMetadataAvailability());
+        }
         log.info("Extension Water Mask: {}", instance.isWaterMaskExtension());
+        if (instance.isWaterMaskExtension()) {
+            log.info("Water Mask Height: {}", instance.getWaterMaskHeight() != null ? instance.getWaterMaskHeight() : "none");
+            log.info("Water Mask Raster: {}", instance.getWaterMaskPath() != null ? instance.getWaterMaskPath() : "none");
+        }
         MagoTerrainerMain.drawLine();
         log.info("Tiling Mosaic Size: {}", instance.getMosaicSize());
+        log.info("Auto Tune: {}", instance.isAutoTune());
         log.info("Tiling Max Raster Size: {}", instance.getMaxRasterSize());
+        log.info("Tile Max Triangles: {}", instance.getTileMaxTriangles() > 0 ? instance.getTileMaxTriangles() : "unlimited");
+        log.info("Writer Threads: {}", instance.getWriterThreads());
+        log.info("Gzip Output: {}", instance.isGzipOutput() ? "level " + instance.getGzipLevel() : "off");
+        log.info("Size Manifest: {}", instance.isSizeManifest());
+        log.info("Quality Report: {}", instance.isQualityReport());
+        log.info("Archive Output: {}", instance.isArchiveOutput());
+        log.info("Vertex Cache Order: {}", instance.isOptimizeVertexOrder());
         log.info("Layer Json Generate: {}", instance.isLayerJsonGenerate());
         log.info("Debug Mode: {}", instance.isDebugMode());
+        log.info("Topology Validation: {}", instance.getTopologyValidationLevel());
         MagoTerrainerMain.drawLine();
     }
 
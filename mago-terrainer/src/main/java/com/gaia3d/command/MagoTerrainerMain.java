@@ -3,9 +3,12 @@ package com.gaia3d.command;
 
 import com.gaia3d.basic.exception.Reporter;
 import com.gaia3d.terrain.tile.TerrainElevationDataManager;
+import com.gaia3d.terrain.tile.IncrementalPlan;
 import com.gaia3d.terrain.tile.TerrainLayer;
 import com.gaia3d.terrain.tile.TileWgs84Manager;
+import com.gaia3d.terrain.tile.TilingPlan;
 import com.gaia3d.terrain.tile.geotiff.GaiaGeoTiffManager;
+import com.gaia3d.terrain.util.TilingMetrics;
 import com.gaia3d.util.DecimalUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.*;
@@ -97,12 +100,32 @@ public class MagoTerrainerMain {
 
         TileWgs84Manager tileWgs84Manager = new TileWgs84Manager();
 
+        // compare the sources with the manifest of the last run, before the input path is replaced by the standardized rasters
+        IncrementalPlan incrementalPlan = null;
+        if (globalOptions.isIncremental()) {
+            log.info("[Pre][Incremental] Start comparing the sources with the last run.");
+            incrementalPlan = IncrementalPlan.create(globalOptions.getInputPath(), globalOptions.getOutputPath(), globalOptions.isArchiveOutput(), IncrementalPlan.getTilingOptions(globalOptions));
+            log.info("[Pre][Incremental] Finished comparing the sources with the last run.");
+            if (incrementalPlan.isUpToDate()) {
+                log.info("[Pre][Incremental] The sources are not changed since the last run. Nothing to regenerate.");
+                return;
+            }
+            // the rasters left by a previous run can be outdated
+            FileUtils.deleteQuietly(new File(globalOptions.getStandardizeTempPath()));
+            FileUtils.deleteQuietly(new File(globalOptions.getResizedTiffTempPath()));
+        }
+
+        TilingMetrics tilingMetrics = TilingMetrics.getInstance();
         log.info("[Pre][Standardization] Start GeoTiff Standardization files.");
+        long phaseStartNanos = System.nanoTime();
         tileWgs84Manager.processStandardizeRasters();
+        tilingMetrics.addPhaseTime(TilingMetrics.Phase.STANDARDIZE, TilingMetrics.NO_DEPTH, phaseStartNanos);
         log.info("[Pre][Standardization] Finished GeoTiff Standardization files.");
 
         log.info("[Pre][Resize] Start GeoTiff Resizing files.");
+        phaseStartNanos = System.nanoTime();
         tileWgs84Manager.processResizeRasters(globalOptions.getInputPath(), null);
+        tilingMetrics.addPhaseTime(TilingMetrics.Phase.RESIZE, TilingMetrics.NO_DEPTH, phaseStartNanos);
         log.info("[Pre][Resize] Finished GeoTiff Resizing files.");
 
         log.info("[Tile] Start generate terrain elevation data.");
@@ -115,23 +138,42 @@ public class MagoTerrainerMain {
         tileWgs84Manager.getTerrainElevationDataManager().makeTerrainQuadTree(depth);
         log.info("[Tile] Finished generate terrain elevation data.");
 
+        if (globalOptions.isPlan()) {
+            log.info("[Plan] Start estimating the tiling.");
+            TilingPlan tilingPlan = tileWgs84Manager.makeTilingPlan();
+            tilingPlan.print();
+            log.info("[Plan] Finished estimating the tiling.");
+            tileWgs84Manager.deleteObjects();
+            return;
+        }
+
         // Check if the tile mesh generation is a continuation from an existing tileSet
         boolean isContinue = globalOptions.isContinue();
         if (isContinue) {
             log.info("[Tile] Continuing making tile meshes.");
             tileWgs84Manager.makeTileMeshesContinue();
             log.info("[Tile] Finished making tile meshes.");
+        } else if (incrementalPlan != null && !incrementalPlan.isFullRun()) {
+            log.info("[Tile] Start regenerating the tile meshes of the changed sources.");
+            tileWgs84Manager.makeTileMeshesIncremental(incrementalPlan);
+            log.info("[Tile] Finished regenerating the tile meshes of the changed sources.");
         } else {
             log.info("[Tile] Start making tile meshes.");
             tileWgs84Manager.makeTileMeshes();
             log.info("[Tile] Finished making tile meshes.");
         }
 
+        if (incrementalPlan != null) {
+            // saved after the tiles, an interrupted run is regenerated again by the next incremental run
+            incrementalPlan.saveManifest(globalOptions.getOutputPath());
+        }
+
         log.info("[Post][Clear] Start deleting memory objects.");
         tileWgs84Manager.deleteObjects();
         log.info("[Post][Clear] Finished deleting memory objects.");
 
         globalOptions.getReporter().writeReportFile(new File(globalOptions.getOutputPath()));
+        tilingMetrics.writeFiles(new File(globalOptions.getOutputPath()), globalOptions.getReporter().getName(), globalOptions.getReporter().getVersion());
     }
 
     /**
@@ -0,0 +1,77 @@
+package com.gaia3d.quantized.mesh;
+
+import com.gaia3d.command.GlobalOptions;
+import com.gaia3d.terrain.structure.GeographicExtension;
+import com.gaia3d.terrain.util.OctNormalFactory;
+import com.gaia3d.util.CelestialBody;
+import com.gaia3d.util.GlobeUtils;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+
+/**
+ * Canonical quantized mesh of a flat tile (constant height) : 4 corners and 2 triangles.
+ * The vertex, index and edge buffers are the same for every flat tile, so they are shared read-only arrays.
+ * Only the header (center, bounding sphere, horizon occlusion point) and the normals depend on the tile position.
+ * Vertex order : 0 = south-west, 1 = south-east, 2 = north-east, 3 = north-west.
+ */
+public final class FlatQuantizedMesh {
+    private static final int VERTEX_COUNT = 4;
+    private static final int TRIANGLE_COUNT = 2;
+    private static final short[] U_BUFFER = {0, 32767, 32767, 0};
+    private static final short[] V_BUFFER = {0, 0, 32767, 32767};
+    private static final short[] HEIGHT_BUFFER = {0, 0, 0, 0};
+    private static final int[] TRIANGLE_INDICES = {0, 1, 2, 0, 2, 3};
+    private static final int[] WEST_INDICES = {3, 0}; // up to down
+    private static final int[] SOUTH_INDICES = {0, 1}; // left to right
+    private static final int[] EAST_INDICES = {1, 2}; // down to up
+    private static final int[] NORTH_INDICES = {2, 3}; // right to left
+
+    private FlatQuantizedMesh() {
+    }
+
+    public static QuantizedMesh create(GeographicExtension geographicExtension, double height, boolean calculateNormals, QuantizedMeshManager quantizedMeshManager) {
+        CelestialBody body = GlobalOptions.getInstance().getCelestialBody();
+        double[] lonDegs = {geographicExtension.getMinLongitudeDeg(), geographicExtension.getMaxLongitudeDeg(), geographicExtension.getMaxLongitudeDeg(), geographicExtension.getMinLongitudeDeg()};
+        double[] latDegs = {geographicExtension.getMinLatitudeDeg(), geographicExtension.getMinLatitudeDeg(), geographicExtension.getMaxLatitudeDeg(), geographicExtension.getMaxLatitudeDeg()};
+
+        double[][] cornersWC = new double[VERTEX_COUNT][];
+        double[] positionsWC = new double[VERTEX_COUNT * 3];
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            cornersWC[i] = GlobeUtils.geographicToCartesian(lonDegs[i], latDegs[i], height, body);
+            System.arraycopy(cornersWC[i], 0, positionsWC, i * 3, 3);
+        }
+
+        QuantizedMesh quantizedMesh = new QuantizedMesh();
+        quantizedMesh.setHeader(quantizedMeshManager.makeHeader(geographicExtension, positionsWC, VERTEX_COUNT, height, height));
+        quantizedMesh.setVertexCount(VERTEX_COUNT);
+        quantizedMesh.setTriangleCount(TRIANGLE_COUNT);
+        quantizedMesh.setUBuffer(U_BUFFER);
+        quantizedMesh.setVBuffer(V_BUFFER);
+        quantizedMesh.setHeightBuffer(HEIGHT_BUFFER);
+        quantizedMesh.setTriangleIndices(TRIANGLE_INDICES);
+
+        quantizedMesh.setWestVertexCount(WEST_INDICES.length);
+        quantizedMesh.setWestIndices(WEST_INDICES);
+        quantizedMesh.setSouthVertexCount(SOUTH_INDICES.length);
+        quantizedMesh.setSouthIndices(SOUTH_INDICES);
+        quantizedMesh.setEastVertexCount(EAST_INDICES.length);
+        quantizedMesh.setEastIndices(EAST_INDICES);
+        quantizedMesh.setNorthVertexCount(NORTH_INDICES.length);
+        quantizedMesh.setNorthIndices(NORTH_INDICES);
+
+        if (calculateNormals) {
+            // the normal of a flat tile is the ellipsoid normal
+            byte[] octEncodedNormals = new byte[VERTEX_COUNT * 2];
+            for (int i = 0; i < VERTEX_COUNT; i++) {
+                Vector3d normal = GlobeUtils.normalAtCartesianPoint(cornersWC[i][0], cornersWC[i][1], cornersWC[i][2], body);
+                byte[] octNormalBytes = OctNormalFactory.encodeOctNormalByte(new Vector3f((float) normal.x, (float) normal.y, (float) normal.z));
+                octEncodedNormals[i * 2] = octNormalBytes[0];
+                octEncodedNormals[i * 2 + 1] = octNormalBytes[1];
+            }
+            quantizedMesh.setOctEncodedNormals(octEncodedNormals);
+            quantizedMesh.setExtensionId((byte) 1);
+            quantizedMesh.setExtensionLength(VERTEX_COUNT * 2);
+        }
+        return quantizedMesh;
+    }
+}
@@ -12,6 +12,11 @@ import java.io.IOException;
 @Getter
 @Slf4j
 public class QuantizedMesh {
+    public static final int MIN_BUDGET_TRIANGLES = 2;
+    private static final int WATER_MASK_BYTES = 256 * 256;
+    // allowance of the metadata JSON by level of child availability, a few ranges of about 60 bytes
+    private static final int METADATA_BYTES_PER_LEVEL = 256;
+
     private QuantizedMeshHeader header = new QuantizedMeshHeader();
 
     private int vertexCount = 0;
@@ -37,6 +42,44 @@ public class QuantizedMesh {
     private int extensionLength = 0;
     private byte[] octEncodedNormals = null; // 2 bytes per normal
 
+    // water mask data (extension id 2) : 1 byte (0 = land, 255 = water) or 256 x 256 bytes, null = no water mask
+    private byte[] waterMask = null;
+
+    // metadata (extension id 4) : JSON in UTF-8 with the child availability, null = no metadata
+    private byte[] metadata = null;
+
+    /**
+     * Estimates how many triangles fit in an encoded tile of maxBytes.
+     * Each triangle costs 6 bytes of 16-bit indices, and a triangulation of T triangles with B border vertices has
+     * (T + B + 2) / 2 vertices (6 bytes of u, v, height and 2 bytes of oct normal), so each border vertex also costs
+     * half a vertex and its edge index. B is the border of a regular triangulation, 4 * sqrt(T / 2).
+     * The enabled extensions are subtracted first : the water mask of a mixed tile (256 x 256 bytes), and an allowance
+     * of metadataLevels levels of child availability.
+     */
+    public static int estimateMaxTrianglesForBytes(int maxBytes, boolean withNormals, boolean withWaterMask, int metadataLevels) {
+        int vertexBytes = withNormals ? 8 : 6;
+        int fixedBytes = QuantizedMeshHeader.BYTE_SIZE + 4 + 4 + 4 * 4; // header, vertexCount, triangleCount, edge counts
+        fixedBytes += vertexBytes + 4 * 2; // the extra vertex of the formula, and the corners in 2 edge lists
+        if (withNormals) {
+            fixedBytes += 1 + 4; // extensionId, extensionLength
+        }
+        if (withWaterMask) {
+            fixedBytes += 1 + 4 + WATER_MASK_BYTES; // extensionId, extensionLength, water mask
+        }
+        if (metadataLevels > 0) {
+            fixedBytes += 1 + 4 + 4 + metadataLevels * METADATA_BYTES_PER_LEVEL; // extensionId, extensionLength, jsonLength, json
+        }
+        double bytesPerTriangle = 6.0 + vertexBytes * 0.5;
+        double bytesPerBorderVertex = vertexBytes * 0.5 + 2.0;
+        double availableBytes = maxBytes - fixedBytes;
+        double triangles = availableBytes / bytesPerTriangle;
+        for (int i = 0; i < 4; i++) {
+            double borderVertices = 4.0 * Math.sqrt(Math.max(0, triangles) * 0.5);
+            triangles = (availableBytes - borderVertices * bytesPerBorderVertex) / bytesPerTriangle;
+        }
+        return (int) Math.max(MIN_BUDGET_TRIANGLES, triangles);
+    }
+
     public short zigZagEncode(int n) {
         return (short) ((n << 1) ^ (n >> 31));
     }
@@ -147,16 +190,16 @@ public class QuantizedMesh {
             int[] encodedIndices = new int[indicesCount];
             for (int i = 0; i < indicesCount; i++) {
                 encodedIndices[i] = dataInputStream.readInt();
-                getDecodedIndices32(encodedIndices, indicesCount, triangleIndices);
             }
+            getDecodedIndices32(encodedIndices, indicesCount, triangleIndices);
         } else {
             // load IndexData16
             triangleIndices = new int[indicesCount];
             short[] encodedIndices = new short[indicesCount];
             for (int i = 0; i < indicesCount; i++) {
                 encodedIndices[i] = dataInputStream.readShort();
-                getDecodedIndices16fromShort(encodedIndices, indicesCount, triangleIndices);
             }
+            getDecodedIndices16fromShort(encodedIndices, indicesCount, triangleIndices);
         }
 
         // now load EdgeIndices
@@ -195,28 +238,28 @@ public class QuantizedMesh {
             westVertexCount = dataInputStream.readInt();
             westIndices = new int[westVertexCount];
             for (int i = 0; i < westVertexCount; i++) {
-                westIndices[i] = dataInputStream.readShort();
+                westIndices[i] = dataInputStream.readShort() & 0xFFFF;
             }
 
             // southIndices
             southVertexCount = dataInputStream.readInt();
             southIndices = new int[southVertexCount];
             for (int i = 0; i < southVertexCount; i++) {
-                southIndices[i] = dataInputStream.readShort();
+                southIndices[i] = dataInputStream.readShort() & 0xFFFF;
             }
 
             // eastIndices
             eastVertexCount = dataInputStream.readInt();
             eastIndices = new int[eastVertexCount];
             for (int i = 0; i < eastVertexCount; i++) {
-                eastIndices[i] = dataInputStream.readShort();
+                eastIndices[i] = dataInputStream.readShort() & 0xFFFF;
             }
 
             // northIndices
             northVertexCount = dataInputStream.readInt();
             northIndices = new int[northVertexCount];
             for (int i = 0; i < northVertexCount; i++) {
-                northIndices[i] = dataInputStream.readShort();
+                northIndices[i] = dataInputStream.readShort() & 0xFFFF;
             }
         }
     }
@@ -340,5 +383,20 @@ public class QuantizedMesh {
             dataOutputStream.writeInt(extensionLength);
             dataOutputStream.write(octEncodedNormals);
         }
+
+        // check if save water mask
+        if (waterMask != null) {
+            dataOutputStream.writeByte(2); // extension id
+            dataOutputStream.writeInt(waterMask.length);
+            dataOutputStream.write(waterMask);
+        }
+
+        // check if save metadata
+        if (metadata != null) {
+            dataOutputStream.writeByte(4); // extension id
+            dataOutputStream.writeInt(4 + metadata.length);
+            dataOutputStream.writeInt(metadata.length); // json length
+            dataOutputStream.write(metadata);
+        }
     }
 }
@@ -0,0 +1,205 @@
+package com.gaia3d.quantized.mesh;
+
+import com.gaia3d.terrain.util.GzipCompressor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bulk decoder of quantized-mesh tiles, the reverse of QuantizedMeshEncoder.
+ * The tile is decoded from a little-endian ByteBuffer (a mapped file, or the decompressed bytes of a gzip tile)
+ * with bulk short/int reads, instead of reading element by element from a stream.
+ * The decoder is not thread safe, use getInstance() to get the decoder of the current thread.
+ */
+@Slf4j
+public class QuantizedMeshDecoder {
+    private static final int INITIAL_SCRATCH_SIZE = 32 * 1024;
+    private static final ThreadLocal<QuantizedMeshDecoder> threadDecoder = ThreadLocal.withInitial(QuantizedMeshDecoder::new);
+
+    private short[] shortScratch = new short[INITIAL_SCRATCH_SIZE];
+    private int[] intScratch = new int[INITIAL_SCRATCH_SIZE];
+
+    public static QuantizedMeshDecoder getInstance() {
+        return threadDecoder.get();
+    }
+
+    /**
+     * Reads a tile file : the file is mapped, or decompressed in memory if the tileset is gzip compressed (--gzip)
+     */
+    public QuantizedMesh read(Path path, boolean gzip) throws IOException {
+        if (gzip) {
+            try (InputStream inputStream = GzipCompressor.openInputStream(path.toFile(), true)) {
+                return decode(ByteBuffer.wrap(inputStream.readAllBytes()), path.toString());
+            }
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return decode(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()), path.toString());
+        }
+    }
+
+    /**
+     * Reads the stored payload of a tile (from the tile archive), decompressing it if the archive is gzip compressed
+     */
+    public QuantizedMesh read(byte[] bytes, boolean gzip) throws IOException {
+        if (gzip) {
+            try (InputStream inputStream = GzipCompressor.openInputStream(bytes, true)) {
+                return decode(ByteBuffer.wrap(inputStream.readAllBytes()), "tile archive payload");
+            }
+        }
+        return decode(ByteBuffer.wrap(bytes), "tile archive payload");
+    }
+
+    /**
+     * Decodes the tile from the remaining bytes of the buffer, the extensions (normals, water mask, metadata) included
+     */
+    public QuantizedMesh decode(ByteBuffer byteBuffer) throws IOException {
+        return decode(byteBuffer, "buffer");
+    }
+
+    /**
+     * Decodes the tile, the source (file path) is named in the errors
+     */
+    private QuantizedMesh decode(ByteBuffer byteBuffer, String source) throws IOException {
+        ByteBuffer buffer = byteBuffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        QuantizedMesh quantizedMesh = new QuantizedMesh();
+        quantizedMesh.getHeader().loadByteBuffer(buffer);
+
+        int vertexCount = buffer.getInt();
+        quantizedMesh.setVertexCount(vertexCount);
+        quantizedMesh.setUBuffer(getZigZagDeltas(buffer, vertexCount));
+        quantizedMesh.setVBuffer(getZigZagDeltas(buffer, vertexCount));
+        quantizedMesh.setHeightBuffer(getZigZagDeltas(buffer, vertexCount));
+
+        int triangleCount = buffer.getInt();
+        quantizedMesh.setTriangleCount(triangleCount);
+        boolean is32Bit = vertexCount > 65536;
+        quantizedMesh.setTriangleIndices(getHighWaterMarkIndices(buffer, triangleCount * 3, is32Bit));
+
+        int westVertexCount = buffer.getInt();
+        quantizedMesh.setWestVertexCount(westVertexCount);
+        quantizedMesh.setWestIndices(getEdgeIndices(buffer, westVertexCount, is32Bit));
+        int southVertexCount = buffer.getInt();
+        quantizedMesh.setSouthVertexCount(southVertexCount);
+        quantizedMesh.setSouthIndices(getEdgeIndices(buffer, southVertexCount, is32Bit));
+        int eastVertexCount = buffer.getInt();
+        quantizedMesh.setEastVertexCount(eastVertexCount);
+        quantizedMesh.setEastIndices(getEdgeIndices(buffer, eastVertexCount, is32Bit));
+        int northVertexCount = buffer.getInt();
+        quantizedMesh.setNorthVertexCount(northVertexCount);
+        quantizedMesh.setNorthIndices(getEdgeIndices(buffer, northVertexCount, is32Bit));
+
+        while (buffer.remaining() >= 5) {
+            byte extensionId = buffer.get();
+            int extensionLength = buffer.getInt();
+            if (extensionLength < 0 || extensionLength > buffer.remaining()) {
+                log.warn("[Decode] Invalid quantized mesh extension : id {}, length {}", extensionId, extensionLength);
+                break;
+            }
+            byte[] extensionData = new byte[extensionLength];
+            buffer.get(extensionData);
+            if (extensionId == 2) {
+                quantizedMesh.setWaterMask(extensionData);
+            } else if (extensionId == 4) {
+                int jsonLength = extensionLength >= 4 ? ByteBuffer.wrap(extensionData).order(ByteOrder.LITTLE_ENDIAN).getInt() : -1;
+                if (jsonLength < 0 || jsonLength > extensionLength - 4) {
+                    log.error("[ERROR] Invalid quantized mesh metadata : json length {}, extension length {}, {}", jsonLength, extensionLength, source);
+                    throw new IOException("Invalid quantized mesh metadata : json length " + jsonLength + ", extension length " + extensionLength + " : " + source);
+                }
+                byte[] metadata = new byte[jsonLength];
+                System.arraycopy(extensionData, 4, metadata, 0, jsonLength);
+                quantizedMesh.setMetadata(metadata);
+            } else if (extensionId == 1) {
+                // the oct-encoded normals
+                quantizedMesh.setExtensionId(extensionId);
+                quantizedMesh.setExtensionLength(extensionLength);
+                quantizedMesh.setOctEncodedNormals(extensionData);
+            } else {
+                // an unknown extension, skipped by its length
+                log.debug("[Decode] Skipped quantized mesh extension : id {}, length {}", extensionId, extensionLength);
+            }
+        }
+        return quantizedMesh;
+    }
+
+    private short[] getZigZagDeltas(ByteBuffer buffer, int count) {
+        short[] deltas = getShortScratch(count);
+        getShorts(buffer, deltas, count);
+        short[] values = new short[count];
+        int prev = 0;
+        for (int i = 0; i < count; i++) {
+            int unsigned = deltas[i] & 0xFFFF;
+            prev = (short) (prev + ((unsigned >> 1) ^ -(unsigned & 1)));
+            values[i] = (short) prev;
+        }
+        return values;
+    }
+
+    private int[] getHighWaterMarkIndices(ByteBuffer buffer, int count, boolean is32Bit) {
+        int[] indices = new int[count];
+        int highest = 0;
+        if (is32Bit) {
+            int[] codes = getIntScratch(count);
+            getInts(buffer, codes, count);
+            for (int i = 0; i < count; i++) {
+                int code = codes[i];
+                indices[i] = highest - code;
+                if (code == 0) highest++;
+            }
+        } else {
+            short[] codes = getShortScratch(count);
+            getShorts(buffer, codes, count);
+            for (int i = 0; i < count; i++) {
+                int code = codes[i] & 0xFFFF;
+                indices[i] = highest - code;
+                if (code == 0) highest++;
+            }
+        }
+        return indices;
+    }
+
+    private int[] getEdgeIndices(ByteBuffer buffer, int count, boolean is32Bit) {
+        int[] indices = new int[count];
+        if (is32Bit) {
+            getInts(buffer, indices, count);
+        } else {
+            short[] shorts = getShortScratch(count);
+            getShorts(buffer, shorts, count);
+            for (int i = 0; i < count; i++) {
+                indices[i] = shorts[i] & 0xFFFF;
+            }
+        }
+        return indices;
+    }
+
+    private void getShorts(ByteBuffer buffer, short[] values, int count) {
+        int position = buffer.position();
+        buffer.asShortBuffer().get(values, 0, count);
+        buffer.position(position + count * 2);
+    }
+
+    private void getInts(ByteBuffer buffer, int[] values, int count) {
+        int position = buffer.position();
+        buffer.asIntBuffer().get(values, 0, count);
+        buffer.position(position + count * 4);
+    }
+
+    private short[] getShortScratch(int count) {
+        if (shortScratch.length < count) {
+            shortScratch = new short[Math.max(count, shortScratch.length * 2)];
+        }
+        return shortScratch;
+    }
+
+    private int[] getIntScratch(int count) {
+        if (intScratch.length < count) {
+            intScratch = new int[Math.max(count, intScratch.length * 2)];
+        }
+        return intScratch;
+    }
+}
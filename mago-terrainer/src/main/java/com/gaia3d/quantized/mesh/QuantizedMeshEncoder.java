@@ -0,0 +1,198 @@
+package com.gaia3d.quantized.mesh;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bulk encoder of quantized-mesh tiles.
+ * The exact size of the tile is computed first, then the whole tile is encoded in a reusable little-endian ByteBuffer
+ * and written with a single FileChannel.write call.
+ * The output is byte to byte the same as QuantizedMesh.saveDataOutputStream.
+ * The encoder is not thread safe, use getInstance() to get the encoder of the current thread.
+ */
+@Slf4j
+public class QuantizedMeshEncoder {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<QuantizedMeshEncoder> threadEncoder = ThreadLocal.withInitial(QuantizedMeshEncoder::new);
+
+    private ByteBuffer byteBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private short[] shortScratch = new short[INITIAL_BUFFER_SIZE / 2];
+    private int[] intScratch = new int[INITIAL_BUFFER_SIZE / 4];
+
+    public static QuantizedMeshEncoder getInstance() {
+        return threadEncoder.get();
+    }
+
+    public static boolean uses32BitIndices(QuantizedMesh quantizedMesh) {
+        return quantizedMesh.getVertexCount() > 65536;
+    }
+
+    /**
+     * Returns the exact size in bytes of the encoded tile
+     */
+    public static int getEncodedSize(QuantizedMesh quantizedMesh, boolean saveNormals) {
+        int vertexCount = quantizedMesh.getVertexCount();
+        int indexBytes = uses32BitIndices(quantizedMesh) ? 4 : 2;
+        int edgeIndicesCount = quantizedMesh.getWestVertexCount() + quantizedMesh.getSouthVertexCount() + quantizedMesh.getEastVertexCount() + quantizedMesh.getNorthVertexCount();
+
+        int size = QuantizedMeshHeader.BYTE_SIZE;
+        size += 4 + vertexCount * 3 * 2; // vertexCount, u, v, height
+        size += 4 + quantizedMesh.getTriangleCount() * 3 * indexBytes; // triangleCount, indices
+        size += 4 * 4 + edgeIndicesCount * indexBytes; // edge counts, edge indices
+        if (saveNormals) {
+            size += 1 + 4 + quantizedMesh.getOctEncodedNormals().length; // extensionId, extensionLength, normals
+        }
+        if (quantizedMesh.getWaterMask() != null) {
+            size += 1 + 4 + quantizedMesh.getWaterMask().length; // extensionId, extensionLength, water mask
+        }
+        if (quantizedMesh.getMetadata() != null) {
+            size += 1 + 4 + 4 + quantizedMesh.getMetadata().length; // extensionId, extensionLength, jsonLength, json
+        }
+        return size;
+    }
+
+    /**
+     * Encodes the tile in the reusable buffer.
+     * The returned buffer is ready to be read, and is valid until the next call of this encoder.
+     */
+    public ByteBuffer encode(QuantizedMesh quantizedMesh, boolean saveNormals) {
+        int size = getEncodedSize(quantizedMesh, saveNormals);
+        if (byteBuffer.capacity() < size) {
+            byteBuffer = ByteBuffer.allocate(Math.max(size, byteBuffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        byteBuffer.clear();
+
+        quantizedMesh.getHeader().saveByteBuffer(byteBuffer);
+
+        int vertexCount = quantizedMesh.getVertexCount();
+        byteBuffer.putInt(vertexCount);
+        putZigZagDeltas(quantizedMesh.getUBuffer(), vertexCount);
+        putZigZagDeltas(quantizedMesh.getVBuffer(), vertexCount);
+        putZigZagDeltas(quantizedMesh.getHeightBuffer(), vertexCount);
+
+        int triangleCount = quantizedMesh.getTriangleCount();
+        byteBuffer.putInt(triangleCount);
+        boolean is32Bit = uses32BitIndices(quantizedMesh);
+        putHighWaterMarkIndices(quantizedMesh.getTriangleIndices(), triangleCount * 3, is32Bit);
+
+        putEdgeIndices(quantizedMesh.getWestIndices(), quantizedMesh.getWestVertexCount(), is32Bit);
+        putEdgeIndices(quantizedMesh.getSouthIndices(), quantizedMesh.getSouthVertexCount(), is32Bit);
+        putEdgeIndices(quantizedMesh.getEastIndices(), quantizedMesh.getEastVertexCount(), is32Bit);
+        putEdgeIndices(quantizedMesh.getNorthIndices(), quantizedMesh.getNorthVertexCount(), is32Bit);
+
+        if (saveNormals) {
+            byteBuffer.put(quantizedMesh.getExtensionId());
+            byteBuffer.putInt(quantizedMesh.getExtensionLength());
+            byteBuffer.put(quantizedMesh.getOctEncodedNormals());
+        }
+        if (quantizedMesh.getWaterMask() != null) {
+            byteBuffer.put((byte) 2);
+            byteBuffer.putInt(quantizedMesh.getWaterMask().length);
+            byteBuffer.put(quantizedMesh.getWaterMask());
+        }
+        if (quantizedMesh.getMetadata() != null) {
+            byteBuffer.put((byte) 4);
+            byteBuffer.putInt(4 + quantizedMesh.getMetadata().length);
+            byteBuffer.putInt(quantizedMesh.getMetadata().length);
+            byteBuffer.put(quantizedMesh.getMetadata());
+        }
+
+        if (byteBuffer.position() != size) {
+            log.error("[ERROR] Encoded quantized mesh size mismatch : expected {}, encoded {}", size, byteBuffer.position());
+            throw new RuntimeException("Encoded quantized mesh size mismatch");
+        }
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    /**
+     * Encodes the tile and writes it to the file with a single write call
+     */
+    public void write(QuantizedMesh quantizedMesh, boolean saveNormals, Path path) throws IOException {
+        ByteBuffer encoded = encode(quantizedMesh, saveNormals);
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (encoded.hasRemaining()) {
+                fileChannel.write(encoded);
+            }
+        }
+    }
+
+    private void putZigZagDeltas(short[] values, int count) {
+        short[] deltas = getShortScratch(count);
+        int prev = 0;
+        for (int i = 0; i < count; i++) {
+            int curr = values[i];
+            int diff = (short) (curr - prev);
+            deltas[i] = (short) ((diff << 1) ^ (diff >> 31));
+            prev = curr;
+        }
+        putShorts(deltas, count);
+    }
+
+    private void putHighWaterMarkIndices(int[] indices, int count, boolean is32Bit) {
+        if (is32Bit) {
+            int[] codes = getIntScratch(count);
+            int highest = 0;
+            for (int i = 0; i < count; i++) {
+                int code = highest - indices[i];
+                codes[i] = code;
+                if (code == 0) highest++;
+            }
+            putInts(codes, count);
+        } else {
+            short[] codes = getShortScratch(count);
+            int highest = 0;
+            for (int i = 0; i < count; i++) {
+                int code = highest - indices[i];
+                codes[i] = (short) code;
+                if (code == 0) highest++;
+            }
+            putShorts(codes, count);
+        }
+    }
+
+    private void putEdgeIndices(int[] indices, int count, boolean is32Bit) {
+        byteBuffer.putInt(count);
+        if (is32Bit) {
+            putInts(indices, count);
+        } else {
+            short[] shorts = getShortScratch(count);
+            for (int i = 0; i < count; i++) {
+                shorts[i] = (short) indices[i];
+            }
+            putShorts(shorts, count);
+        }
+    }
+
+    private void putShorts(short[] values, int count) {
+        int position = byteBuffer.position();
+        byteBuffer.asShortBuffer().put(values, 0, count);
+        byteBuffer.position(position + count * 2);
+    }
+
+    private void putInts(int[] values, int count) {
+        int position = byteBuffer.position();
+        byteBuffer.asIntBuffer().put(values, 0, count);
+        byteBuffer.position(position + count * 4);
+    }
+
+    private short[] getShortScratch(int count) {
+        if (shortScratch.length < count) {
+            shortScratch = new short[Math.max(count, shortScratch.length * 2)];
+        }
+        return shortScratch;
+    }
+
+    private int[] getIntScratch(int count) {
+        if (intScratch.length < count) {
+            intScratch = new int[Math.max(count, intScratch.length * 2)];
+        }
+        return intScratch;
+    }
+}
@@ -6,10 +6,13 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 @Getter
 @Setter
 public class QuantizedMeshHeader {
+    public static final int BYTE_SIZE = 88; // 10 doubles and 2 floats
+
     //https://github.com/CesiumGS/quantized-mesh
     // The center of the tile in Earth-centered Fixed coordinates.
     private double CenterX = 0.0;
@@ -73,4 +76,40 @@ public class QuantizedMeshHeader {
         dataOutputStream.writeDouble(HorizonOcclusionPointY);
         dataOutputStream.writeDouble(HorizonOcclusionPointZ);
     }
+
+    public void loadByteBuffer(ByteBuffer byteBuffer) {
+        CenterX = byteBuffer.getDouble();
+        CenterY = byteBuffer.getDouble();
+        CenterZ = byteBuffer.getDouble();
+
+        MinimumHeight = byteBuffer.getFloat();
+        MaximumHeight = byteBuffer.getFloat();
+
+        BoundingSphereCenterX = byteBuffer.getDouble();
+        BoundingSphereCenterY = byteBuffer.getDouble();
+        BoundingSphereCenterZ = byteBuffer.getDouble();
+        BoundingSphereRadius = byteBuffer.getDouble();
+
+        HorizonOcclusionPointX = byteBuffer.getDouble();
+        HorizonOcclusionPointY = byteBuffer.getDouble();
+        HorizonOcclusionPointZ = byteBuffer.getDouble();
+    }
+
+    public void saveByteBuffer(ByteBuffer byteBuffer) {
+        byteBuffer.putDouble(CenterX);
+        byteBuffer.putDouble(CenterY);
+        byteBuffer.putDouble(CenterZ);
+
+        byteBuffer.putFloat(MinimumHeight);
+        byteBuffer.putFloat(MaximumHeight);
+
+        byteBuffer.putDouble(BoundingSphereCenterX);
+        byteBuffer.putDouble(BoundingSphereCenterY);
+        byteBuffer.putDouble(BoundingSphereCenterZ);
+        byteBuffer.putDouble(BoundingSphereRadius);
+
+        byteBuffer.putDouble(HorizonOcclusionPointX);
+        byteBuffer.putDouble(HorizonOcclusionPointY);
+        byteBuffer.putDouble(HorizonOcclusionPointZ);
+    }
 }
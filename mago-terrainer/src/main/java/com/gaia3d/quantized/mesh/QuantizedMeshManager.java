@@ -1,6 +1,5 @@
 package com.gaia3d.quantized.mesh;
 
-import com.gaia3d.basic.geometry.GaiaBoundingBox;
 import com.gaia3d.terrain.structure.*;
 import com.gaia3d.terrain.tile.TileIndices;
 import com.gaia3d.terrain.tile.TileWgs84;
@@ -186,8 +185,6 @@ public class QuantizedMeshManager {
     }
 
     public QuantizedMesh getQuantizedMeshFromTile(TileWgs84 tile, boolean calculateNormals) {
-        // First get the quantized mesh header
-        QuantizedMeshHeader header = new QuantizedMeshHeader();
         TerrainMesh mesh = tile.getMesh();
 
         if (mesh == null) return null;
@@ -198,9 +195,9 @@ public class QuantizedMeshManager {
 
         mesh.setObjectsIdInList();
 
-        // Calculate the minimum and maximum heights & bbox
+        // Calculate the minimum and maximum heights & the positions in world coordinates
         CelestialBody body = GlobalOptions.getInstance().getCelestialBody();
-        GaiaBoundingBox bboxWC = new GaiaBoundingBox();
+        double[] positionsWC = new double[vertexCount * 3];
         double minimumHeight = Double.MAX_VALUE;
         double maximumHeight = -Double.MAX_VALUE;
         for (int i = 0; i < vertexCount; i++) {
@@ -209,42 +206,14 @@ public class QuantizedMeshManager {
             if (height < minimumHeight) minimumHeight = height;
             if (height > maximumHeight) maximumHeight = height;
 
-            // calculate the bbox in world coordinates
+            // the positions in world coordinates, for the bounding sphere and the horizon occlusion point
             double[] posWC = GlobeUtils.geographicToCartesian(vertex.getPosition().x, vertex.getPosition().y, height, body);
-            bboxWC.addPoint(posWC[0], posWC[1], posWC[2]);
+            positionsWC[i * 3] = posWC[0];
+            positionsWC[i * 3 + 1] = posWC[1];
+            positionsWC[i * 3 + 2] = posWC[2];
         }
-        double midHeight = (minimumHeight + maximumHeight) / 2.0;
-
-        // Calculate the center of the tile in Earth-centered Fixed coordinates
         GeographicExtension geographicExtension = tile.getGeographicExtension();
-        double midLonDeg = geographicExtension.getMidLongitudeDeg();
-        double midLatDeg = geographicExtension.getMidLatitudeDeg();
-
-        double[] cartesianWC = GlobeUtils.geographicToCartesian(midLonDeg, midLatDeg, midHeight, body);
-
-        header.setCenterX(cartesianWC[0]);
-        header.setCenterY(cartesianWC[1]);
-        header.setCenterZ(cartesianWC[2]);
-
-        header.setMinimumHeight((float) minimumHeight);
-        header.setMaximumHeight((float) maximumHeight);
-
-        // Calculate the bounding sphere
-        Vector3d centerWC = bboxWC.getCenter();
-        double radius = bboxWC.getLongestDistance() / 2.0;
-
-        header.setBoundingSphereCenterX(centerWC.x);
-        header.setBoundingSphereCenterY(centerWC.y);
-        header.setBoundingSphereCenterZ(centerWC.z);
-        header.setBoundingSphereRadius(radius);
-
-        // Calculate the horizon occlusion point
-        // https://cesium.com/blog/2013/05/09/computing-the-horizon-occlusion-point/
-        Vector3d horizonOccPoint = calculateHorizonOcclusionPoint(bboxWC);
-
-        header.setHorizonOcclusionPointX(horizonOccPoint.x);
-        header.setHorizonOcclusionPointY(horizonOccPoint.y);
-        header.setHorizonOcclusionPointZ(horizonOccPoint.z);
+        QuantizedMeshHeader header = makeHeader(geographicExtension, positionsWC, vertexCount, minimumHeight, maximumHeight);
 
         // Now, calculate the quantized mesh***************************************************************************
         QuantizedMesh quantizedMesh = new QuantizedMesh();
@@ -364,10 +333,53 @@ public class QuantizedMeshManager {
         return quantizedMesh;
     }
 
-    public Vector3d calculateHorizonOcclusionPoint(GaiaBoundingBox bboxWC) {
-        Vector3d centerWC = bboxWC.getCenter();
-        double radius = bboxWC.getLongestDistance() / 2.0;
+    /**
+     * Makes the quantized mesh header of a tile from its geographic extension, the positions of its vertices in world coordinates
+     * (interleaved x, y, z) and its height range
+     */
+    public QuantizedMeshHeader makeHeader(GeographicExtension geographicExtension, double[] positionsWC, int vertexCount, double minimumHeight, double maximumHeight) {
+        QuantizedMeshHeader header = new QuantizedMeshHeader();
+        CelestialBody body = GlobalOptions.getInstance().getCelestialBody();
+        double midHeight = (minimumHeight + maximumHeight) / 2.0;
+
+        // Calculate the center of the tile in Earth-centered Fixed coordinates
+        double midLonDeg = geographicExtension.getMidLongitudeDeg();
+        double midLatDeg = geographicExtension.getMidLatitudeDeg();
+
+        double[] cartesianWC = GlobeUtils.geographicToCartesian(midLonDeg, midLatDeg, midHeight, body);
+
+        header.setCenterX(cartesianWC[0]);
+        header.setCenterY(cartesianWC[1]);
+        header.setCenterZ(cartesianWC[2]);
+
+        header.setMinimumHeight((float) minimumHeight);
+        header.setMaximumHeight((float) maximumHeight);
+
+        // Calculate the bounding sphere over the vertices
+        double[] boundingSphere = TileBoundingVolume.getBoundingSphere(positionsWC, vertexCount);
+        Vector3d centerWC = new Vector3d(boundingSphere[0], boundingSphere[1], boundingSphere[2]);
+        double radius = boundingSphere[3];
+
+        header.setBoundingSphereCenterX(centerWC.x);
+        header.setBoundingSphereCenterY(centerWC.y);
+        header.setBoundingSphereCenterZ(centerWC.z);
+        header.setBoundingSphereRadius(radius);
+
+        // Calculate the horizon occlusion point, in the ellipsoid-scaled space
+        // https://cesium.com/blog/2013/05/09/computing-the-horizon-occlusion-point/
+        Vector3d horizonOccPoint = TileBoundingVolume.getHorizonOcclusionPoint(positionsWC, vertexCount, centerWC, body);
+        if (horizonOccPoint == null) {
+            // no occlusion point exists (very large tiles) : a point far from the body, the tile is practically never culled
+            horizonOccPoint = calculateHorizonOcclusionPoint(centerWC, radius);
+        }
+
+        header.setHorizonOcclusionPointX(horizonOccPoint.x);
+        header.setHorizonOcclusionPointY(horizonOccPoint.y);
+        header.setHorizonOcclusionPointZ(horizonOccPoint.z);
+        return header;
+    }
 
+    public Vector3d calculateHorizonOcclusionPoint(Vector3d centerWC, double radius) {
         // Calculate the horizon occlusion point
         // https://cesium.com/blog/2013/05/09/computing-the-horizon-occlusion-point/
         double[] centerCartesian = new double[3];
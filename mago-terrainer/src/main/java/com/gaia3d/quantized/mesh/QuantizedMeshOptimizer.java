@@ -0,0 +1,265 @@
+package com.gaia3d.quantized.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Reorders the triangles and the vertices of a quantized mesh before encoding.
+ * 1- The triangles are sorted along a Morton curve of their centroid (u, v), so the next triangles are spatial neighbors.
+ * 2- The triangles are reordered for the post-transform vertex cache (Tom Forsyth, "Linear-Speed Vertex Cache Optimisation").
+ * 3- The vertices are renumbered in first-use order, so every new index is the high-water mark (code 0),
+ * and consecutive vertices are close in u, v (small zig-zag deltas).
+ * The geometry is not changed. The arrays of the mesh are replaced, never modified (they can be shared, see FlatQuantizedMesh).
+ */
+public class QuantizedMeshOptimizer {
+    public static final int CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    public static void optimize(QuantizedMesh quantizedMesh) {
+        int vertexCount = quantizedMesh.getVertexCount();
+        int triangleCount = quantizedMesh.getTriangleCount();
+        if (vertexCount == 0 || triangleCount == 0) {
+            return;
+        }
+        int[] indices = quantizedMesh.getTriangleIndices();
+        int[] spatialOrder = sortTrianglesByMortonCode(quantizedMesh.getUBuffer(), quantizedMesh.getVBuffer(), indices, triangleCount);
+        int[] triangleOrder = optimizeTriangleOrder(indices, triangleCount, vertexCount, spatialOrder);
+
+        // renumber the vertices in first-use order
+        int[] newIndexOfVertex = new int[vertexCount];
+        Arrays.fill(newIndexOfVertex, -1);
+        int[] newIndices = new int[triangleCount * 3];
+        int nextIndex = 0;
+        for (int i = 0; i < triangleCount; i++) {
+            int triangle = triangleOrder[i];
+            for (int j = 0; j < 3; j++) {
+                int vertex = indices[triangle * 3 + j];
+                if (newIndexOfVertex[vertex] < 0) {
+                    newIndexOfVertex[vertex] = nextIndex++;
+                }
+                newIndices[i * 3 + j] = newIndexOfVertex[vertex];
+            }
+        }
+        // unused vertices (if any) keep their relative order at the end
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            if (newIndexOfVertex[vertex] < 0) {
+                newIndexOfVertex[vertex] = nextIndex++;
+            }
+        }
+
+        quantizedMesh.setTriangleIndices(newIndices);
+        quantizedMesh.setUBuffer(remapShorts(quantizedMesh.getUBuffer(), newIndexOfVertex));
+        quantizedMesh.setVBuffer(remapShorts(quantizedMesh.getVBuffer(), newIndexOfVertex));
+        quantizedMesh.setHeightBuffer(remapShorts(quantizedMesh.getHeightBuffer(), newIndexOfVertex));
+        quantizedMesh.setWestIndices(remapIndices(quantizedMesh.getWestIndices(), newIndexOfVertex));
+        quantizedMesh.setSouthIndices(remapIndices(quantizedMesh.getSouthIndices(), newIndexOfVertex));
+        quantizedMesh.setEastIndices(remapIndices(quantizedMesh.getEastIndices(), newIndexOfVertex));
+        quantizedMesh.setNorthIndices(remapIndices(quantizedMesh.getNorthIndices(), newIndexOfVertex));
+
+        byte[] octEncodedNormals = quantizedMesh.getOctEncodedNormals();
+        if (octEncodedNormals != null && octEncodedNormals.length == vertexCount * 2) {
+            byte[] newOctEncodedNormals = new byte[octEncodedNormals.length];
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                int newVertex = newIndexOfVertex[vertex];
+                newOctEncodedNormals[newVertex * 2] = octEncodedNormals[vertex * 2];
+                newOctEncodedNormals[newVertex * 2 + 1] = octEncodedNormals[vertex * 2 + 1];
+            }
+            quantizedMesh.setOctEncodedNormals(newOctEncodedNormals);
+        }
+    }
+
+    /**
+     * Returns the number of vertex cache misses per triangle (ACMR) of the triangle list, with a FIFO cache of cacheSize
+     */
+    public static double getAverageCacheMissRatio(int[] indices, int triangleCount, int cacheSize) {
+        if (triangleCount == 0) {
+            return 0;
+        }
+        int[] fifo = new int[cacheSize];
+        Arrays.fill(fifo, -1);
+        int fifoPosition = 0;
+        int misses = 0;
+        for (int i = 0; i < triangleCount * 3; i++) {
+            int vertex = indices[i];
+            boolean isCached = false;
+            for (int cached : fifo) {
+                if (cached == vertex) {
+                    isCached = true;
+                    break;
+                }
+            }
+            if (!isCached) {
+                misses++;
+                fifo[fifoPosition] = vertex;
+                fifoPosition = (fifoPosition + 1) % cacheSize;
+            }
+        }
+        return (double) misses / triangleCount;
+    }
+
+    private static int[] sortTrianglesByMortonCode(short[] uBuffer, short[] vBuffer, int[] indices, int triangleCount) {
+        long[] keys = new long[triangleCount];
+        for (int i = 0; i < triangleCount; i++) {
+            int a = indices[i * 3];
+            int b = indices[i * 3 + 1];
+            int c = indices[i * 3 + 2];
+            int u = (uBuffer[a] + uBuffer[b] + uBuffer[c]) / 3;
+            int v = (vBuffer[a] + vBuffer[b] + vBuffer[c]) / 3;
+            keys[i] = (mortonCode(u, v) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[triangleCount];
+        for (int i = 0; i < triangleCount; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private static long mortonCode(int u, int v) {
+        long code = 0;
+        for (int bit = 0; bit < 15; bit++) {
+            code |= (long) ((u >> bit) & 1) << (2 * bit);
+            code |= (long) ((v >> bit) & 1) << (2 * bit + 1);
+        }
+        return code;
+    }
+
+    /**
+     * Forsyth greedy triangle ordering with a LRU cache model.
+     * When no cached vertex has remaining triangles, the next triangle is taken in the initial (spatial) order.
+     */
+    private static int[] optimizeTriangleOrder(int[] indices, int triangleCount, int vertexCount, int[] initialOrder) {
+        // vertex -> triangles adjacency
+        int[] remainingValence = new int[vertexCount];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            remainingValence[indices[i]]++;
+        }
+        int[] adjacencyOffsets = new int[vertexCount + 1];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            adjacencyOffsets[vertex + 1] = adjacencyOffsets[vertex] + remainingValence[vertex];
+        }
+        int[] adjacency = new int[triangleCount * 3];
+        int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            for (int j = 0; j < 3; j++) {
+                int vertex = indices[triangle * 3 + j];
+                adjacency[fill[vertex]++] = triangle;
+            }
+        }
+
+        float[] vertexScore = new float[vertexCount];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            vertexScore[vertex] = getVertexScore(-1, remainingValence[vertex]);
+        }
+        boolean[] emitted = new boolean[triangleCount];
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int[] result = new int[triangleCount];
+        int initialOrderPosition = 0;
+        int bestTriangle = -1;
+        for (int i = 0; i < triangleCount; i++) {
+            if (bestTriangle < 0) {
+                while (emitted[initialOrder[initialOrderPosition]]) {
+                    initialOrderPosition++;
+                }
+                bestTriangle = initialOrder[initialOrderPosition];
+            }
+            result[i] = bestTriangle;
+            emitted[bestTriangle] = true;
+
+            // the vertices of the emitted triangle go to the front of the cache
+            int newCacheCount = 0;
+            for (int j = 0; j < 3; j++) {
+                int vertex = indices[bestTriangle * 3 + j];
+                newCache[newCacheCount++] = vertex;
+                remainingValence[vertex]--;
+                // remove the emitted triangle from the adjacency of the vertex
+                int start = adjacencyOffsets[vertex];
+                int end = start + remainingValence[vertex];
+                for (int k = start; k <= end; k++) {
+                    if (adjacency[k] == bestTriangle) {
+                        adjacency[k] = adjacency[end];
+                        break;
+                    }
+                }
+            }
+            for (int j = 0; j < cacheCount; j++) {
+                int vertex = cache[j];
+                if (vertex != newCache[0] && vertex != newCache[1] && vertex != newCache[2]) {
+                    newCache[newCacheCount++] = vertex;
+                }
+            }
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = newCacheCount;
+
+            // update the scores of the vertices in the (extended) cache and of their triangles
+            for (int j = 0; j < cacheCount; j++) {
+                int vertex = cache[j];
+                int position = j < CACHE_SIZE ? j : -1;
+                vertexScore[vertex] = getVertexScore(position, remainingValence[vertex]);
+            }
+            bestTriangle = -1;
+            float bestScore = -1.0f;
+            for (int j = 0; j < cacheCount; j++) {
+                int vertex = cache[j];
+                int start = adjacencyOffsets[vertex];
+                int end = start + remainingValence[vertex];
+                for (int k = start; k < end; k++) {
+                    int triangle = adjacency[k];
+                    float score = vertexScore[indices[triangle * 3]] + vertexScore[indices[triangle * 3 + 1]] + vertexScore[indices[triangle * 3 + 2]];
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestTriangle = triangle;
+                    }
+                }
+            }
+            if (cacheCount > CACHE_SIZE) {
+                cacheCount = CACHE_SIZE;
+            }
+        }
+        return result;
+    }
+
+    private static float getVertexScore(int cachePosition, int remainingValence) {
+        if (remainingValence <= 0) {
+            return -1.0f;
+        }
+        float score = 0.0f;
+        if (cachePosition >= 0) {
+            if (cachePosition < 3) {
+                // the vertices of the last triangle
+                score = LAST_TRIANGLE_SCORE;
+            } else {
+                float scaler = 1.0f / (CACHE_SIZE - 3);
+                score = (float) Math.pow(1.0f - (cachePosition - 3) * scaler, CACHE_DECAY_POWER);
+            }
+        }
+        score += VALENCE_BOOST_SCALE * (float) Math.pow(remainingValence, -VALENCE_BOOST_POWER);
+        return score;
+    }
+
+    private static short[] remapShorts(short[] values, int[] newIndexOfVertex) {
+        short[] result = new short[values.length];
+        for (int vertex = 0; vertex < values.length; vertex++) {
+            result[newIndexOfVertex[vertex]] = values[vertex];
+        }
+        return result;
+    }
+
+    private static int[] remapIndices(int[] indices, int[] newIndexOfVertex) {
+        if (indices == null) {
+            return null;
+        }
+        int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = newIndexOfVertex[indices[i]];
+        }
+        return result;
+    }
+}
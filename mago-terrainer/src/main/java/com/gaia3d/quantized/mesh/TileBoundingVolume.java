@@ -0,0 +1,152 @@
+package com.gaia3d.quantized.mesh;
+
+import com.gaia3d.util.CelestialBody;
+import org.joml.Vector3d;
+
+/**
+ * Bounding sphere and horizon occlusion point of a tile, computed over its vertices in world coordinates (ECEF).
+ * The positions are given as interleaved x, y, z.
+ * https://cesium.com/blog/2013/05/09/computing-the-horizon-occlusion-point/
+ */
+public final class TileBoundingVolume {
+
+    private TileBoundingVolume() {
+    }
+
+    /**
+     * Ritter bounding sphere, or the sphere centered on the bounding box when it is smaller (like Cesium BoundingSphere.fromPoints)
+     *
+     * @return centerX, centerY, centerZ, radius
+     */
+    public static double[] getBoundingSphere(double[] positions, int count) {
+        // the extreme points on each axis, and the bounding box
+        int[] minPoints = new int[3];
+        int[] maxPoints = new int[3];
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = 0; i < count; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double value = positions[i * 3 + axis];
+                if (value < min[axis]) {
+                    min[axis] = value;
+                    minPoints[axis] = i;
+                }
+                if (value > max[axis]) {
+                    max[axis] = value;
+                    maxPoints[axis] = i;
+                }
+            }
+        }
+
+        // Ritter : start with the most distant pair of the extreme points, then grow the sphere to include every point
+        int bestAxis = 0;
+        double bestSpan = -1.0;
+        for (int axis = 0; axis < 3; axis++) {
+            double span = getDistanceSquared(positions, minPoints[axis], maxPoints[axis]);
+            if (span > bestSpan) {
+                bestSpan = span;
+                bestAxis = axis;
+            }
+        }
+        int a = minPoints[bestAxis] * 3;
+        int b = maxPoints[bestAxis] * 3;
+        double centerX = (positions[a] + positions[b]) * 0.5;
+        double centerY = (positions[a + 1] + positions[b + 1]) * 0.5;
+        double centerZ = (positions[a + 2] + positions[b + 2]) * 0.5;
+        double radius = Math.sqrt(bestSpan) * 0.5;
+        double radiusSquared = radius * radius;
+        for (int i = 0; i < count; i++) {
+            double dx = positions[i * 3] - centerX;
+            double dy = positions[i * 3 + 1] - centerY;
+            double dz = positions[i * 3 + 2] - centerZ;
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (distanceSquared > radiusSquared) {
+                double distance = Math.sqrt(distanceSquared);
+                double newRadius = (radius + distance) * 0.5;
+                double shift = (distance - newRadius) / distance;
+                centerX += dx * shift;
+                centerY += dy * shift;
+                centerZ += dz * shift;
+                radius = newRadius;
+                radiusSquared = radius * radius;
+            }
+        }
+
+        // the sphere centered on the bounding box
+        double boxCenterX = (min[0] + max[0]) * 0.5;
+        double boxCenterY = (min[1] + max[1]) * 0.5;
+        double boxCenterZ = (min[2] + max[2]) * 0.5;
+        double boxRadiusSquared = 0.0;
+        for (int i = 0; i < count; i++) {
+            double dx = positions[i * 3] - boxCenterX;
+            double dy = positions[i * 3 + 1] - boxCenterY;
+            double dz = positions[i * 3 + 2] - boxCenterZ;
+            boxRadiusSquared = Math.max(boxRadiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+        double boxRadius = Math.sqrt(boxRadiusSquared);
+
+        if (boxRadius < radius) {
+            return new double[]{boxCenterX, boxCenterY, boxCenterZ, boxRadius};
+        }
+        return new double[]{centerX, centerY, centerZ, radius};
+    }
+
+    /**
+     * Horizon occlusion point in the ellipsoid-scaled space, the frame expected by the quantized mesh header.
+     * The point is on the line from the center of the body to directionWC, and is the nearest point
+     * from which all the vertices are hidden when it is hidden by the ellipsoid.
+     *
+     * @return the point in the scaled space, or null when a vertex is below the ellipsoid far enough that no point exists
+     */
+    public static Vector3d getHorizonOcclusionPoint(double[] positions, int count, Vector3d directionWC, CelestialBody body) {
+        double inverseRadiusX = 1.0 / body.getEquatorialRadius();
+        double inverseRadiusZ = 1.0 / body.getPolarRadius();
+        Vector3d scaledDirection = new Vector3d(directionWC.x * inverseRadiusX, directionWC.y * inverseRadiusX, directionWC.z * inverseRadiusZ);
+        if (scaledDirection.lengthSquared() == 0.0) {
+            return null;
+        }
+        scaledDirection.normalize();
+
+        double resultMagnitude = 0.0;
+        for (int i = 0; i < count; i++) {
+            double x = positions[i * 3] * inverseRadiusX;
+            double y = positions[i * 3 + 1] * inverseRadiusX;
+            double z = positions[i * 3 + 2] * inverseRadiusZ;
+            double magnitudeSquared = x * x + y * y + z * z;
+            double magnitude = Math.sqrt(magnitudeSquared);
+            if (magnitude == 0.0) {
+                return null;
+            }
+            double directionX = x / magnitude;
+            double directionY = y / magnitude;
+            double directionZ = z / magnitude;
+
+            // the vertices below the ellipsoid are treated as on the ellipsoid
+            magnitudeSquared = Math.max(1.0, magnitudeSquared);
+            magnitude = Math.max(1.0, magnitude);
+
+            double cosAlpha = directionX * scaledDirection.x + directionY * scaledDirection.y + directionZ * scaledDirection.z;
+            double crossX = directionY * scaledDirection.z - directionZ * scaledDirection.y;
+            double crossY = directionZ * scaledDirection.x - directionX * scaledDirection.z;
+            double crossZ = directionX * scaledDirection.y - directionY * scaledDirection.x;
+            double sinAlpha = Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ);
+            double cosBeta = 1.0 / magnitude;
+            double sinBeta = Math.sqrt(magnitudeSquared - 1.0) * cosBeta;
+
+            double denominator = cosAlpha * cosBeta - sinAlpha * sinBeta;
+            if (denominator <= 0.0) {
+                // the vertex is beyond the horizon of any point of the line
+                return null;
+            }
+            resultMagnitude = Math.max(resultMagnitude, 1.0 / denominator);
+        }
+        return scaledDirection.mul(resultMagnitude);
+    }
+
+    private static double getDistanceSquared(double[] positions, int a, int b) {
+        double dx = positions[a * 3] - positions[b * 3];
+        double dy = positions[a * 3 + 1] - positions[b * 3 + 1];
+        double dz = positions[a * 3 + 2] - positions[b * 3 + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
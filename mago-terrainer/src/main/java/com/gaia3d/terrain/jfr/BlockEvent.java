@@ -0,0 +1,45 @@
+package com.gaia3d.terrain.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+/**
+ * A block of tiles processed by the tiling : rasters, merge of the temp meshes, refinement and the queued writes
+ */
+@Name("com.gaia3d.terrain.Block")
+@Label("Tile Block")
+@Category({"Mago 3D Terrainer", "Tiling"})
+@Description("A block of tiles made by the tiling, with its triangles before and after the refinement")
+@StackTrace(false)
+@Setter
+public class BlockEvent extends Event {
+    @Label("Depth")
+    private int depth;
+    @Label("Min Tile X")
+    private int minTileX;
+    @Label("Max Tile X")
+    private int maxTileX;
+    @Label("Min Tile Y")
+    private int minTileY;
+    @Label("Max Tile Y")
+    private int maxTileY;
+    @Label("Input Triangles")
+    @Description("Triangles of the merged mesh, before the refinement")
+    private int inputTriangles;
+    @Label("Output Triangles")
+    @Description("Triangles of the refined mesh")
+    private int outputTriangles;
+    @Label("Output Vertices")
+    private int outputVertices;
+    @Label("Flat")
+    @Description("The block is flat, its tiles are saved without refinement")
+    private boolean flat;
+    @Label("Overflow")
+    @Description("The block did not fit in the heap, and is processed again as smaller blocks")
+    private boolean overflow;
+}
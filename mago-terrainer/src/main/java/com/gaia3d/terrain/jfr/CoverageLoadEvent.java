@@ -0,0 +1,31 @@
+package com.gaia3d.terrain.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+/**
+ * A GeoTIFF coverage read from the disk (the coverages in the cache are not read again)
+ */
+@Name("com.gaia3d.terrain.CoverageLoad")
+@Label("GeoTIFF Coverage Load")
+@Category({"Mago 3D Terrainer", "Raster"})
+@Description("A GeoTIFF file read as a grid coverage")
+@StackTrace(false)
+@Setter
+public class CoverageLoadEvent extends Event {
+    @Label("Path")
+    private String path;
+    @Label("File Size")
+    @DataAmount
+    private long fileSize;
+    @Label("Width")
+    private int width;
+    @Label("Height")
+    private int height;
+}
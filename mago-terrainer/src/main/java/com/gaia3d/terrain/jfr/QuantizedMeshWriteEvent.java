@@ -0,0 +1,38 @@
+package com.gaia3d.terrain.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+/**
+ * A .terrain tile encoded and written by a writer thread (file or archive)
+ */
+@Name("com.gaia3d.terrain.QuantizedMeshWrite")
+@Label("Quantized Mesh Write")
+@Category({"Mago 3D Terrainer", "I/O"})
+@Description("A quantized-mesh tile encoded, compressed and written")
+@StackTrace(false)
+@Setter
+public class QuantizedMeshWriteEvent extends Event {
+    @Label("Level")
+    private int level;
+    @Label("X")
+    private int x;
+    @Label("Y")
+    private int y;
+    @Label("Vertices")
+    private int vertices;
+    @Label("Triangles")
+    private int triangles;
+    @Label("Raw Bytes")
+    @DataAmount
+    private long rawBytes;
+    @Label("Stored Bytes")
+    @DataAmount
+    private long storedBytes;
+}
@@ -0,0 +1,35 @@
+package com.gaia3d.terrain.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+/**
+ * The tile rasters of a block (with its border), made from the coverages or reused from the previous block
+ */
+@Name("com.gaia3d.terrain.Raster")
+@Label("Tile Rasters")
+@Category({"Mago 3D Terrainer", "Raster"})
+@Description("The elevation rasters of the tiles of a block")
+@StackTrace(false)
+@Setter
+public class RasterEvent extends Event {
+    @Label("Depth")
+    private int depth;
+    @Label("Min Tile X")
+    private int minTileX;
+    @Label("Max Tile X")
+    private int maxTileX;
+    @Label("Min Tile Y")
+    private int minTileY;
+    @Label("Max Tile Y")
+    private int maxTileY;
+    @Label("Created Rasters")
+    private int createdRasters;
+    @Label("Reused Rasters")
+    private int reusedRasters;
+}
@@ -0,0 +1,30 @@
+package com.gaia3d.terrain.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+/**
+ * A temp tile (.til) read or written
+ */
+@Name("com.gaia3d.terrain.TempTile")
+@Label("Temp Tile I/O")
+@Category({"Mago 3D Terrainer", "I/O"})
+@Description("A temp tile mesh (.til) read or written")
+@StackTrace(false)
+@Setter
+public class TempTileEvent extends Event {
+    @Label("Path")
+    private String path;
+    @Label("Write")
+    @Description("True for a write, false for a read")
+    private boolean write;
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+}
@@ -9,6 +9,7 @@ import com.gaia3d.terrain.tile.TileIndices;
 import com.gaia3d.terrain.tile.TileRange;
 import com.gaia3d.terrain.types.TerrainHalfEdgeType;
 import com.gaia3d.terrain.types.TerrainObjectStatus;
+import com.gaia3d.terrain.util.TerrainLatticeUtils;
 import com.gaia3d.util.FileUtils;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -35,6 +36,13 @@ public class TerrainMesh {
 
     public int id = -1;
 
+    // corners where the boundary chains start : left-down, right-down, right-up, left-up
+    private static final int CORNER_LEFT_DOWN = 0;
+    private static final int CORNER_RIGHT_DOWN = 1;
+    private static final int CORNER_RIGHT_UP = 2;
+    private static final int CORNER_LEFT_UP = 3;
+    private final TerrainVertex[] cornerVertices = new TerrainVertex[4];
+
     public void deleteObjects() {
         for (TerrainVertex vertex : vertices) {
             vertex.deleteObjects();
@@ -53,6 +61,8 @@ public class TerrainMesh {
         }
         halfEdges.clear();
         halfEdges = null;
+
+        Arrays.fill(cornerVertices, null);
     }
 
     public TerrainVertex newVertex() {
@@ -93,6 +103,11 @@ public class TerrainMesh {
     }
 
     public void mergeMesh(TerrainMesh mesh) {
+        // keep the corners of the boundary chains before the vertices of the merged mesh are added
+        getChainStartCorner(TerrainHalfEdgeType.DOWN);
+        mesh.getChainStartCorner(TerrainHalfEdgeType.DOWN);
+        mergeCornerVertices(mesh);
+
         // First, add vertices
         int verticesCount = mesh.vertices.size();
         for (int i = 0; i < verticesCount; i++) {
@@ -220,110 +235,181 @@ public class TerrainMesh {
         return boundingBox;
     }
 
-    public List<TerrainVertex> getLeftVerticesSortedUpToDown() {
-        List<TerrainHalfEdge> leftHedges = getHalfEdgesByType(TerrainHalfEdgeType.LEFT);
-        Map<TerrainVertex, TerrainVertex> mapVertices = new HashMap<>();
-        for (TerrainHalfEdge halfEdge : leftHedges) {
-            mapVertices.put(halfEdge.getStartVertex(), halfEdge.getStartVertex());
-            mapVertices.put(halfEdge.getEndVertex(), halfEdge.getEndVertex());
-        }
-        List<TerrainVertex> vertices = new ArrayList<>(mapVertices.values());
-
-        // sort the vertices
-        vertices.sort((TerrainVertex v1, TerrainVertex v2) -> {
-            return Double.compare(v2.getPosition().y, v1.getPosition().y);
-        });
-
-        return vertices;
+    /**
+     * Returns the vertex of the corner where the boundary chain of the side starts.
+     * The boundary halfEdges run counterclockwise, so the chains are :
+     * DOWN from the left-down corner, RIGHT from the right-down corner, UP from the right-up corner and LEFT from the left-up corner.
+     * The corners are never deleted by splitting, so they are cached and only recalculated when they are no longer valid.
+     */
+    private TerrainVertex getChainStartCorner(TerrainHalfEdgeType side) {
+        int cornerIdx = getCornerIndex(side);
+        TerrainVertex corner = cornerVertices[cornerIdx];
+        if (corner == null || corner.getObjectStatus() == TerrainObjectStatus.DELETED || corner.getBoundaryOutingHalfEdge() == null) {
+            calculateCornerVertices();
+            corner = cornerVertices[cornerIdx];
+        }
+        return corner;
     }
 
+    private int getCornerIndex(TerrainHalfEdgeType side) {
+        return switch (side) {
+            case DOWN -> CORNER_LEFT_DOWN;
+            case RIGHT -> CORNER_RIGHT_DOWN;
+            case UP -> CORNER_RIGHT_UP;
+            case LEFT -> CORNER_LEFT_UP;
+            default -> throw new IllegalArgumentException("No boundary chain for halfEdge type : " + side);
+        };
+    }
 
-    public List<TerrainVertex> getDownVerticesSortedLeftToRight() {
-        List<TerrainHalfEdge> downHedges = getHalfEdgesByType(TerrainHalfEdgeType.DOWN);
-        Map<TerrainVertex, TerrainVertex> mapVertices = new HashMap<>();
-        for (TerrainHalfEdge halfEdge : downHedges) {
-            mapVertices.put(halfEdge.getStartVertex(), halfEdge.getStartVertex());
-            mapVertices.put(halfEdge.getEndVertex(), halfEdge.getEndVertex());
+    /**
+     * The mesh is a rectangle in lon-lat, so each corner is the extreme vertex of (x + y) or (x - y).
+     */
+    private void calculateCornerVertices() {
+        Arrays.fill(cornerVertices, null);
+        double minSum = Double.MAX_VALUE;
+        double maxSum = -Double.MAX_VALUE;
+        double minDiff = Double.MAX_VALUE;
+        double maxDiff = -Double.MAX_VALUE;
+        for (TerrainVertex vertex : vertices) {
+            if (vertex.getObjectStatus() == TerrainObjectStatus.DELETED) {
+                continue;
+            }
+            Vector3d position = vertex.getPosition();
+            double sum = position.x + position.y;
+            double diff = position.x - position.y;
+            if (sum < minSum) {
+                minSum = sum;
+                cornerVertices[CORNER_LEFT_DOWN] = vertex;
+            }
+            if (sum > maxSum) {
+                maxSum = sum;
+                cornerVertices[CORNER_RIGHT_UP] = vertex;
+            }
+            if (diff > maxDiff) {
+                maxDiff = diff;
+                cornerVertices[CORNER_RIGHT_DOWN] = vertex;
+            }
+            if (diff < minDiff) {
+                minDiff = diff;
+                cornerVertices[CORNER_LEFT_UP] = vertex;
+            }
         }
+    }
 
-        List<TerrainVertex> vertices = new ArrayList<>(mapVertices.values());
-
-        // sort the vertices
-        vertices.sort((TerrainVertex v1, TerrainVertex v2) -> {
-            return Double.compare(v1.getPosition().x, v2.getPosition().x);
-        });
+    /**
+     * Keeps the corners of the union of this mesh and the merged mesh, so the boundary chains stay valid after merging.
+     */
+    private void mergeCornerVertices(TerrainMesh mesh) {
+        for (int i = 0; i < 4; i++) {
+            TerrainVertex cornerA = this.cornerVertices[i];
+            TerrainVertex cornerB = mesh.cornerVertices[i];
+            if (cornerA == null || cornerB == null) {
+                // unknown corners, recalculate them lazily
+                Arrays.fill(this.cornerVertices, null);
+                return;
+            }
+            Vector3d posA = cornerA.getPosition();
+            Vector3d posB = cornerB.getPosition();
+            boolean isB = switch (i) {
+                case CORNER_LEFT_DOWN -> posB.x + posB.y < posA.x + posA.y;
+                case CORNER_RIGHT_DOWN -> posB.x - posB.y > posA.x - posA.y;
+                case CORNER_RIGHT_UP -> posB.x + posB.y > posA.x + posA.y;
+                default -> posB.x - posB.y < posA.x - posA.y;
+            };
+            if (isB) {
+                this.cornerVertices[i] = cornerB;
+            }
+        }
+    }
 
-        return vertices;
+    /**
+     * Walks the boundary chain of the side, from its start corner until the next corner.
+     * Each step rotates around the end vertex of the halfEdge, so the cost is O(boundary length) with no sorting.
+     * If the chain is broken (e.g. a hole from unmatched twins), falls back to sort the halfEdges of the side.
+     */
+    private List<TerrainHalfEdge> getBoundaryChain(TerrainHalfEdgeType side) {
+        List<TerrainHalfEdge> chain = new ArrayList<>();
+        TerrainVertex corner = getChainStartCorner(side);
+        TerrainHalfEdge halfEdge = corner != null ? corner.getBoundaryOutingHalfEdge() : null;
+        int maxCount = this.halfEdges.size();
+        while (halfEdge != null && halfEdge.getType() == side && halfEdge.getTwin() == null && chain.size() < maxCount) {
+            chain.add(halfEdge);
+            halfEdge = halfEdge.getEndVertex().getBoundaryOutingHalfEdge();
+        }
+
+        TerrainHalfEdgeType nextSide = switch (side) {
+            case DOWN -> TerrainHalfEdgeType.RIGHT;
+            case RIGHT -> TerrainHalfEdgeType.UP;
+            case UP -> TerrainHalfEdgeType.LEFT;
+            default -> TerrainHalfEdgeType.DOWN;
+        };
+        if (chain.isEmpty() || chain.get(chain.size() - 1).getEndVertex() != getChainStartCorner(nextSide)) {
+            log.debug("Boundary chain {} is not closed. Sorting the boundary halfEdges instead.", side);
+            return getHalfEdgesSortedByScan(side);
+        }
+        return chain;
     }
 
-    public List<TerrainVertex> getRightVerticesSortedDownToUp() {
-        List<TerrainHalfEdge> rightHedges = getHalfEdgesByType(TerrainHalfEdgeType.RIGHT);
-        HashMap<TerrainVertex, TerrainVertex> mapVertices = new HashMap<>();
-        for (TerrainHalfEdge halfEdge : rightHedges) {
-            mapVertices.put(halfEdge.getStartVertex(), halfEdge.getStartVertex());
-            mapVertices.put(halfEdge.getEndVertex(), halfEdge.getEndVertex());
+    private List<TerrainHalfEdge> getHalfEdgesSortedByScan(TerrainHalfEdgeType side) {
+        List<TerrainHalfEdge> sideHedges = getHalfEdgesByType(side);
+        switch (side) {
+            case LEFT -> sideHedges.sort((he1, he2) -> Double.compare(he2.getStartVertex().getPosition().y, he1.getStartVertex().getPosition().y));
+            case DOWN -> sideHedges.sort((he1, he2) -> Double.compare(he1.getStartVertex().getPosition().x, he2.getStartVertex().getPosition().x));
+            case RIGHT -> sideHedges.sort((he1, he2) -> Double.compare(he1.getStartVertex().getPosition().y, he2.getStartVertex().getPosition().y));
+            case UP -> sideHedges.sort((he1, he2) -> Double.compare(he2.getStartVertex().getPosition().x, he1.getStartVertex().getPosition().x));
+            default -> {
+            }
         }
-        List<TerrainVertex> vertices = new ArrayList<>(mapVertices.values());
-
-        vertices.sort((TerrainVertex v1, TerrainVertex v2) -> {
-            return Double.compare(v1.getPosition().y, v2.getPosition().y);
-        });
+        return sideHedges;
+    }
 
+    private List<TerrainVertex> getBoundaryChainVertices(TerrainHalfEdgeType side) {
+        List<TerrainHalfEdge> chain = getBoundaryChain(side);
+        List<TerrainVertex> vertices = new ArrayList<>(chain.size() + 1);
+        TerrainVertex lastVertex = null;
+        for (TerrainHalfEdge halfEdge : chain) {
+            TerrainVertex startVertex = halfEdge.getStartVertex();
+            if (startVertex != lastVertex) {
+                vertices.add(startVertex);
+            }
+            lastVertex = halfEdge.getEndVertex();
+            vertices.add(lastVertex);
+        }
         return vertices;
     }
 
-    public List<TerrainVertex> getUpVerticesSortedRightToLeft() {
-        List<TerrainHalfEdge> upHedges = getHalfEdgesByType(TerrainHalfEdgeType.UP);
-        Map<TerrainVertex, TerrainVertex> mapVertices = new HashMap<>();
-        int upHedgesCount = upHedges.size();
-        for (TerrainHalfEdge halfEdge : upHedges) {
-            mapVertices.put(halfEdge.getStartVertex(), halfEdge.getStartVertex());
-            mapVertices.put(halfEdge.getEndVertex(), halfEdge.getEndVertex());
-        }
+    public List<TerrainVertex> getLeftVerticesSortedUpToDown() {
+        return getBoundaryChainVertices(TerrainHalfEdgeType.LEFT);
+    }
 
-        List<TerrainVertex> vertices = new ArrayList<>(mapVertices.values());
+    public List<TerrainVertex> getDownVerticesSortedLeftToRight() {
+        return getBoundaryChainVertices(TerrainHalfEdgeType.DOWN);
+    }
 
-        // sort the vertices
-        vertices.sort((TerrainVertex v1, TerrainVertex v2) -> {
-            return Double.compare(v2.getPosition().x, v1.getPosition().x);
-        });
+    public List<TerrainVertex> getRightVerticesSortedDownToUp() {
+        return getBoundaryChainVertices(TerrainHalfEdgeType.RIGHT);
+    }
 
-        return vertices;
+    public List<TerrainVertex> getUpVerticesSortedRightToLeft() {
+        return getBoundaryChainVertices(TerrainHalfEdgeType.UP);
     }
 
     public List<TerrainHalfEdge> getLeftHalfEdgesSortedUpToDown() {
-        List<TerrainHalfEdge> leftHedges = getHalfEdgesByType(TerrainHalfEdgeType.LEFT);
-        leftHedges.sort((TerrainHalfEdge he1, TerrainHalfEdge he2) -> {
-            return Double.compare(he2.getStartVertex().getPosition().y, he1.getStartVertex().getPosition().y);
-        });
-        return leftHedges;
+        return getBoundaryChain(TerrainHalfEdgeType.LEFT);
     }
 
     public List<TerrainHalfEdge> getDownHalfEdgesSortedLeftToRight() {
-        List<TerrainHalfEdge> downHedges = getHalfEdgesByType(TerrainHalfEdgeType.DOWN);
-        downHedges.sort((TerrainHalfEdge he1, TerrainHalfEdge he2) -> {
-            return Double.compare(he1.getStartVertex().getPosition().x, he2.getStartVertex().getPosition().x);
-        });
-        return downHedges;
+        return getBoundaryChain(TerrainHalfEdgeType.DOWN);
     }
 
     public List<TerrainHalfEdge> getRightHalfEdgesSortedDownToUp() {
-        List<TerrainHalfEdge> rightHedges = getHalfEdgesByType(TerrainHalfEdgeType.RIGHT);
-        rightHedges.sort((TerrainHalfEdge he1, TerrainHalfEdge he2) -> {
-            return Double.compare(he1.getStartVertex().getPosition().y, he2.getStartVertex().getPosition().y);
-        });
-        return rightHedges;
+        return getBoundaryChain(TerrainHalfEdgeType.RIGHT);
     }
 
     public List<TerrainHalfEdge> getUpHalfEdgesSortedRightToLeft() {
-        List<TerrainHalfEdge> upHedges = getHalfEdgesByType(TerrainHalfEdgeType.UP);
-        upHedges.sort((TerrainHalfEdge he1, TerrainHalfEdge he2) -> {
-            return Double.compare(he2.getStartVertex().getPosition().x, he1.getStartVertex().getPosition().x);
-        });
-        return upHedges;
+        return getBoundaryChain(TerrainHalfEdgeType.UP);
     }
 
-
     public void setTriangleIdInList() {
         int trianglesCount = triangles.size();
         for (int i = 0; i < trianglesCount; i++) {
@@ -619,7 +705,7 @@ public class TerrainMesh {
             TerrainHalfEdge nextHEdgeTwin = nextHEdge.getTwin();
 
             // in this case, the twin is null
-            Vector3d midPosition = longestHEdge.getMidPosition();
+            Vector3d midPosition = TerrainLatticeUtils.snapToLattice(longestHEdge.getMidPosition());
             double beforeZ = midPosition.z;
 
             // now determine the elevation of the midPoint
@@ -797,7 +883,7 @@ public class TerrainMesh {
             TerrainVertex oppVtx_AdjT = prevHEdgeAdjT.getStartVertex();
 
             // need know the midVertex
-            Vector3d midPosition = longestHEdge.getMidPosition();
+            Vector3d midPosition = TerrainLatticeUtils.snapToLattice(longestHEdge.getMidPosition());
             TerrainVertex midVertex = newVertex();
 
             // now determine the elevation of the midPoint
@@ -1100,6 +1186,7 @@ public class TerrainMesh {
             halfEdges.add(halfEdge);
         }
 
+        Arrays.fill(cornerVertices, null);
     }
 
     public void getTrianglesByTilesRange(TileRange tilesRange, List<TerrainTriangle> resultTriangles, Map<String, List<TerrainTriangle>> mapTileIndicesTriangles) {
@@ -33,6 +33,7 @@ public class TerrainTriangle {
     public TerrainHalfEdge halfEdge = null; // The half edge structure caused a stack overflow, so we applied a public access controller.
     private int splitDepth = 0;
     private boolean refineChecked = false;
+    private double refineError = 0.0; // (distance to plane / maxDiff) of the last refinement check, used to order the splits
 
     public void deleteObjects() {
         halfEdge = null;
@@ -104,6 +104,32 @@ public class TerrainVertex {
         this.normal.normalize();
     }
 
+    /**
+     * Returns the outing halfEdge of this vertex that has no twin (the boundary halfEdge that starts in this vertex),
+     * or null if this vertex is an interior vertex.
+     * Rotates around the vertex without allocating any list.
+     */
+    public TerrainHalfEdge getBoundaryOutingHalfEdge() {
+        if (this.outingHEdge == null || this.outingHEdge.getObjectStatus() == TerrainObjectStatus.DELETED) {
+            return null;
+        }
+
+        TerrainHalfEdge currHalfEdge = this.outingHEdge;
+        int maxIterations = 100; // Same as getAllOutingHalfEdges()
+        for (int i = 0; i < maxIterations; i++) {
+            TerrainHalfEdge twinHalfEdge = currHalfEdge.getTwin();
+            if (twinHalfEdge == null) {
+                return currHalfEdge;
+            }
+            currHalfEdge = twinHalfEdge.getNext();
+            if (currHalfEdge == null || currHalfEdge == this.outingHEdge) {
+                // interior vertex or broken loop
+                return null;
+            }
+        }
+        return null;
+    }
+
     public List<TerrainHalfEdge> getAllOutingHalfEdges() {
         List<TerrainHalfEdge> outingHalfEdges = new ArrayList<>();
 
@@ -0,0 +1,163 @@
+package com.gaia3d.terrain.tile;
+
+import com.gaia3d.command.GlobalOptions;
+import com.gaia3d.terrain.tile.archive.TileArchive;
+import com.gaia3d.terrain.tile.geotiff.SourceManifest;
+import com.gaia3d.terrain.tile.geotiff.SourceManifest.SourceEntry;
+import com.gaia3d.terrain.util.TileWgs84Utils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares the source GeoTIFFs with the manifest of the last run (--incremental),
+ * and gives the tiles to regenerate at each depth : the tiles over the footprints of the added, modified and removed sources.
+ * When the tiling options are not the same as in the last run, all the tiles are generated.
+ */
+@Slf4j
+@Getter
+public class IncrementalPlan {
+    private final SourceManifest previousManifest;
+    private final SourceManifest currentManifest;
+    private final boolean fullRun;
+    private final List<SourceEntry> addedSources = new ArrayList<>();
+    private final List<SourceEntry> modifiedSources = new ArrayList<>();
+    private final List<SourceEntry> removedSources = new ArrayList<>();
+    // the footprints to regenerate, the previous and the new footprint of a modified source
+    private final List<SourceEntry> changedFootprints = new ArrayList<>();
+
+    private IncrementalPlan(SourceManifest previousManifest, SourceManifest currentManifest, boolean fullRun) {
+        this.previousManifest = previousManifest;
+        this.currentManifest = currentManifest;
+        this.fullRun = fullRun;
+    }
+
+    /**
+     * Scans the sources of the input path, and compares them with the manifest of the output path.
+     * Without a manifest or a previous tileset, all the tiles are generated.
+     */
+    public static IncrementalPlan create(String inputPath, String outputPath, boolean archiveOutput, Map<String, String> tilingOptions) throws IOException {
+        Path manifestPath = Path.of(outputPath, SourceManifest.FILE_NAME);
+        SourceManifest previousManifest = SourceManifest.load(manifestPath);
+        SourceManifest currentManifest = SourceManifest.scan(inputPath, previousManifest);
+        currentManifest.getOptions().putAll(tilingOptions);
+
+        Path previousOutputPath = archiveOutput ? Path.of(outputPath, TileArchive.DEFAULT_FILE_NAME) : Path.of(outputPath, "layer.json");
+        if (previousManifest == null || !Files.exists(previousOutputPath)) {
+            log.info("[Incremental] No previous source manifest or tileset in the output path, all the tiles are generated.");
+            return new IncrementalPlan(null, currentManifest, true);
+        }
+        if (!previousManifest.getOptions().equals(currentManifest.getOptions())) {
+            log.warn("[Incremental] The tiling options are not the same as in the last run, all the tiles are generated. previous : {}, current : {}",
+                    previousManifest.getOptions(), currentManifest.getOptions());
+            return new IncrementalPlan(previousManifest, currentManifest, true);
+        }
+
+        IncrementalPlan plan = new IncrementalPlan(previousManifest, currentManifest, false);
+        Map<String, SourceEntry> previousEntries = previousManifest.getEntries();
+        for (SourceEntry entry : currentManifest.getEntries().values()) {
+            SourceEntry previousEntry = previousEntries.get(entry.getPath());
+            if (previousEntry == null) {
+                plan.addedSources.add(entry);
+                plan.changedFootprints.add(entry);
+            } else if (!entry.isSameContent(previousEntry)) {
+                plan.modifiedSources.add(entry);
+                plan.changedFootprints.add(previousEntry);
+                plan.changedFootprints.add(entry);
+            }
+        }
+        for (SourceEntry previousEntry : previousEntries.values()) {
+            if (!currentManifest.getEntries().containsKey(previousEntry.getPath())) {
+                plan.removedSources.add(previousEntry);
+                plan.changedFootprints.add(previousEntry);
+            }
+        }
+        log.info("[Incremental] Sources : {}, added : {}, modified : {}, removed : {}",
+                currentManifest.getEntries().size(), plan.addedSources.size(), plan.modifiedSources.size(), plan.removedSources.size());
+        return plan;
+    }
+
+    /**
+     * The options that change the tiles : a tileset can not mix tiles made with different values
+     */
+    public static Map<String, String> getTilingOptions(GlobalOptions globalOptions) {
+        Map<String, String> options = new TreeMap<>();
+        options.put("minDepth", String.valueOf(globalOptions.getMinimumTileDepth()));
+        options.put("maxDepth", String.valueOf(globalOptions.getMaximumTileDepth()));
+        options.put("intensity", String.valueOf(globalOptions.getIntensity()));
+        options.put("interpolationType", String.valueOf(globalOptions.getInterpolationType()));
+        options.put("priorityType", String.valueOf(globalOptions.getPriorityType()));
+        options.put("nodataValue", String.valueOf(globalOptions.getNoDataValue()));
+        options.put("geoid", getGeoidName(globalOptions.getGeoidPath()));
+        options.put("calculateNormals", String.valueOf(globalOptions.isCalculateNormalsExtension()));
+        options.put("metadata", String.valueOf(globalOptions.isMetaDataExtension()));
+        options.put("metadataAvailability", String.valueOf(globalOptions.getMetadataAvailability()));
+        options.put("waterMask", String.valueOf(globalOptions.isWaterMaskExtension()));
+        options.put("waterMaskHeight", String.valueOf(globalOptions.getWaterMaskHeight()));
+        options.put("waterMaskPath", String.valueOf(globalOptions.getWaterMaskPath()));
+        options.put("tileMaxTriangles", String.valueOf(globalOptions.getTileMaxTriangles())); // the --tileMaxBytes budget included
+        options.put("gzip", String.valueOf(globalOptions.isGzipOutput()));
+        options.put("optimizeVertexOrder", String.valueOf(globalOptions.isOptimizeVertexOrder()));
+        return options;
+    }
+
+    /**
+     * The built-in EGM96 geoid is extracted to a new temp file at every run, it is recorded by its name
+     */
+    private static String getGeoidName(String geoidPath) {
+        if (geoidPath == null) {
+            return "Ellipsoid";
+        }
+        if (new File(geoidPath).getName().startsWith("egm96_15-")) {
+            return "EGM96";
+        }
+        return geoidPath;
+    }
+
+    public boolean isUpToDate() {
+        return !fullRun && changedFootprints.isEmpty();
+    }
+
+    /**
+     * The tiles of the depth to regenerate : the tiles over the changed footprints, and one tile around them
+     * (the neighbor tiles are refined together at the seams). Clipped to the tiles range of the depth.
+     * The parents of these tiles are in the tiles to regenerate of the upper depth, so their children temp files exist.
+     */
+    public TileCoverage getAffectedTiles(int depth, TileRange depthTilesRange) {
+        TileCoverage affectedTiles = new TileCoverage();
+        for (SourceEntry footprint : changedFootprints) {
+            TileRange footprintRange;
+            if (depth == 0) {
+                footprintRange = depthTilesRange.clone();
+            } else {
+                footprintRange = new TileRange();
+                TileWgs84Utils.selectTileIndicesArray(depth, footprint.getMinLon(), footprint.getMaxLon(), footprint.getMinLat(), footprint.getMaxLat(), footprintRange, false);
+                footprintRange = footprintRange.expand1();
+            }
+            int minTileX = Math.max(footprintRange.getMinTileX(), depthTilesRange.getMinTileX());
+            int maxTileX = Math.min(footprintRange.getMaxTileX(), depthTilesRange.getMaxTileX());
+            int minTileY = Math.max(footprintRange.getMinTileY(), depthTilesRange.getMinTileY());
+            int maxTileY = Math.min(footprintRange.getMaxTileY(), depthTilesRange.getMaxTileY());
+            if (minTileX > maxTileX || minTileY > maxTileY) {
+                continue;
+            }
+            affectedTiles.addRange(TileRange.of(depth, minTileX, maxTileX, minTileY, maxTileY));
+        }
+        return affectedTiles;
+    }
+
+    /**
+     * Saves the manifest of the current sources, for the next incremental run
+     */
+    public void saveManifest(String outputPath) throws IOException {
+        currentManifest.save(Path.of(outputPath + File.separator + SourceManifest.FILE_NAME));
+    }
+}
@@ -1,12 +1,14 @@
 package com.gaia3d.terrain.tile;
 
 import com.gaia3d.command.GlobalOptions;
+import com.gaia3d.terrain.jfr.RasterEvent;
 import com.gaia3d.terrain.structure.GeographicExtension;
 import com.gaia3d.terrain.structure.TerrainTriangle;
 import com.gaia3d.terrain.tile.geotiff.GaiaGeoTiffManager;
 import com.gaia3d.terrain.types.PriorityType;
 import com.gaia3d.terrain.util.GaiaGeoTiffUtils;
 import com.gaia3d.terrain.util.TileWgs84Utils;
+import com.gaia3d.terrain.util.TilingMetrics;
 import com.gaia3d.util.FileUtils;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -50,14 +52,20 @@ public class TerrainElevationDataManager {
     private TerrainElevationDataQuadTree rootTerrainElevationDataQuadTree = null;
     private GaiaGeoTiffManager myGaiaGeoTiffManager = null;
     private boolean[] intersects = {false};
+    // true if no elevation data intersected the last point of getElevation()
+    private boolean lastElevationNoData = false;
     private List<String> geoTiffFileNames = new ArrayList<>();
+    // the extents of the loaded geoTiff files, kept after the coverages are deleted
+    private List<GeographicExtension> sourceGeographicExtensions = new ArrayList<>();
 
     public void makeTerrainQuadTree(int depth) throws FactoryException, TransformException, IOException {
         List<File> standardizedGeoTiffFiles = tileWgs84Manager.getStandardizedGeoTiffFiles();
 
         // load all geoTiffFiles & make a quadTree
+        long startNanos = System.nanoTime();
         loadAllGeoTiff(terrainElevationDataFolderPath, standardizedGeoTiffFiles);
         rootTerrainElevationDataQuadTree.makeQuadTree(quadtreeMaxDepth);
+        TilingMetrics.getInstance().addPhaseTime(TilingMetrics.Phase.QUADTREE, depth, startNanos);
     }
 
     public GaiaGeoTiffManager getGaiaGeoTiffManager() {
@@ -75,11 +83,15 @@ public class TerrainElevationDataManager {
             int tileRasterHeight = tileWgs84Manager.getRasterTileSize();
             tileWgs84Raster.makeElevations(this, tileRasterWidth, tileRasterHeight);
             mapIndicesTileRaster.put(tileIndices.getString(), tileWgs84Raster);
+            TilingMetrics.getInstance().increment(TilingMetrics.Counter.RASTER_CACHE_MISSES, tileIndices.getL());
         }
         return tileWgs84Raster;
     }
 
     public void makeAllTileWgs84Raster(TileRange tileRange, TileWgs84Manager tileWgs84Manager) {
+        long startNanos = System.nanoTime();
+        RasterEvent rasterEvent = new RasterEvent();
+        rasterEvent.begin();
         List<TileIndices> tileIndicesList = tileRange.getTileIndices(null);
 
         // 1rst, delete from the mapIndicesTileRaster the tiles that are not in the tileIndicesList
@@ -122,6 +134,7 @@ public class TerrainElevationDataManager {
             this.rootTerrainElevationDataQuadTree.deleteCoverageIfNoIntersectsGeoExtension(geoExtensionTotal);
         }
 
+        int createdRasterTilesCount = 0;
         for (TileIndices tileIndices : tileIndicesList) {
             TileWgs84Raster tileWgs84Raster = mapIndicesTileRaster.get(tileIndices.getString());
             if (tileWgs84Raster == null) {
@@ -130,8 +143,27 @@ public class TerrainElevationDataManager {
                 int tileRasterHeight = tileWgs84Manager.getRasterTileSize();
                 tileWgs84Raster.makeElevations(this, tileRasterWidth, tileRasterHeight);
                 mapIndicesTileRaster.put(tileIndices.getString(), tileWgs84Raster);
+                createdRasterTilesCount++;
             }
         }
+
+        TilingMetrics tilingMetrics = TilingMetrics.getInstance();
+        int depth = tileRange.getTileDepth();
+        tilingMetrics.add(TilingMetrics.Counter.RASTER_CACHE_HITS, depth, reusedRasterTilesCount);
+        tilingMetrics.add(TilingMetrics.Counter.RASTER_CACHE_MISSES, depth, createdRasterTilesCount);
+        tilingMetrics.addPhaseTime(TilingMetrics.Phase.RASTER, depth, startNanos);
+
+        rasterEvent.end();
+        if (rasterEvent.shouldCommit()) {
+            rasterEvent.setDepth(depth);
+            rasterEvent.setMinTileX(tileRange.getMinTileX());
+            rasterEvent.setMaxTileX(tileRange.getMaxTileX());
+            rasterEvent.setMinTileY(tileRange.getMinTileY());
+            rasterEvent.setMaxTileY(tileRange.getMaxTileY());
+            rasterEvent.setCreatedRasters(createdRasterTilesCount);
+            rasterEvent.setReusedRasters(reusedRasterTilesCount);
+            rasterEvent.commit();
+        }
     }
 
     public void deleteTileRaster() {
@@ -181,6 +213,7 @@ public class TerrainElevationDataManager {
         rootTerrainElevationDataQuadTree = null;
 
         terrainElevationDataArray.clear();
+        sourceGeographicExtensions.clear();
     }
 
     public double getElevationBilinearRasterTile(TileIndices tileIndices, TileWgs84Manager tileWgs84Manager, double lonDeg, double latDeg) {
@@ -207,6 +240,7 @@ public class TerrainElevationDataManager {
 
     public double getElevation(double lonDeg, double latDeg, List<TerrainElevationData> terrainElevDataArray) {
         double resultElevation = 0.0;
+        lastElevationNoData = true;
 
         if (rootTerrainElevationDataQuadTree == null) {
             return resultElevation;
@@ -222,6 +256,7 @@ public class TerrainElevationDataManager {
             if (!intersects[0]) {
                 continue;
             }
+            lastElevationNoData = false;
 
             /* check if the priority is resolution */
             if (priorityType.equals(PriorityType.RESOLUTION)) {
@@ -293,6 +328,9 @@ public class TerrainElevationDataManager {
 
             GaiaGeoTiffUtils.getGeographicExtension(gridCoverage2D, gf, targetToOutput, terrainElevationData.getGeographicExtension());
             terrainElevationData.setPixelSizeMeters(GaiaGeoTiffUtils.getPixelSizeMeters(gridCoverage2D));
+            GeographicExtension sourceGeographicExtension = new GeographicExtension();
+            sourceGeographicExtension.copyFrom(terrainElevationData.getGeographicExtension());
+            sourceGeographicExtensions.add(sourceGeographicExtension);
 
             rootTerrainElevationDataQuadTree.addTerrainElevationData(terrainElevationData);
             //gridCoverage2D.dispose(true);
@@ -12,6 +12,11 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 @Getter
@@ -32,21 +37,34 @@ public class TerrainLayer {
     private String[] tiles = null;
     private String projection = null;
     private double[] bounds = null;
+    private Integer metadataAvailability = null; // with the metadata extension, the deeper tiles are listed in the tiles metadata
 
     public TerrainLayer() {
         this.setDefault();
     }
 
-    public HashMap<Integer, TileRange> getTilesRangeMap() {
-        HashMap<Integer, TileRange> tilesRangeMap = new HashMap<>();
+    /**
+     * Returns the available tile ranges by depth, a depth can have several rectangles.
+     */
+    public TreeMap<Integer, List<TileRange>> getTilesRangeMap() {
+        TreeMap<Integer, List<TileRange>> tilesRangeMap = new TreeMap<>();
 
         for (TileRange tilesRange : this.available) {
-            tilesRangeMap.put(tilesRange.getTileDepth(), tilesRange);
+            tilesRangeMap.computeIfAbsent(tilesRange.getTileDepth(), k -> new ArrayList<>()).add(tilesRange);
         }
 
         return tilesRangeMap;
     }
 
+    /**
+     * Adds the tiles of the coverage as rectangles, for all its depths.
+     */
+    public void addAvailable(TileCoverage tileCoverage) {
+        for (Integer tileDepth : tileCoverage.getDepths()) {
+            this.available.addAll(tileCoverage.getRectangles(tileDepth));
+        }
+    }
+
     public void setDefault() {
         this.tilejson = "2.1.0";
         this.name = "insert name here";
@@ -75,7 +93,7 @@ public class TerrainLayer {
         this.extensions.add(extension);
     }
 
-    public boolean isInteger(String s) {
+    public static boolean isInteger(String s) {
         try {
             Integer.parseInt(s);
             return true;
@@ -91,52 +109,17 @@ public class TerrainLayer {
             return;
         }
 
-        Set<Integer> depthZ = new LinkedHashSet<>();
-        File[] depthFiles = inputDirectory.listFiles();
-        Arrays.sort(depthFiles);
-        for (File depthFile : depthFiles) {
-            if (depthFile.isDirectory()) {
-                if (!isInteger(depthFile.getName())) {
-                    continue;
-                }
-                Set<Integer> tileX = new LinkedHashSet<>();
-                Set<Integer> tileY = new LinkedHashSet<>();
-                int tileDepth = Integer.parseInt(depthFile.getName());
-
-                log.info("[Generate][layer.json] Start generating layer.json. tileDepth: {}", tileDepth);
-                depthZ.add(tileDepth);
-                File[] tileXFiles = depthFile.listFiles();
-                for (File tileXFile : tileXFiles) {
-                    if (tileXFile.isDirectory()) {
-                        if (!isInteger(tileXFile.getName())) {
-                            continue;
-                        }
-
-                        tileX.add(Integer.parseInt(tileXFile.getName()));
-                        File[] tileYFiles = tileXFile.listFiles();
-                        for (File tileYFile : tileYFiles) {
-                            if (tileYFile.isFile()) {
-                                String tileYFileName = tileYFile.getName().split("\\.")[0];
-                                if (!isInteger(tileYFileName)) {
-                                    continue;
-                                }
-                                tileY.add(Integer.parseInt(tileYFileName));
-                            }
-                        }
-                    }
-                }
-                TileRange tilesRange = new TileRange();
-                tilesRange.setTileDepth(tileDepth);
-                tilesRange.setMinTileX(Collections.min(tileX));
-                tilesRange.setMaxTileX(Collections.max(tileX));
-                tilesRange.setMinTileY(Collections.min(tileY));
-                tilesRange.setMaxTileY(Collections.max(tileY));
-                available.add(tilesRange);
-            }
-        }
+        TileCoverage tileCoverage = scanTileCoverage(inputDirectory.toPath());
+        List<Integer> depthZ = new ArrayList<>(tileCoverage.getDepths());
+        depthZ.sort(Integer::compareTo);
+        addAvailable(tileCoverage);
         log.info("Available tiles: {}", available);
         log.info("DepthZ: {}", depthZ);
         available.sort(Comparator.comparingInt(TileRange::getTileDepth));
+        if (available.isEmpty()) {
+            log.error("[ERROR] No tiles found in the input directory : {}", inputPath);
+            return;
+        }
 
         // calc bounds
         double minLon = -180.0;
@@ -144,12 +127,17 @@ public class TerrainLayer {
         double minLat = -90.0;
         double maxLat = 90.0;
 
-        TileRange lastTilesRange = available.get(available.size() - 1);
-        int lastTileDepth = lastTilesRange.getTileDepth();
-        int lastMinTileX = lastTilesRange.getMinTileX();
-        int lastMaxTileX = lastTilesRange.getMaxTileX();
-        int lastMinTileY = lastTilesRange.getMinTileY();
-        int lastMaxTileY = lastTilesRange.getMaxTileY();
+        int lastTileDepth = available.get(available.size() - 1).getTileDepth();
+        int lastMinTileX = Integer.MAX_VALUE;
+        int lastMaxTileX = Integer.MIN_VALUE;
+        int lastMinTileY = Integer.MAX_VALUE;
+        int lastMaxTileY = Integer.MIN_VALUE;
+        for (TileRange lastTilesRange : getTilesRangeMap().get(lastTileDepth)) {
+            lastMinTileX = Math.min(lastMinTileX, lastTilesRange.getMinTileX());
+            lastMaxTileX = Math.max(lastMaxTileX, lastTilesRange.getMaxTileX());
+            lastMinTileY = Math.min(lastMinTileY, lastTilesRange.getMinTileY());
+            lastMaxTileY = Math.max(lastMaxTileY, lastTilesRange.getMaxTileY());
+        }
 
         double tileWidth = 360.0 / Math.pow(2, lastTileDepth + 1);
         double tileHeight = 180.0 / Math.pow(2, lastTileDepth);
@@ -174,6 +162,46 @@ public class TerrainLayer {
         this.bounds[3] = maxLat;
     }
 
+    /**
+     * Scans the .terrain files of a tileset folder {depth}/{x}/{y}.terrain.
+     * The tiles are scanned in parallel by X folders, and stored as exact rectangles instead of a bounding range.
+     */
+    public static TileCoverage scanTileCoverage(Path tileSetDirectory) {
+        TileCoverage tileCoverage = new TileCoverage();
+        for (Path depthPath : listIntegerDirectories(tileSetDirectory)) {
+            int tileDepth = Integer.parseInt(depthPath.getFileName().toString());
+            listIntegerDirectories(depthPath).parallelStream().forEach(tileXPath -> {
+                int tileX = Integer.parseInt(tileXPath.getFileName().toString());
+                try (DirectoryStream<Path> tileYPaths = Files.newDirectoryStream(tileXPath, "*.terrain")) {
+                    for (Path tileYPath : tileYPaths) {
+                        String tileYFileName = tileYPath.getFileName().toString().split("\\.")[0];
+                        if (isInteger(tileYFileName)) {
+                            tileCoverage.add(tileDepth, tileX, Integer.parseInt(tileYFileName));
+                        }
+                    }
+                } catch (IOException e) {
+                    log.error("[ERROR] Failed to list the tiles : {}", tileXPath);
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("[Generate][layer.json] tileDepth: {}, tiles: {}, rectangles: {}", tileDepth, tileCoverage.getTileCount(tileDepth), tileCoverage.getRectangles(tileDepth).size());
+        }
+        return tileCoverage;
+    }
+
+    private static List<Path> listIntegerDirectories(Path directory) {
+        List<Path> directories = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, path -> Files.isDirectory(path) && isInteger(path.getFileName().toString()))) {
+            for (Path path : paths) {
+                directories.add(path);
+            }
+        } catch (IOException e) {
+            log.error("[ERROR] Failed to list the directory : {}", directory);
+            throw new UncheckedIOException(e);
+        }
+        return directories;
+    }
+
     public void saveJsonFile(String outputDirectory, String layerJsonName) {
         String fullFileName = outputDirectory + File.separator + layerJsonName;
         FileUtils.createAllFoldersIfNoExist(outputDirectory);
@@ -202,26 +230,35 @@ public class TerrainLayer {
         }
 
         ArrayNode objectNodeAvailable = objectMapper.createArrayNode();
-        HashMap<Integer, TileRange> tilesRangeMap = this.getTilesRangeMap();
+        TreeMap<Integer, List<TileRange>> tilesRangeMap = this.getTilesRangeMap();
         for (Integer tileDepth : tilesRangeMap.keySet()) {
-            TileRange tilesRange = tilesRangeMap.get(tileDepth);
+            if (this.metadataAvailability != null && tileDepth > this.metadataAvailability) {
+                // the tiles at the depths multiple of metadataAvailability list the deeper tiles
+                continue;
+            }
             ArrayNode objectNodeTileDepth_array = objectMapper.createArrayNode();
-            ObjectNode objectNodeTileDepth = objectMapper.createObjectNode();
-            objectNodeTileDepth.put("startX", tilesRange.getMinTileX());
-            objectNodeTileDepth.put("endX", tilesRange.getMaxTileX());
-            objectNodeTileDepth.put("startY", tilesRange.getMinTileY());
-            objectNodeTileDepth.put("endY", tilesRange.getMaxTileY());
-
-            objectNodeTileDepth_array.add(objectNodeTileDepth);
+            for (TileRange tilesRange : tilesRangeMap.get(tileDepth)) {
+                ObjectNode objectNodeTileDepth = objectMapper.createObjectNode();
+                objectNodeTileDepth.put("startX", tilesRange.getMinTileX());
+                objectNodeTileDepth.put("endX", tilesRange.getMaxTileX());
+                objectNodeTileDepth.put("startY", tilesRange.getMinTileY());
+                objectNodeTileDepth.put("endY", tilesRange.getMaxTileY());
+                objectNodeTileDepth_array.add(objectNodeTileDepth);
+            }
             objectNodeAvailable.add(objectNodeTileDepth_array);
         }
 
         objectNodeRoot.set("available", objectNodeAvailable);
+        if (this.metadataAvailability != null) {
+            objectNodeRoot.put("metadataAvailability", this.metadataAvailability);
+        }
 
-        // Save the json index file
+        // Save the json index file in a temp file first, a reader never sees a partial layer.json
         try {
             JsonNode jsonNode = new ObjectMapper().readTree(objectNodeRoot.toString());
-            objectMapper.writeValue(new File(fullFileName), jsonNode);
+            File tempFile = new File(fullFileName + ".tmp");
+            objectMapper.writeValue(tempFile, jsonNode);
+            Files.move(tempFile.toPath(), Path.of(fullFileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             log.error("Error:", e);
         }
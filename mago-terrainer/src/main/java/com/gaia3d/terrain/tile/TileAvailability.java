@@ -0,0 +1,97 @@
+package com.gaia3d.terrain.tile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Available tiles of the tileset, as a list of tile ranges by depth (the tiles over the footprints of the source files,
+ * see TileWgs84Manager).
+ * Used to write the child availability of the metadata extension : a tile at a depth multiple of metadataAvailability
+ * carries the available tiles of its subtree for the next metadataAvailability depths.
+ */
+public class TileAvailability {
+    private final Map<Integer, List<TileRange>> rangesByDepth = new HashMap<>();
+
+    public void addRange(TileRange tileRange) {
+        rangesByDepth.computeIfAbsent(tileRange.getTileDepth(), k -> new ArrayList<>()).add(tileRange);
+    }
+
+    public List<TileRange> getRanges(int depth) {
+        List<TileRange> ranges = rangesByDepth.get(depth);
+        return ranges != null ? ranges : new ArrayList<>();
+    }
+
+    public boolean isAvailable(TileIndices tileIndices) {
+        for (TileRange tileRange : getRanges(tileIndices.getL())) {
+            if (tileRange.intersects(tileIndices)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the available tiles of the subtree of the tile, for the depths L + 1 ... L + levels.
+     * The list has one list of ranges per depth, and stops at the last depth with available tiles.
+     */
+    public List<List<TileRange>> getSubtreeAvailability(TileIndices tileIndices, int levels) {
+        List<List<TileRange>> subtreeAvailability = new ArrayList<>();
+        int depth = tileIndices.getL();
+        int lastAvailableLevel = 0;
+        for (int level = 1; level <= levels; level++) {
+            int childDepth = depth + level;
+            int minX = tileIndices.getX() << level;
+            int maxX = ((tileIndices.getX() + 1) << level) - 1;
+            int minY = tileIndices.getY() << level;
+            int maxY = ((tileIndices.getY() + 1) << level) - 1;
+
+            List<TileRange> childRanges = new ArrayList<>();
+            for (TileRange tileRange : getRanges(childDepth)) {
+                int clippedMinX = Math.max(minX, tileRange.getMinTileX());
+                int clippedMaxX = Math.min(maxX, tileRange.getMaxTileX());
+                int clippedMinY = Math.max(minY, tileRange.getMinTileY());
+                int clippedMaxY = Math.min(maxY, tileRange.getMaxTileY());
+                if (clippedMinX <= clippedMaxX && clippedMinY <= clippedMaxY) {
+                    childRanges.add(TileRange.of(childDepth, clippedMinX, clippedMaxX, clippedMinY, clippedMaxY));
+                }
+            }
+            if (!childRanges.isEmpty()) {
+                lastAvailableLevel = level;
+            }
+            subtreeAvailability.add(childRanges);
+        }
+        return subtreeAvailability.subList(0, lastAvailableLevel);
+    }
+
+    /**
+     * Makes the JSON of the metadata extension : {"available":[[{"startX":..,"startY":..,"endX":..,"endY":..}],...]}
+     */
+    public static byte[] toMetadataJson(List<List<TileRange>> subtreeAvailability) {
+        StringBuilder json = new StringBuilder(64 + subtreeAvailability.size() * 64);
+        json.append("{\"available\":[");
+        for (int level = 0; level < subtreeAvailability.size(); level++) {
+            if (level > 0) {
+                json.append(',');
+            }
+            json.append('[');
+            List<TileRange> ranges = subtreeAvailability.get(level);
+            for (int i = 0; i < ranges.size(); i++) {
+                TileRange range = ranges.get(i);
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"startX\":").append(range.getMinTileX())
+                        .append(",\"startY\":").append(range.getMinTileY())
+                        .append(",\"endX\":").append(range.getMaxTileX())
+                        .append(",\"endY\":").append(range.getMaxTileY())
+                        .append('}');
+            }
+            json.append(']');
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
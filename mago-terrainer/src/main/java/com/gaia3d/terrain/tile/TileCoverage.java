@@ -0,0 +1,116 @@
+package com.gaia3d.terrain.tile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Set of tiles by depth, stored as run-length rows : for each row (Y), the sorted runs of consecutive X.
+ * The memory depends on the number of runs, not on the number of tiles nor on the size of the depth.
+ * getRectangles() merges the same runs of consecutive rows into rectangles, for the "available" of layer.json.
+ * add() is thread safe.
+ */
+public class TileCoverage {
+    // depth -> row (Y) -> runs (start X -> end X)
+    private final Map<Integer, TreeMap<Integer, TreeMap<Integer, Integer>>> rowsByDepth = new HashMap<>();
+
+    public synchronized void add(int depth, int x, int y) {
+        TreeMap<Integer, Integer> runs = rowsByDepth.computeIfAbsent(depth, k -> new TreeMap<>()).computeIfAbsent(y, k -> new TreeMap<>());
+        addRun(runs, x, x);
+    }
+
+    public synchronized void addRange(TileRange tileRange) {
+        TreeMap<Integer, TreeMap<Integer, Integer>> rows = rowsByDepth.computeIfAbsent(tileRange.getTileDepth(), k -> new TreeMap<>());
+        for (int y = tileRange.getMinTileY(); y <= tileRange.getMaxTileY(); y++) {
+            addRun(rows.computeIfAbsent(y, k -> new TreeMap<>()), tileRange.getMinTileX(), tileRange.getMaxTileX());
+        }
+    }
+
+    public synchronized boolean contains(int depth, int x, int y) {
+        TreeMap<Integer, TreeMap<Integer, Integer>> rows = rowsByDepth.get(depth);
+        if (rows == null) {
+            return false;
+        }
+        TreeMap<Integer, Integer> runs = rows.get(y);
+        if (runs == null) {
+            return false;
+        }
+        Map.Entry<Integer, Integer> run = runs.floorEntry(x);
+        return run != null && run.getValue() >= x;
+    }
+
+    public synchronized List<Integer> getDepths() {
+        List<Integer> depths = new ArrayList<>(rowsByDepth.keySet());
+        depths.sort(Integer::compareTo);
+        return depths;
+    }
+
+    public synchronized long getTileCount(int depth) {
+        long count = 0;
+        TreeMap<Integer, TreeMap<Integer, Integer>> rows = rowsByDepth.get(depth);
+        if (rows != null) {
+            for (TreeMap<Integer, Integer> runs : rows.values()) {
+                for (Map.Entry<Integer, Integer> run : runs.entrySet()) {
+                    count += run.getValue() - run.getKey() + 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the tiles of the depth as rectangles.
+     * A rectangle grows down while the next row has exactly the same run, so a rectangular area is one rectangle.
+     */
+    public synchronized List<TileRange> getRectangles(int depth) {
+        List<TileRange> rectangles = new ArrayList<>();
+        TreeMap<Integer, TreeMap<Integer, Integer>> rows = rowsByDepth.get(depth);
+        if (rows == null) {
+            return rectangles;
+        }
+        // open rectangles of the previous row, by start X
+        Map<Integer, TileRange> openRectangles = new HashMap<>();
+        int previousY = Integer.MIN_VALUE;
+        for (Map.Entry<Integer, TreeMap<Integer, Integer>> row : rows.entrySet()) {
+            int y = row.getKey();
+            Map<Integer, TileRange> nextOpenRectangles = new HashMap<>();
+            for (Map.Entry<Integer, Integer> run : row.getValue().entrySet()) {
+                int startX = run.getKey();
+                int endX = run.getValue();
+                TileRange rectangle = (y == previousY + 1) ? openRectangles.remove(startX) : null;
+                if (rectangle != null && rectangle.getMaxTileX() == endX) {
+                    rectangle.setMaxTileY(y);
+                } else {
+                    // no run above or not the same run : the rectangle above is closed and a new one starts
+                    rectangle = TileRange.of(depth, startX, endX, y, y);
+                    rectangles.add(rectangle);
+                }
+                nextOpenRectangles.put(startX, rectangle);
+            }
+            openRectangles = nextOpenRectangles;
+            previousY = y;
+        }
+        return rectangles;
+    }
+
+    private void addRun(TreeMap<Integer, Integer> runs, int startX, int endX) {
+        // merge with the overlapping or adjacent runs
+        Map.Entry<Integer, Integer> previous = runs.floorEntry(startX);
+        if (previous != null && previous.getValue() >= startX - 1) {
+            if (previous.getValue() >= endX) {
+                return;
+            }
+            startX = previous.getKey();
+            runs.remove(previous.getKey());
+        }
+        Map.Entry<Integer, Integer> next = runs.ceilingEntry(startX);
+        while (next != null && next.getKey() <= endX + 1) {
+            endX = Math.max(endX, next.getValue());
+            runs.remove(next.getKey());
+            next = runs.ceilingEntry(startX);
+        }
+        runs.put(startX, endX);
+    }
+}
@@ -3,31 +3,34 @@ package com.gaia3d.terrain.tile;
 
 import com.gaia3d.basic.geometry.GaiaBoundingBox;
 import com.gaia3d.command.GlobalOptions;
-import com.gaia3d.io.LittleEndianDataOutputStream;
 import com.gaia3d.quantized.mesh.QuantizedMesh;
 import com.gaia3d.quantized.mesh.QuantizedMeshManager;
 import com.gaia3d.terrain.structure.*;
 import com.gaia3d.terrain.types.TerrainObjectStatus;
+import com.gaia3d.terrain.types.TopologyValidationLevel;
+import com.gaia3d.terrain.util.MemoryGovernor;
 import com.gaia3d.terrain.util.MemoryMonitor;
+import com.gaia3d.terrain.util.TerrainLatticeUtils;
 import com.gaia3d.terrain.util.TerrainMeshUtils;
 import com.gaia3d.terrain.util.TileWgs84Utils;
+import com.gaia3d.terrain.util.TilingAutoTuner;
+import com.gaia3d.terrain.util.TilingMetrics;
 import com.gaia3d.util.CelestialBody;
-import com.gaia3d.util.FileUtils;
 import com.gaia3d.util.GeometryUtils;
 import com.gaia3d.util.GlobeUtils;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.joml.Vector2i;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
 import org.geotools.api.referencing.operation.TransformException;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -35,8 +38,6 @@ import static java.lang.Math.abs;
 
 @Slf4j
 public class TileMatrix {
-    private static final double VERTEX_COINCIDENT_ERROR = 0.0000000000001; // 1e-13
-
     private static final GlobalOptions globalOptions = GlobalOptions.getInstance();
     private final TileRange tilesRange;
     private final List<List<TileWgs84>> tilesMatrixRowCol = new ArrayList<>();
@@ -46,6 +47,23 @@ public class TileMatrix {
     List<TerrainVertex> listVertices = new ArrayList<>();
     List<TerrainHalfEdge> listHalfEdges = new ArrayList<>();
 
+    // vertices consolidated by the last twins setting, and O(1) counters kept during the merges of this matrix
+    private final List<TerrainVertex> mergeTouchedVertices = new ArrayList<>();
+    private int mergedTwinsCount = 0;
+    private int unmatchedHalfEdgesCount = 0;
+    private int validatedVerticesCount = 0;
+
+    // the triangles of the block before and after the refinement
+    @Getter
+    private int inputTrianglesCount = 0;
+    @Getter
+    private int outputTrianglesCount = 0;
+    @Getter
+    private int outputVerticesCount = 0;
+    @Getter
+    private int refineIterations = 0;
+    private long meshStartNanos = 0; // the generation time of the tiles of the quality report
+
     public TileMatrix(TileRange tilesRange, TileWgs84Manager manager) {
         this.tilesRange = tilesRange;
         this.manager = manager;
@@ -60,30 +78,37 @@ public class TileMatrix {
 
         listVertices.clear();
         listHalfEdges.clear();
+        mergeTouchedVertices.clear();
     }
 
-    private boolean setTwinsBetweenHalfEdgesInverseOrder(List<TerrainHalfEdge> listHEdges_A, List<TerrainHalfEdge> listHEdges_B) {
-        if (listHEdges_A.size() != listHEdges_B.size()) {
-            log.warn("Tile boundary edge count mismatch: {} edges vs {} edges. " +
-                     "Will attempt to match edges by position. This may occur when degenerate triangles " +
-                     "are removed or deadlock resolution splits triangles as border triangles.",
-                     listHEdges_A.size(), listHEdges_B.size());
-            // Continue and try to match what we can by position
+    /**
+     * Sets twins between the boundary halfEdges of two adjacent meshes.
+     * The halfEdges are matched exactly by the lattice keys of their vertices : the twin of (start, end) is (end, start).
+     *
+     * @return the number of halfEdges of listHEdges_A that has no twin in listHEdges_B
+     */
+    private int setTwinsBetweenHalfEdgesByLattice(List<TerrainHalfEdge> listHEdges_A, List<TerrainHalfEdge> listHEdges_B) {
+        // map the halfEdges of B by the lattice key of its startVertex
+        Map<TerrainLatticeUtils.LatticeKey, TerrainHalfEdge> mapStartKeyHalfEdgeB = new HashMap<>();
+        for (TerrainHalfEdge halfEdge2 : listHEdges_B) {
+            if (halfEdge2.getTwin() != null) {
+                continue;
+            }
+            mapStartKeyHalfEdgeB.put(TerrainLatticeUtils.getLatticeKey(halfEdge2.getStartVertex()), halfEdge2);
         }
 
-        int countA = listHEdges_A.size();
-        int countB = listHEdges_B.size();
-        int minCount = Math.min(countA, countB); // Only process edges that exist in both lists
-
-        for (int i = 0; i < minCount; i++) {
-            TerrainHalfEdge halfEdge = listHEdges_A.get(i);
+        mergeTouchedVertices.clear();
+        int unmatchedCount = 0;
+        for (TerrainHalfEdge halfEdge : listHEdges_A) {
             if (halfEdge.getTwin() != null) {
                 continue;
             }
 
-            int idxInverse = minCount - i - 1;
-            TerrainHalfEdge halfEdge2 = listHEdges_B.get(idxInverse);
-            if (halfEdge2.getTwin() != null) {
+            TerrainLatticeUtils.LatticeKey startKey = TerrainLatticeUtils.getLatticeKey(halfEdge.getStartVertex());
+            TerrainLatticeUtils.LatticeKey endKey = TerrainLatticeUtils.getLatticeKey(halfEdge.getEndVertex());
+            TerrainHalfEdge halfEdge2 = mapStartKeyHalfEdgeB.get(endKey);
+            if (halfEdge2 == null || halfEdge2.getTwin() != null || !startKey.equals(TerrainLatticeUtils.getLatticeKey(halfEdge2.getEndVertex()))) {
+                unmatchedCount++;
                 continue;
             }
 
@@ -110,6 +135,9 @@ public class TileMatrix {
 
             // finally set twins
             halfEdge.setTwin(halfEdge2);
+            mergedTwinsCount++;
+            mergeTouchedVertices.add(startVertex);
+            mergeTouchedVertices.add(endVertex);
 
             // now, set as deleted the startVertex2 & endVertex2
             // Before marking vertices as deleted, ensure no active vertex
@@ -203,10 +231,75 @@ public class TileMatrix {
             }
         }
 
-        return true;
+        if (unmatchedCount > 0) {
+            log.warn("Tile boundary halfEdges without lattice match: {} of {} (other side : {}). " +
+                     "This may occur when a border triangle was split only in one of the tiles.",
+                     unmatchedCount, listHEdges_A.size(), listHEdges_B.size());
+        }
+        unmatchedHalfEdgesCount += unmatchedCount;
+        return unmatchedCount;
+    }
+
+    private TopologyValidationLevel getTopologyValidationLevel() {
+        TopologyValidationLevel level = globalOptions.getTopologyValidationLevel();
+        return level != null ? level : TopologyValidationLevel.BOUNDARY;
+    }
+
+    /**
+     * Validates the topology after a merge, according to the TopologyValidationLevel :
+     * OFF does nothing, BOUNDARY checks only the vertices consolidated by the twins setting,
+     * SAMPLED checks one of every SAMPLE_STRIDE vertices and FULL checks all vertices of the mesh.
+     * Unmatched boundary halfEdges upgrade BOUNDARY to SAMPLED, because the damage is not limited to the consolidated vertices.
+     */
+    private void validateMergedMesh(TerrainMesh mesh, int unmatchedCount, String mergeName) {
+        TopologyValidationLevel level = getTopologyValidationLevel();
+        int[] healthMetrics;
+        switch (level) {
+            case OFF -> {
+                return;
+            }
+            case BOUNDARY -> {
+                if (unmatchedCount == 0) {
+                    healthMetrics = checkTopologyHealth(mergeTouchedVertices, 1);
+                } else {
+                    healthMetrics = checkTopologyHealth(mesh.vertices, TopologyValidationLevel.SAMPLE_STRIDE);
+                }
+            }
+            case SAMPLED -> healthMetrics = checkTopologyHealth(mesh.vertices, TopologyValidationLevel.SAMPLE_STRIDE);
+            default -> healthMetrics = checkTopologyHealth(mesh.vertices, 1);
+        }
+
+        int totalVertices = healthMetrics[0];
+        int corruptedVertices = healthMetrics[1];
+        int maxEdgeCount = healthMetrics[2];
+
+        if (corruptedVertices > 0) {
+            double corruptionRate = (double) corruptedVertices / totalVertices * 100.0;
+
+            // Check for SEVERE corruption before attempting repair
+            if (corruptionRate > 20.0 || maxEdgeCount > 50) {
+                log.error("[TileConsolidation] SEVERE corruption detected: {}% vertices corrupted " +
+                        "({}/{}), max edges={}. Consolidation quality too poor.",
+                        String.format("%.1f", corruptionRate), corruptedVertices, totalVertices, maxEdgeCount);
+                // Continue anyway but log severe warning - mesh may still be usable
+            }
+
+            log.warn("[TileConsolidation] {}: Detected {} corrupted vertices ({}%). Attempting repair...",
+                    mergeName, corruptedVertices, String.format("%.1f", corruptionRate));
+            int repairedCount = mesh.repairMeshTopology();
+            if (repairedCount < corruptedVertices) {
+                log.warn("[TileConsolidation] {}: Only repaired {}/{} vertices.",
+                        mergeName, repairedCount, corruptedVertices);
+            } else {
+                log.info("[TileConsolidation] {}: Successfully repaired all {} corrupted vertices.",
+                        mergeName, repairedCount);
+            }
+        }
     }
 
     public void makeMatrixMesh(boolean isFirstGeneration) throws TransformException, IOException {
+        long mergeStartNanos = System.nanoTime();
+        this.meshStartNanos = mergeStartNanos;
         TileIndices tileIndices = new TileIndices();
 
         boolean originIsLeftUp = this.manager.isOriginIsLeftUp();
@@ -234,6 +327,10 @@ public class TileMatrix {
                     tile = this.manager.loadOrCreateTileWgs84(tileIndices);
                 } else {
                     tile = this.manager.loadTileWgs84(tileIndices);
+                    if (tile == null && this.manager.isChildOfFlatTile(tileIndices)) {
+                        // flat tiles have no children temp files, so the child is created from the raster
+                        tile = this.manager.loadOrCreateTileWgs84(tileIndices);
+                    }
                 }
                 if (counter >= 100) {
                     counter = 0;
@@ -276,40 +373,13 @@ public class TileMatrix {
 
                         // the c_tile can be null
                         if (!rowMeshRightHalfEdges.isEmpty()) {
-                            this.setTwinsBetweenHalfEdgesInverseOrder(rowMeshRightHalfEdges, tileMeshLeftHalfEdges);
+                            int unmatchedCount = this.setTwinsBetweenHalfEdgesByLattice(rowMeshRightHalfEdges, tileMeshLeftHalfEdges);
 
                             // now, merge the left tile mesh to the result mesh.
                             rowMesh.removeDeletedObjects();
                             rowMesh.mergeMesh(tileMesh);
 
-                            // POST-MERGE VALIDATION: Check and repair topology after horizontal consolidation
-                            int[] healthMetrics = checkTopologyHealth(rowMesh);
-                            int totalVertices = healthMetrics[0];
-                            int corruptedVertices = healthMetrics[1];
-                            int maxEdgeCount = healthMetrics[2];
-
-                            if (corruptedVertices > 0) {
-                                double corruptionRate = (double) corruptedVertices / totalVertices * 100.0;
-
-                                // Check for SEVERE corruption before attempting repair
-                                if (corruptionRate > 20.0 || maxEdgeCount > 50) {
-                                    log.error("[TileConsolidation] SEVERE corruption detected: {}% vertices corrupted " +
-                                            "({}/{}), max edges={}. Consolidation quality too poor.",
-                                            String.format("%.1f", corruptionRate), corruptedVertices, totalVertices, maxEdgeCount);
-                                    // Continue anyway but log severe warning - mesh may still be usable
-                                }
-
-                                log.warn("[TileConsolidation] Horizontal merge: Detected {} corrupted vertices ({:.1f}%). Attempting repair...",
-                                        corruptedVertices, String.format("%.1f", corruptionRate));
-                                int repairedCount = rowMesh.repairMeshTopology();
-                                if (repairedCount < corruptedVertices) {
-                                    log.warn("[TileConsolidation] Horizontal merge: Only repaired {}/{} vertices.",
-                                            repairedCount, corruptedVertices);
-                                } else {
-                                    log.info("[TileConsolidation] Horizontal merge: Successfully repaired all {} corrupted vertices.",
-                                            repairedCount);
-                                }
-                            }
+                            this.validateMergedMesh(rowMesh, unmatchedCount, "Horizontal merge");
                         }
                     }
                 }
@@ -345,39 +415,12 @@ public class TileMatrix {
                     // the c_tile can be null
                     if (!resultMeshDownHalfEdges.isEmpty()) {
                         // now, set twins of halfEdges
-                        this.setTwinsBetweenHalfEdgesInverseOrder(resultMeshDownHalfEdges, rowMeshUpHalfEdges);
+                        int unmatchedCount = this.setTwinsBetweenHalfEdgesByLattice(resultMeshDownHalfEdges, rowMeshUpHalfEdges);
                         // now, merge the row mesh to the result mesh.
                         resultMesh.removeDeletedObjects();
                         resultMesh.mergeMesh(rowMesh);
 
-                        // POST-MERGE VALIDATION: Check and repair topology after vertical consolidation
-                        int[] healthMetrics = checkTopologyHealth(resultMesh);
-                        int totalVertices = healthMetrics[0];
-                        int corruptedVertices = healthMetrics[1];
-                        int maxEdgeCount = healthMetrics[2];
-
-                        if (corruptedVertices > 0) {
-                            double corruptionRate = (double) corruptedVertices / totalVertices * 100.0;
-
-                            // Check for SEVERE corruption before attempting repair
-                            if (corruptionRate > 20.0 || maxEdgeCount > 50) {
-                                log.error("[TileConsolidation] SEVERE corruption detected: {}% vertices corrupted " +
-                                        "({}/{}), max edges={}. Consolidation quality too poor.",
-                                        String.format("%.1f", corruptionRate), corruptedVertices, totalVertices, maxEdgeCount);
-                                // Continue anyway but log severe warning - mesh may still be usable
-                            }
-
-                            log.warn("[TileConsolidation] Vertical merge (down): Detected {} corrupted vertices ({:.1f}%). Attempting repair...",
-                                    corruptedVertices, String.format("%.1f", corruptionRate));
-                            int repairedCount = resultMesh.repairMeshTopology();
-                            if (repairedCount < corruptedVertices) {
-                                log.warn("[TileConsolidation] Vertical merge (down): Only repaired {}/{} vertices.",
-                                        repairedCount, corruptedVertices);
-                            } else {
-                                log.info("[TileConsolidation] Vertical merge (down): Successfully repaired all {} corrupted vertices.",
-                                        repairedCount);
-                            }
-                        }
+                        this.validateMergedMesh(resultMesh, unmatchedCount, "Vertical merge (down)");
                     }
                 } else {
                     //  +------------+
@@ -397,48 +440,23 @@ public class TileMatrix {
                     // the c_tile can be null
                     if (!resultMeshUpHalfEdges.isEmpty()) {
                         // now, set twins of halfEdges
-                        this.setTwinsBetweenHalfEdgesInverseOrder(resultMeshUpHalfEdges, rowMeshDownHalfEdges);
+                        int unmatchedCount = this.setTwinsBetweenHalfEdgesByLattice(resultMeshUpHalfEdges, rowMeshDownHalfEdges);
                         // now, merge the row mesh to the result mesh.
                         resultMesh.removeDeletedObjects();
                         resultMesh.mergeMesh(rowMesh);
 
-                        // POST-MERGE VALIDATION: Check and repair topology after vertical consolidation
-                        int[] healthMetrics = checkTopologyHealth(resultMesh);
-                        int totalVertices = healthMetrics[0];
-                        int corruptedVertices = healthMetrics[1];
-                        int maxEdgeCount = healthMetrics[2];
-
-                        if (corruptedVertices > 0) {
-                            double corruptionRate = (double) corruptedVertices / totalVertices * 100.0;
-
-                            // Check for SEVERE corruption before attempting repair
-                            if (corruptionRate > 20.0 || maxEdgeCount > 50) {
-                                log.error("[TileConsolidation] SEVERE corruption detected: {}% vertices corrupted " +
-                                        "({}/{}), max edges={}. Consolidation quality too poor.",
-                                        String.format("%.1f", corruptionRate), corruptedVertices, totalVertices, maxEdgeCount);
-                                // Continue anyway but log severe warning - mesh may still be usable
-                            }
-
-                            log.warn("[TileConsolidation] Vertical merge (up): Detected {} corrupted vertices ({:.1f}%). Attempting repair...",
-                                    corruptedVertices, String.format("%.1f", corruptionRate));
-                            int repairedCount = resultMesh.repairMeshTopology();
-                            if (repairedCount < corruptedVertices) {
-                                log.warn("[TileConsolidation] Vertical merge (up): Only repaired {}/{} vertices.",
-                                        repairedCount, corruptedVertices);
-                            } else {
-                                log.info("[TileConsolidation] Vertical merge (up): Successfully repaired all {} corrupted vertices.",
-                                        repairedCount);
-                            }
-                        }
+                        this.validateMergedMesh(resultMesh, unmatchedCount, "Vertical merge (up)");
                     }
                 }
             }
         }
 
-        log.debug("End making TileMatrix");
+        log.debug("End making TileMatrix. twins merged : {}, unmatched boundary halfEdges : {}, validated vertices : {}",
+                mergedTwinsCount, unmatchedHalfEdgesCount, validatedVerticesCount);
 
         if (resultMesh != null) {
             resultMesh.setObjectsIdInList();
+            TilingMetrics.getInstance().addPhaseTime(TilingMetrics.Phase.MERGE, tilesRange.getTileDepth(), mergeStartNanos);
 
             this.recalculateElevation(resultMesh, tilesRange);
             this.refineMesh(resultMesh, tilesRange);
@@ -480,8 +498,23 @@ public class TileMatrix {
     public void saveQuantizedMeshes(List<TerrainMesh> separatedMeshes) throws IOException {
         boolean originIsLeftUp = this.manager.isOriginIsLeftUp();
         boolean calculateNormals = globalOptions.isCalculateNormalsExtension();
+        TileOutputWriter tileOutputWriter = this.manager.getTileOutputWriter();
+
+        // the quality report shares the meshing time of the block between its tiles.
+        // the halo tiles (around the tiles range) are rewritten by the neighbor blocks and reported by their own block only
+        boolean qualityReport = tileOutputWriter.getTileQualityReport() != null;
+        int blockTilesCount = 0;
+        if (qualityReport) {
+            for (TerrainMesh mesh : separatedMeshes) {
+                if (tilesRange.intersects(mesh.triangles.get(0).getOwnerTileIndices())) {
+                    blockTilesCount++;
+                }
+            }
+        }
+        long blockShareNanos = blockTilesCount == 0 ? 0 : (System.nanoTime() - this.meshStartNanos) / blockTilesCount;
 
         for (TerrainMesh mesh : separatedMeshes) {
+            long tileStartNanos = System.nanoTime();
             TerrainTriangle triangle = mesh.triangles.get(0); // take the first triangle
             TileIndices tileIndices = triangle.getOwnerTileIndices();
 
@@ -493,21 +526,29 @@ public class TileMatrix {
 
             QuantizedMeshManager quantizedMeshManager = new QuantizedMeshManager();
             QuantizedMesh quantizedMesh = quantizedMeshManager.getQuantizedMeshFromTile(tile, calculateNormals);
+            this.manager.setTileExtensions(quantizedMesh, tileIndices);
             String tileFullPath = this.manager.getQuantizedMeshTilePath(tileIndices);
-            String tileFolderPath = this.manager.getQuantizedMeshTileFolderPath(tileIndices);
-            FileUtils.createAllFoldersIfNoExist(tileFolderPath);
 
-            LittleEndianDataOutputStream dataOutputStream = new LittleEndianDataOutputStream(new BufferedOutputStream(new FileOutputStream(tileFullPath)));
+            // the halo tiles are owned (and rewritten) by the neighbor blocks
+            boolean ownedTile = tilesRange.intersects(tileIndices);
+            TileQualityReport.TileQuality tileQuality = null;
+            if (qualityReport && ownedTile) {
+                long generationNanos = blockShareNanos + System.nanoTime() - tileStartNanos;
+                TileWgs84Raster tileRaster = this.manager.getTerrainElevationDataManager().getTileWgs84Raster(tileIndices, this.manager);
+                tileQuality = TileQualityReport.measure(mesh, tileRaster);
+                tileQuality.setIterations(this.refineIterations);
+                tileQuality.setGenerationNanos(generationNanos);
+            }
 
-            // save the tile
-            quantizedMesh.saveDataOutputStream(dataOutputStream, calculateNormals);
-            dataOutputStream.close();
+            // save the tile (encoded and written by the writer threads)
+            tileOutputWriter.writeQuantizedMesh(quantizedMesh, calculateNormals, tileIndices, tileFullPath, ownedTile, tileQuality);
         }
     }
 
     public boolean saveSeparatedTiles(List<TerrainMesh> separatedMeshes) {
         int meshesCount = separatedMeshes.size();
         int counter = 0;
+        TileOutputWriter tileOutputWriter = this.manager.getTileOutputWriter();
         for (int i = 0; i < meshesCount; i++) {
             TerrainMesh mesh = separatedMeshes.get(i);
 
@@ -523,7 +564,7 @@ public class TileMatrix {
             }
 
             try {
-                mesh.saveFile(tileFullPath);
+                tileOutputWriter.writeTerrainMesh(mesh, tileFullPath);
             } catch (IOException e) {
                 log.error("Error:", e);
                 return false;
@@ -615,6 +656,7 @@ public class TileMatrix {
         double maxTriangleSizeForDepth = this.manager.getMaxTriangleSizeForTileDepth(triangle.getOwnerTileIndices().getL());
         if (triangleMaxLengthMeters > maxTriangleSizeForDepth) {
             log.debug("Filtered by Max Triangle Size : L : " + tileIndices.getL() + " # triangleMaxLengthMeters : " + triangleMaxLengthMeters + " # maxTriangleSizeForDepth : " + maxTriangleSizeForDepth);
+            triangle.setRefineError(Double.MAX_VALUE); // too big triangles are split first
             return true;
         }
 
@@ -627,6 +669,7 @@ public class TileMatrix {
             this.listVertices = triangle.getVertices(this.listVertices, this.listHalfEdges);
             for (TerrainVertex vertex : this.listVertices) {
                 if (vertex.getPosition().z > maxDiff) {
+                    triangle.setRefineError(vertex.getPosition().z / maxDiff);
                     return true;
                 }
             }
@@ -672,6 +715,7 @@ public class TileMatrix {
         if (distToPlane > maxDiff) {
             // is it Barycenter?
             log.debug("Filtered by Barycenter : L : " + tileIndices.getL() + " # col : " + colIdx + " # row : " + rowIdx + " # distToPlane : " + distToPlane + " # maxDiff : " + maxDiff);
+            triangle.setRefineError(distToPlane / maxDiff);
             return true;
         }
 
@@ -722,6 +766,10 @@ public class TileMatrix {
         int colAux = 0;
         int rowAux = 0;
 
+        // with a triangle budget, the whole raster is scanned to know the max error of the triangle
+        boolean measureMaxError = globalOptions.getTileMaxTriangles() > 0;
+        double maxDistToPlane = 0.0;
+
         boolean intersects = false;
         for (int col = startCol; col <= endCol; col++) {
             rowAux = 0;
@@ -783,13 +831,24 @@ public class TileMatrix {
                     //halfEdges.clear();
 //                    intersects = triangle.intersectsPointXY(posX, posY, halfEdges, this.listVertices, line2d);
 
+                    if (measureMaxError) {
+                        maxDistToPlane = Math.max(maxDistToPlane, distToPlane);
+                        rowAux++;
+                        continue;
+                    }
                     log.debug("Filtered by RasterTile : L : " + tileIndices.getL() + " # col : " + col + " / " + colsCount + " # row : " + row + " / " + rowsCount + " # cosAng : " + cosAng + " # distToPlane : " + distToPlane + " # maxDiff : " + maxDiff);
+                    triangle.setRefineError(distToPlane / maxDiff);
                     return true;
                 }
                 rowAux++;
             }
             colAux++;
         }
+
+        if (maxDistToPlane > maxDiff) {
+            triangle.setRefineError(maxDistToPlane / maxDiff);
+            return true;
+        }
         triangle.setRefineChecked(true);
 
         log.debug("Filtered by RasterTile : L : " + tileIndices.getL() + " # col : " + colAux + " / " + colsCount + " # row : " + rowAux + " / " + rowsCount + " # cosAng : " + cosAng + " # distToPlane : " + distToPlane + " # maxDiff : " + maxDiff);
@@ -801,6 +860,11 @@ public class TileMatrix {
         // Inside the mesh, there are triangles of 9 different tiles
         // Here refine only the triangles of the current tile
 
+        int tileMaxTriangles = globalOptions.getTileMaxTriangles();
+        if (tileMaxTriangles > 0) {
+            return refineMeshOneIterationWithBudget(mesh, tilesRange, tileMaxTriangles);
+        }
+
         // refine the mesh
         AtomicBoolean refined = new AtomicBoolean(false);
         AtomicInteger splitCount = new AtomicInteger();
@@ -839,25 +903,103 @@ public class TileMatrix {
         return refined.get();
     }
 
+    /**
+     * Refines one iteration keeping each tile under tileMaxTriangles.
+     * The triangles that must be refined are split in order of decreasing error, so when the budget of a tile is reached,
+     * the remaining budget has been spent on the worst triangles.
+     */
+    private boolean refineMeshOneIterationWithBudget(TerrainMesh mesh, TileRange tilesRange, int tileMaxTriangles) throws TransformException, IOException {
+        Map<String, Integer> mapTileTrianglesCount = new HashMap<>();
+        List<TerrainTriangle> candidates = new ArrayList<>();
+        for (TerrainTriangle triangle : mesh.triangles) {
+            if (triangle.getObjectStatus() == TerrainObjectStatus.DELETED) {
+                continue;
+            }
+            mapTileTrianglesCount.merge(triangle.getOwnerTileIndices().getString(), 1, Integer::sum);
+
+            if (!tilesRange.intersects(triangle.getOwnerTileIndices())) {
+                continue;
+            }
+            if (mustRefineTriangle(triangle)) {
+                candidates.add(triangle);
+            }
+        }
+
+        candidates.sort((t1, t2) -> Double.compare(t2.getRefineError(), t1.getRefineError()));
+
+        boolean refined = false;
+        int splitCount = 0;
+        int skippedByBudget = 0;
+        Map<String, Integer> mapNewTrianglesCount = new HashMap<>();
+        for (TerrainTriangle triangle : candidates) {
+            // the triangle can be split in this iteration as adjacent triangle of another one
+            if (triangle.getObjectStatus() == TerrainObjectStatus.DELETED) {
+                continue;
+            }
+
+            String tileKey = triangle.getOwnerTileIndices().getString();
+            if (mapTileTrianglesCount.getOrDefault(tileKey, 0) >= tileMaxTriangles) {
+                skippedByBudget++;
+                continue;
+            }
+
+            List<TerrainTriangle> newTriangles = this.manager.getTriangleList();
+            newTriangles.clear();
+            this.listHalfEdges.clear();
+            mesh.splitTriangle(triangle, this.manager.getTerrainElevationDataManager(), newTriangles, this.listHalfEdges);
+            this.listHalfEdges.clear();
+
+            if (!newTriangles.isEmpty()) {
+                // each split triangle is replaced by 2 triangles of the same tile
+                mapNewTrianglesCount.clear();
+                for (TerrainTriangle newTriangle : newTriangles) {
+                    mapNewTrianglesCount.merge(newTriangle.getOwnerTileIndices().getString(), 1, Integer::sum);
+                }
+                for (Map.Entry<String, Integer> entry : mapNewTrianglesCount.entrySet()) {
+                    mapTileTrianglesCount.merge(entry.getKey(), entry.getValue() / 2, Integer::sum);
+                }
+                splitCount++;
+                refined = true;
+            }
+            newTriangles.clear();
+        }
+
+        if (skippedByBudget > 0) {
+            log.debug("[RefineMesh] Triangle budget ({} per tile) reached : {} triangles not refined in this iteration", tileMaxTriangles, skippedByBudget);
+        }
+
+        if (refined) {
+            log.debug("Removing deleted Meshes : Splited count : {}", splitCount);
+            mesh.removeDeletedObjects();
+            mesh.setObjectsIdInList();
+        }
+
+        return refined;
+    }
+
     /**
      * Check the topology health of the mesh by examining vertex half-edge counts.
      * Detects corrupted vertices that have excessive outgoing half-edges (>10),
      * which indicates topology corruption from infinite splitting.
      *
-     * @param mesh The mesh to validate
+     * @param vertices The vertices to validate
+     * @param stride   Validate one of every stride vertices (1 = all vertices)
      * @return An array: [totalActiveVertices, verticesWithExcessiveEdges, maxEdgeCount]
      */
-    private int[] checkTopologyHealth(TerrainMesh mesh) {
+    private int[] checkTopologyHealth(List<TerrainVertex> vertices, int stride) {
         int totalVertices = 0;
         int verticesWithExcessiveEdges = 0;
         int maxEdgeCount = 0;
         int criticalVertexId = -1;
 
-        for (TerrainVertex vertex : mesh.vertices) {
+        int verticesCount = vertices.size();
+        for (int i = 0; i < verticesCount; i += stride) {
+            TerrainVertex vertex = vertices.get(i);
             if (vertex.getObjectStatus() == TerrainObjectStatus.DELETED) {
                 continue;
             }
             totalVertices++;
+            validatedVerticesCount++;
 
             List<TerrainHalfEdge> edges = vertex.getAllOutingHalfEdges();
             int edgeCount = edges.size();
@@ -891,6 +1033,8 @@ public class TileMatrix {
         // Inside the mesh, there are triangles of n different tiles
         // Here refine only the triangles of the tiles of TilesRange
 
+        long refineStartNanos = System.nanoTime();
+        int initialTriangleCount = mesh.triangles.size();
         double maxDiff = this.manager.getMaxDiffBetweenGeoTiffSampleAndTrianglePlane(tilesRange.getTileDepth());
         log.info("[RefineMesh] Starting refinement: Tile depth={}, Initial triangles={}, MaxDiff(m)={}, Max iterations={}",
                 tilesRange.getTileDepth(), mesh.triangles.size(), maxDiff, this.manager.getTriangleRefinementMaxIterations());
@@ -903,60 +1047,40 @@ public class TileMatrix {
         int previousTriangleCount = mesh.triangles.size();
         final int CONVERGENCE_WINDOW = 7;  // Extended from 3 to 7 iterations
 
-        // Memory monitoring for legitimate mesh growth
-        long previousUsedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-        final int MEMORY_CHECK_INTERVAL = 1; // Check every iteration due to rapid growth
-
-        // Initial memory check before refinement starts
-        MemoryMonitor.MemoryState initialMemState = MemoryMonitor.checkMemory("RefineMesh-Start");
-        if (initialMemState.isCritical) {
-            log.error("[RefineMesh] CRITICAL memory pressure BEFORE refinement starts: free={}%. " +
-                    "Cannot proceed. Increase heap size (-Xmx).",
-                    initialMemState.getFormattedPercent());
-            return; // Abort refinement
-        }
+        // Memory governor : the pressure flag is set by the heap pools threshold notifications, so checking it is O(1)
+        MemoryGovernor memoryGovernor = MemoryGovernor.getInstance();
+        boolean canSplitBlock = tilesRange.getMaxTileX() > tilesRange.getMinTileX() || tilesRange.getMaxTileY() > tilesRange.getMinTileY();
 
         while (!finished) {
-            // MEMORY MONITORING: Check before each iteration to prevent OutOfMemoryError
-            if (splitCount % MEMORY_CHECK_INTERVAL == 0) {
-                MemoryMonitor.MemoryState memState = MemoryMonitor.checkMemory("RefineMesh-Iter" + splitCount);
-
-                // CRITICAL MEMORY: Stop refinement to prevent crash
-                if (memState.isCritical) {
+            // MEMORY GOVERNOR: Check before each iteration to prevent OutOfMemoryError
+            if (memoryGovernor.isUnderPressure()) {
+                // step 1 : evict the caches
+                boolean relieved = memoryGovernor.relieve(this.manager.getTerrainElevationDataManager());
+                if (!relieved) {
                     int currentTriangleCount = mesh.triangles.size();
                     int currentVertexCount = mesh.vertices.size();
+                    if (canSplitBlock) {
+                        // step 2 : the block is processed again as smaller blocks, so no tile is left under-refined
+                        throw new MemoryGovernor.MemoryPressureException(String.format(
+                                "Heap pressure at refinement iteration %d : triangles=%d, vertices=%d", splitCount, currentTriangleCount, currentVertexCount));
+                    }
 
+                    // a single tile block can not be split anymore : the run fails, an under-refined tile is never written
+                    MemoryMonitor.MemoryState memState = new MemoryMonitor.MemoryState();
                     MemoryMonitor.MemoryMetrics metrics = new MemoryMonitor.MemoryMetrics(
                             memState.usedMemory, currentTriangleCount, currentVertexCount);
 
-                    log.error("[RefineMesh] STOPPING at iteration {} due to CRITICAL memory pressure: " +
+                    log.error("[RefineMesh] CRITICAL memory pressure at iteration {} in the single tile block L{} X{} Y{}: " +
                             "free={}%, triangles={}, vertices={}, " +
                             "memory_per_triangle={}, memory_per_vertex={}. " +
-                            "Increase heap size (-Xmx) or reduce refinement intensity to process deeper tiles.",
-                            splitCount, memState.getFormattedPercent(),
-                            currentTriangleCount, currentVertexCount,
+                            "Increase heap size (-Xmx) or reduce refinement intensity, and resume with --continue.",
+                            splitCount, tilesRange.getTileDepth(), tilesRange.getMinTileX(), tilesRange.getMinTileY(),
+                            memState.getFormattedPercent(), currentTriangleCount, currentVertexCount,
                             metrics.formattedBytesPerTriangle, metrics.formattedBytesPerVertex);
-
-                    finished = true;
-                    continue;
-                }
-
-                // WARNING: Log trend information to help users understand memory consumption
-                if (memState.isWarning && splitCount % 5 == 0) {
-                    int currentTriangleCount = mesh.triangles.size();
-                    MemoryMonitor.MemoryGrowth growth = MemoryMonitor.calculateGrowth(
-                            previousUsedMemory, memState.usedMemory,
-                            previousTriangleCount, currentTriangleCount);
-
-                    log.warn("[RefineMesh] Memory warning at iteration {}: free={}%, " +
-                            "triangles_added={}, memory_growth={}MB, " +
-                            "triangles_total={}, vertices_total={}",
-                            splitCount, memState.getFormattedPercent(),
-                            growth.triangleDelta, String.format("%.2f", growth.growthRateMB),
-                            currentTriangleCount, mesh.vertices.size());
+                    throw new RuntimeException(String.format(
+                            "Error: The tile L%d X%d Y%d does not fit in the heap at refinement iteration %d (triangles=%d, vertices=%d)",
+                            tilesRange.getTileDepth(), tilesRange.getMinTileX(), tilesRange.getMinTileY(), splitCount, currentTriangleCount, currentVertexCount));
                 }
-
-                previousUsedMemory = memState.usedMemory;
             }
 
             boolean refined = this.refineMeshOneIteration(mesh, tilesRange);
@@ -972,8 +1096,11 @@ public class TileMatrix {
                 int trianglesAdded = currentTriangleCount - previousTriangleCount;
 
                 // TOPOLOGY HEALTH CHECK: Validate mesh topology every 3 iterations or when no progress
-                if (splitCount % 3 == 0 || trianglesAdded <= 0) {
-                    int[] health = checkTopologyHealth(mesh);
+                // the refinement does not track the touched vertices, so only FULL validates all vertices
+                TopologyValidationLevel validationLevel = getTopologyValidationLevel();
+                if (validationLevel != TopologyValidationLevel.OFF && (splitCount % 3 == 0 || trianglesAdded <= 0)) {
+                    int stride = validationLevel == TopologyValidationLevel.FULL ? 1 : TopologyValidationLevel.SAMPLE_STRIDE;
+                    int[] health = checkTopologyHealth(mesh.vertices, stride);
                     int totalVertices = health[0];
                     int verticesWithExcessiveEdges = health[1];
                     int maxEdgeCount = health[2];
@@ -1044,5 +1171,20 @@ public class TileMatrix {
                 "avg_memory_per_triangle={}, avg_memory_per_vertex={}",
                 finalMemState.getUsedMemoryDisplay(), finalMemState.getFormattedPercent(),
                 finalMetrics.formattedBytesPerTriangle, finalMetrics.formattedBytesPerVertex);
+
+        TilingMetrics tilingMetrics = TilingMetrics.getInstance();
+        int depth = tilesRange.getTileDepth();
+        this.inputTrianglesCount = initialTriangleCount;
+        this.outputTrianglesCount = mesh.triangles.size();
+        this.outputVerticesCount = mesh.vertices.size();
+        this.refineIterations = splitCount;
+        tilingMetrics.addPhaseTime(TilingMetrics.Phase.REFINE, depth, refineStartNanos);
+        tilingMetrics.add(TilingMetrics.Counter.REFINEMENT_ITERATIONS, depth, splitCount);
+        tilingMetrics.add(TilingMetrics.Counter.TRIANGLE_SPLITS, depth, Math.max(0, mesh.triangles.size() - initialTriangleCount));
+
+        // the density of the block, for the auto-tuning of the mosaic size of the next depth
+        int expandedTiles = (tilesRange.getMaxTileX() - tilesRange.getMinTileX() + 3) * (tilesRange.getMaxTileY() - tilesRange.getMinTileY() + 3);
+        long tileRasterBytes = TilingPlan.getTileRasterBytes(this.manager.getRasterTileSize(), globalOptions.isWaterMaskExtension());
+        TilingAutoTuner.getInstance().recordBlock(depth, expandedTiles, mesh.triangles.size(), mesh.vertices.size(), finalMemState.usedMemory, tileRasterBytes);
     }
 }
@@ -0,0 +1,443 @@
+package com.gaia3d.terrain.tile;
+
+import com.gaia3d.io.BigEndianDataOutputStream;
+import com.gaia3d.quantized.mesh.QuantizedMesh;
+import com.gaia3d.quantized.mesh.QuantizedMeshEncoder;
+import com.gaia3d.quantized.mesh.QuantizedMeshOptimizer;
+import com.gaia3d.terrain.jfr.QuantizedMeshWriteEvent;
+import com.gaia3d.terrain.jfr.TempTileEvent;
+import com.gaia3d.terrain.structure.TerrainMesh;
+import com.gaia3d.terrain.tile.archive.TileArchiveWriter;
+import com.gaia3d.terrain.util.GzipCompressor;
+import com.gaia3d.terrain.util.TilingMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Output stage of the tiling.
+ * The tiles (.terrain and .til) are encoded and written by dedicated writer threads, so the refinement of the next block
+ * runs while the tiles of the previous block are flushed to disk.
+ * The queue is bounded : when it is full, the tiling thread waits for a free slot.
+ * The meshes are owned by the tiling thread, so they are serialized (or converted to QuantizedMesh) before being queued.
+ * Reading a temp tile that is still pending must be preceded by awaitPath().
+ * Optionally the .terrain tiles are gzip compressed, and their raw and stored sizes are written in a manifest.
+ * With a TileQualityReport, the quality measured on the tiling thread is completed with the encoded sizes and times.
+ * With a TileArchiveWriter, the .terrain tiles are added to the archive instead of being written as files.
+ * Optionally the quantized meshes are reordered for the vertex cache (see QuantizedMeshOptimizer) on the writer threads.
+ * One tile every VERTEX_ORDER_SAMPLING is compressed before and after the reordering to report the bytes saved.
+ * With a TilingJournal, the temp files are backed up before they are replaced (see TilingJournal).
+ * The encode and write times, and the tiles, triangles and bytes written per depth, are recorded in the TilingMetrics,
+ * and every write is a JFR event (QuantizedMeshWriteEvent, TempTileEvent).
+ */
+@Slf4j
+public class TileOutputWriter {
+    private static final int QUEUE_SLOTS_PER_THREAD = 64;
+    private static final int VERTEX_ORDER_SAMPLING = 64;
+
+    private final int threadCount;
+    private final ExecutorService executorService; // null = synchronous writes
+    private final Semaphore queueSlots;
+    private final Map<String, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+    private final Set<String> createdFolders = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final TilingMetrics tilingMetrics = TilingMetrics.getInstance();
+    private int gzipLevel = 0; // 0 = no compression
+    private BufferedWriter sizeManifestWriter = null;
+    @Getter
+    private TileQualityReport tileQualityReport = null;
+    private TileArchiveWriter tileArchiveWriter = null;
+    private boolean optimizeVertexOrder = false;
+    private TilingJournal tilingJournal = null;
+    private boolean syncWrites = false;
+
+    @Getter
+    private final TileCoverage writtenTiles = new TileCoverage(); // the .terrain tiles, for the "available" of layer.json
+    @Getter
+    private final AtomicLong writtenFilesCount = new AtomicLong(0);
+    @Getter
+    private final AtomicLong writtenBytes = new AtomicLong(0);
+    @Getter
+    private final AtomicLong rawQuantizedMeshBytes = new AtomicLong(0);
+    @Getter
+    private final AtomicLong storedQuantizedMeshBytes = new AtomicLong(0);
+    private final AtomicLong optimizedTilesCount = new AtomicLong(0);
+    private final AtomicLong sampledTilesCount = new AtomicLong(0);
+    private final AtomicLong sampledBytesBeforeOptimization = new AtomicLong(0);
+    private final AtomicLong sampledBytesAfterOptimization = new AtomicLong(0);
+
+    public TileOutputWriter(int threadCount) {
+        this.threadCount = Math.max(0, threadCount);
+        if (this.threadCount > 0) {
+            AtomicInteger threadIndex = new AtomicInteger(0);
+            this.executorService = Executors.newFixedThreadPool(this.threadCount, runnable -> {
+                Thread thread = new Thread(runnable, "tile-writer-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.queueSlots = new Semaphore(this.threadCount * QUEUE_SLOTS_PER_THREAD);
+        } else {
+            this.executorService = null;
+            this.queueSlots = null;
+        }
+    }
+
+    /**
+     * Compresses the .terrain tiles with gzip
+     *
+     * @param gzipLevel 1 - 9, 0 = no compression
+     */
+    public void setGzipLevel(int gzipLevel) {
+        this.gzipLevel = gzipLevel;
+    }
+
+    public void setTileArchiveWriter(TileArchiveWriter tileArchiveWriter) {
+        this.tileArchiveWriter = tileArchiveWriter;
+    }
+
+    public void setOptimizeVertexOrder(boolean optimizeVertexOrder) {
+        this.optimizeVertexOrder = optimizeVertexOrder;
+    }
+
+    /**
+     * The temp files are backed up in the journal before they are replaced, to undo an interrupted block
+     */
+    public void setTilingJournal(TilingJournal tilingJournal) {
+        this.tilingJournal = tilingJournal;
+    }
+
+    /**
+     * Forces every written file to the disk, so a committed block of the journal survives a power loss
+     */
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Writes "L,X,Y,rawBytes,storedBytes" of every .terrain tile in the manifest file.
+     * Only the tiles owned by the written block are listed, the halo rewrites of the neighbor tiles are not.
+     */
+    public void openSizeManifest(String manifestPath, boolean append) throws IOException {
+        Path path = Paths.get(manifestPath);
+        createFolders(path.getParent());
+        boolean writeHeader = !append || !Files.exists(path);
+        if (append) {
+            sizeManifestWriter = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            sizeManifestWriter = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        }
+        if (writeHeader) {
+            sizeManifestWriter.write("L,X,Y,rawBytes,storedBytes");
+            sizeManifestWriter.newLine();
+        }
+    }
+
+    /**
+     * Writes a line per tile in the quality report, closed with the writer
+     */
+    public void setTileQualityReport(TileQualityReport tileQualityReport) {
+        this.tileQualityReport = tileQualityReport;
+    }
+
+    /**
+     * Queues a quantized mesh tile. The encoding (and compression) is done by the writer thread.
+     */
+    public void writeQuantizedMesh(QuantizedMesh quantizedMesh, boolean saveNormals, TileIndices tileIndices, String filePath) throws IOException {
+        writeQuantizedMesh(quantizedMesh, saveNormals, tileIndices, filePath, true, null);
+    }
+
+    /**
+     * Queues a quantized mesh tile with its quality (null = not reported). The encoding time is added to the generation time.
+     * A tile not owned by the block (a halo tile, rewritten by the neighbor block) is not counted in the size manifest and the gzip totals.
+     */
+    public void writeQuantizedMesh(QuantizedMesh quantizedMesh, boolean saveNormals, TileIndices tileIndices, String filePath, boolean ownedTile, TileQualityReport.TileQuality tileQuality) throws IOException {
+        int level = tileIndices.getL();
+        int x = tileIndices.getX();
+        int y = tileIndices.getY();
+        writtenTiles.add(level, x, y);
+        submit(filePath, () -> {
+            QuantizedMeshWriteEvent writeEvent = new QuantizedMeshWriteEvent();
+            writeEvent.begin();
+            long encodeStartNanos = System.nanoTime();
+            if (optimizeVertexOrder) {
+                optimizeVertexOrder(quantizedMesh, saveNormals);
+            }
+            ByteBuffer encoded = QuantizedMeshEncoder.getInstance().encode(quantizedMesh, saveNormals);
+            int rawSize = encoded.remaining();
+            if (gzipLevel > 0) {
+                encoded = GzipCompressor.getInstance(gzipLevel).compress(encoded);
+            }
+            int storedSize = encoded.remaining();
+            tilingMetrics.addPhaseTime(TilingMetrics.Phase.ENCODE, level, encodeStartNanos);
+            long writeStartNanos = System.nanoTime();
+            if (tileArchiveWriter != null) {
+                tileArchiveWriter.addTile(level, x, y, encoded);
+            } else {
+                writeBuffer(encoded, filePath);
+            }
+            tilingMetrics.addPhaseTime(TilingMetrics.Phase.WRITE, level, writeStartNanos);
+
+            if (ownedTile) {
+                rawQuantizedMeshBytes.addAndGet(rawSize);
+                storedQuantizedMeshBytes.addAndGet(storedSize);
+            }
+            tilingMetrics.increment(TilingMetrics.Counter.TILES, level);
+            tilingMetrics.add(TilingMetrics.Counter.TRIANGLES, level, quantizedMesh.getTriangleCount());
+            tilingMetrics.add(TilingMetrics.Counter.BYTES_WRITTEN, level, storedSize);
+            writeEvent.end();
+            if (writeEvent.shouldCommit()) {
+                writeEvent.setLevel(level);
+                writeEvent.setX(x);
+                writeEvent.setY(y);
+                writeEvent.setVertices(quantizedMesh.getVertexCount());
+                writeEvent.setTriangles(quantizedMesh.getTriangleCount());
+                writeEvent.setRawBytes(rawSize);
+                writeEvent.setStoredBytes(storedSize);
+                writeEvent.commit();
+            }
+            if (ownedTile && sizeManifestWriter != null) {
+                writeSizeManifestLine(level + "," + x + "," + y + "," + rawSize + "," + storedSize);
+            }
+            if (tileQualityReport != null && tileQuality != null) {
+                tileQuality.setGenerationNanos(tileQuality.getGenerationNanos() + System.nanoTime() - encodeStartNanos);
+                tileQualityReport.add(level, x, y, quantizedMesh.getVertexCount(), quantizedMesh.getTriangleCount(), rawSize, storedSize, tileQuality);
+            }
+        });
+    }
+
+    /**
+     * Serializes the temp mesh on the calling thread, and queues the write of the bytes.
+     */
+    public void writeTerrainMesh(TerrainMesh mesh, String filePath) throws IOException {
+        int depth = tilingMetrics.getCurrentDepth();
+        long encodeStartNanos = System.nanoTime();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        BigEndianDataOutputStream dataOutputStream = new BigEndianDataOutputStream(byteArrayOutputStream);
+        mesh.saveDataOutputStream(dataOutputStream);
+        dataOutputStream.close();
+        byte[] bytes = byteArrayOutputStream.toByteArray();
+        tilingMetrics.addPhaseTime(TilingMetrics.Phase.ENCODE, depth, encodeStartNanos);
+        submit(filePath, () -> {
+            TempTileEvent tempTileEvent = new TempTileEvent();
+            tempTileEvent.begin();
+            long writeStartNanos = System.nanoTime();
+            if (tilingJournal != null) {
+                tilingJournal.backupBeforeWrite(filePath);
+            }
+            writeBuffer(ByteBuffer.wrap(bytes), filePath);
+            tilingMetrics.addPhaseTime(TilingMetrics.Phase.WRITE, depth, writeStartNanos);
+            tempTileEvent.end();
+            if (tempTileEvent.shouldCommit()) {
+                tempTileEvent.setPath(filePath);
+                tempTileEvent.setWrite(true);
+                tempTileEvent.setBytes(bytes.length);
+                tempTileEvent.commit();
+            }
+        });
+    }
+
+    /**
+     * Waits until the pending write of the file (if any) is done
+     */
+    public void awaitPath(String filePath) throws IOException {
+        CompletableFuture<Void> pending = pendingWrites.get(filePath);
+        if (pending != null) {
+            waitFor(pending);
+        }
+        throwIfFailed();
+    }
+
+    /**
+     * Waits until all the queued tiles are written.
+     * The folders cache is cleared, because the temp folders can be deleted after a flush.
+     */
+    public void flush() throws IOException {
+        for (CompletableFuture<Void> pending : pendingWrites.values()) {
+            waitFor(pending);
+        }
+        createdFolders.clear();
+        throwIfFailed();
+    }
+
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (sizeManifestWriter != null) {
+                sizeManifestWriter.close();
+                sizeManifestWriter = null;
+            }
+            if (tileQualityReport != null) {
+                tileQualityReport.close();
+                tileQualityReport = null;
+            }
+            if (executorService != null) {
+                executorService.shutdown();
+                try {
+                    if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                        log.warn("[TileWriter] Writer threads did not terminate.");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        log.info("[TileWriter] Written files : {}, bytes : {}", writtenFilesCount.get(), writtenBytes.get());
+        if (gzipLevel > 0 && rawQuantizedMeshBytes.get() > 0) {
+            double ratio = (double) storedQuantizedMeshBytes.get() / rawQuantizedMeshBytes.get() * 100.0;
+            log.info("[TileWriter] Gzip .terrain tiles : raw {} bytes, stored {} bytes ({}%)", rawQuantizedMeshBytes.get(), storedQuantizedMeshBytes.get(), String.format("%.1f", ratio));
+        }
+        if (sampledTilesCount.get() > 0) {
+            long before = sampledBytesBeforeOptimization.get();
+            long after = sampledBytesAfterOptimization.get();
+            double saved = (double) (before - after) / before * 100.0;
+            log.info("[TileWriter] Vertex order : {} sampled tiles, gzip {} bytes -> {} bytes ({}% saved)", sampledTilesCount.get(), before, after, String.format("%.1f", saved));
+        }
+    }
+
+    /**
+     * Reorders the quantized mesh. The sampled tiles are compressed before and after the reordering.
+     */
+    private void optimizeVertexOrder(QuantizedMesh quantizedMesh, boolean saveNormals) {
+        if (optimizedTilesCount.getAndIncrement() % VERTEX_ORDER_SAMPLING != 0) {
+            QuantizedMeshOptimizer.optimize(quantizedMesh);
+            return;
+        }
+        int before = getCompressedSize(quantizedMesh, saveNormals);
+        QuantizedMeshOptimizer.optimize(quantizedMesh);
+        int after = getCompressedSize(quantizedMesh, saveNormals);
+        sampledTilesCount.incrementAndGet();
+        sampledBytesBeforeOptimization.addAndGet(before);
+        sampledBytesAfterOptimization.addAndGet(after);
+    }
+
+    private int getCompressedSize(QuantizedMesh quantizedMesh, boolean saveNormals) {
+        ByteBuffer encoded = QuantizedMeshEncoder.getInstance().encode(quantizedMesh, saveNormals);
+        int level = gzipLevel > 0 ? gzipLevel : GzipCompressor.DEFAULT_LEVEL;
+        return GzipCompressor.getInstance(level).compress(encoded).remaining();
+    }
+
+    private void submit(String filePath, IOTask task) throws IOException {
+        throwIfFailed();
+        if (executorService == null) {
+            task.run();
+            return;
+        }
+
+        // keep the order of the writes of the same file
+        awaitPath(filePath);
+        try {
+            queueSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the tile writer queue", e);
+        }
+
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("[ERROR] Failed to write tile : {}", filePath, e);
+                failure.compareAndSet(null, e);
+            }
+        }, executorService);
+        pendingWrites.put(filePath, future);
+        future.whenComplete((result, throwable) -> {
+            pendingWrites.remove(filePath, future);
+            queueSlots.release();
+        });
+    }
+
+    private void writeBuffer(ByteBuffer buffer, String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        createFolders(path.getParent());
+        int size = buffer.remaining();
+        try {
+            writeChannel(buffer, path);
+        } catch (NoSuchFileException e) {
+            // the folder was deleted after it was cached
+            createdFolders.remove(path.getParent().toString());
+            createFolders(path.getParent());
+            buffer.rewind();
+            writeChannel(buffer, path);
+        }
+        writtenFilesCount.incrementAndGet();
+        writtenBytes.addAndGet(size);
+    }
+
+    private void writeSizeManifestLine(String line) throws IOException {
+        synchronized (sizeManifestWriter) {
+            sizeManifestWriter.write(line);
+            sizeManifestWriter.newLine();
+        }
+    }
+
+    private void writeChannel(ByteBuffer buffer, Path path) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer);
+            }
+            if (syncWrites) {
+                fileChannel.force(false);
+            }
+        }
+    }
+
+    private void createFolders(Path folder) throws IOException {
+        if (folder == null) {
+            return;
+        }
+        String key = folder.toString();
+        if (createdFolders.contains(key)) {
+            return;
+        }
+        Files.createDirectories(folder);
+        createdFolders.add(key);
+    }
+
+    private void waitFor(CompletableFuture<Void> pending) throws IOException {
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the tile writer", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            throw new IOException("Tile writer failed", throwable);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOTask {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,239 @@
+package com.gaia3d.terrain.tile;
+
+import com.gaia3d.terrain.structure.TerrainHalfEdge;
+import com.gaia3d.terrain.structure.TerrainMesh;
+import com.gaia3d.terrain.structure.TerrainTriangle;
+import com.gaia3d.terrain.structure.TerrainVertex;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Vector3d;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-tile quality and cost report (--qualityReport), to find the tiles that dominate the runtime and the size,
+ * and to choose the refinement intensity of every depth with data.
+ * One CSV per depth, {OUTPUT}/tile_quality/L{depth}.csv : "L,X,Y,vertices,triangles,rawBytes,storedBytes,maxError,rmsError,iterations,millis"
+ * The errors (meters) are the vertical distances between the mesh and the samples of the TileWgs84Raster of the tile.
+ * The iterations are the refinement iterations of the block of the tile, and the millis are the share of the tile in the
+ * meshing time of its block (merge, refinement and temp tiles), plus its own conversion and encoding.
+ * Every tile is reported once, by the block of its tiles range (not by the neighbor blocks that rewrite it as their halo).
+ * The flat tiles (see TileWgs84Manager) are exact and not refined : no error and no iterations.
+ * The per-depth histograms (power of two buckets) of the tiles of the run are written in {OUTPUT}/tile_quality/histograms.csv on close.
+ */
+@Slf4j
+public class TileQualityReport {
+    public static final String FOLDER_NAME = "tile_quality";
+    public static final String HISTOGRAMS_FILE_NAME = "histograms.csv";
+    private static final String HEADER = "L,X,Y,vertices,triangles,rawBytes,storedBytes,maxError,rmsError,iterations,millis";
+    private static final int BUCKETS = 64;
+
+    public enum Metric {
+        TRIANGLES, STORED_BYTES, MAX_ERROR_CM, RMS_ERROR_CM, MILLIS
+    }
+
+    /**
+     * The quality of a tile, measured on the tiling thread before the tile is queued to the writer
+     */
+    @Getter
+    @Setter
+    public static class TileQuality {
+        private double maxError = 0; // meters
+        private double rmsError = 0; // meters
+        private int samples = 0;
+        private int iterations = 0;
+        private long generationNanos = 0;
+    }
+
+    private final Path folder;
+    private final boolean append;
+    private final Map<Integer, DepthReport> depthReports = new TreeMap<>();
+
+    public TileQualityReport(Path folder, boolean append) throws IOException {
+        this.folder = folder;
+        this.append = append;
+        Files.createDirectories(folder);
+    }
+
+    /**
+     * Measures the vertical error of the mesh of a tile against the samples of its raster.
+     * Every raster sample inside a triangle is compared with the elevation interpolated in the triangle.
+     */
+    public static TileQuality measure(TerrainMesh mesh, TileWgs84Raster tileRaster) {
+        TileQuality tileQuality = new TileQuality();
+        if (tileRaster == null || tileRaster.getElevations() == null) {
+            return tileQuality;
+        }
+        int rasterWidth = tileRaster.getRasterWidth();
+        int rasterHeight = tileRaster.getRasterHeight();
+        boolean[] measured = new boolean[rasterWidth * rasterHeight]; // the samples on a shared edge are measured once
+        List<TerrainVertex> listVertices = new ArrayList<>();
+        List<TerrainHalfEdge> listHalfEdges = new ArrayList<>();
+
+        double maxError = 0;
+        double sumSquaredError = 0;
+        int samples = 0;
+        for (TerrainTriangle triangle : mesh.triangles) {
+            listVertices.clear();
+            listHalfEdges.clear();
+            listVertices = triangle.getVertices(listVertices, listHalfEdges);
+            Vector3d p0 = listVertices.get(0).getPosition();
+            Vector3d p1 = listVertices.get(1).getPosition();
+            Vector3d p2 = listVertices.get(2).getPosition();
+            double denominator = (p1.y - p2.y) * (p0.x - p2.x) + (p2.x - p1.x) * (p0.y - p2.y);
+            if (denominator == 0) {
+                continue;
+            }
+
+            int startCol = tileRaster.getColumn(Math.min(p0.x, Math.min(p1.x, p2.x)));
+            int endCol = tileRaster.getColumn(Math.max(p0.x, Math.max(p1.x, p2.x)));
+            int startRow = tileRaster.getRow(Math.min(p0.y, Math.min(p1.y, p2.y)));
+            int endRow = tileRaster.getRow(Math.max(p0.y, Math.max(p1.y, p2.y)));
+            for (int row = startRow; row <= endRow; row++) {
+                double latDeg = tileRaster.getLatDeg(row);
+                for (int col = startCol; col <= endCol; col++) {
+                    int index = row * rasterWidth + col;
+                    if (measured[index]) {
+                        continue;
+                    }
+                    double lonDeg = tileRaster.getLonDeg(col);
+                    double w0 = ((p1.y - p2.y) * (lonDeg - p2.x) + (p2.x - p1.x) * (latDeg - p2.y)) / denominator;
+                    double w1 = ((p2.y - p0.y) * (lonDeg - p2.x) + (p0.x - p2.x) * (latDeg - p2.y)) / denominator;
+                    double w2 = 1.0 - w0 - w1;
+                    if (w0 < 0 || w1 < 0 || w2 < 0) {
+                        continue;
+                    }
+                    measured[index] = true;
+                    float elevation = tileRaster.getElevation(col, row);
+                    if (Float.isNaN(elevation)) {
+                        continue;
+                    }
+                    double error = Math.abs(w0 * p0.z + w1 * p1.z + w2 * p2.z - elevation);
+                    maxError = Math.max(maxError, error);
+                    sumSquaredError += error * error;
+                    samples++;
+                }
+            }
+        }
+
+        tileQuality.setMaxError(maxError);
+        tileQuality.setRmsError(samples > 0 ? Math.sqrt(sumSquaredError / samples) : 0);
+        tileQuality.setSamples(samples);
+        return tileQuality;
+    }
+
+    /**
+     * Adds a written tile. Called by the writer threads.
+     */
+    public synchronized void add(int level, int x, int y, int vertices, int triangles, int rawBytes, int storedBytes, TileQuality tileQuality) throws IOException {
+        DepthReport depthReport = depthReports.get(level);
+        if (depthReport == null) {
+            depthReport = new DepthReport(folder.resolve("L" + level + ".csv"), append);
+            depthReports.put(level, depthReport);
+        }
+        double millis = tileQuality.getGenerationNanos() / 1_000_000.0;
+        depthReport.writer.write(level + "," + x + "," + y + "," + vertices + "," + triangles + "," + rawBytes + "," + storedBytes + ","
+                + String.format(Locale.ROOT, "%.3f", tileQuality.getMaxError()) + "," + String.format(Locale.ROOT, "%.3f", tileQuality.getRmsError()) + ","
+                + tileQuality.getIterations() + "," + String.format(Locale.ROOT, "%.3f", millis));
+        depthReport.writer.newLine();
+
+        depthReport.tiles++;
+        depthReport.add(Metric.TRIANGLES, triangles);
+        depthReport.add(Metric.STORED_BYTES, storedBytes);
+        depthReport.add(Metric.MAX_ERROR_CM, tileQuality.getMaxError() * 100.0);
+        depthReport.add(Metric.RMS_ERROR_CM, tileQuality.getRmsError() * 100.0);
+        depthReport.add(Metric.MILLIS, millis);
+        if (millis > depthReport.slowestMillis) {
+            depthReport.slowestMillis = millis;
+            depthReport.slowestTile = "L" + level + "X" + x + "Y" + y;
+        }
+        if (storedBytes > depthReport.largestBytes) {
+            depthReport.largestBytes = storedBytes;
+            depthReport.largestTile = "L" + level + "X" + x + "Y" + y;
+        }
+    }
+
+    /**
+     * Closes the per-depth files and writes the histograms "L,metric,upperBound,tiles" (the non-empty buckets only)
+     */
+    public synchronized void close() throws IOException {
+        Path histogramsPath = folder.resolve(HISTOGRAMS_FILE_NAME);
+        try (BufferedWriter writer = Files.newBufferedWriter(histogramsPath, StandardCharsets.UTF_8)) {
+            writer.write("L,metric,upperBound,tiles");
+            writer.newLine();
+            for (Map.Entry<Integer, DepthReport> entry : depthReports.entrySet()) {
+                int level = entry.getKey();
+                DepthReport depthReport = entry.getValue();
+                depthReport.writer.close();
+                for (Metric metric : Metric.values()) {
+                    long[] counts = depthReport.histograms[metric.ordinal()];
+                    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                        if (counts[bucket] > 0) {
+                            writer.write(level + "," + metric.name().toLowerCase(Locale.ROOT) + "," + getUpperBound(bucket) + "," + counts[bucket]);
+                            writer.newLine();
+                        }
+                    }
+                }
+                log.info("[QualityReport][L{}] Tiles : {}, slowest : {} ({} ms), largest : {} ({} bytes)", level, depthReport.tiles,
+                        depthReport.slowestTile, String.format("%.1f", depthReport.slowestMillis), depthReport.largestTile, depthReport.largestBytes);
+            }
+        }
+        depthReports.clear();
+    }
+
+    /**
+     * The bucket of a value : 0 for [0, 1), then k for [2^(k-1), 2^k)
+     */
+    public static int getBucket(double value) {
+        if (!(value >= 1.0)) {
+            return 0;
+        }
+        long rounded = (long) Math.min(value, Long.MAX_VALUE);
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(rounded));
+    }
+
+    /**
+     * The exclusive upper bound of a bucket
+     */
+    public static long getUpperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static class DepthReport {
+        private final BufferedWriter writer;
+        private final long[][] histograms = new long[Metric.values().length][BUCKETS];
+        private long tiles = 0;
+        private double slowestMillis = -1;
+        private String slowestTile = null;
+        private long largestBytes = -1;
+        private String largestTile = null;
+
+        private DepthReport(Path path, boolean append) throws IOException {
+            boolean writeHeader = !append || !Files.exists(path);
+            if (append) {
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } else {
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            }
+            if (writeHeader) {
+                writer.write(HEADER);
+                writer.newLine();
+            }
+        }
+
+        private void add(Metric metric, double value) {
+            histograms[metric.ordinal()][getBucket(value)]++;
+        }
+    }
+}
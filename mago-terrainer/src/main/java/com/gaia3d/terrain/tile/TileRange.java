@@ -27,12 +27,16 @@ public class TileRange {
         this.maxTileY = maxTileY;
     }
 
-    public TileRange clone() {
+    public static TileRange of(int tileDepth, int minTileX, int maxTileX, int minTileY, int maxTileY) {
         TileRange tileRange = new TileRange();
         tileRange.set(tileDepth, minTileX, maxTileX, minTileY, maxTileY);
         return tileRange;
     }
 
+    public TileRange clone() {
+        return TileRange.of(tileDepth, minTileX, maxTileX, minTileY, maxTileY);
+    }
+
     public void translate(int translateX, int translateY) {
         this.minTileX += translateX;
         this.maxTileX += translateX;
@@ -2,6 +2,7 @@ package com.gaia3d.terrain.tile;
 
 import com.gaia3d.io.BigEndianDataInputStream;
 import com.gaia3d.io.BigEndianDataOutputStream;
+import com.gaia3d.terrain.jfr.TempTileEvent;
 import com.gaia3d.terrain.structure.*;
 import com.gaia3d.terrain.types.TerrainHalfEdgeType;
 import com.gaia3d.terrain.types.TerrainObjectStatus;
@@ -68,20 +69,36 @@ public class TileWgs84 {
     }
 
     public void saveFile(TerrainMesh mesh, String filePath) throws IOException {
+        TempTileEvent tempTileEvent = new TempTileEvent();
+        tempTileEvent.begin();
         String foldersPath = FileUtils.removeFileNameFromPath(filePath);
         FileUtils.createAllFoldersIfNoExist(foldersPath);
         BigEndianDataOutputStream dataOutputStream = new BigEndianDataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
 
         mesh.saveDataOutputStream(dataOutputStream);
         dataOutputStream.close();
+        commitTempTileEvent(tempTileEvent, filePath, true);
     }
 
     public void loadFile(String filePath) throws IOException {
+        TempTileEvent tempTileEvent = new TempTileEvent();
+        tempTileEvent.begin();
         BigEndianDataInputStream dataInputStream = new BigEndianDataInputStream(new BufferedInputStream(new FileInputStream(filePath)));
 
         this.mesh = new TerrainMesh();
         this.mesh.loadDataInputStream(dataInputStream);
         dataInputStream.close();
+        commitTempTileEvent(tempTileEvent, filePath, false);
+    }
+
+    private static void commitTempTileEvent(TempTileEvent tempTileEvent, String filePath, boolean write) {
+        tempTileEvent.end();
+        if (tempTileEvent.shouldCommit()) {
+            tempTileEvent.setPath(filePath);
+            tempTileEvent.setWrite(write);
+            tempTileEvent.setBytes(new File(filePath).length());
+            tempTileEvent.commit();
+        }
     }
 
     public void createInitialMesh() throws TransformException, IOException {
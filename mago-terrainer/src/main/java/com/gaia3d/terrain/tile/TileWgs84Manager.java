@@ -1,16 +1,25 @@
 package com.gaia3d.terrain.tile;
 
 import com.gaia3d.command.GlobalOptions;
-import com.gaia3d.io.LittleEndianDataInputStream;
+import com.gaia3d.quantized.mesh.FlatQuantizedMesh;
 import com.gaia3d.quantized.mesh.QuantizedMesh;
+import com.gaia3d.quantized.mesh.QuantizedMeshDecoder;
 import com.gaia3d.quantized.mesh.QuantizedMeshManager;
+import com.gaia3d.terrain.jfr.BlockEvent;
 import com.gaia3d.terrain.structure.GeographicExtension;
 import com.gaia3d.terrain.structure.TerrainTriangle;
+import com.gaia3d.terrain.tile.archive.TileArchive;
+import com.gaia3d.terrain.tile.archive.TileArchiveReader;
+import com.gaia3d.terrain.tile.archive.TileArchiveWriter;
 import com.gaia3d.terrain.tile.geotiff.GaiaGeoTiffManager;
 import com.gaia3d.terrain.tile.geotiff.RasterStandardizer;
+import com.gaia3d.terrain.tile.geotiff.WaterMaskRaster;
 import com.gaia3d.terrain.util.GaiaGeoTiffUtils;
+import com.gaia3d.terrain.util.MemoryGovernor;
 import com.gaia3d.terrain.util.TerrainMeshUtils;
 import com.gaia3d.terrain.util.TileWgs84Utils;
+import com.gaia3d.terrain.util.TilingAutoTuner;
+import com.gaia3d.terrain.util.TilingMetrics;
 import com.gaia3d.util.DecimalUtils;
 import com.gaia3d.util.FileUtils;
 import com.gaia3d.util.StringUtils;
@@ -27,10 +36,12 @@ import org.geotools.api.referencing.crs.GeographicCRS;
 import org.geotools.api.referencing.crs.ProjectedCRS;
 import org.geotools.api.referencing.operation.TransformException;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -69,6 +80,17 @@ public class TileWgs84Manager {
 
     // the list of standardized geotiff files. This the real input for the terrain elevation data
     private List<File> standardizedGeoTiffFiles = new ArrayList<>();
+    private TileOutputWriter tileOutputWriter = null;
+    private TileArchiveWriter tileArchiveWriter = null;
+    private TilingJournal tilingJournal = null;
+    // blocks of flat tiles by depth. Flat tiles have no children temp files
+    private final Map<Integer, List<TileRange>> flatTileRangesByDepth = new HashMap<>();
+    private int flatTilesCount = 0;
+    private WaterMaskRaster waterMaskRaster = null;
+    private TileAvailability tileAvailability = null;
+    // the output folder of the sample blocks of a plan (--plan), null for a tiling.
+    // the sample tiles are written there as plain files, without the archive, the size manifest and the quality report
+    private String sampleOutputPath = null;
 
     // constructor
     public TileWgs84Manager() {
@@ -123,6 +145,11 @@ public class TileWgs84Manager {
             this.terrainLayer = null;
         }
 
+        if (this.waterMaskRaster != null) {
+            this.waterMaskRaster.dispose();
+            this.waterMaskRaster = null;
+        }
+
         if (this.terrainElevationDataList != null) {
             this.terrainElevationDataList.clear();
         }
@@ -141,11 +168,15 @@ public class TileWgs84Manager {
         this.gaiaGeoTiffManager.clear();
     }
 
+    /**
+     * Rebuilds the temp files of the depth from the quantized meshes of the output (--continue), and splits each tile
+     * into the temp files of its 4 children. The X columns are processed in parallel, each tile is decoded once
+     * (QuantizedMeshDecoder) and its children are split from the decoded mesh, without reloading the temp file.
+     */
     public void makeTempFilesFromQuantizedMeshes(int depth) {
         // make temp folder
         String tempPath = globalOptions.getTileTempPath();
-        String depthStr = "L" + depth;
-        String depthTempPath = tempPath + File.separator + depthStr;
+        String depthTempPath = tempPath + File.separator + "L" + depth;
         File depthTempFolder = new File(depthTempPath);
         if (!depthTempFolder.exists()) {
             if (depthTempFolder.mkdirs()) {
@@ -161,150 +192,77 @@ public class TileWgs84Manager {
             return;
         }
 
-        // start to make temp files
-        int L = depth;
-        int X = 0;
-        int Y = 0;
-
-        TileIndices tileIndices = new TileIndices();
-        QuantizedMeshManager quantizedMeshManager = new QuantizedMeshManager();
         List<String> quantizedMeshFolderNames = new ArrayList<>();
         FileUtils.getFolderNames(quantizedMeshPath, quantizedMeshFolderNames);
+        quantizedMeshFolderNames.removeIf(folderName -> !StringUtils.isConvertibleToInt(folderName));
+
+        // the writer of the children is shared by the columns, it must exist before
+        this.getTileOutputWriter();
+        AtomicInteger tilesCount = new AtomicInteger();
+        quantizedMeshFolderNames.parallelStream().forEach(quantizedMeshFolderName -> {
+            int tileX = Integer.parseInt(quantizedMeshFolderName);
+            tilesCount.addAndGet(makeTempFilesFromQuantizedMeshColumn(depth, tileX, quantizedMeshPath + File.separator + quantizedMeshFolderName));
+        });
+        this.getTileOutputWriter().flush();
+        log.info("[Tile][{}] Rebuilt {} temp files and their children from the quantized meshes.", depth, tilesCount.get());
+    }
 
-        int quantizedFoldersCount = quantizedMeshFolderNames.size();
-        for (int i = 0; i < quantizedFoldersCount; i++) {
-            String quantizedMeshFolderName = quantizedMeshFolderNames.get(i);
-            X = Integer.parseInt(quantizedMeshFolderName);
-
-            String quantizedMeshFolderPath = quantizedMeshPath + File.separator + quantizedMeshFolderName;
-            File quantizedMeshSubFolder = new File(quantizedMeshFolderPath);
-            if (!quantizedMeshSubFolder.exists()) {
-                log.error("Quantized mesh subfolder does not exist: {}", quantizedMeshSubFolder.getAbsolutePath());
-                continue;
-            }
-
-            String tempXFolderName = "X" + quantizedMeshFolderName;
-
-            List<String> quantizedMeshFileNames = new ArrayList<>();
-            FileUtils.getFileNames(quantizedMeshFolderPath, ".terrain", quantizedMeshFileNames);
-            int quantizedFilesCount = quantizedMeshFileNames.size();
-            for (int j = 0; j < quantizedFilesCount; j++) {
-                String quantizedMeshFileName = quantizedMeshFileNames.get(j);
-                Y = Integer.parseInt(quantizedMeshFileName.substring(0, quantizedMeshFileName.indexOf(".")));
-
-                String quantizedMeshFilePath = quantizedMeshFolderPath + File.separator + quantizedMeshFileName;
-
-                // load the quantized mesh file
-                File quantizedMeshFile = new File(quantizedMeshFilePath);
-                if (!quantizedMeshFile.exists()) {
-                    log.error("Quantized mesh file does not exist: {}", quantizedMeshFilePath);
-                    continue;
-                }
-
-                String tempFileName = "L" + depth + "_" + tempXFolderName + "_Y" + Y + ".til";
-                String tempFilePath = depthTempPath + File.separator + tempXFolderName + File.separator + tempFileName;
-
-                // check if exist temp file
-                File tempFile = new File(tempFilePath);
-                if (tempFile.exists()) {
+    /**
+     * Rebuilds the temp files of one X column and the temp files of their children
+     *
+     * @return the count of the processed tiles
+     */
+    private int makeTempFilesFromQuantizedMeshColumn(int depth, int tileX, String quantizedMeshFolderPath) {
+        QuantizedMeshManager quantizedMeshManager = new QuantizedMeshManager();
+        QuantizedMeshDecoder quantizedMeshDecoder = QuantizedMeshDecoder.getInstance();
+        List<String> quantizedMeshFileNames = new ArrayList<>();
+        FileUtils.getFileNames(quantizedMeshFolderPath, ".terrain", quantizedMeshFileNames);
+
+        int tilesCount = 0;
+        for (String quantizedMeshFileName : quantizedMeshFileNames) {
+            String quantizedMeshFilePath = quantizedMeshFolderPath + File.separator + quantizedMeshFileName;
+            try {
+                int tileY = Integer.parseInt(quantizedMeshFileName.substring(0, quantizedMeshFileName.indexOf(".")));
+                TileIndices tileIndices = new TileIndices();
+                tileIndices.set(tileX, tileY, depth);
+                String tempFilePath = getTilePath(tileIndices);
+
+                TileWgs84 tileWgs84;
+                if (new File(tempFilePath).exists()) {
                     log.debug("Temp file already exists: {}", tempFilePath);
+                    tileWgs84 = loadTileWgs84(tileIndices);
+                } else {
+                    // the tiles can be gzip compressed (--gzip)
+                    QuantizedMesh quantizedMesh = quantizedMeshDecoder.read(Paths.get(quantizedMeshFilePath), globalOptions.isGzipOutput());
+                    tileWgs84 = saveTempFileFromQuantizedMesh(quantizedMesh, tileIndices, tempFilePath, quantizedMeshManager);
+                }
+                if (tileWgs84 == null || tileWgs84.getMesh().getTriangles().isEmpty()) {
+                    log.error("TileWgs84 is null: {}", tempFilePath);
                     continue;
                 }
 
-                try {
-                    LittleEndianDataInputStream inputStream = new LittleEndianDataInputStream(new BufferedInputStream(new FileInputStream(quantizedMeshFilePath)));
-                    QuantizedMesh quantizedMesh = new QuantizedMesh();
-                    quantizedMesh.loadDataInputStream(inputStream);
-
-                    tileIndices.set(X, Y, L);
-                    TileWgs84 tileWgs84 = quantizedMeshManager.getTileWgs84FromQuantizedMesh(quantizedMesh, tileIndices, this);
-                    tileWgs84.saveFile(tileWgs84.getMesh(), tempFilePath);
-                } catch (Exception e) {
-                    log.error("Error loading quantized mesh file: {}", quantizedMeshFilePath, e);
-                }
+                // save the children in the children temp folder
+                TerrainMeshUtils.save4ChildrenMeshes(tileWgs84.getMesh(), this, globalOptions);
+                tilesCount++;
+            } catch (Exception e) {
+                log.error("Error loading quantized mesh file: {}", quantizedMeshFilePath, e);
             }
         }
+        return tilesCount;
     }
 
-    private void makeChildrenTempFiles(int depth) {
-        int childrenDepth = depth + 1;
-
-        // make temp folder
-        String tempPath = globalOptions.getTileTempPath();
-        String depthStr = "L" + depth;
-        String depthTempPath = tempPath + File.separator + depthStr;
-        File depthTempFolder = new File(depthTempPath);
-        if (!depthTempFolder.exists()) {
-            return;
-        }
-
-        // make the children temp folder
-        String childrenTempPath = tempPath + File.separator + "L" + childrenDepth;
-        File childrenTempFolder = new File(childrenTempPath);
-        if (!childrenTempFolder.exists()) {
-            if (childrenTempFolder.mkdirs()) {
-                log.debug("Created children temp folder: {}", childrenTempFolder.getAbsolutePath());
-            }
-        }
-
-        // find all XFolders inside the depthTempPath folder
-        List<String> xFolders = new ArrayList<>();
-        FileUtils.getFolderNames(depthTempPath, xFolders);
-        int xFoldersCount = xFolders.size();
-        for (int i = 0; i < xFoldersCount; i++) {
-            String xFolderName = xFolders.get(i);
-            int X = Integer.parseInt(xFolderName.substring(1));
-            String xFolderPath = depthTempPath + File.separator + xFolderName;
-            File xFolder = new File(xFolderPath);
-            if (!xFolder.exists()) {
-                log.error("X folder does not exist: {}", xFolderPath);
-                continue;
-            }
-
-            // make children XTemp folder
-            String childrenXTempPath = childrenTempPath + File.separator + xFolderName;
-            File childrenXTempFolder = new File(childrenXTempPath);
-            if (!childrenXTempFolder.exists()) {
-                if (childrenTempFolder.mkdirs()) {
-                    log.debug("Created children temp folder: {}", childrenXTempFolder.getAbsolutePath());
-                }
-            }
-
-            // load the TileWgs84 files
-            List<String> tileWgs84FileNames = new ArrayList<>();
-            FileUtils.getFileNames(xFolderPath, ".til", tileWgs84FileNames);
-            int tileWgs84FilesCount = tileWgs84FileNames.size();
-            for (int j = 0; j < tileWgs84FilesCount; j++) {
-                String tileWgs84FileName = tileWgs84FileNames.get(j);
-                List<String> splitStrings = Arrays.asList(tileWgs84FileName.split("_"));
-                String YFileName = splitStrings.get(2);
-                int Y = Integer.parseInt(YFileName.substring(1, YFileName.indexOf(".")));
-                String tileWgs84FilePath = xFolderPath + File.separator + tileWgs84FileName;
-
-                // load the TileWgs84 file
-                File tileWgs84File = new File(tileWgs84FilePath);
-                if (!tileWgs84File.exists()) {
-                    log.error("TileWgs84 file does not exist: {}", tileWgs84FilePath);
-                    continue;
-                }
-
-                // load the TileWgs84
-                try {
-                    TileIndices tileIndices = new TileIndices();
-                    tileIndices.set(X, Y, depth);
-                    TileWgs84 tileWgs84 = loadTileWgs84(tileIndices);
-                    if (tileWgs84 == null) {
-                        log.error("TileWgs84 is null: {}", tileWgs84FilePath);
-                        continue;
-                    }
-
-                    // save the TileWgs84 in the children temp folder
-                    TerrainMeshUtils.save4ChildrenMeshes(tileWgs84.getMesh(), this, globalOptions);
-                } catch (Exception e) {
-                    log.error("Error loading TileWgs84 file: {}", tileWgs84FilePath, e);
-                }
-            }
+    /**
+     * Saves a decoded quantized mesh tile as the temp file of the tile
+     *
+     * @return the tile, or null if the tile can not be rebuilt
+     */
+    private TileWgs84 saveTempFileFromQuantizedMesh(QuantizedMesh quantizedMesh, TileIndices tileIndices, String tempFilePath, QuantizedMeshManager quantizedMeshManager) throws IOException {
+        TileWgs84 tileWgs84 = quantizedMeshManager.getTileWgs84FromQuantizedMesh(quantizedMesh, tileIndices, this);
+        if (tileWgs84 == null) {
+            return null;
         }
+        tileWgs84.saveFile(tileWgs84.getMesh(), tempFilePath);
+        return tileWgs84;
     }
 
     private int determineExistentTileSetMaxDepth(String tileSetDirectory) {
@@ -340,6 +298,19 @@ public class TileWgs84Manager {
     }
 
     public void makeTileMeshes() throws IOException, TransformException, FactoryException {
+        // the archive is written at the end of the tiling, it can not be resumed
+        TilingJournal journal = null;
+        if (!globalOptions.isArchiveOutput()) {
+            journal = TilingJournal.create(globalOptions.getOutputPath(), globalOptions.getTileTempPath(), globalOptions.getMinimumTileDepth(), globalOptions.getMosaicSize(), globalOptions.isCheckpointSync());
+        }
+        makeTileMeshes(journal);
+    }
+
+    /**
+     * Makes the tile meshes of all the depths. With a journal, every block is committed once its tiles are written,
+     * and a resumed journal skips the committed blocks and depths.
+     */
+    private void makeTileMeshes(TilingJournal journal) throws IOException, TransformException, FactoryException {
         GeographicExtension geographicExtension = this.terrainElevationDataManager.getRootGeographicExtension();
 
         double minLon = geographicExtension.getMinLongitudeDeg();
@@ -348,53 +319,61 @@ public class TileWgs84Manager {
         double maxLat = geographicExtension.getMaxLatitudeDeg();
 
         // create the terrainLayer
-        terrainLayer = new TerrainLayer();
-        double[] bounds = terrainLayer.getBounds();
-        bounds[0] = minLon;
-        bounds[1] = minLat;
-        bounds[2] = maxLon;
-        bounds[3] = maxLat;
-
-        if (globalOptions.isCalculateNormalsExtension()) {
-            terrainLayer.addExtension("octvertexnormals");
-        }
-        if (globalOptions.isWaterMaskExtension()) {
-            terrainLayer.addExtension("watermask");
-        }
-        if (globalOptions.isMetaDataExtension()) {
-            terrainLayer.addExtension("metadata");
-        }
+        createTerrainLayer(minLon, maxLon, minLat, maxLat);
 
         log.info("----------------------------------------");
         int minTileDepth = globalOptions.getMinimumTileDepth();
         int maxTileDepth = globalOptions.getMaximumTileDepth();
+        int mosaicSize = globalOptions.getMosaicSize();
+        boolean isResumed = journal != null && journal.isResumed();
+        if (journal != null) {
+            this.tilingJournal = journal;
+            this.getTileOutputWriter().setTilingJournal(journal);
+            this.getTileOutputWriter().setSyncWrites(globalOptions.isCheckpointSync());
+        }
+        if (isResumed) {
+            // the blocks of the journal must be the same
+            minTileDepth = journal.getMinTileDepth();
+            mosaicSize = journal.getMosaicSize();
+            for (int depth = minTileDepth; depth <= maxTileDepth; depth++) {
+                flatTileRangesByDepth.put(depth, new ArrayList<>(journal.getFlatTileRanges(depth)));
+            }
+        }
 
         for (int depth = minTileDepth; depth <= maxTileDepth; depth += 1) {
+            if (isResumed && journal.isDepthCompleted(depth)) {
+                log.info("[Tile][{}/{}] Depth already completed.", depth, maxTileDepth);
+                continue;
+            }
             long startTime = System.currentTimeMillis();
 
-            TileRange tilesRange = new TileRange();
-
-            if (depth == 0) {
-                // in this case, the tile is the world. L0X0Y0 & L0X1Y0
-                tilesRange.setMinTileX(0);
-                tilesRange.setMaxTileX(1);
-                tilesRange.setMinTileY(0);
-                tilesRange.setMaxTileY(0);
-            } else {
-                TileWgs84Utils.selectTileIndicesArray(depth, minLon, maxLon, minLat, maxLat, tilesRange, originIsLeftUp);
-            }
+            TileRange tilesRange = getTilesRangeOfDepth(depth, minLon, maxLon, minLat, maxLat);
 
-            // Set terrainLayer.available of tileSet JSON
-            terrainLayer.getAvailable().add(tilesRange); // this is used to save the terrainLayer.json
             this.triangleRefinementMaxIterations = TileWgs84Utils.getRefinementIterations(depth);
             this.terrainElevationDataManager.deleteObjects();
             this.terrainElevationDataManager = new TerrainElevationDataManager(); // new
             this.terrainElevationDataManager.setTileWgs84Manager(this);
             this.terrainElevationDataManager.setTerrainElevationDataFolderPath(this.depthGeoTiffFolderPathMap.get(depth));
+            TilingMetrics.getInstance().setCurrentDepth(depth);
             this.terrainElevationDataManager.makeTerrainQuadTree(depth);
 
-            int mosaicSize = globalOptions.getMosaicSize();
-            List<TileRange> subDividedTilesRanges = TileWgs84Utils.subDivideTileRange(tilesRange, mosaicSize, mosaicSize, null);
+            Integer journalMosaicSize = isResumed ? journal.getDepthMosaicSize(depth) : null;
+            int depthMosaicSize;
+            if (journalMosaicSize != null) {
+                depthMosaicSize = journalMosaicSize;
+            } else if (isResumed && journal.hasCompletedBlocks(depth)) {
+                // the blocks of the journal must be the same
+                depthMosaicSize = mosaicSize;
+            } else {
+                depthMosaicSize = getDepthMosaicSize(depth, tilesRange, mosaicSize);
+                if (journal != null && globalOptions.isAutoTune()) {
+                    journal.commitDepthMosaicSize(depth, depthMosaicSize);
+                }
+            }
+            List<TileRange> subDividedTilesRanges = TileWgs84Utils.subDivideTileRange(tilesRange, depthMosaicSize, depthMosaicSize, null);
+            MemoryGovernor.getInstance().resetMosaicSize(depthMosaicSize);
+            flatTileRangesByDepth.remove(depth - 2);
+            flatTilesCount = 0;
 
             log.info("[Tile][{}/{}] Start generating tile meshes - Divided Tiles Size: {}", depth, maxTileDepth, subDividedTilesRanges.size());
             AtomicInteger counter = new AtomicInteger(0);
@@ -402,16 +381,23 @@ public class TileWgs84Manager {
             int total = subDividedTilesRanges.size();
             for (TileRange subDividedTilesRange : subDividedTilesRanges) {
                 int progress = counter.incrementAndGet();
-                log.info("[Tile][{}/{}][{}/{}] generate wgs84 raster all tiles...", depth, maxTileDepth, progress, total);
-                TileRange expandedTilesRange = subDividedTilesRange.expand1();
-                this.terrainElevationDataManager.makeAllTileWgs84Raster(expandedTilesRange, this);
-
-                log.info("[Tile][{}/{}][{}/{}] process tiling...", depth, maxTileDepth, progress, total);
-                TileMatrix tileMatrix = new TileMatrix(subDividedTilesRange, this);
-
-                boolean isFirstGeneration = (depth == minTileDepth);
-                tileMatrix.makeMatrixMesh(isFirstGeneration);
-                tileMatrix.deleteObjects();
+                if (isResumed && journal.isBlockCompleted(subDividedTilesRange)) {
+                    log.info("[Tile][{}/{}][{}/{}] block already completed.", depth, maxTileDepth, progress, total);
+                } else {
+                    log.info("[Tile][{}/{}][{}/{}] process tiling...", depth, maxTileDepth, progress, total);
+                    boolean isFirstGeneration = (depth == minTileDepth);
+                    List<TileRange> flatTileRanges = flatTileRangesByDepth.computeIfAbsent(depth, k -> new ArrayList<>());
+                    int flatTileRangesCount = flatTileRanges.size();
+                    if (journal != null) {
+                        journal.beginBlock(subDividedTilesRange);
+                    }
+                    this.makeBlockMeshes(subDividedTilesRange, isFirstGeneration);
+                    if (journal != null) {
+                        // checkpoint : the block is committed when all its files are written
+                        this.getTileOutputWriter().flush();
+                        journal.commitBlock(subDividedTilesRange, flatTileRanges.subList(flatTileRangesCount, flatTileRanges.size()));
+                    }
+                }
 
                 if(!GlobalOptions.getInstance().isLeaveTemp()) {
                     // now, delete tempFiles of subDividedTilesRange
@@ -421,15 +407,29 @@ public class TileWgs84Manager {
                 }
             }
 
+            // the children tiles must be on disk before the next depth
+            this.getTileOutputWriter().flush();
+
+            // Set terrainLayer.available of tileSet JSON with the tiles actually written, as rectangles
+            List<TileRange> availableRanges = this.getTileOutputWriter().getWrittenTiles().getRectangles(depth);
+            terrainLayer.getAvailable().addAll(availableRanges); // this is used to save the terrainLayer.json
+            log.info("[Tile][{}/{}] Available tiles : {} in {} rectangles", depth, maxTileDepth, this.getTileOutputWriter().getWrittenTiles().getTileCount(depth), availableRanges.size());
+
             if(!GlobalOptions.getInstance().isLeaveTemp()) {
                 this.deleteTempFilesByDepth(depth);
             }
-
+            if (journal != null) {
+                journal.commitDepth(depth);
+            }
+            finishDepthTuning(depth);
 
             this.terrainElevationDataManager.deleteGeoTiffManager();
             this.terrainElevationDataManager.deleteTileRaster();
             this.terrainElevationDataManager.deleteCoverage();
 
+            if (flatTilesCount > 0) {
+                log.info("[Tile][{}/{}] Flat tiles : {}", depth, maxTileDepth, flatTilesCount);
+            }
             long endTime = System.currentTimeMillis();
             log.info("[Tile][{}/{}] - End making tile meshes : Duration: {}", depth, maxTileDepth, DecimalUtils.millisecondToDisplayTime(endTime - startTime));
 
@@ -445,7 +445,379 @@ public class TileWgs84Manager {
             log.info("[Tile][{}/{}] Java Heap Size: {} - MaxMem: {}MB / TotalMem: {}MB / FreeMem: {}MB / UsedMem: {}MB ({}%)", depth, maxTileDepth, javaHeapSize, maxMem, totalMem, freeMem, usedMem);
             log.info("----------------------------------------");
         }
+        this.getTileOutputWriter().flush();
+        if (isResumed) {
+            // the tiles of the interrupted run are not in the written tiles
+            terrainLayer.getAvailable().clear();
+            terrainLayer.addAvailable(TerrainLayer.scanTileCoverage(Paths.get(globalOptions.getOutputPath())));
+        }
         terrainLayer.saveJsonFile(globalOptions.getOutputPath(), "layer.json");
+        this.closeTileOutputWriter();
+        if (journal != null) {
+            journal.delete();
+            this.tilingJournal = null;
+        }
+    }
+
+    /**
+     * The mosaic size of the depth : the configured size, or the size chosen from the measures of the previous depth (--autoTune)
+     */
+    private int getDepthMosaicSize(int depth, TileRange tilesRange, int configuredMosaicSize) {
+        if (!globalOptions.isAutoTune()) {
+            return configuredMosaicSize;
+        }
+        long tileRasterBytes = TilingPlan.getTileRasterBytes(rasterTileSize, globalOptions.isWaterMaskExtension());
+        return TilingAutoTuner.getInstance().chooseMosaicSize(depth, tilesRange, configuredMosaicSize, tileRasterBytes);
+    }
+
+    /**
+     * Records the mosaic size the depth ended with (the memory governor may have reduced it), and exports the tuning
+     */
+    private void finishDepthTuning(int depth) {
+        if (globalOptions.isAutoTune()) {
+            TilingAutoTuner.getInstance().finishDepth(depth, MemoryGovernor.getInstance().getMosaicSize(), globalOptions.getWriterThreads(), Paths.get(globalOptions.getOutputPath()));
+        }
+    }
+
+    /**
+     * Makes the meshes of a block of tiles.
+     * If the heap can not hold the block, the memory governor reduces the mosaic size and the block is processed again as smaller blocks.
+     * No output is written before the refinement ends, so processing the block again is safe.
+     */
+    private void makeBlockMeshes(TileRange blockTilesRange, boolean isFirstGeneration) throws IOException, TransformException {
+        MemoryGovernor memoryGovernor = MemoryGovernor.getInstance();
+        int cols = blockTilesRange.getMaxTileX() - blockTilesRange.getMinTileX() + 1;
+        int rows = blockTilesRange.getMaxTileY() - blockTilesRange.getMinTileY() + 1;
+        int adaptiveMosaicSize = memoryGovernor.getMosaicSize();
+        if (adaptiveMosaicSize > 0 && (cols > adaptiveMosaicSize || rows > adaptiveMosaicSize)) {
+            List<TileRange> subBlocks = TileWgs84Utils.subDivideTileRange(blockTilesRange, adaptiveMosaicSize, adaptiveMosaicSize, null);
+            for (TileRange subBlock : subBlocks) {
+                makeBlockMeshes(subBlock, isFirstGeneration);
+            }
+            return;
+        }
+
+        TilingMetrics tilingMetrics = TilingMetrics.getInstance();
+        int depth = blockTilesRange.getTileDepth();
+        long blockStartNanos = System.nanoTime();
+        BlockEvent blockEvent = new BlockEvent();
+        blockEvent.begin();
+        TileRange expandedTilesRange = blockTilesRange.expand1();
+        this.terrainElevationDataManager.makeAllTileWgs84Raster(expandedTilesRange, this);
+
+        Float flatElevation = getFlatElevation(expandedTilesRange);
+        if (flatElevation != null) {
+            saveFlatTiles(blockTilesRange, flatElevation);
+            tilingMetrics.observeBlock(depth, blockStartNanos);
+            commitBlockEvent(blockEvent, blockTilesRange, null, true, false);
+            return;
+        }
+
+        TileMatrix tileMatrix = new TileMatrix(blockTilesRange, this);
+        try {
+            tileMatrix.makeMatrixMesh(isFirstGeneration);
+            tilingMetrics.observeBlock(depth, blockStartNanos);
+            commitBlockEvent(blockEvent, blockTilesRange, tileMatrix, false, false);
+        } catch (MemoryGovernor.MemoryPressureException e) {
+            log.warn("[Tile] {}", e.getMessage());
+            commitBlockEvent(blockEvent, blockTilesRange, null, false, true);
+            tileMatrix.deleteObjects();
+            tileMatrix = null;
+            this.terrainElevationDataManager.deleteTileRaster();
+            tilingMetrics.increment(TilingMetrics.Counter.BLOCK_SPLITS, depth);
+            memoryGovernor.onBlockOverflow(cols, rows);
+            makeBlockMeshes(blockTilesRange, isFirstGeneration);
+        } finally {
+            if (tileMatrix != null) {
+                tileMatrix.deleteObjects();
+            }
+        }
+    }
+
+    /**
+     * Commits the JFR event of the block, if the event is enabled in the recording
+     */
+    private void commitBlockEvent(BlockEvent blockEvent, TileRange blockTilesRange, TileMatrix tileMatrix, boolean flat, boolean overflow) {
+        blockEvent.end();
+        if (!blockEvent.shouldCommit()) {
+            return;
+        }
+        blockEvent.setDepth(blockTilesRange.getTileDepth());
+        blockEvent.setMinTileX(blockTilesRange.getMinTileX());
+        blockEvent.setMaxTileX(blockTilesRange.getMaxTileX());
+        blockEvent.setMinTileY(blockTilesRange.getMinTileY());
+        blockEvent.setMaxTileY(blockTilesRange.getMaxTileY());
+        if (tileMatrix != null) {
+            blockEvent.setInputTriangles(tileMatrix.getInputTrianglesCount());
+            blockEvent.setOutputTriangles(tileMatrix.getOutputTrianglesCount());
+            blockEvent.setOutputVertices(tileMatrix.getOutputVerticesCount());
+        }
+        blockEvent.setFlat(flat);
+        blockEvent.setOverflow(overflow);
+        blockEvent.commit();
+    }
+
+    /**
+     * Dry run of the tiling (--plan) : counts the tiles and the blocks of every depth, and meshes a few random sample blocks
+     * of every depth to calibrate the estimates of memory, temp disk, output size and runtime.
+     * The sample blocks are written in the temp folder, the output path is not modified.
+     */
+    public TilingPlan makeTilingPlan() throws IOException, TransformException {
+        GeographicExtension geographicExtension = this.terrainElevationDataManager.getRootGeographicExtension();
+        double minLon = geographicExtension.getMinLongitudeDeg();
+        double maxLon = geographicExtension.getMaxLongitudeDeg();
+        double minLat = geographicExtension.getMinLatitudeDeg();
+        double maxLat = geographicExtension.getMaxLatitudeDeg();
+        createTerrainLayer(minLon, maxLon, minLat, maxLat);
+
+        int minTileDepth = globalOptions.getMinimumTileDepth();
+        int maxTileDepth = globalOptions.getMaximumTileDepth();
+        int mosaicSize = globalOptions.getMosaicSize();
+        TilingPlan tilingPlan = new TilingPlan(mosaicSize, rasterTileSize, globalOptions.isWaterMaskExtension());
+        tilingPlan.setStandardizedBytes(TilingPlan.getFolderSize(Paths.get(globalOptions.getStandardizeTempPath())));
+        tilingPlan.setResizedBytes(TilingPlan.getFolderSize(Paths.get(globalOptions.getResizedTiffTempPath())));
+
+        this.sampleOutputPath = globalOptions.getTileTempPath() + File.separator + "plan_output";
+        try {
+            for (int depth = minTileDepth; depth <= maxTileDepth; depth += 1) {
+                TileRange tilesRange = getTilesRangeOfDepth(depth, minLon, maxLon, minLat, maxLat);
+                List<TileRange> blocks = TileWgs84Utils.subDivideTileRange(tilesRange, mosaicSize, mosaicSize, null);
+                TilingPlan.DepthEstimate depthEstimate = tilingPlan.addDepth(depth, tilesRange, blocks.size());
+
+                long setupStartTime = System.currentTimeMillis();
+                this.triangleRefinementMaxIterations = TileWgs84Utils.getRefinementIterations(depth);
+                this.terrainElevationDataManager.deleteObjects();
+                this.terrainElevationDataManager = new TerrainElevationDataManager();
+                this.terrainElevationDataManager.setTileWgs84Manager(this);
+                this.terrainElevationDataManager.setTerrainElevationDataFolderPath(this.depthGeoTiffFolderPathMap.get(depth));
+                TilingMetrics.getInstance().setCurrentDepth(depth);
+                this.terrainElevationDataManager.makeTerrainQuadTree(depth);
+                depthEstimate.setSetupMillis(System.currentTimeMillis() - setupStartTime);
+                MemoryGovernor.getInstance().resetMosaicSize(mosaicSize);
+
+                // the same samples for the same configuration
+                Random random = new Random(depth);
+                int sampleCount = Math.min(TilingPlan.SAMPLE_BLOCKS, blocks.size());
+                for (int i = 0; i < sampleCount; i++) {
+                    TileRange block = blocks.remove(random.nextInt(blocks.size()));
+                    TileRange sampleBlock = block.clone();
+                    sampleBlock.setMaxTileX(Math.min(block.getMaxTileX(), block.getMinTileX() + TilingPlan.SAMPLE_BLOCK_SIZE - 1));
+                    sampleBlock.setMaxTileY(Math.min(block.getMaxTileY(), block.getMinTileY() + TilingPlan.SAMPLE_BLOCK_SIZE - 1));
+                    makeSampleBlockMeshes(sampleBlock, depthEstimate);
+                }
+                log.info("[Plan][{}/{}] Tiles : {}, blocks : {}, sampled tiles : {}", depth, maxTileDepth, depthEstimate.getTileCount(), depthEstimate.getBlockCount(), depthEstimate.getSampledTiles());
+
+                this.terrainElevationDataManager.deleteGeoTiffManager();
+                this.terrainElevationDataManager.deleteTileRaster();
+                this.terrainElevationDataManager.deleteCoverage();
+            }
+        } finally {
+            this.closeTileOutputWriter();
+            if (new File(this.sampleOutputPath).exists()) {
+                FileUtils.deleteDirectory(new File(this.sampleOutputPath));
+            }
+            this.sampleOutputPath = null;
+        }
+
+        tilingPlan.check(Runtime.getRuntime().maxMemory(), Paths.get(globalOptions.getTileTempPath()), Paths.get(globalOptions.getOutputPath()));
+        return tilingPlan;
+    }
+
+    /**
+     * Meshes a sample block from the initial meshes of its tiles (the parent temp files are not made in a plan),
+     * and measures its time, peak heap, output tiles and children temp files. The files of the sample are deleted after.
+     */
+    private void makeSampleBlockMeshes(TileRange sampleBlock, TilingPlan.DepthEstimate depthEstimate) throws IOException, TransformException {
+        int depth = sampleBlock.getTileDepth();
+        long baselineHeap = TilingPlan.getUsedHeapBytes();
+        TilingPlan.resetPeakHeap();
+        long startTime = System.currentTimeMillis();
+        this.makeBlockMeshes(sampleBlock, true);
+        this.getTileOutputWriter().flush();
+        long millis = System.currentTimeMillis() - startTime;
+        long peakHeap = TilingPlan.getPeakHeapBytes();
+
+        File outputDepthFolder = new File(this.sampleOutputPath, String.valueOf(depth));
+        File childTempFolder = new File(globalOptions.getTileTempPath(), "L" + (depth + 1));
+        long outputBytes = TilingPlan.getFolderSize(outputDepthFolder.toPath());
+        long childTempBytes = TilingPlan.getFolderSize(childTempFolder.toPath());
+        int cols = sampleBlock.getMaxTileX() - sampleBlock.getMinTileX() + 1;
+        int rows = sampleBlock.getMaxTileY() - sampleBlock.getMinTileY() + 1;
+        depthEstimate.addSample(cols, rows, millis, outputBytes, childTempBytes, baselineHeap, peakHeap);
+
+        for (File sampleFolder : new File[]{outputDepthFolder, childTempFolder}) {
+            if (sampleFolder.exists()) {
+                FileUtils.deleteDirectory(sampleFolder);
+            }
+        }
+        deleteTempFilesByDepth(depth);
+        this.terrainElevationDataManager.deleteTileRaster();
+    }
+
+    private TileRange getTilesRangeOfDepth(int depth, double minLon, double maxLon, double minLat, double maxLat) {
+        TileRange tilesRange = new TileRange();
+        if (depth == 0) {
+            // in this case, the tile is the world. L0X0Y0 & L0X1Y0
+            tilesRange.setMinTileX(0);
+            tilesRange.setMaxTileX(1);
+            tilesRange.setMinTileY(0);
+            tilesRange.setMaxTileY(0);
+        } else {
+            TileWgs84Utils.selectTileIndicesArray(depth, minLon, maxLon, minLat, maxLat, tilesRange, originIsLeftUp);
+        }
+        return tilesRange;
+    }
+
+    private void createTerrainLayer(double minLon, double maxLon, double minLat, double maxLat) {
+        terrainLayer = new TerrainLayer();
+        flatTileRangesByDepth.clear();
+        double[] bounds = terrainLayer.getBounds();
+        bounds[0] = minLon;
+        bounds[1] = minLat;
+        bounds[2] = maxLon;
+        bounds[3] = maxLat;
+
+        if (globalOptions.isCalculateNormalsExtension()) {
+            terrainLayer.addExtension("octvertexnormals");
+        }
+        if (globalOptions.isWaterMaskExtension()) {
+            terrainLayer.addExtension("watermask");
+        }
+        if (globalOptions.isMetaDataExtension()) {
+            terrainLayer.addExtension("metadata");
+            terrainLayer.setMetadataAvailability(globalOptions.getMetadataAvailability());
+            this.tileAvailability = makeTileAvailability();
+        }
+    }
+
+    /**
+     * The available tiles of all the depths, known before the tiling (used for the child availability of the metadata) :
+     * the tiles over the footprints of the source geoTiff files, so the gaps of a sparse coverage are not advertised.
+     * The parent of such a tile is over the same footprint, so the availability is a tree.
+     */
+    private TileAvailability makeTileAvailability() {
+        TileAvailability availability = new TileAvailability();
+        List<GeographicExtension> sourceGeographicExtensions = this.terrainElevationDataManager.getSourceGeographicExtensions();
+        for (int depth = 0; depth <= globalOptions.getMaximumTileDepth(); depth++) {
+            if (depth == 0) {
+                // the world tiles. L0X0Y0 & L0X1Y0
+                availability.addRange(TileRange.of(0, 0, 1, 0, 0));
+                continue;
+            }
+            // a coverage by depth, to merge the overlapping and adjacent footprints
+            TileCoverage depthCoverage = new TileCoverage();
+            for (GeographicExtension sourceGeographicExtension : sourceGeographicExtensions) {
+                TileRange footprintRange = new TileRange();
+                TileWgs84Utils.selectTileIndicesArray(depth, sourceGeographicExtension.getMinLongitudeDeg(), sourceGeographicExtension.getMaxLongitudeDeg(),
+                        sourceGeographicExtension.getMinLatitudeDeg(), sourceGeographicExtension.getMaxLatitudeDeg(), footprintRange, originIsLeftUp);
+                footprintRange.setTileDepth(depth);
+                depthCoverage.addRange(footprintRange);
+            }
+            for (TileRange rectangle : depthCoverage.getRectangles(depth)) {
+                availability.addRange(rectangle);
+            }
+        }
+        return availability;
+    }
+
+    /**
+     * Sets the water mask and the metadata extensions of the quantized mesh of the tile
+     */
+    public void setTileExtensions(QuantizedMesh quantizedMesh, TileIndices tileIndices) {
+        if (globalOptions.isWaterMaskExtension()) {
+            quantizedMesh.setWaterMask(this.terrainElevationDataManager.getTileWgs84Raster(tileIndices, this).getWaterMask());
+        }
+        int metadataAvailability = globalOptions.getMetadataAvailability();
+        if (this.tileAvailability != null && tileIndices.getL() % metadataAvailability == 0) {
+            List<List<TileRange>> subtreeAvailability = this.tileAvailability.getSubtreeAvailability(tileIndices, metadataAvailability);
+            quantizedMesh.setMetadata(TileAvailability.toMetadataJson(subtreeAvailability));
+        }
+    }
+
+    /**
+     * Returns the raster of water polygons of the water mask, or null if there is none. Loaded once.
+     */
+    public WaterMaskRaster getWaterMaskRaster() {
+        String waterMaskPath = globalOptions.getWaterMaskPath();
+        if (this.waterMaskRaster == null && waterMaskPath != null) {
+            try {
+                this.waterMaskRaster = new WaterMaskRaster(waterMaskPath);
+            } catch (IOException e) {
+                log.error("[ERROR] Failed to load the water mask raster : {}", waterMaskPath, e);
+                throw new RuntimeException(e);
+            }
+        }
+        return this.waterMaskRaster;
+    }
+
+    /**
+     * Returns the elevation of the block if all its tiles and its neighbor tiles have flat rasters at the same elevation
+     * (sea, or no-data outside the input rasters), otherwise null
+     */
+    private Float getFlatElevation(TileRange expandedTilesRange) {
+        Float flatElevation = null;
+        for (TileIndices tileIndices : expandedTilesRange.getTileIndices(null)) {
+            if (!tileIndices.isValid()) {
+                continue;
+            }
+            TileWgs84Raster tileWgs84Raster = this.terrainElevationDataManager.getTileWgs84Raster(tileIndices, this);
+            if (!tileWgs84Raster.isFlat()) {
+                return null;
+            }
+            if (flatElevation == null) {
+                flatElevation = tileWgs84Raster.getMinElevation();
+            } else if (flatElevation != tileWgs84Raster.getMinElevation()) {
+                return null;
+            }
+        }
+        return flatElevation;
+    }
+
+    /**
+     * Saves the canonical flat quantized mesh of every tile of the block, without temp files and children temp files
+     */
+    private void saveFlatTiles(TileRange blockTilesRange, float elevation) throws IOException {
+        boolean calculateNormals = globalOptions.isCalculateNormalsExtension();
+        TileOutputWriter tileOutputWriter = this.getTileOutputWriter();
+        QuantizedMeshManager quantizedMeshManager = new QuantizedMeshManager();
+        boolean qualityReport = tileOutputWriter.getTileQualityReport() != null;
+        for (TileIndices tileIndices : blockTilesRange.getTileIndices(null)) {
+            if (!tileIndices.isValid()) {
+                continue;
+            }
+            long tileStartNanos = System.nanoTime();
+            GeographicExtension geographicExtension = TileWgs84Utils.getGeographicExtentOfTileLXY(tileIndices.getL(), tileIndices.getX(), tileIndices.getY(), null, imaginaryType, originIsLeftUp);
+            QuantizedMesh quantizedMesh = FlatQuantizedMesh.create(geographicExtension, elevation, calculateNormals, quantizedMeshManager);
+            setTileExtensions(quantizedMesh, tileIndices);
+
+            // the flat tiles are exact and not refined
+            TileQualityReport.TileQuality tileQuality = null;
+            if (qualityReport) {
+                tileQuality = new TileQualityReport.TileQuality();
+                tileQuality.setGenerationNanos(System.nanoTime() - tileStartNanos);
+            }
+            tileOutputWriter.writeQuantizedMesh(quantizedMesh, calculateNormals, tileIndices, getQuantizedMeshTilePath(tileIndices), true, tileQuality);
+            flatTilesCount++;
+        }
+        flatTileRangesByDepth.computeIfAbsent(blockTilesRange.getTileDepth(), k -> new ArrayList<>()).add(blockTilesRange.clone());
+    }
+
+    /**
+     * Returns true if the parent of the tile was saved as a flat tile
+     */
+    public boolean isChildOfFlatTile(TileIndices tileIndices) {
+        List<TileRange> flatTileRanges = flatTileRangesByDepth.get(tileIndices.getL() - 1);
+        if (flatTileRanges == null) {
+            return false;
+        }
+        TileIndices parentTileIndices = new TileIndices();
+        parentTileIndices.set(tileIndices.getX() / 2, tileIndices.getY() / 2, tileIndices.getL() - 1);
+        for (TileRange flatTileRange : flatTileRanges) {
+            if (flatTileRange.intersects(parentTileIndices)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void deleteTempFilesByDepth(int depth) {
@@ -461,7 +833,7 @@ public class TileWgs84Manager {
         FileUtils.deleteDirectory(depthTempFolder);
     }
 
-    private void deleteTempFilesByTileRange(TileRange tileRange) {
+    private void deleteTempFilesByTileRange(TileRange tileRange) throws IOException {
         int depth = tileRange.getTileDepth();
         String tempPath = globalOptions.getTileTempPath();
         String depthStr = "L" + depth;
@@ -485,6 +857,7 @@ public class TileWgs84Manager {
             for (int y = minTileY; y <= maxTileY; y++) {
                 String tempFileName = "L" + depth + "_" + xFolderName + "_Y" + y + ".til";
                 String tempFilePath = xFolderPath + File.separator + tempFileName;
+                this.getTileOutputWriter().awaitPath(tempFilePath);
                 File tempFile = new File(tempFilePath);
                 if (tempFile.exists()) {
                     if (tempFile.delete()) {
@@ -508,6 +881,14 @@ public class TileWgs84Manager {
     }
 
     public void makeTileMeshesContinue() throws IOException, TransformException, FactoryException {
+        // resume from the journal of the interrupted run, at the first uncommitted block
+        TilingJournal journal = TilingJournal.load(globalOptions.getOutputPath(), globalOptions.isCheckpointSync());
+        if (journal != null) {
+            makeTileMeshes(journal);
+            return;
+        }
+        log.info("[Tile] No tiling journal found, continuing from the last completed depth of the output.");
+
         String outputDirectory = globalOptions.getOutputPath();
         int existentMaxDepth = determineExistentTileSetMaxDepth(outputDirectory);
         log.info("existent max depth: {}", existentMaxDepth);
@@ -520,22 +901,7 @@ public class TileWgs84Manager {
         double maxLat = geographicExtension.getMaxLatitudeDeg();
 
         // create the terrainLayer
-        terrainLayer = new TerrainLayer();
-        double[] bounds = terrainLayer.getBounds();
-        bounds[0] = minLon;
-        bounds[1] = minLat;
-        bounds[2] = maxLon;
-        bounds[3] = maxLat;
-
-        if (globalOptions.isCalculateNormalsExtension()) {
-            terrainLayer.addExtension("octvertexnormals");
-        }
-        if (globalOptions.isWaterMaskExtension()) {
-            terrainLayer.addExtension("watermask");
-        }
-        if (globalOptions.isMetaDataExtension()) {
-            terrainLayer.addExtension("metadata");
-        }
+        createTerrainLayer(minLon, maxLon, minLat, maxLat);
 
         log.info("----------------------------------------");
         int minTileDepth = globalOptions.getMinimumTileDepth();
@@ -544,56 +910,37 @@ public class TileWgs84Manager {
         // if the maxTileDepth is less than the existent max depth, set the maxTileDepth to the existent max depth
         minTileDepth = Math.max(minTileDepth, existentMaxDepth + 1);
 
+        // Set terrainLayer.available of tileSet json with the existing tiles of the depths that are not generated again, as rectangles
+        TileCoverage existingTiles = TerrainLayer.scanTileCoverage(Paths.get(outputDirectory));
         for (int depth = 0; depth < minTileDepth; depth++) {
-            TileRange tilesRange = new TileRange();
-            if (depth == 0) {
-                // in this case, the tile is the world. L0X0Y0 & L0X1Y0
-                tilesRange.setMinTileX(0);
-                tilesRange.setMaxTileX(1);
-                tilesRange.setMinTileY(0);
-                tilesRange.setMaxTileY(0);
-            } else {
-                TileWgs84Utils.selectTileIndicesArray(depth, minLon, maxLon, minLat, maxLat, tilesRange, originIsLeftUp);
-            }
-
-            // Set terrainLayer.available of tileSet json
-            terrainLayer.getAvailable().add(tilesRange); // this is used to save the terrainLayer.json
+            terrainLayer.getAvailable().addAll(existingTiles.getRectangles(depth)); // this is used to save the terrainLayer.json
         }
 
         for (int depth = minTileDepth; depth <= maxTileDepth; depth += 1) {
             long startTime = System.currentTimeMillis();
             //Date startDate = new Date(startTime);
 
-            TileRange tilesRange = new TileRange();
-
-            if (depth == 0) {
-                // in this case, the tile is the world. L0X0Y0 & L0X1Y0
-                tilesRange.setMinTileX(0);
-                tilesRange.setMaxTileX(1);
-                tilesRange.setMinTileY(0);
-                tilesRange.setMaxTileY(0);
-            } else {
-                TileWgs84Utils.selectTileIndicesArray(depth, minLon, maxLon, minLat, maxLat, tilesRange, originIsLeftUp);
-            }
+            TileRange tilesRange = getTilesRangeOfDepth(depth, minLon, maxLon, minLat, maxLat);
 
             // check if the temp folder exists
             if (!existTempFiles(depth)) {
                 log.info("making tempFiles from quantized meshes... depth: {}", depth - 1);
                 makeTempFilesFromQuantizedMeshes(depth - 1);
-                makeChildrenTempFiles(depth - 1);
             }
 
-            // Set terrainLayer.available of tileSet json
-            terrainLayer.getAvailable().add(tilesRange); // this is used to save the terrainLayer.json
             this.triangleRefinementMaxIterations = TileWgs84Utils.getRefinementIterations(depth);
             this.terrainElevationDataManager.deleteObjects();
             this.terrainElevationDataManager = new TerrainElevationDataManager(); // new
             this.terrainElevationDataManager.setTileWgs84Manager(this);
             this.terrainElevationDataManager.setTerrainElevationDataFolderPath(this.depthGeoTiffFolderPathMap.get(depth));
+            TilingMetrics.getInstance().setCurrentDepth(depth);
             this.terrainElevationDataManager.makeTerrainQuadTree(depth);
 
-            int mosaicSize = globalOptions.getMosaicSize();
+            int mosaicSize = getDepthMosaicSize(depth, tilesRange, globalOptions.getMosaicSize());
             List<TileRange> subDividedTilesRanges = TileWgs84Utils.subDivideTileRange(tilesRange, mosaicSize, mosaicSize, null);
+            MemoryGovernor.getInstance().resetMosaicSize(mosaicSize);
+            flatTileRangesByDepth.remove(depth - 2);
+            flatTilesCount = 0;
 
             log.info("[Tile][{}/{}] Start generating tile meshes - Divided Tiles Size: {}", depth, maxTileDepth, subDividedTilesRanges.size());
             AtomicInteger counter = new AtomicInteger(0);
@@ -601,22 +948,27 @@ public class TileWgs84Manager {
             int total = subDividedTilesRanges.size();
             for (TileRange subDividedTilesRange : subDividedTilesRanges) {
                 int progress = counter.incrementAndGet();
-                log.info("[Tile][{}/{}][{}/{}] generate wgs84 raster all tiles...", depth, maxTileDepth, progress, total);
-                TileRange expandedTilesRange = subDividedTilesRange.expand1();
-                this.terrainElevationDataManager.makeAllTileWgs84Raster(expandedTilesRange, this);
-
                 log.info("[Tile][{}/{}][{}/{}] process tiling...", depth, maxTileDepth, progress, total);
-                TileMatrix tileMatrix = new TileMatrix(subDividedTilesRange, this);
-
                 boolean isFirstGeneration = (depth == 0);
-                tileMatrix.makeMatrixMesh(isFirstGeneration);
-                tileMatrix.deleteObjects();
+                this.makeBlockMeshes(subDividedTilesRange, isFirstGeneration);
             }
 
+            // the children tiles must be on disk before the next depth
+            this.getTileOutputWriter().flush();
+
+            // Set terrainLayer.available of tileSet JSON with the tiles actually written, as rectangles
+            List<TileRange> availableRanges = this.getTileOutputWriter().getWrittenTiles().getRectangles(depth);
+            terrainLayer.getAvailable().addAll(availableRanges); // this is used to save the terrainLayer.json
+            log.info("[Tile][{}/{}] Available tiles : {} in {} rectangles", depth, maxTileDepth, this.getTileOutputWriter().getWrittenTiles().getTileCount(depth), availableRanges.size());
+            finishDepthTuning(depth);
+
             this.terrainElevationDataManager.deleteGeoTiffManager();
             this.terrainElevationDataManager.deleteTileRaster();
             this.terrainElevationDataManager.deleteCoverage();
 
+            if (flatTilesCount > 0) {
+                log.info("[Tile][{}/{}] Flat tiles : {}", depth, maxTileDepth, flatTilesCount);
+            }
             long endTime = System.currentTimeMillis();
             log.info("[Tile][{}/{}] - End making tile meshes : Duration: {}", depth, maxTileDepth, DecimalUtils.millisecondToDisplayTime(endTime - startTime));
 
@@ -632,7 +984,171 @@ public class TileWgs84Manager {
             log.info("[Tile][{}/{}] Java Heap Size: {} - MaxMem: {}MB / TotalMem: {}MB / FreeMem: {}MB / UsedMem: {}MB ({}%)", depth, maxTileDepth, javaHeapSize, maxMem, totalMem, freeMem, usedMem);
             log.info("----------------------------------------");
         }
+        this.getTileOutputWriter().flush();
         terrainLayer.saveJsonFile(globalOptions.getOutputPath(), "layer.json");
+        this.closeTileOutputWriter();
+    }
+
+    /**
+     * Regenerates only the tiles over the changed sources (--incremental), the other tiles of the previous tileset are kept.
+     * At each depth, the ring of unchanged tiles around the regenerated tiles is loaded from the previous tileset as temp files,
+     * so the regenerated tiles are refined against the existing borders and the seams match.
+     */
+    public void makeTileMeshesIncremental(IncrementalPlan incrementalPlan) throws IOException, TransformException, FactoryException {
+        GeographicExtension geographicExtension = this.terrainElevationDataManager.getRootGeographicExtension();
+
+        double minLon = geographicExtension.getMinLongitudeDeg();
+        double maxLon = geographicExtension.getMaxLongitudeDeg();
+        double minLat = geographicExtension.getMinLatitudeDeg();
+        double maxLat = geographicExtension.getMaxLatitudeDeg();
+
+        // create the terrainLayer
+        createTerrainLayer(minLon, maxLon, minLat, maxLat);
+
+        // the tiles of the previous tileset
+        TileCoverage previousTiles = new TileCoverage();
+        TileArchiveReader previousArchive = null;
+        if (globalOptions.isArchiveOutput()) {
+            Path archivePath = Paths.get(globalOptions.getOutputPath(), TileArchive.DEFAULT_FILE_NAME);
+            previousArchive = new TileArchiveReader(archivePath);
+            if (previousArchive.isGzipTiles() != globalOptions.isGzipOutput()) {
+                previousArchive.close();
+                log.error("[ERROR] The gzip option is not the same as the previous tile archive : {}", archivePath);
+                throw new RuntimeException("Error: The gzip option is not the same as the previous tile archive : " + archivePath);
+            }
+            // the archive is rewritten, the previous tiles are copied first and the regenerated tiles replace them
+            this.getTileOutputWriter();
+            for (int i = 0; i < previousArchive.getTileCount(); i++) {
+                long tileId = previousArchive.getTileIdAt(i);
+                int[] tileXY = TileArchive.getTileXY(tileId);
+                previousTiles.add(TileArchive.getDepth(tileId), tileXY[0], tileXY[1]);
+                this.tileArchiveWriter.addTile(tileId, ByteBuffer.wrap(previousArchive.getTileAt(i)));
+            }
+        } else {
+            previousTiles = TerrainLayer.scanTileCoverage(Paths.get(globalOptions.getOutputPath()));
+        }
+
+        log.info("----------------------------------------");
+        int minTileDepth = globalOptions.getMinimumTileDepth();
+        int maxTileDepth = globalOptions.getMaximumTileDepth();
+
+        try {
+            for (int depth = minTileDepth; depth <= maxTileDepth; depth += 1) {
+                long startTime = System.currentTimeMillis();
+
+                TileRange tilesRange = getTilesRangeOfDepth(depth, minLon, maxLon, minLat, maxLat);
+                TileCoverage affectedTiles = incrementalPlan.getAffectedTiles(depth, tilesRange);
+                List<TileRange> affectedRanges = affectedTiles.getRectangles(depth);
+                if (affectedRanges.isEmpty()) {
+                    log.info("[Tile][{}/{}] No tiles to regenerate.", depth, maxTileDepth);
+                    continue;
+                }
+                int ringTilesCount = makeRingTempFiles(affectedTiles, affectedRanges, previousArchive);
+
+                this.triangleRefinementMaxIterations = TileWgs84Utils.getRefinementIterations(depth);
+                this.terrainElevationDataManager.deleteObjects();
+                this.terrainElevationDataManager = new TerrainElevationDataManager(); // new
+                this.terrainElevationDataManager.setTileWgs84Manager(this);
+                this.terrainElevationDataManager.setTerrainElevationDataFolderPath(this.depthGeoTiffFolderPathMap.get(depth));
+                TilingMetrics.getInstance().setCurrentDepth(depth);
+                this.terrainElevationDataManager.makeTerrainQuadTree(depth);
+
+                int mosaicSize = getDepthMosaicSize(depth, tilesRange, globalOptions.getMosaicSize());
+                List<TileRange> subDividedTilesRanges = new ArrayList<>();
+                for (TileRange affectedRange : affectedRanges) {
+                    TileWgs84Utils.subDivideTileRange(affectedRange, mosaicSize, mosaicSize, subDividedTilesRanges);
+                }
+                MemoryGovernor.getInstance().resetMosaicSize(mosaicSize);
+                flatTileRangesByDepth.remove(depth - 2);
+                flatTilesCount = 0;
+
+                log.info("[Tile][{}/{}] Start regenerating tile meshes - Tiles : {}, Ring Tiles : {}, Divided Tiles Size: {}", depth, maxTileDepth, affectedTiles.getTileCount(depth), ringTilesCount, subDividedTilesRanges.size());
+                AtomicInteger counter = new AtomicInteger(0);
+
+                int total = subDividedTilesRanges.size();
+                for (TileRange subDividedTilesRange : subDividedTilesRanges) {
+                    int progress = counter.incrementAndGet();
+                    log.info("[Tile][{}/{}][{}/{}] process tiling...", depth, maxTileDepth, progress, total);
+                    boolean isFirstGeneration = (depth == minTileDepth);
+                    this.makeBlockMeshes(subDividedTilesRange, isFirstGeneration);
+                }
+
+                // the children tiles must be on disk before the next depth
+                this.getTileOutputWriter().flush();
+                log.info("[Tile][{}/{}] Regenerated tiles : {}", depth, maxTileDepth, this.getTileOutputWriter().getWrittenTiles().getTileCount(depth));
+
+                if (!GlobalOptions.getInstance().isLeaveTemp()) {
+                    this.deleteTempFilesByDepth(depth);
+                }
+                finishDepthTuning(depth);
+
+                this.terrainElevationDataManager.deleteGeoTiffManager();
+                this.terrainElevationDataManager.deleteTileRaster();
+                this.terrainElevationDataManager.deleteCoverage();
+
+                if (flatTilesCount > 0) {
+                    log.info("[Tile][{}/{}] Flat tiles : {}", depth, maxTileDepth, flatTilesCount);
+                }
+                long endTime = System.currentTimeMillis();
+                log.info("[Tile][{}/{}] - End regenerating tile meshes : Duration: {}", depth, maxTileDepth, DecimalUtils.millisecondToDisplayTime(endTime - startTime));
+                log.info("----------------------------------------");
+            }
+        } finally {
+            if (previousArchive != null) {
+                previousArchive.close();
+            }
+        }
+        this.getTileOutputWriter().flush();
+
+        // Set terrainLayer.available with the previous tiles and the regenerated tiles
+        TileCoverage availableTiles = this.getTileOutputWriter().getWrittenTiles();
+        for (Integer depth : previousTiles.getDepths()) {
+            for (TileRange previousRange : previousTiles.getRectangles(depth)) {
+                availableTiles.addRange(previousRange);
+            }
+        }
+        terrainLayer.addAvailable(availableTiles);
+        terrainLayer.saveJsonFile(globalOptions.getOutputPath(), "layer.json");
+        this.closeTileOutputWriter();
+    }
+
+    /**
+     * Makes the temp files of the unchanged tiles around the tiles to regenerate, from the previous tileset.
+     * The existing temp files (the children of the ring tiles of the upper depth) are replaced, they are not refined yet.
+     *
+     * @return the count of the ring tiles found in the previous tileset
+     */
+    private int makeRingTempFiles(TileCoverage affectedTiles, List<TileRange> affectedRanges, TileArchiveReader previousArchive) throws IOException {
+        QuantizedMeshManager quantizedMeshManager = new QuantizedMeshManager();
+        QuantizedMeshDecoder quantizedMeshDecoder = QuantizedMeshDecoder.getInstance();
+        TileCoverage ringTiles = new TileCoverage();
+        int ringTilesCount = 0;
+        for (TileRange affectedRange : affectedRanges) {
+            for (TileIndices tileIndices : affectedRange.expand1().getTileIndices(null)) {
+                int depth = tileIndices.getL();
+                int x = tileIndices.getX();
+                int y = tileIndices.getY();
+                if (!tileIndices.isValid() || affectedTiles.contains(depth, x, y) || ringTiles.contains(depth, x, y)) {
+                    continue;
+                }
+                ringTiles.add(depth, x, y);
+
+                QuantizedMesh quantizedMesh = null;
+                if (previousArchive != null) {
+                    byte[] storedTile = previousArchive.getTile(depth, x, y);
+                    quantizedMesh = storedTile != null ? quantizedMeshDecoder.read(storedTile, previousArchive.isGzipTiles()) : null;
+                } else {
+                    File quantizedMeshFile = new File(getQuantizedMeshTilePath(tileIndices));
+                    quantizedMesh = quantizedMeshFile.exists() ? quantizedMeshDecoder.read(quantizedMeshFile.toPath(), globalOptions.isGzipOutput()) : null;
+                }
+                if (quantizedMesh == null) {
+                    continue;
+                }
+                saveTempFileFromQuantizedMesh(quantizedMesh, tileIndices, getTilePath(tileIndices), quantizedMeshManager);
+                ringTilesCount++;
+            }
+        }
+        return ringTilesCount;
     }
 
     public String timeFormat(long time) {
@@ -674,11 +1190,67 @@ public class TileWgs84Manager {
     }
 
     public String getQuantizedMeshTilePath(TileIndices tileIndices) {
-        String outputDirectory = globalOptions.getOutputPath();
+        String outputDirectory = this.sampleOutputPath != null ? this.sampleOutputPath : globalOptions.getOutputPath();
         String neighborFilePath = tileIndices.getL() + File.separator + tileIndices.getX() + File.separator + tileIndices.getY();
         return outputDirectory + File.separator + neighborFilePath + ".terrain";
     }
 
+    public TileOutputWriter getTileOutputWriter() {
+        if (this.tileOutputWriter == null) {
+            this.tileOutputWriter = new TileOutputWriter(globalOptions.getWriterThreads());
+            if (globalOptions.isGzipOutput()) {
+                this.tileOutputWriter.setGzipLevel(globalOptions.getGzipLevel());
+            }
+            this.tileOutputWriter.setOptimizeVertexOrder(globalOptions.isOptimizeVertexOrder());
+            boolean sampling = this.sampleOutputPath != null;
+            if (!sampling && globalOptions.isArchiveOutput()) {
+                String archivePath = globalOptions.getOutputPath() + File.separator + TileArchive.DEFAULT_FILE_NAME;
+                try {
+                    this.tileArchiveWriter = new TileArchiveWriter(archivePath, globalOptions.isGzipOutput());
+                } catch (IOException e) {
+                    log.error("[ERROR] Failed to create the tile archive : {}", archivePath, e);
+                    throw new RuntimeException(e);
+                }
+                this.tileOutputWriter.setTileArchiveWriter(this.tileArchiveWriter);
+            }
+            if (!sampling && globalOptions.isSizeManifest()) {
+                String manifestPath = globalOptions.getOutputPath() + File.separator + "tile_sizes.csv";
+                try {
+                    this.tileOutputWriter.openSizeManifest(manifestPath, globalOptions.isContinue() || globalOptions.isIncremental());
+                } catch (IOException e) {
+                    log.error("[ERROR] Failed to open the size manifest : {}", manifestPath, e);
+                    throw new RuntimeException(e);
+                }
+            }
+            if (!sampling && globalOptions.isQualityReport()) {
+                Path qualityReportPath = Paths.get(globalOptions.getOutputPath(), TileQualityReport.FOLDER_NAME);
+                try {
+                    this.tileOutputWriter.setTileQualityReport(new TileQualityReport(qualityReportPath, globalOptions.isContinue() || globalOptions.isIncremental()));
+                } catch (IOException e) {
+                    log.error("[ERROR] Failed to open the quality report : {}", qualityReportPath, e);
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return this.tileOutputWriter;
+    }
+
+    /**
+     * Closes the output stage. With the archive output, this must be called after layer.json is saved, to embed it.
+     */
+    private void closeTileOutputWriter() throws IOException {
+        if (this.tileOutputWriter != null) {
+            this.tileOutputWriter.close();
+            this.tileOutputWriter = null;
+        }
+        if (this.tileArchiveWriter != null) {
+            Path layerJsonPath = Paths.get(globalOptions.getOutputPath(), "layer.json");
+            byte[] layerJson = Files.exists(layerJsonPath) ? Files.readAllBytes(layerJsonPath) : null;
+            this.tileArchiveWriter.finish(layerJson);
+            this.tileArchiveWriter = null;
+        }
+    }
+
     public TileWgs84 loadOrCreateTileWgs84(TileIndices tileIndices) throws IOException, TransformException {
         // this function loads or creates a TileWgs84
         // check if exist LDTileFile
@@ -688,6 +1260,7 @@ public class TileWgs84Manager {
         }
 
         String neighborFullPath = getTilePath(tileIndices);
+        this.getTileOutputWriter().awaitPath(neighborFullPath);
         TileWgs84 neighborTile = new TileWgs84(null, this);
         if (!FileUtils.isFileExists(neighborFullPath)) {
             log.debug("Creating tile: CREATE - * - CREATE : " + tileIndices.getX() + ", " + tileIndices.getY() + ", " + tileIndices.getL());
@@ -698,6 +1271,9 @@ public class TileWgs84Manager {
                 log.error("Error: neighborTile.mesh == null");
             }
 
+            if (this.tilingJournal != null) {
+                this.tilingJournal.backupBeforeWrite(neighborFullPath);
+            }
             neighborTile.saveFile(neighborTile.getMesh(), neighborFullPath);
         } else {
             // load the Tile
@@ -714,6 +1290,7 @@ public class TileWgs84Manager {
         // check if exist LDTileFile
 
         String neighborFullPath = getTilePath(tileIndices);
+        this.getTileOutputWriter().awaitPath(neighborFullPath);
         TileWgs84 neighborTile = null;
         if (!FileUtils.isFileExists(neighborFullPath)) {
             //log.error("Error: neighborFullPath is not exist: " + neighborFullPath);
@@ -1,6 +1,8 @@
 package com.gaia3d.terrain.tile;
 
+import com.gaia3d.command.GlobalOptions;
 import com.gaia3d.terrain.structure.*;
+import com.gaia3d.terrain.tile.geotiff.WaterMaskRaster;
 import com.gaia3d.terrain.util.TileWgs84Utils;
 import lombok.Getter;
 import lombok.Setter;
@@ -17,6 +19,10 @@ import java.util.Map;
 @Getter
 @Setter
 public class TileWgs84Raster {
+    public static final int WATER_MASK_SIZE = 256;
+    private static final byte[] LAND_WATER_MASK = {0};
+    private static final byte[] WATER_WATER_MASK = {(byte) 255};
+
     private TileWgs84Manager manager = null;
     private TileIndices tileIndices = null;
     private GeographicExtension geographicExtension = null;
@@ -25,6 +31,9 @@ public class TileWgs84Raster {
     private int rasterHeight = 0;
     private double deltaLonDeg = 0;
     private double deltaLatDeg = 0;
+    private float minElevation = 0;
+    private float maxElevation = 0;
+    private byte[] waterMask = null; // 1 byte (uniform tile) or WATER_MASK_SIZE x WATER_MASK_SIZE bytes, shared, read only
 
     public TileWgs84Raster(TileIndices tileIndices, TileWgs84Manager manager) {
         this.tileIndices = tileIndices;
@@ -124,6 +133,7 @@ public class TileWgs84Raster {
     public void deleteObjects() {
         this.geographicExtension = null;
         this.elevations = null;
+        this.waterMask = null;
     }
 
     public void makeElevations(TerrainElevationDataManager terrainElevationDataManager, int rasterWidth, int rasterHeight) {
@@ -157,16 +167,99 @@ public class TileWgs84Raster {
         terrainElevationDataManager.getTerrainElevationDataArray(geoExtension, terrainElevDataMap);
         resultTerrainElevDataArray = new ArrayList<>(terrainElevDataMap.keySet());
 
+        // the water mask is classified in the same pass : no-data samples, and samples under the water height
+        GlobalOptions globalOptions = GlobalOptions.getInstance();
+        boolean[] isWater = globalOptions.isWaterMaskExtension() ? new boolean[elevationsCount] : null;
+        Double waterHeight = globalOptions.getWaterMaskHeight();
+
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
         for (int col = 0; col < rasterWidth; col++) {
             double lonDeg = minLonDeg + semiDeltaLonDeg + col * deltaLonDeg;
             for (int row = 0; row < rasterHeight; row++) {
                 double latDeg = minLatDeg + semiDeltaLatDeg + row * deltaLatDeg;
                 int idx = row * rasterWidth + col;
-                elevations[idx] = (float) terrainElevationDataManager.getElevation(lonDeg, latDeg, resultTerrainElevDataArray);
+                float elevation = (float) terrainElevationDataManager.getElevation(lonDeg, latDeg, resultTerrainElevDataArray);
+                elevations[idx] = elevation;
+                if (elevation < min) min = elevation;
+                if (elevation > max) max = elevation;
+                if (isWater != null) {
+                    isWater[idx] = terrainElevationDataManager.isLastElevationNoData() || (waterHeight != null && elevation <= waterHeight);
+                }
+            }
+        }
+        this.minElevation = min;
+        this.maxElevation = max;
+
+        if (isWater != null) {
+            WaterMaskRaster waterMaskRaster = this.manager.getWaterMaskRaster();
+            if (waterMaskRaster != null) {
+                addWaterFromRaster(waterMaskRaster, minLonDeg + semiDeltaLonDeg, minLatDeg + semiDeltaLatDeg, isWater);
             }
+            this.waterMask = makeWaterMask(isWater, rasterWidth, rasterHeight);
         }
     }
 
+    /**
+     * Adds the water of the water mask raster. All the samples of the tile are classified in one batch,
+     * so the water mask raster reads one window of pixels by tile.
+     */
+    private void addWaterFromRaster(WaterMaskRaster waterMaskRaster, double startLonDeg, double startLatDeg, boolean[] isWater) {
+        int count = rasterWidth * rasterHeight;
+        double[] lonLatDegs = new double[count * 2];
+        boolean[] isRasterWater = new boolean[count];
+        for (int row = 0; row < rasterHeight; row++) {
+            double latDeg = startLatDeg + row * deltaLatDeg;
+            for (int col = 0; col < rasterWidth; col++) {
+                int idx = row * rasterWidth + col;
+                lonLatDegs[idx * 2] = startLonDeg + col * deltaLonDeg;
+                lonLatDegs[idx * 2 + 1] = latDeg;
+            }
+        }
+        waterMaskRaster.getWater(lonLatDegs, count, isRasterWater);
+        for (int idx = 0; idx < count; idx++) {
+            if (isRasterWater[idx]) {
+                isWater[idx] = true;
+            }
+        }
+    }
+
+    /**
+     * Makes the water mask of the quantized mesh extension : 1 byte if the tile is all land (0) or all water (255),
+     * otherwise WATER_MASK_SIZE x WATER_MASK_SIZE bytes from north to south, and from west to east.
+     * The samples are (rasterWidth x rasterHeight) from south to north.
+     */
+    static byte[] makeWaterMask(boolean[] isWater, int rasterWidth, int rasterHeight) {
+        int waterCount = 0;
+        for (boolean water : isWater) {
+            if (water) waterCount++;
+        }
+        if (waterCount == 0) {
+            return LAND_WATER_MASK;
+        } else if (waterCount == isWater.length) {
+            return WATER_WATER_MASK;
+        }
+
+        byte[] mask = new byte[WATER_MASK_SIZE * WATER_MASK_SIZE];
+        for (int maskRow = 0; maskRow < WATER_MASK_SIZE; maskRow++) {
+            int row = (WATER_MASK_SIZE - 1 - maskRow) * rasterHeight / WATER_MASK_SIZE;
+            for (int maskCol = 0; maskCol < WATER_MASK_SIZE; maskCol++) {
+                int col = maskCol * rasterWidth / WATER_MASK_SIZE;
+                if (isWater[row * rasterWidth + col]) {
+                    mask[maskRow * WATER_MASK_SIZE + maskCol] = (byte) 255;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * A flat raster has the same elevation in all the samples (sea, or no-data outside the input rasters)
+     */
+    public boolean isFlat() {
+        return elevations != null && minElevation == maxElevation;
+    }
+
     public RasterTriangle getRasterTriangle(TerrainTriangle triangle) {
         RasterTriangle rasterTriangle = new RasterTriangle();
 
@@ -0,0 +1,353 @@
+package com.gaia3d.terrain.tile;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Durable journal of the completed blocks of the tiling, in {OUTPUT}/tiling.journal, used by --continue to resume mid-depth.
+ * A block is committed after all its tiles and temp files are written : the line of the block is appended and forced to the disk.
+ * The temp files a block overwrites are copied to an undo folder first (and the files it creates are listed), so the temp
+ * store of a block interrupted by a crash is restored to the state of the last committed block.
+ * Line format : "temp,path", "minDepth,d", "mosaicSize,n", "depthMosaic,d,n", "block,d,minX,maxX,minY,maxY", "flat,d,minX,maxX,minY,maxY", "depth,d".
+ */
+@Slf4j
+public class TilingJournal {
+    public static final String FILE_NAME = "tiling.journal";
+    private static final String UNDO_FOLDER_NAME = "checkpoint_undo";
+    private static final String UNDO_LOG_NAME = "undo.log";
+
+    private final Path journalPath;
+    private final Path undoFolderPath;
+    private final boolean syncWrites;
+    @Getter
+    private final boolean resumed;
+    @Getter
+    private String tempPath;
+    @Getter
+    private int minTileDepth;
+    @Getter
+    private int mosaicSize;
+    private final Set<String> completedBlocks = new HashSet<>();
+    private final Set<Integer> completedDepths = new HashSet<>();
+    private final Map<Integer, Integer> depthMosaicSizes = new HashMap<>(); // the mosaic sizes chosen by the auto-tuning
+    private final Map<Integer, List<TileRange>> flatTileRangesByDepth = new HashMap<>();
+
+    // undo of the current block
+    private String currentBlockKey = null;
+    private final Set<String> backedUpPaths = new HashSet<>();
+    private BufferedWriter undoWriter = null;
+    private int backupCount = 0;
+
+    private TilingJournal(Path journalPath, String tempPath, boolean syncWrites, boolean resumed) {
+        this.journalPath = journalPath;
+        this.tempPath = tempPath;
+        this.undoFolderPath = Paths.get(tempPath, UNDO_FOLDER_NAME);
+        this.syncWrites = syncWrites;
+        this.resumed = resumed;
+    }
+
+    /**
+     * Starts a new journal, the previous journal of the output path is replaced
+     */
+    public static TilingJournal create(String outputPath, String tempPath, int minTileDepth, int mosaicSize, boolean syncWrites) throws IOException {
+        Path journalPath = Paths.get(outputPath, FILE_NAME);
+        TilingJournal journal = new TilingJournal(journalPath, tempPath, syncWrites, false);
+        journal.minTileDepth = minTileDepth;
+        journal.mosaicSize = mosaicSize;
+        Files.createDirectories(journalPath.getParent());
+        Files.writeString(journalPath, "temp," + tempPath + "\n" + "minDepth," + minTileDepth + "\n" + "mosaicSize," + mosaicSize + "\n", StandardCharsets.UTF_8);
+        journal.force(journalPath);
+        deleteFolder(journal.undoFolderPath);
+        return journal;
+    }
+
+    /**
+     * Loads the journal of the output path to resume the tiling, or returns null if there is none or its temp folder is lost.
+     * The temp files of the interrupted block are restored.
+     */
+    public static TilingJournal load(String outputPath, boolean syncWrites) throws IOException {
+        Path journalPath = Paths.get(outputPath, FILE_NAME);
+        String tempPath = readTempPath(outputPath);
+        if (tempPath == null || !new File(tempPath).isDirectory()) {
+            return null;
+        }
+        TilingJournal journal = new TilingJournal(journalPath, tempPath, syncWrites, true);
+        for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+            journal.parseLine(line);
+        }
+        journal.restoreUndo();
+        log.info("[Journal] Resuming the tiling : {} completed blocks, completed depths : {}", journal.completedBlocks.size(), journal.completedDepths);
+        return journal;
+    }
+
+    /**
+     * Returns the temp folder of the journal of the output path, or null
+     */
+    public static String readTempPath(String outputPath) {
+        Path journalPath = Paths.get(outputPath, FILE_NAME);
+        if (!Files.exists(journalPath)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).startsWith("temp,")) {
+                return null;
+            }
+            return lines.get(0).substring("temp,".length());
+        } catch (IOException e) {
+            log.warn("[Journal] Failed to read the tiling journal : {}", journalPath);
+            return null;
+        }
+    }
+
+    private void parseLine(String line) {
+        int separator = line.indexOf(',');
+        if (separator < 0) {
+            return;
+        }
+        String type = line.substring(0, separator);
+        String value = line.substring(separator + 1);
+        try {
+            switch (type) {
+                case "temp" -> this.tempPath = value;
+                case "minDepth" -> this.minTileDepth = Integer.parseInt(value);
+                case "mosaicSize" -> this.mosaicSize = Integer.parseInt(value);
+                case "depth" -> completedDepths.add(Integer.parseInt(value));
+                case "depthMosaic" -> {
+                    String[] values = value.split(",");
+                    depthMosaicSizes.put(Integer.parseInt(values[0]), Integer.parseInt(values[1]));
+                }
+                case "block" -> {
+                    parseRange(value); // a partial line of a crash is not a block
+                    completedBlocks.add(value);
+                }
+                case "flat" -> {
+                    TileRange flatRange = parseRange(value);
+                    flatTileRangesByDepth.computeIfAbsent(flatRange.getTileDepth(), k -> new ArrayList<>()).add(flatRange);
+                }
+                default -> log.warn("[Journal] Unknown journal line : {}", line);
+            }
+        } catch (RuntimeException e) {
+            log.warn("[Journal] Invalid journal line : {}", line);
+        }
+    }
+
+    private static TileRange parseRange(String value) {
+        String[] values = value.split(",");
+        if (values.length != 5) {
+            throw new IllegalArgumentException("Invalid tile range : " + value);
+        }
+        TileRange tileRange = new TileRange();
+        tileRange.set(Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2]), Integer.parseInt(values[3]), Integer.parseInt(values[4]));
+        return tileRange;
+    }
+
+    private static String toKey(TileRange tileRange) {
+        return tileRange.getTileDepth() + "," + tileRange.getMinTileX() + "," + tileRange.getMaxTileX() + "," + tileRange.getMinTileY() + "," + tileRange.getMaxTileY();
+    }
+
+    public boolean isBlockCompleted(TileRange blockTilesRange) {
+        return completedBlocks.contains(toKey(blockTilesRange));
+    }
+
+    public boolean isDepthCompleted(int depth) {
+        return completedDepths.contains(depth);
+    }
+
+    /**
+     * True if a block of the depth is committed, so the blocks of the depth can not change
+     */
+    public boolean hasCompletedBlocks(int depth) {
+        String depthPrefix = depth + ",";
+        return completedBlocks.stream().anyMatch(blockKey -> blockKey.startsWith(depthPrefix));
+    }
+
+    /**
+     * The mosaic size chosen for the depth, or null if the depth uses the mosaic size of the journal
+     */
+    public Integer getDepthMosaicSize(int depth) {
+        return depthMosaicSizes.get(depth);
+    }
+
+    /**
+     * The flat blocks of the committed blocks of the depth
+     */
+    public List<TileRange> getFlatTileRanges(int depth) {
+        List<TileRange> flatTileRanges = flatTileRangesByDepth.get(depth);
+        return flatTileRanges != null ? flatTileRanges : new ArrayList<>();
+    }
+
+    /**
+     * Starts the undo of the block, before its first write
+     */
+    public synchronized void beginBlock(TileRange blockTilesRange) throws IOException {
+        clearUndo();
+        currentBlockKey = toKey(blockTilesRange);
+    }
+
+    /**
+     * Must be called before a temp file of the current block is written (or created).
+     * The first time in the block, the previous file is copied in the undo folder, or its creation is listed.
+     */
+    public synchronized void backupBeforeWrite(String filePath) throws IOException {
+        if (!backedUpPaths.add(filePath)) {
+            return;
+        }
+        if (undoWriter == null) {
+            Files.createDirectories(undoFolderPath);
+            undoWriter = Files.newBufferedWriter(undoFolderPath.resolve(UNDO_LOG_NAME), StandardCharsets.UTF_8);
+            undoWriter.write("block," + currentBlockKey);
+            undoWriter.newLine();
+        }
+        Path path = Paths.get(filePath);
+        if (Files.exists(path)) {
+            Path backupPath = undoFolderPath.resolve(backupCount++ + ".til");
+            Files.copy(path, backupPath, StandardCopyOption.REPLACE_EXISTING);
+            if (syncWrites) {
+                force(backupPath);
+            }
+            undoWriter.write("R," + backupPath.getFileName() + "," + filePath);
+        } else {
+            undoWriter.write("C," + filePath);
+        }
+        undoWriter.newLine();
+        // the line must be written before the file is replaced
+        undoWriter.flush();
+        if (syncWrites) {
+            force(undoFolderPath.resolve(UNDO_LOG_NAME));
+        }
+    }
+
+    /**
+     * Commits the block, all its writes must be done. The flat blocks saved in the block are recorded too.
+     */
+    public synchronized void commitBlock(TileRange blockTilesRange, List<TileRange> flatTileRanges) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (TileRange flatTileRange : flatTileRanges) {
+            lines.append("flat,").append(toKey(flatTileRange)).append('\n');
+        }
+        lines.append("block,").append(toKey(blockTilesRange)).append('\n');
+        append(lines.toString());
+        completedBlocks.add(toKey(blockTilesRange));
+        clearUndo();
+        currentBlockKey = null;
+    }
+
+    /**
+     * Records the mosaic size chosen for the depth, before its first block
+     */
+    public synchronized void commitDepthMosaicSize(int depth, int mosaicSize) throws IOException {
+        append("depthMosaic," + depth + "," + mosaicSize + "\n");
+        depthMosaicSizes.put(depth, mosaicSize);
+    }
+
+    public synchronized void commitDepth(int depth) throws IOException {
+        append("depth," + depth + "\n");
+        completedDepths.add(depth);
+    }
+
+    /**
+     * Deletes the journal, when the tiling is finished
+     */
+    public synchronized void delete() throws IOException {
+        clearUndo();
+        deleteFolder(undoFolderPath);
+        Files.deleteIfExists(journalPath);
+    }
+
+    private void append(String lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void clearUndo() throws IOException {
+        if (undoWriter != null) {
+            undoWriter.close();
+            undoWriter = null;
+        }
+        backedUpPaths.clear();
+        backupCount = 0;
+        deleteFolder(undoFolderPath);
+    }
+
+    /**
+     * Puts back the temp files overwritten by the interrupted block, and deletes the temp files it created
+     */
+    private void restoreUndo() throws IOException {
+        Path undoLogPath = undoFolderPath.resolve(UNDO_LOG_NAME);
+        if (!Files.exists(undoLogPath)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(undoLogPath, StandardCharsets.UTF_8);
+        if (!lines.isEmpty() && lines.get(0).startsWith("block,") && completedBlocks.contains(lines.get(0).substring("block,".length()))) {
+            // the block was committed before its undo was cleared
+            deleteFolder(undoFolderPath);
+            return;
+        }
+        int restoredCount = 0;
+        for (String line : lines) {
+            String[] values = line.split(",", 3);
+            if (values[0].equals("C") && values.length == 2) {
+                Files.deleteIfExists(Paths.get(values[1]));
+                restoredCount++;
+            } else if (values[0].equals("R") && values.length == 3) {
+                Path backupPath = undoFolderPath.resolve(values[1]);
+                if (Files.exists(backupPath)) {
+                    Files.move(backupPath, Paths.get(values[2]), StandardCopyOption.REPLACE_EXISTING);
+                    restoredCount++;
+                }
+            }
+        }
+        log.info("[Journal] Restored {} temp files of the interrupted block.", restoredCount);
+        deleteFolder(undoFolderPath);
+    }
+
+    private void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    private static void deleteFolder(Path folderPath) throws IOException {
+        if (!Files.exists(folderPath)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.list(folderPath)) {
+            paths.forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.delete(folderPath);
+    }
+}
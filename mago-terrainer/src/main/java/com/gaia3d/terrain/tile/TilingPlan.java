@@ -0,0 +1,309 @@
+package com.gaia3d.terrain.tile;
+
+import com.gaia3d.command.MagoTerrainerMain;
+import com.gaia3d.terrain.util.MemoryGovernor;
+import com.gaia3d.util.DecimalUtils;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Estimates of a tiling (--plan) : tiles, blocks, memory, temp disk, output size and runtime per depth.
+ * The counts come from the tile ranges of the ROI, the sizes and times are calibrated by meshing a few random sample blocks
+ * of every depth, and extrapolated to all the tiles of the depth.
+ */
+@Slf4j
+@Getter
+public class TilingPlan {
+    public static final int SAMPLE_BLOCKS = 2;
+    public static final int SAMPLE_BLOCK_SIZE = 4;
+    private static final int WATER_MASK_BYTES = 256 * 256;
+
+    private final int mosaicSize;
+    private final int rasterTileSize;
+    private final boolean waterMask;
+    private final List<DepthEstimate> depthEstimates = new ArrayList<>();
+    private final List<String> warnings = new ArrayList<>();
+    @Setter
+    private long standardizedBytes = 0;
+    @Setter
+    private long resizedBytes = 0;
+
+    public TilingPlan(int mosaicSize, int rasterTileSize, boolean waterMask) {
+        this.mosaicSize = mosaicSize;
+        this.rasterTileSize = rasterTileSize;
+        this.waterMask = waterMask;
+    }
+
+    /**
+     * Estimates of one depth, extrapolated from its sample blocks.
+     * A block also writes the tiles of its border of one tile (rewritten by the neighbor blocks), so the samples are
+     * normalized by their written tiles : the output and the temp files by the tiles of the depth, the time by the tiles
+     * written by all the blocks of the depth.
+     */
+    @Getter
+    public static class DepthEstimate {
+        private final int depth;
+        private final int tileCols;
+        private final int tileRows;
+        private final int blockCount;
+        private final long writtenTileCount;
+        @Setter
+        private long setupMillis = 0;
+        private int sampledTiles = 0;
+        private int sampleWrittenTiles = 0;
+        private long sampleMillis = 0;
+        private long sampleOutputBytes = 0;
+        private long sampleChildTempBytes = 0;
+        private long baselineHeapBytes = 0;
+        private double heapBytesPerTile = 0;
+
+        public DepthEstimate(int depth, TileRange tilesRange, int blockCount, int mosaicSize) {
+            this.depth = depth;
+            this.tileCols = tilesRange.getMaxTileX() - tilesRange.getMinTileX() + 1;
+            this.tileRows = tilesRange.getMaxTileY() - tilesRange.getMinTileY() + 1;
+            this.blockCount = blockCount;
+            int blockCols = (tileCols + mosaicSize - 1) / mosaicSize;
+            int blockRows = (tileRows + mosaicSize - 1) / mosaicSize;
+            this.writtenTileCount = (long) (tileCols + 2 * blockCols) * (tileRows + 2 * blockRows);
+        }
+
+        /**
+         * Adds a meshed sample block of (cols x rows) tiles. The time, the bytes and the heap above the baseline are shared
+         * by the written tiles : the tiles of the block and its border.
+         */
+        public void addSample(int cols, int rows, long millis, long outputBytes, long childTempBytes, long baselineHeap, long peakHeap) {
+            int writtenTiles = (cols + 2) * (rows + 2);
+            sampledTiles += cols * rows;
+            sampleWrittenTiles += writtenTiles;
+            sampleMillis += millis;
+            sampleOutputBytes += outputBytes;
+            sampleChildTempBytes += childTempBytes;
+            baselineHeapBytes = Math.max(baselineHeapBytes, baselineHeap);
+            heapBytesPerTile = Math.max(heapBytesPerTile, (double) Math.max(0, peakHeap - baselineHeap) / writtenTiles);
+        }
+
+        public long getTileCount() {
+            return (long) tileCols * tileRows;
+        }
+
+        private long extrapolate(long sampleValue, long tileCount) {
+            if (sampleWrittenTiles == 0) {
+                return 0;
+            }
+            return (long) ((double) sampleValue / sampleWrittenTiles * tileCount);
+        }
+
+        public long getEstimatedMillis() {
+            return setupMillis + extrapolate(sampleMillis, writtenTileCount);
+        }
+
+        public long getEstimatedOutputBytes() {
+            return extrapolate(sampleOutputBytes, getTileCount());
+        }
+
+        /**
+         * The temp files of the children tiles, written while the depth is tiled and read by the next depth
+         */
+        public long getEstimatedChildTempBytes() {
+            return extrapolate(sampleChildTempBytes, getTileCount());
+        }
+
+        /**
+         * The tiles of the largest block of the depth, with its border of one tile
+         */
+        public long getBlockExpandedTiles(int mosaicSize) {
+            return (long) (Math.min(mosaicSize, tileCols) + 2) * (Math.min(mosaicSize, tileRows) + 2);
+        }
+
+        public long getEstimatedBlockHeapBytes(int mosaicSize) {
+            return baselineHeapBytes + (long) (heapBytesPerTile * getBlockExpandedTiles(mosaicSize));
+        }
+    }
+
+    public DepthEstimate addDepth(int depth, TileRange tilesRange, int blockCount) {
+        DepthEstimate depthEstimate = new DepthEstimate(depth, tilesRange, blockCount, mosaicSize);
+        depthEstimates.add(depthEstimate);
+        return depthEstimate;
+    }
+
+    /**
+     * The tile rasters of the largest block of the depth : the elevations, and the water mask
+     */
+    public long getBlockRasterBytes(DepthEstimate depthEstimate) {
+        return depthEstimate.getBlockExpandedTiles(mosaicSize) * getTileRasterBytes(rasterTileSize, waterMask);
+    }
+
+    /**
+     * The heap of the raster of a tile : the elevations, and the water mask
+     */
+    public static long getTileRasterBytes(int rasterTileSize, boolean waterMask) {
+        return (long) rasterTileSize * rasterTileSize * Float.BYTES + (waterMask ? WATER_MASK_BYTES : 0);
+    }
+
+    /**
+     * While a depth is tiled, the temp files of its tiles and of their children are on the disk, with the rasters of the preprocessing
+     */
+    public long getEstimatedPeakTempBytes() {
+        long peakTileTempBytes = 0;
+        long previousChildTempBytes = 0;
+        for (DepthEstimate depthEstimate : depthEstimates) {
+            peakTileTempBytes = Math.max(peakTileTempBytes, previousChildTempBytes + depthEstimate.getEstimatedChildTempBytes());
+            previousChildTempBytes = depthEstimate.getEstimatedChildTempBytes();
+        }
+        return standardizedBytes + resizedBytes + peakTileTempBytes;
+    }
+
+    public long getEstimatedOutputBytes() {
+        return depthEstimates.stream().mapToLong(DepthEstimate::getEstimatedOutputBytes).sum();
+    }
+
+    public long getEstimatedMillis() {
+        return depthEstimates.stream().mapToLong(DepthEstimate::getEstimatedMillis).sum();
+    }
+
+    /**
+     * Flags the configurations that will not fit : the heap of a block (the memory governor would split the blocks),
+     * and the disk of the temp files and of the output.
+     *
+     * @return true if no problem is found
+     */
+    public boolean check(long maxHeapBytes, Path tempPath, Path outputPath) throws IOException {
+        warnings.clear();
+        long heapLimit = (long) (maxHeapBytes * MemoryGovernor.PRESSURE_THRESHOLD);
+        for (DepthEstimate depthEstimate : depthEstimates) {
+            long blockHeapBytes = depthEstimate.getEstimatedBlockHeapBytes(mosaicSize);
+            if (blockHeapBytes <= heapLimit) {
+                continue;
+            }
+            int fittingMosaicSize = mosaicSize;
+            while (fittingMosaicSize > 1 && depthEstimate.getEstimatedBlockHeapBytes(fittingMosaicSize) > heapLimit) {
+                fittingMosaicSize /= 2;
+            }
+            if (depthEstimate.getEstimatedBlockHeapBytes(fittingMosaicSize) > heapLimit) {
+                warnings.add(String.format("Depth %d : a single tile needs about %s of heap, more than the %s available. Use a larger -Xmx.",
+                        depthEstimate.getDepth(), DecimalUtils.byteCountToDisplaySize(blockHeapBytes), DecimalUtils.byteCountToDisplaySize(heapLimit)));
+            } else {
+                warnings.add(String.format("Depth %d : a block needs about %s of heap, more than the %s available, the blocks will be split. Use --mosaicSize %d or a larger -Xmx.",
+                        depthEstimate.getDepth(), DecimalUtils.byteCountToDisplaySize(blockHeapBytes), DecimalUtils.byteCountToDisplaySize(heapLimit), fittingMosaicSize));
+            }
+        }
+
+        long tempBytes = getEstimatedPeakTempBytes();
+        long outputBytes = getEstimatedOutputBytes();
+        FileStore tempStore = Files.getFileStore(tempPath);
+        FileStore outputStore = Files.getFileStore(outputPath);
+        if (tempStore.equals(outputStore)) {
+            checkDisk("temp and output", tempBytes + outputBytes, tempStore, tempPath);
+        } else {
+            checkDisk("temp", tempBytes, tempStore, tempPath);
+            checkDisk("output", outputBytes, outputStore, outputPath);
+        }
+        return warnings.isEmpty();
+    }
+
+    private void checkDisk(String name, long requiredBytes, FileStore fileStore, Path path) throws IOException {
+        long usableBytes = fileStore.getUsableSpace();
+        if (requiredBytes > usableBytes) {
+            warnings.add(String.format("The %s files need about %s of disk, more than the %s usable in %s.",
+                    name, DecimalUtils.byteCountToDisplaySize(requiredBytes), DecimalUtils.byteCountToDisplaySize(usableBytes), path));
+        }
+    }
+
+    public void print() {
+        MagoTerrainerMain.drawLine();
+        log.info("[Plan] Mosaic size : {}, sample blocks per depth : {} of {}x{} tiles", mosaicSize, SAMPLE_BLOCKS, SAMPLE_BLOCK_SIZE, SAMPLE_BLOCK_SIZE);
+        log.info(String.format("[Plan] %5s %12s %8s %12s %12s %12s %12s %14s", "Depth", "Tiles", "Blocks", "Raster/Block", "Heap/Block", "Temp .til", "Output", "Time"));
+        for (DepthEstimate depthEstimate : depthEstimates) {
+            log.info(String.format("[Plan] %5d %12d %8d %12s %12s %12s %12s %14s",
+                    depthEstimate.getDepth(),
+                    depthEstimate.getTileCount(),
+                    depthEstimate.getBlockCount(),
+                    DecimalUtils.byteCountToDisplaySize(getBlockRasterBytes(depthEstimate)),
+                    DecimalUtils.byteCountToDisplaySize(depthEstimate.getEstimatedBlockHeapBytes(mosaicSize)),
+                    DecimalUtils.byteCountToDisplaySize(depthEstimate.getEstimatedChildTempBytes()),
+                    DecimalUtils.byteCountToDisplaySize(depthEstimate.getEstimatedOutputBytes()),
+                    DecimalUtils.millisecondToDisplayTime(depthEstimate.getEstimatedMillis())));
+        }
+        long totalTiles = depthEstimates.stream().mapToLong(DepthEstimate::getTileCount).sum();
+        log.info("[Plan] Total tiles : {}", totalTiles);
+        log.info("[Plan] Standardized rasters : {}, resized rasters : {}", DecimalUtils.byteCountToDisplaySize(standardizedBytes), DecimalUtils.byteCountToDisplaySize(resizedBytes));
+        log.info("[Plan] Peak temp disk : {}", DecimalUtils.byteCountToDisplaySize(getEstimatedPeakTempBytes()));
+        log.info("[Plan] Output size : {}", DecimalUtils.byteCountToDisplaySize(getEstimatedOutputBytes()));
+        log.info("[Plan] Tiling time : {}", DecimalUtils.millisecondToDisplayTime(getEstimatedMillis()));
+        for (String warning : warnings) {
+            log.warn("[Plan] {}", warning);
+        }
+        if (warnings.isEmpty()) {
+            log.info("[Plan] The estimates fit in the heap and in the disk.");
+        }
+        MagoTerrainerMain.drawLine();
+    }
+
+    /**
+     * The total size of the files of the folder, 0 if it does not exist
+     */
+    public static long getFolderSize(Path folderPath) {
+        if (!Files.isDirectory(folderPath)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(folderPath)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The used heap, after a collection
+     */
+    public static long getUsedHeapBytes() {
+        System.gc();
+        long usedBytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                usedBytes += pool.getUsage().getUsed();
+            }
+        }
+        return usedBytes;
+    }
+
+    public static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * The peak of the heap since the last resetPeakHeap, the sum of the peaks of the pools (an upper bound)
+     */
+    public static long getPeakHeapBytes() {
+        long peakBytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakBytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peakBytes;
+    }
+}
@@ -0,0 +1,98 @@
+package com.gaia3d.terrain.tile.archive;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-file tileset archive format.
+ * All the values are little-endian.
+ * <pre>
+ * header (72 bytes)
+ *   magic "MAGOTA01" (8), version (int), flags (int), tileCount (long), uniqueTileCount (long),
+ *   dataOffset (long), directoryOffset (long), directoryLength (long), layerJsonOffset (long), layerJsonLength (long)
+ * data
+ *   tile payloads ordered by tile id (depth, then Hilbert curve). Identical payloads are stored once.
+ * directory
+ *   tileCount entries of tileId (long), offset (long), length (int), sorted by tileId
+ * layer.json
+ * </pre>
+ * A client reads the header and the directory once (two range requests), then each tile with one range request.
+ */
+public final class TileArchive {
+    public static final byte[] MAGIC = "MAGOTA01".getBytes(StandardCharsets.US_ASCII);
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 72;
+    public static final int DIRECTORY_ENTRY_SIZE = 8 + 8 + 4;
+    public static final int FLAG_GZIP_TILES = 1;
+    public static final String DEFAULT_FILE_NAME = "terrain.mta";
+
+    private static final int DEPTH_SHIFT = 56;
+
+    private TileArchive() {
+    }
+
+    /**
+     * Tile id : the depth in the high byte, and the Hilbert index of (x, y) in the low bits.
+     * The geodetic depth L has 2^(L+1) x 2^L tiles, so the curve covers a square of side 2^(L+1).
+     */
+    public static long getTileId(int depth, int x, int y) {
+        long side = 1L << (depth + 1);
+        return ((long) depth << DEPTH_SHIFT) | hilbertIndex(side, x, y);
+    }
+
+    public static boolean isValidTile(int depth, int x, int y) {
+        return depth >= 0 && depth <= 22 && x >= 0 && y >= 0 && x < (1L << (depth + 1)) && y < (1L << depth);
+    }
+
+    public static int getDepth(long tileId) {
+        return (int) (tileId >>> DEPTH_SHIFT);
+    }
+
+    /**
+     * Returns the x, y of the tile id (inverse of getTileId)
+     */
+    public static int[] getTileXY(long tileId) {
+        int depth = getDepth(tileId);
+        long side = 1L << (depth + 1);
+        long index = tileId & ((1L << DEPTH_SHIFT) - 1);
+        long x = 0;
+        long y = 0;
+        for (long s = 1; s < side; s *= 2) {
+            long rx = 1 & (index / 2);
+            long ry = 1 & (index ^ rx);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                long temp = x;
+                x = y;
+                y = temp;
+            }
+            x += s * rx;
+            y += s * ry;
+            index /= 4;
+        }
+        return new int[]{(int) x, (int) y};
+    }
+
+    public static long hilbertIndex(long side, long x, long y) {
+        long index = 0;
+        for (long s = side / 2; s > 0; s /= 2) {
+            long rx = (x & s) > 0 ? 1 : 0;
+            long ry = (y & s) > 0 ? 1 : 0;
+            index += s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                long temp = x;
+                x = y;
+                y = temp;
+            }
+        }
+        return index;
+    }
+}
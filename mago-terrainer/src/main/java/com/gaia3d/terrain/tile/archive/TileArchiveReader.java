@@ -0,0 +1,125 @@
+package com.gaia3d.terrain.tile.archive;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads tiles from a single-file tileset archive (see TileArchive) with positional reads of a FileChannel.
+ * The directory is loaded once, then every tile is one read (the same as one HTTP range request).
+ */
+public class TileArchiveReader implements Closeable {
+    private final FileChannel channel;
+    @Getter
+    private final boolean gzipTiles;
+    @Getter
+    private final long uniqueTileCount;
+    private final long[] tileIds;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final long layerJsonOffset;
+    private final int layerJsonLength;
+
+    public TileArchiveReader(Path archivePath) throws IOException {
+        this.channel = FileChannel.open(archivePath, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, TileArchive.HEADER_SIZE);
+            byte[] magic = new byte[TileArchive.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, TileArchive.MAGIC)) {
+                throw new IOException("Not a tile archive : " + archivePath);
+            }
+            int version = header.getInt();
+            if (version != TileArchive.VERSION) {
+                throw new IOException("Unsupported tile archive version : " + version);
+            }
+            int flags = header.getInt();
+            this.gzipTiles = (flags & TileArchive.FLAG_GZIP_TILES) != 0;
+            int tileCount = (int) header.getLong();
+            this.uniqueTileCount = header.getLong();
+            header.getLong(); // dataOffset
+            long directoryOffset = header.getLong();
+            long directoryLength = header.getLong();
+            this.layerJsonOffset = header.getLong();
+            this.layerJsonLength = (int) header.getLong();
+
+            this.tileIds = new long[tileCount];
+            this.offsets = new long[tileCount];
+            this.lengths = new int[tileCount];
+            ByteBuffer directory = read(directoryOffset, (int) directoryLength);
+            for (int i = 0; i < tileCount; i++) {
+                tileIds[i] = directory.getLong();
+                offsets[i] = directory.getLong();
+                lengths[i] = directory.getInt();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getTileCount() {
+        return tileIds.length;
+    }
+
+    /**
+     * Returns the stored payload of the tile (gzip compressed if isGzipTiles()), or null if the tile is not in the archive
+     */
+    public byte[] getTile(int depth, int x, int y) throws IOException {
+        if (!TileArchive.isValidTile(depth, x, y)) {
+            return null;
+        }
+        int index = Arrays.binarySearch(tileIds, TileArchive.getTileId(depth, x, y));
+        if (index < 0) {
+            return null;
+        }
+        return getTileAt(index);
+    }
+
+    /**
+     * Returns the tile id of the entry, the entries are sorted by tile id
+     */
+    public long getTileIdAt(int index) {
+        return tileIds[index];
+    }
+
+    /**
+     * Returns the stored payload of the entry
+     */
+    public byte[] getTileAt(int index) throws IOException {
+        ByteBuffer buffer = read(offsets[index], lengths[index]);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public String getLayerJson() throws IOException {
+        ByteBuffer buffer = read(layerJsonOffset, layerJsonLength);
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) {
+                throw new IOException("Unexpected end of the tile archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,319 @@
+package com.gaia3d.terrain.tile.archive;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Writes the tiles in a single archive file (see TileArchive).
+ * The tiles arrive in any order, so they are appended to a spool file first, and finish() copies them to the archive
+ * in tile id order. Identical tiles (same MD5) are spooled and stored once.
+ * The entries are kept in primitive arrays (12 bytes per tile, 20 bytes per unique payload), and the content index
+ * of the deduplication is bounded : after MAX_CONTENT_ENTRIES unique payloads, only the known payloads are deduplicated.
+ * The archive is replaced atomically, a previous archive stays readable until finish() ends.
+ * addTile() is thread safe.
+ */
+@Slf4j
+public class TileArchiveWriter {
+    private final Path archivePath;
+    private final Path spoolPath;
+    private final boolean gzipTiles;
+    private final FileChannel spoolChannel;
+    private final ContentIndex contentIndex = new ContentIndex();
+    private final MessageDigest messageDigest;
+    private long spoolSize = 0;
+
+    // entries, in arrival order
+    private long[] tileIds = new long[1024];
+    private int[] uniqueIndices = new int[1024];
+    @Getter
+    private int tileCount = 0;
+
+    // unique payloads, in spool order
+    private long[] spoolOffsets = new long[1024];
+    private int[] lengths = new int[1024];
+    @Getter
+    private int uniqueTileCount = 0;
+
+    public TileArchiveWriter(String archivePath, boolean gzipTiles) throws IOException {
+        this.archivePath = Paths.get(archivePath);
+        this.spoolPath = Paths.get(archivePath + ".spool");
+        this.gzipTiles = gzipTiles;
+        Path parent = this.archivePath.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.spoolChannel = FileChannel.open(spoolPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            this.messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Adds the remaining bytes of the tile payload
+     */
+    public synchronized void addTile(int depth, int x, int y, ByteBuffer payload) throws IOException {
+        addTile(TileArchive.getTileId(depth, x, y), payload);
+    }
+
+    /**
+     * Adds the remaining bytes of the tile payload, by tile id (to copy the tiles of another archive)
+     */
+    public synchronized void addTile(long tileId, ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        messageDigest.reset();
+        messageDigest.update(payload.duplicate());
+        ByteBuffer digest = ByteBuffer.wrap(messageDigest.digest());
+        long digestHigh = digest.getLong();
+        long digestLow = digest.getLong();
+
+        int uniqueIndex = contentIndex.get(digestHigh, digestLow, length);
+        if (uniqueIndex < 0) {
+            ByteBuffer data = payload.duplicate();
+            while (data.hasRemaining()) {
+                spoolChannel.write(data, spoolSize + (length - data.remaining()));
+            }
+            if (uniqueTileCount == spoolOffsets.length) {
+                int capacity = spoolOffsets.length * 2;
+                spoolOffsets = Arrays.copyOf(spoolOffsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            uniqueIndex = uniqueTileCount++;
+            spoolOffsets[uniqueIndex] = spoolSize;
+            lengths[uniqueIndex] = length;
+            spoolSize += length;
+            contentIndex.put(digestHigh, digestLow, length, uniqueIndex);
+        }
+
+        if (tileCount == tileIds.length) {
+            int capacity = tileIds.length * 2;
+            tileIds = Arrays.copyOf(tileIds, capacity);
+            uniqueIndices = Arrays.copyOf(uniqueIndices, capacity);
+        }
+        tileIds[tileCount] = tileId;
+        uniqueIndices[tileCount] = uniqueIndex;
+        tileCount++;
+    }
+
+    /**
+     * Writes the archive : header, tiles in tile id order, directory and layer.json. The spool file is deleted.
+     */
+    public synchronized void finish(byte[] layerJson) throws IOException {
+        // sort the entries by tile id (stable, so if a tile was added twice, the last one wins)
+        int[] entries = sortByTileId();
+        int entriesCount = 0;
+        for (int i = 0; i < tileCount; i++) {
+            int entry = entries[i];
+            if (entriesCount > 0 && tileIds[entries[entriesCount - 1]] == tileIds[entry]) {
+                entries[entriesCount - 1] = entry;
+            } else {
+                entries[entriesCount++] = entry;
+            }
+        }
+
+        long[] archiveOffsetByUnique = new long[uniqueTileCount];
+        Arrays.fill(archiveOffsetByUnique, -1L);
+        int storedCount = 0;
+        // the archive is written in a temp file and moved over the previous archive at the end, so readers never see a partial archive
+        Path tempArchivePath = Paths.get(archivePath + ".tmp");
+        try (FileChannel archiveChannel = FileChannel.open(tempArchivePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = TileArchive.HEADER_SIZE;
+            long dataOffset = position;
+            for (int i = 0; i < entriesCount; i++) {
+                int unique = uniqueIndices[entries[i]];
+                if (archiveOffsetByUnique[unique] < 0) {
+                    archiveOffsetByUnique[unique] = position;
+                    transfer(spoolOffsets[unique], lengths[unique], archiveChannel, position);
+                    position += lengths[unique];
+                    storedCount++;
+                }
+            }
+
+            long directoryOffset = position;
+            long directoryLength = (long) entriesCount * TileArchive.DIRECTORY_ENTRY_SIZE;
+            ByteBuffer directory = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < entriesCount; i++) {
+                if (directory.remaining() < TileArchive.DIRECTORY_ENTRY_SIZE) {
+                    directory.flip();
+                    position += writeFully(archiveChannel, directory, position);
+                    directory.clear();
+                }
+                int entry = entries[i];
+                int unique = uniqueIndices[entry];
+                directory.putLong(tileIds[entry]);
+                directory.putLong(archiveOffsetByUnique[unique]);
+                directory.putInt(lengths[unique]);
+            }
+            directory.flip();
+            position += writeFully(archiveChannel, directory, position);
+
+            long layerJsonOffset = position;
+            byte[] layerJsonBytes = layerJson != null ? layerJson : new byte[0];
+            position += writeFully(archiveChannel, ByteBuffer.wrap(layerJsonBytes), position);
+
+            ByteBuffer header = ByteBuffer.allocate(TileArchive.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(TileArchive.MAGIC);
+            header.putInt(TileArchive.VERSION);
+            header.putInt(gzipTiles ? TileArchive.FLAG_GZIP_TILES : 0);
+            header.putLong(entriesCount);
+            header.putLong(storedCount);
+            header.putLong(dataOffset);
+            header.putLong(directoryOffset);
+            header.putLong(directoryLength);
+            header.putLong(layerJsonOffset);
+            header.putLong(layerJsonBytes.length);
+            header.flip();
+            writeFully(archiveChannel, header, 0);
+
+            log.info("[TileArchive] {} : {} tiles, {} unique, {} bytes", archivePath, entriesCount, storedCount, position);
+        } finally {
+            spoolChannel.close();
+            Files.deleteIfExists(spoolPath);
+        }
+        Files.move(tempArchivePath, archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Bottom-up merge sort of the entry indices by tile id, on primitive arrays. The sort is stable.
+     */
+    private int[] sortByTileId() {
+        int[] order = new int[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[tileCount];
+        for (int width = 1; width < tileCount; width *= 2) {
+            for (int start = 0; start < tileCount; start += 2 * width) {
+                int middle = Math.min(start + width, tileCount);
+                int end = Math.min(start + 2 * width, tileCount);
+                int left = start;
+                int right = middle;
+                for (int k = start; k < end; k++) {
+                    if (left < middle && (right >= end || tileIds[order[left]] <= tileIds[order[right]])) {
+                        buffer[k] = order[left++];
+                    } else {
+                        buffer[k] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    private void transfer(long spoolOffset, int length, FileChannel archiveChannel, long archivePosition) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            archiveChannel.position(archivePosition + transferred);
+            long count = spoolChannel.transferTo(spoolOffset + transferred, length - transferred, archiveChannel);
+            if (count <= 0) {
+                throw new IOException("Failed to copy the tile from the spool file");
+            }
+            transferred += count;
+        }
+    }
+
+    private int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int size = buffer.remaining();
+        int written = 0;
+        while (written < size) {
+            written += channel.write(buffer, position + written);
+        }
+        return size;
+    }
+
+    /**
+     * Open addressing index of the unique payloads : MD5 (2 longs) and length -> unique index.
+     * It grows up to MAX_CONTENT_ENTRIES entries, then the new payloads are not indexed anymore (stored without deduplication).
+     */
+    private static final class ContentIndex {
+        private static final int MAX_CONTENT_ENTRIES = 1 << 20;
+
+        private long[] highs = new long[1024];
+        private long[] lows = new long[1024];
+        private int[] lengths = new int[1024];
+        private int[] values = new int[1024];
+        private int size = 0;
+        private boolean full = false;
+
+        private ContentIndex() {
+            Arrays.fill(values, -1);
+        }
+
+        private int get(long high, long low, int length) {
+            int mask = values.length - 1;
+            for (int slot = slot(high, low, length, mask); values[slot] >= 0; slot = (slot + 1) & mask) {
+                if (highs[slot] == high && lows[slot] == low && lengths[slot] == length) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        private void put(long high, long low, int length, int value) {
+            if (size >= MAX_CONTENT_ENTRIES) {
+                if (!full) {
+                    full = true;
+                    log.info("[TileArchive] {} unique tiles indexed, the next tiles are not deduplicated.", MAX_CONTENT_ENTRIES);
+                }
+                return;
+            }
+            if ((size + 1) * 2 > values.length) {
+                grow();
+            }
+            insert(high, low, length, value);
+            size++;
+        }
+
+        private void insert(long high, long low, int length, int value) {
+            int mask = values.length - 1;
+            int slot = slot(high, low, length, mask);
+            while (values[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            highs[slot] = high;
+            lows[slot] = low;
+            lengths[slot] = length;
+            values[slot] = value;
+        }
+
+        private void grow() {
+            long[] oldHighs = highs;
+            long[] oldLows = lows;
+            int[] oldLengths = lengths;
+            int[] oldValues = values;
+            int capacity = oldValues.length * 2;
+            highs = new long[capacity];
+            lows = new long[capacity];
+            lengths = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, -1);
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] >= 0) {
+                    insert(oldHighs[i], oldLows[i], oldLengths[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long high, long low, int length, int mask) {
+            // the digest bits are already uniformly distributed
+            return (int) (high ^ (high >>> 32) ^ low ^ length) & mask;
+        }
+    }
+}
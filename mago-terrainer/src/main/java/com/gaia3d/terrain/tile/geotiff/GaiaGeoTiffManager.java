@@ -1,6 +1,8 @@
 package com.gaia3d.terrain.tile.geotiff;
 
+import com.gaia3d.terrain.jfr.CoverageLoadEvent;
 import com.gaia3d.terrain.util.GaiaGeoTiffUtils;
+import com.gaia3d.terrain.util.TilingMetrics;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -62,12 +64,16 @@ public class GaiaGeoTiffManager {
         }
 
         log.info("[Raster][I/O] loading the geoTiff file: {}", geoTiffFilePath);
+        CoverageLoadEvent coverageLoadEvent = new CoverageLoadEvent();
+        coverageLoadEvent.begin();
         GridCoverage2D coverage = null;
         GeoTiffReader reader = null;
         try {
             File file = new File(geoTiffFilePath);
             reader = new GeoTiffReader(file);
             coverage = reader.read(null);
+            TilingMetrics tilingMetrics = TilingMetrics.getInstance();
+            tilingMetrics.increment(TilingMetrics.Counter.COVERAGE_LOADS, tilingMetrics.getCurrentDepth());
         } catch (Exception e) {
             log.error("Error:", e);
         } /*finally {
@@ -91,6 +97,15 @@ public class GaiaGeoTiffManager {
         Vector2i size = new Vector2i(width, height);
         mapPathGridCoverage2dSize.put(geoTiffFilePath, size);
 
+        coverageLoadEvent.end();
+        if (coverageLoadEvent.shouldCommit()) {
+            coverageLoadEvent.setPath(geoTiffFilePath);
+            coverageLoadEvent.setFileSize(new File(geoTiffFilePath).length());
+            coverageLoadEvent.setWidth(width);
+            coverageLoadEvent.setHeight(height);
+            coverageLoadEvent.commit();
+        }
+
         log.debug("Loaded the geoTiff file ok");
         return coverage;
     }
@@ -0,0 +1,196 @@
+package com.gaia3d.terrain.tile.geotiff;
+
+import com.gaia3d.util.FileUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Content hash and geographic footprint of every source GeoTIFF of a run, saved in {OUTPUT}/source_manifest.csv.
+ * The next incremental run compares the sources with the manifest to find the changed areas.
+ * Line format : bytes,sha256,minLon,minLat,maxLon,maxLat,path (the path is the last column, it can contain commas).
+ * The tiling options of the run are saved after the header as "#key=value" lines : the tiles of a run with other options
+ * can not be merged with the previous tileset.
+ */
+@Slf4j
+public class SourceManifest {
+    public static final String FILE_NAME = "source_manifest.csv";
+    private static final String HEADER = "bytes,sha256,minLon,minLat,maxLon,maxLat,path";
+    private static final String OPTION_PREFIX = "#";
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    // relative path (with '/') -> source
+    @Getter
+    private final Map<String, SourceEntry> entries = new TreeMap<>();
+    // tiling option -> value
+    @Getter
+    private final Map<String, String> options = new TreeMap<>();
+
+    @Getter
+    @AllArgsConstructor
+    public static class SourceEntry {
+        private final String path;
+        private final long bytes;
+        private final String sha256;
+        private final double minLon;
+        private final double minLat;
+        private final double maxLon;
+        private final double maxLat;
+
+        public boolean isSameContent(SourceEntry other) {
+            return other != null && bytes == other.bytes && sha256.equals(other.sha256);
+        }
+    }
+
+    /**
+     * Loads the manifest, or returns null if it does not exist
+     */
+    public static SourceManifest load(Path manifestPath) throws IOException {
+        if (!Files.exists(manifestPath)) {
+            return null;
+        }
+        SourceManifest manifest = new SourceManifest();
+        List<String> lines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            if (line.startsWith(OPTION_PREFIX)) {
+                int separator = line.indexOf('=');
+                if (separator > 0) {
+                    manifest.options.put(line.substring(OPTION_PREFIX.length(), separator), line.substring(separator + 1));
+                }
+                continue;
+            }
+            String[] values = line.split(",", 7);
+            if (values.length < 7) {
+                log.warn("[Incremental] Invalid source manifest line {} : {}", i + 1, line);
+                continue;
+            }
+            SourceEntry entry = new SourceEntry(values[6], Long.parseLong(values[0]), values[1],
+                    Double.parseDouble(values[2]), Double.parseDouble(values[3]), Double.parseDouble(values[4]), Double.parseDouble(values[5]));
+            manifest.entries.put(entry.getPath(), entry);
+        }
+        return manifest;
+    }
+
+    /**
+     * Hashes every GeoTIFF of the input folder (in parallel). The footprint of a source with the same content
+     * as in the previous manifest is reused, the others are read from the GeoTIFF header.
+     */
+    public static SourceManifest scan(String inputPath, SourceManifest previous) {
+        File inputFile = new File(inputPath);
+        List<String> geoTiffPaths = new ArrayList<>();
+        Path basePath;
+        if (inputFile.isFile()) {
+            geoTiffPaths.add(inputFile.getAbsolutePath());
+            basePath = inputFile.getAbsoluteFile().getParentFile().toPath();
+        } else {
+            FileUtils.getFilePathsByExtension(inputFile.getAbsolutePath(), ".tif", geoTiffPaths, true);
+            basePath = inputFile.getAbsoluteFile().toPath();
+        }
+
+        SourceManifest manifest = new SourceManifest();
+        List<SourceEntry> scannedEntries = geoTiffPaths.parallelStream().map(geoTiffPath -> {
+            Path path = Path.of(geoTiffPath);
+            String relativePath = basePath.relativize(path).toString().replace(File.separatorChar, '/');
+            try {
+                long bytes = Files.size(path);
+                String sha256 = hash(path);
+                SourceEntry previousEntry = previous != null ? previous.entries.get(relativePath) : null;
+                if (previousEntry != null && previousEntry.getBytes() == bytes && previousEntry.getSha256().equals(sha256)) {
+                    return previousEntry;
+                }
+                double[] footprint = readFootprint(path.toFile());
+                return new SourceEntry(relativePath, bytes, sha256, footprint[0], footprint[1], footprint[2], footprint[3]);
+            } catch (IOException e) {
+                log.error("[ERROR] Failed to read the source : {}", geoTiffPath);
+                throw new UncheckedIOException(e);
+            }
+        }).toList();
+        for (SourceEntry entry : scannedEntries) {
+            manifest.entries.put(entry.getPath(), entry);
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest in a temp file, then moves it over the previous one
+     */
+    public void save(Path manifestPath) throws IOException {
+        Path tempPath = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                writer.write(OPTION_PREFIX + option.getKey() + "=" + option.getValue());
+                writer.newLine();
+            }
+            for (SourceEntry entry : entries.values()) {
+                writer.write(entry.getBytes() + "," + entry.getSha256() + ","
+                        + entry.getMinLon() + "," + entry.getMinLat() + "," + entry.getMaxLon() + "," + entry.getMaxLat() + ","
+                        + entry.getPath());
+                writer.newLine();
+            }
+        }
+        Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String hash(Path path) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                messageDigest.update(buffer, 0, count);
+            }
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    /**
+     * Reads the envelope of the GeoTIFF in lon/lat degrees : minLon, minLat, maxLon, maxLat
+     */
+    private static double[] readFootprint(File geoTiffFile) throws IOException {
+        GeoTiffReader reader = new GeoTiffReader(geoTiffFile);
+        try {
+            GridCoverage2D coverage = reader.read(null);
+            ReferencedEnvelope envelope = coverage.getEnvelope2D().transform(DefaultGeographicCRS.WGS84, true);
+            coverage.dispose(true);
+            return new double[]{envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY()};
+        } catch (TransformException | FactoryException e) {
+            throw new IOException("Failed to transform the envelope of the source : " + geoTiffFile, e);
+        } finally {
+            reader.dispose();
+        }
+    }
+}
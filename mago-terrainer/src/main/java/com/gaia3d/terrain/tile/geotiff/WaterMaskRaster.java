@@ -0,0 +1,123 @@
+package com.gaia3d.terrain.tile.geotiff;
+
+import com.gaia3d.terrain.util.TilingMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.imagen.media.range.NoDataContainer;
+import org.geotools.api.metadata.spatial.PixelOrientation;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.util.CoverageUtilities;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.referencing.operation.transform.ConcatenatedTransform;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Raster of water polygons (rasterized coastlines, lakes, rivers) used as a source of the water mask.
+ * Non-zero pixels are water. Points outside the raster and no-data pixels are land.
+ * The raster can be in any CRS, the lon/lat points are transformed to the raster grid in batches.
+ * The image is not loaded : every batch reads the window of pixels under its points (the image tiles of the GeoTIFF it intersects).
+ * The points that fail to transform are land, they are logged and counted in the metrics (water_mask_transform_failures_total).
+ */
+@Slf4j
+public class WaterMaskRaster {
+    private final GeoTiffReader reader;
+    private final GridCoverage2D coverage;
+    private final RenderedImage image;
+    private final MathTransform lonLatToGrid;
+    private final int width;
+    private final int height;
+    private final Double noData;
+
+    public WaterMaskRaster(String geoTiffPath) throws IOException {
+        this.reader = new GeoTiffReader(new File(geoTiffPath));
+        try {
+            this.coverage = reader.read(null);
+            GridGeometry2D gridGeometry = coverage.getGridGeometry();
+            CoordinateReferenceSystem coverageCrs = coverage.getCoordinateReferenceSystem();
+            MathTransform lonLatToCrs = CRS.findMathTransform(DefaultGeographicCRS.WGS84, coverageCrs, true);
+            this.lonLatToGrid = ConcatenatedTransform.create(lonLatToCrs, gridGeometry.getCRSToGrid2D(PixelOrientation.UPPER_LEFT));
+            this.image = coverage.getRenderedImage();
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            NoDataContainer noDataContainer = CoverageUtilities.getNoDataProperty(coverage);
+            this.noData = noDataContainer != null ? noDataContainer.getAsSingleValue() : null;
+            log.info("[WaterMask] Opened the water mask raster : {} ({} x {})", geoTiffPath, width, height);
+        } catch (FactoryException e) {
+            reader.dispose();
+            throw new IOException("The CRS of the water mask raster is not supported : " + geoTiffPath, e);
+        }
+    }
+
+    public void dispose() {
+        coverage.dispose(true);
+        reader.dispose();
+    }
+
+    /**
+     * Classifies count points given as interleaved lon/lat degrees, reading only the window of pixels under the points
+     *
+     * @param lonLatDegs lon0, lat0, lon1, lat1... transformed in place to the grid coordinates
+     * @param isWater    result, true for water points
+     */
+    public void getWater(double[] lonLatDegs, int count, boolean[] isWater) {
+        for (int i = 0; i < count; i++) {
+            isWater[i] = false;
+        }
+        double firstLonDeg = lonLatDegs[0];
+        double firstLatDeg = lonLatDegs[1];
+        try {
+            lonLatToGrid.transform(lonLatDegs, 0, lonLatDegs, 0, count);
+        } catch (TransformException e) {
+            log.warn("[WaterMask] Failed to transform {} points (from lon {} lat {}) to the water mask grid, they are classified as land : {}",
+                    count, firstLonDeg, firstLatDeg, e.getMessage());
+            log.debug("[WaterMask] Transform failure", e);
+            TilingMetrics tilingMetrics = TilingMetrics.getInstance();
+            tilingMetrics.add(TilingMetrics.Counter.WATER_MASK_TRANSFORM_FAILURES, tilingMetrics.getCurrentDepth(), count);
+            return;
+        }
+
+        // the window of the points inside the raster
+        int minColumn = Integer.MAX_VALUE;
+        int minRow = Integer.MAX_VALUE;
+        int maxColumn = -1;
+        int maxRow = -1;
+        for (int i = 0; i < count; i++) {
+            int column = (int) Math.floor(lonLatDegs[i * 2]);
+            int row = (int) Math.floor(lonLatDegs[i * 2 + 1]);
+            if (column < 0 || row < 0 || column >= width || row >= height) {
+                continue;
+            }
+            minColumn = Math.min(minColumn, column);
+            minRow = Math.min(minRow, row);
+            maxColumn = Math.max(maxColumn, column);
+            maxRow = Math.max(maxRow, row);
+        }
+        if (maxColumn < 0) {
+            return;
+        }
+
+        int minX = image.getMinX();
+        int minY = image.getMinY();
+        Raster window = image.getData(new Rectangle(minX + minColumn, minY + minRow, maxColumn - minColumn + 1, maxRow - minRow + 1));
+        for (int i = 0; i < count; i++) {
+            int column = (int) Math.floor(lonLatDegs[i * 2]);
+            int row = (int) Math.floor(lonLatDegs[i * 2 + 1]);
+            if (column < 0 || row < 0 || column >= width || row >= height) {
+                continue;
+            }
+            double value = window.getSampleDouble(minX + column, minY + row, 0);
+            isWater[i] = value != 0 && !Double.isNaN(value) && (noData == null || value != noData);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.gaia3d.terrain.types;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * TopologyValidationLevel
+ * for the topology checks after merging tiles and while refining the mesh
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TopologyValidationLevel {
+    OFF("off", null), // no validation
+    SAMPLED("sampled", null), // validate one of every SAMPLE_STRIDE vertices
+    BOUNDARY("boundary-only", "boundary"), // validate only the vertices consolidated when merging tiles, sampled while refining
+    FULL("full", null); // validate all vertices (debug)
+
+    public static final int SAMPLE_STRIDE = 16;
+
+    private final String argumentName;
+    private final String alias; // the short argument name, null = none
+
+    public static TopologyValidationLevel fromString(String text) {
+        for (TopologyValidationLevel level : TopologyValidationLevel.values()) {
+            if (level.argumentName.equalsIgnoreCase(text) || (level.alias != null && level.alias.equalsIgnoreCase(text))) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Unknown topology validation level : " + text);
+    }
+}
@@ -0,0 +1,103 @@
+package com.gaia3d.terrain.util;
+
+import com.gaia3d.util.DecimalUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The memory and cpu limits of the container the process runs in, read from the cgroup (v2, or v1) files.
+ * Without a container limit, the memory limit is -1 and the cpu count is the available processors.
+ */
+@Slf4j
+@Getter
+public class ContainerResources {
+    private static final Path CGROUP_PATH = Paths.get("/sys/fs/cgroup");
+    private static final long UNLIMITED_V1 = 1L << 60; // v1 writes a huge page-aligned value when there is no limit
+
+    private final long memoryLimitBytes; // -1 = no limit
+    private final int cpuCount;
+
+    public ContainerResources(long memoryLimitBytes, int cpuCount) {
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.cpuCount = cpuCount;
+    }
+
+    public static ContainerResources detect() {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        long memoryLimit = readMemoryLimit();
+        double cpuQuota = readCpuQuota();
+        int cpuCount = availableProcessors;
+        if (cpuQuota > 0) {
+            cpuCount = Math.max(1, Math.min(availableProcessors, (int) Math.ceil(cpuQuota)));
+        }
+        log.debug("[Container] memory limit : {}, cpus : {}", memoryLimit > 0 ? DecimalUtils.byteCountToDisplaySize(memoryLimit) : "none", cpuCount);
+        return new ContainerResources(memoryLimit, cpuCount);
+    }
+
+    public boolean hasMemoryLimit() {
+        return memoryLimitBytes > 0;
+    }
+
+    private static long readMemoryLimit() {
+        // v2
+        String value = readFirstLine(CGROUP_PATH.resolve("memory.max"));
+        if (value == null) {
+            // v1
+            value = readFirstLine(CGROUP_PATH.resolve("memory").resolve("memory.limit_in_bytes"));
+        }
+        if (value == null || value.equals("max")) {
+            return -1;
+        }
+        try {
+            long limit = Long.parseLong(value);
+            return limit > 0 && limit < UNLIMITED_V1 ? limit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The cpus of the quota, or -1 if there is no quota
+     */
+    private static double readCpuQuota() {
+        try {
+            // v2 : "quota period" or "max period"
+            String value = readFirstLine(CGROUP_PATH.resolve("cpu.max"));
+            if (value != null) {
+                String[] values = value.split("\\s+");
+                if (values.length != 2 || values[0].equals("max")) {
+                    return -1;
+                }
+                return Double.parseDouble(values[0]) / Double.parseDouble(values[1]);
+            }
+            // v1
+            String quota = readFirstLine(CGROUP_PATH.resolve("cpu").resolve("cpu.cfs_quota_us"));
+            String period = readFirstLine(CGROUP_PATH.resolve("cpu").resolve("cpu.cfs_period_us"));
+            if (quota == null || period == null || Long.parseLong(quota) <= 0) {
+                return -1;
+            }
+            return Double.parseDouble(quota) / Double.parseDouble(period);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String readFirstLine(Path path) {
+        if (!Files.isReadable(path)) {
+            return null;
+        }
+        try {
+            String content = Files.readString(path, StandardCharsets.UTF_8).trim();
+            int lineEnd = content.indexOf('\n');
+            return lineEnd < 0 ? content : content.substring(0, lineEnd).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.gaia3d.terrain.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Gzip (RFC 1952) compressor of tile payloads, for tiles served with "Content-Encoding: gzip".
+ * The Deflater, the CRC and the output buffer are reused, so use getInstance() to get the compressor of the current thread.
+ */
+@Slf4j
+public class GzipCompressor {
+    public static final int DEFAULT_LEVEL = 6;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int GZIP_RESERVED_FLAGS = 0xe0;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final ThreadLocal<GzipCompressor> threadCompressor = new ThreadLocal<>();
+
+    private final int level;
+    private final Deflater deflater;
+    private final CRC32 crc32 = new CRC32();
+    private ByteBuffer outputBuffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    private GzipCompressor(int level) {
+        this.level = level;
+        this.deflater = new Deflater(level, true); // raw deflate, the gzip framing is written here
+    }
+
+    public static GzipCompressor getInstance(int level) {
+        GzipCompressor compressor = threadCompressor.get();
+        if (compressor == null || compressor.level != level) {
+            if (compressor != null) {
+                compressor.deflater.end();
+            }
+            compressor = new GzipCompressor(level);
+            threadCompressor.set(compressor);
+        }
+        return compressor;
+    }
+
+    /**
+     * Compresses the remaining bytes of the input.
+     * The returned buffer is ready to be read, and is valid until the next call of this compressor.
+     */
+    public ByteBuffer compress(ByteBuffer input) {
+        int inputSize = input.remaining();
+        int maxSize = GZIP_HEADER_SIZE + inputSize + (inputSize >> 12) + (inputSize >> 14) + (inputSize >> 25) + 13 + 5 + GZIP_TRAILER_SIZE;
+        if (outputBuffer.capacity() < maxSize) {
+            outputBuffer = ByteBuffer.allocate(Math.max(maxSize, outputBuffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        outputBuffer.clear();
+        outputBuffer.put(GZIP_HEADER);
+
+        crc32.reset();
+        crc32.update(input.duplicate());
+
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (!outputBuffer.hasRemaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(outputBuffer.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+                outputBuffer.flip();
+                grown.put(outputBuffer);
+                outputBuffer = grown;
+            }
+            deflater.deflate(outputBuffer);
+        }
+
+        if (outputBuffer.remaining() < GZIP_TRAILER_SIZE) {
+            ByteBuffer grown = ByteBuffer.allocate(outputBuffer.capacity() + GZIP_TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            outputBuffer.flip();
+            grown.put(outputBuffer);
+            outputBuffer = grown;
+        }
+        outputBuffer.putInt((int) crc32.getValue());
+        outputBuffer.putInt(inputSize);
+        outputBuffer.flip();
+        return outputBuffer;
+    }
+
+    /**
+     * Opens a tile file, decompressing it if the tileset is gzip compressed (--gzip)
+     */
+    public static InputStream openInputStream(File file, boolean gzip) throws IOException {
+        return decompressIfGzip(new BufferedInputStream(new FileInputStream(file)), gzip);
+    }
+
+    /**
+     * Opens the bytes of a tile (from the tile archive), decompressing them if the archive is gzip compressed (FLAG_GZIP_TILES)
+     */
+    public static InputStream openInputStream(byte[] bytes, boolean gzip) throws IOException {
+        return decompressIfGzip(new BufferedInputStream(new ByteArrayInputStream(bytes)), gzip);
+    }
+
+    /**
+     * Returns true if the remaining bytes of the buffer start with a valid gzip header : the magic bytes, the deflate method
+     * and no reserved flags. The magic bytes alone are not enough, a raw quantized mesh starts with the low bytes of a double.
+     */
+    public static boolean isGzip(ByteBuffer buffer) {
+        int position = buffer.position();
+        return buffer.remaining() >= GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE
+                && buffer.get(position) == GZIP_HEADER[0]
+                && buffer.get(position + 1) == GZIP_HEADER[1]
+                && buffer.get(position + 2) == Deflater.DEFLATED
+                && (buffer.get(position + 3) & GZIP_RESERVED_FLAGS) == 0;
+    }
+
+    /**
+     * The compression is decided by the configuration of the tileset. The header is validated, and a tile without
+     * a valid gzip header (written before the option was enabled) is read raw.
+     */
+    private static InputStream decompressIfGzip(BufferedInputStream inputStream, boolean gzip) throws IOException {
+        if (!gzip) {
+            return inputStream;
+        }
+        inputStream.mark(GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE);
+        byte[] header = inputStream.readNBytes(GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE);
+        inputStream.reset();
+        if (!isGzip(ByteBuffer.wrap(header))) {
+            log.warn("[Gzip] The tile has no valid gzip header, it is read uncompressed.");
+            return inputStream;
+        }
+        return new BufferedInputStream(new GZIPInputStream(inputStream));
+    }
+}
@@ -0,0 +1,137 @@
+package com.gaia3d.terrain.util;
+
+import com.gaia3d.terrain.tile.TerrainElevationDataManager;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adaptive memory governor.
+ * Listens to the usage threshold notifications of the heap memory pools (no polling of Runtime), and when the heap is under pressure
+ * reacts in steps : first evicts the coverage caches, and if it is not enough, asks to split the current block in smaller blocks.
+ * The reduced block size is kept as mosaic size for the rest of the depth.
+ * A single tile block that still does not fit fails the run (see TileMatrix.refineMesh) : no under-refined tile is written.
+ */
+@Slf4j
+public class MemoryGovernor {
+    public static final double PRESSURE_THRESHOLD = 0.90; // same as MemoryMonitor CRITICAL (10% free)
+    private static MemoryGovernor instance = null;
+
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private volatile boolean underPressure = false;
+
+    @Getter
+    private int mosaicSize = 0;
+    @Getter
+    private int relievedCount = 0;
+    @Getter
+    private int splitBlocksCount = 0;
+
+    /**
+     * Thrown when the block in process does not fit in the heap, and must be processed again as smaller blocks
+     */
+    public static class MemoryPressureException extends RuntimeException {
+        public MemoryPressureException(String message) {
+            super(message);
+        }
+    }
+
+    private MemoryGovernor() {
+        installThresholds();
+    }
+
+    public static synchronized MemoryGovernor getInstance() {
+        if (instance == null) {
+            instance = new MemoryGovernor();
+        }
+        return instance;
+    }
+
+    private void installThresholds() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) {
+                continue;
+            }
+            long max = pool.getUsage().getMax();
+            if (max <= 0) {
+                continue;
+            }
+            long threshold = (long) (max * PRESSURE_THRESHOLD);
+            if (pool.isUsageThresholdSupported()) {
+                pool.setUsageThreshold(threshold);
+                heapPools.add(pool);
+            }
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(threshold);
+            }
+        }
+
+        NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        NotificationListener listener = (Notification notification, Object handback) -> {
+            String type = notification.getType();
+            if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type) || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+                underPressure = true;
+            }
+        };
+        emitter.addNotificationListener(listener, null, null);
+        log.debug("[MemoryGovernor] Usage thresholds installed in {} heap pools.", heapPools.size());
+    }
+
+    public boolean isUnderPressure() {
+        return underPressure;
+    }
+
+    /**
+     * Step 1 : evicts the caches that can be reloaded lazily, and checks again the heap after a collection.
+     * The tile rasters of the current block are kept, the refinement reads the elevations from them.
+     *
+     * @return true if the pressure is gone
+     */
+    public boolean relieve(TerrainElevationDataManager terrainElevationDataManager) {
+        relievedCount++;
+        if (terrainElevationDataManager != null) {
+            terrainElevationDataManager.deleteCoverage();
+            terrainElevationDataManager.deleteGeoTiffManager();
+        }
+        System.gc();
+
+        boolean pressure = false;
+        for (MemoryPoolMXBean pool : heapPools) {
+            if (pool.isCollectionUsageThresholdSupported() && pool.getCollectionUsage() != null) {
+                pressure |= pool.getCollectionUsage().getUsed() > pool.getCollectionUsageThreshold();
+            } else {
+                pressure |= pool.isUsageThresholdExceeded();
+            }
+        }
+        underPressure = pressure;
+        log.info("[MemoryGovernor] Caches evicted. Heap pressure {}.", pressure ? "remains" : "relieved");
+        return !pressure;
+    }
+
+    /**
+     * Resets the adaptive mosaic size at the start of a depth
+     */
+    public void resetMosaicSize(int mosaicSize) {
+        this.mosaicSize = mosaicSize;
+    }
+
+    /**
+     * Step 2 : the block of (cols x rows) tiles did not fit in the heap, so the mosaic size is halved for the rest of the depth.
+     */
+    public void onBlockOverflow(int cols, int rows) {
+        splitBlocksCount++;
+        int blockSize = Math.max(cols, rows);
+        this.mosaicSize = Math.max(1, Math.min(this.mosaicSize, blockSize / 2));
+        underPressure = false;
+        log.warn("[MemoryGovernor] Block of {}x{} tiles does not fit in the heap. Mosaic size reduced to {} for the rest of the depth.", cols, rows, this.mosaicSize);
+    }
+}
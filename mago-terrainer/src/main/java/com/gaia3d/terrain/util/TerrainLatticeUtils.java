@@ -0,0 +1,81 @@
+package com.gaia3d.terrain.util;
+
+import com.gaia3d.terrain.structure.TerrainVertex;
+import org.joml.Vector3d;
+
+/**
+ * Integer lattice for the horizontal coordinates of the terrain vertices.
+ * The level-0 cell (180 degrees) is subdivided in 2^LATTICE_BITS steps, so every tile corner of every depth (0 - 22)
+ * is an exact lattice point, and two vertices are coincident if and only if they have the same lattice key.
+ * The elevation (position.z) is not part of the lattice.
+ */
+public class TerrainLatticeUtils {
+    public static final int LATTICE_BITS = 40;
+    private static final double LATTICE_STEPS = (double) (1L << LATTICE_BITS);
+    private static final double LATTICE_STEP_DEG = 180.0 / LATTICE_STEPS;
+
+    public static long toLatticeU(double lonDeg) {
+        return Math.round((lonDeg + 180.0) / 180.0 * LATTICE_STEPS);
+    }
+
+    public static long toLatticeV(double latDeg) {
+        return Math.round((latDeg + 90.0) / 180.0 * LATTICE_STEPS);
+    }
+
+    public static double toLonDeg(long u) {
+        return u * LATTICE_STEP_DEG - 180.0;
+    }
+
+    public static double toLatDeg(long v) {
+        return v * LATTICE_STEP_DEG - 90.0;
+    }
+
+    /**
+     * Snaps the longitude and latitude of the position to the nearest lattice point.
+     * The same lattice point always produces the same doubles, so snapped vertices do not drift between tiles.
+     */
+    public static Vector3d snapToLattice(Vector3d position) {
+        position.x = toLonDeg(toLatticeU(position.x));
+        position.y = toLatDeg(toLatticeV(position.y));
+        return position;
+    }
+
+    public static LatticeKey getLatticeKey(TerrainVertex vertex) {
+        Vector3d position = vertex.getPosition();
+        return new LatticeKey(toLatticeU(position.x), toLatticeV(position.y));
+    }
+
+    /**
+     * Hashable (u, v) lattice coordinates of a vertex
+     */
+    public static final class LatticeKey {
+        public final long u;
+        public final long v;
+
+        public LatticeKey(long u, long v) {
+            this.u = u;
+            this.v = v;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof LatticeKey other)) {
+                return false;
+            }
+            return u == other.u && v == other.v;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(u * 31 + v);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + u + ", " + v + ")";
+        }
+    }
+}
@@ -202,7 +202,7 @@ public class TerrainMeshUtils {
 
             try {
                 //log.debug("Saving children tiles... L : " + childTileIndices.getL() + " i : " + j + " / " + childMeshesCount);
-                childMesh.saveFile(childTileFullPath);
+                manager.getTileOutputWriter().writeTerrainMesh(childMesh, childTileFullPath);
             } catch (IOException e) {
                 log.error("Error:", e);
                 return;
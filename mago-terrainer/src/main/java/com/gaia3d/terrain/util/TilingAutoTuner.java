@@ -0,0 +1,201 @@
+package com.gaia3d.terrain.util;
+
+import com.gaia3d.terrain.tile.TileRange;
+import com.gaia3d.util.DecimalUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Auto-tuning of the tiling (--autoTune).
+ * Chooses the mosaic size of every depth from the heap budget (the max heap, bounded by the memory limit of the container)
+ * and from the triangle density measured on the refined blocks of the previous depth, and the writer threads from the cpus of the container.
+ * The heap of a block is estimated as its tiles with the border, times the heap of a tile : its raster, and its triangles.
+ * The chosen values are logged, and exported in {OUTPUT}/tiling_tuning.csv.
+ */
+@Slf4j
+public class TilingAutoTuner {
+    public static final String FILE_NAME = "tiling_tuning.csv";
+    public static final int MAX_MOSAIC_SIZE = 64;
+    private static final int MAX_WRITER_THREADS = 8;
+    private static final double CONTAINER_HEAP_RATIO = 0.75; // the rest of the container is for the metaspace, the thread stacks and the native buffers
+    private static final double BLOCK_HEAP_RATIO = 0.5; // the rest of the heap is for the caches, the output queue and the garbage
+    private static final double MAX_DENSITY_GROWTH = 2.0;
+    private static final String HEADER = "depth,mosaicSize,finalMosaicSize,writerThreads,heapBudgetBytes,memoryLimitBytes,cpus,heapBytesPerTile,trianglesPerTile,verticesPerTile,bytesPerTriangle";
+    private static TilingAutoTuner instance = null;
+
+    @Getter
+    private final ContainerResources containerResources;
+    @Getter
+    private final long heapBudgetBytes;
+    private final Map<Integer, DepthDensity> depthDensities = new HashMap<>();
+    private final List<String> records = new ArrayList<>();
+
+    /**
+     * The density of the refined blocks of a depth, and the mosaic size chosen for it
+     */
+    @Getter
+    public static class DepthDensity {
+        private final int depth;
+        private int blockCount = 0;
+        private double trianglesPerTile = 0; // of the densest block
+        private double verticesPerTile = 0;
+        private double bytesPerTriangle = -1; // the lowest measure, as the used heap also holds garbage
+        private double heapBytesPerTile = 0;
+        private int mosaicSize = 0;
+        private boolean overflowed = false; // the memory governor reduced the mosaic size
+
+        private DepthDensity(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    public TilingAutoTuner(ContainerResources containerResources, long maxHeapBytes) {
+        this.containerResources = containerResources;
+        long heapBudget = maxHeapBytes;
+        if (containerResources.hasMemoryLimit()) {
+            heapBudget = Math.min(heapBudget, (long) (containerResources.getMemoryLimitBytes() * CONTAINER_HEAP_RATIO));
+        }
+        this.heapBudgetBytes = heapBudget;
+    }
+
+    public static synchronized TilingAutoTuner getInstance() {
+        if (instance == null) {
+            instance = new TilingAutoTuner(ContainerResources.detect(), Runtime.getRuntime().maxMemory());
+        }
+        return instance;
+    }
+
+    /**
+     * The writer threads : the cores of the container, but the one of the tiling thread
+     */
+    public int chooseWriterThreads() {
+        int writerThreads = Math.max(1, Math.min(MAX_WRITER_THREADS, containerResources.getCpuCount() - 1));
+        log.info("[AutoTune] Writer threads {} : {} cpus, memory limit {}", writerThreads, containerResources.getCpuCount(),
+                containerResources.hasMemoryLimit() ? DecimalUtils.byteCountToDisplaySize(containerResources.getMemoryLimitBytes()) : "none");
+        return writerThreads;
+    }
+
+    /**
+     * Records the density of a refined block of (expandedTiles) tiles, with its border.
+     * The heap used after the refinement, less the tile rasters, gives the heap of a triangle.
+     */
+    public synchronized void recordBlock(int depth, int expandedTiles, int triangleCount, int vertexCount, long usedHeapBytes, long tileRasterBytes) {
+        if (expandedTiles <= 0 || triangleCount <= 0) {
+            return;
+        }
+        DepthDensity density = depthDensities.computeIfAbsent(depth, DepthDensity::new);
+        density.blockCount++;
+        density.trianglesPerTile = Math.max(density.trianglesPerTile, (double) triangleCount / expandedTiles);
+        density.verticesPerTile = Math.max(density.verticesPerTile, (double) vertexCount / expandedTiles);
+        long meshBytes = usedHeapBytes - expandedTiles * tileRasterBytes;
+        if (meshBytes > 0) {
+            double bytesPerTriangle = (double) meshBytes / triangleCount;
+            density.bytesPerTriangle = density.bytesPerTriangle < 0 ? bytesPerTriangle : Math.min(density.bytesPerTriangle, bytesPerTriangle);
+        }
+    }
+
+    /**
+     * The heap of a tile of the depth : its raster, and the triangles of the previous depth grown as from the depth before.
+     * Without a measure of the previous depth, only the raster.
+     */
+    public synchronized double estimateTileHeapBytes(int depth, long tileRasterBytes) {
+        DepthDensity previous = depthDensities.get(depth - 1);
+        if (previous == null || previous.bytesPerTriangle < 0) {
+            return tileRasterBytes;
+        }
+        double growth = 1.0;
+        DepthDensity beforePrevious = depthDensities.get(depth - 2);
+        if (beforePrevious != null && beforePrevious.trianglesPerTile > 0) {
+            growth = Math.max(1.0, Math.min(MAX_DENSITY_GROWTH, previous.trianglesPerTile / beforePrevious.trianglesPerTile));
+        }
+        return tileRasterBytes + previous.trianglesPerTile * growth * previous.bytesPerTriangle;
+    }
+
+    /**
+     * The largest mosaic size whose block, with its border, fits in the block part of the heap budget
+     */
+    public int getFittingMosaicSize(double tileHeapBytes) {
+        double blockBudget = heapBudgetBytes * BLOCK_HEAP_RATIO;
+        int mosaicSize = 1;
+        while (mosaicSize < MAX_MOSAIC_SIZE && (double) (mosaicSize + 3) * (mosaicSize + 3) * tileHeapBytes <= blockBudget) {
+            mosaicSize++;
+        }
+        return mosaicSize;
+    }
+
+    /**
+     * Chooses the mosaic size of the depth. Without a measure of the previous depth, the configured size is kept if the rasters fit.
+     * If the memory governor had to split the blocks of the previous depth, the size is not larger than its reduced size.
+     */
+    public synchronized int chooseMosaicSize(int depth, TileRange tilesRange, int configuredMosaicSize, long tileRasterBytes) {
+        DepthDensity previous = depthDensities.get(depth - 1);
+        boolean measured = previous != null && previous.bytesPerTriangle >= 0;
+        double tileHeapBytes = estimateTileHeapBytes(depth, tileRasterBytes);
+        int mosaicSize = getFittingMosaicSize(tileHeapBytes);
+        if (!measured) {
+            mosaicSize = Math.min(mosaicSize, configuredMosaicSize);
+        }
+        if (previous != null && previous.overflowed) {
+            mosaicSize = Math.min(mosaicSize, previous.mosaicSize);
+        }
+        // a single block covers the whole depth
+        int cols = tilesRange.getMaxTileX() - tilesRange.getMinTileX() + 1;
+        int rows = tilesRange.getMaxTileY() - tilesRange.getMinTileY() + 1;
+        mosaicSize = Math.max(1, Math.min(mosaicSize, Math.max(cols, rows)));
+
+        DepthDensity density = depthDensities.computeIfAbsent(depth, DepthDensity::new);
+        density.mosaicSize = mosaicSize;
+        density.heapBytesPerTile = tileHeapBytes;
+        log.info("[AutoTune][{}] Mosaic size {} : heap per tile {} ({}), heap budget {}", depth, mosaicSize,
+                DecimalUtils.byteCountToDisplaySize((long) tileHeapBytes), measured ? "measured at depth " + (depth - 1) : "rasters only",
+                DecimalUtils.byteCountToDisplaySize(heapBudgetBytes));
+        return mosaicSize;
+    }
+
+    /**
+     * Records the values of the finished depth, with the mosaic size the memory governor ended with, and exports them
+     */
+    public synchronized void finishDepth(int depth, int finalMosaicSize, int writerThreads, Path outputPath) {
+        DepthDensity density = depthDensities.computeIfAbsent(depth, DepthDensity::new);
+        int chosenMosaicSize = density.mosaicSize;
+        if (finalMosaicSize > 0 && finalMosaicSize < density.mosaicSize) {
+            // the next depth is not larger than the reduced size
+            density.overflowed = true;
+            density.mosaicSize = finalMosaicSize;
+        }
+        records.add(String.format(Locale.US, "%d,%d,%d,%d,%d,%d,%d,%.0f,%.1f,%.1f,%.1f", depth, chosenMosaicSize, finalMosaicSize, writerThreads,
+                heapBudgetBytes, containerResources.getMemoryLimitBytes(), containerResources.getCpuCount(),
+                density.heapBytesPerTile, density.trianglesPerTile, density.verticesPerTile, density.bytesPerTriangle));
+        log.info("[AutoTune][{}] {} blocks refined : {} triangles / {} vertices per tile, {} bytes per triangle", depth, density.blockCount,
+                String.format(Locale.US, "%.1f", density.trianglesPerTile), String.format(Locale.US, "%.1f", density.verticesPerTile),
+                density.bytesPerTriangle < 0 ? "-" : String.format(Locale.US, "%.1f", density.bytesPerTriangle));
+        save(outputPath.resolve(FILE_NAME));
+    }
+
+    public synchronized DepthDensity getDepthDensity(int depth) {
+        return depthDensities.get(depth);
+    }
+
+    private void save(Path filePath) {
+        StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (String record : records) {
+            content.append(record).append('\n');
+        }
+        try {
+            Files.createDirectories(filePath.getParent());
+            Files.writeString(filePath, content.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("[AutoTune] Failed to write the tuning file : {}", filePath, e);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.gaia3d.terrain.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gaia3d.terrain.tile.TilingPlan;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics registry of the whole run : the time of the pipeline phases, the counters, and the histogram of the block durations, per depth.
+ * The values are accumulated with LongAdder, so the tiling thread and the writer threads record without locking.
+ * The phases of the writer threads (encode, write) are the sum over the threads.
+ * At the end of the run the metrics are written next to the report file, as {OUTPUT}/metrics.json and as {OUTPUT}/metrics.prom
+ * in the Prometheus text format (for the textfile collector of the node exporter).
+ */
+@Slf4j
+public class TilingMetrics {
+    public static final String JSON_FILE_NAME = "metrics.json";
+    public static final String PROMETHEUS_FILE_NAME = "metrics.prom";
+    public static final int NO_DEPTH = -1; // the phases before the tiling
+    private static final String PREFIX = "mago_terrainer_";
+    private static final double[] BLOCK_SECONDS_BUCKETS = {0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600};
+    private static TilingMetrics instance = null;
+
+    public enum Phase {
+        STANDARDIZE, RESIZE, QUADTREE, RASTER, MERGE, REFINE, ENCODE, WRITE;
+
+        public String getLabel() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Counter {
+        TILES("tiles_total", "Tile writes, the halo tiles rewritten by the neighbor blocks counted again (not the unique tiles)"),
+        TRIANGLES("triangles_total", "Triangles of the tiles written"),
+        TRIANGLE_SPLITS("triangle_splits_total", "Triangles added by the refinement"),
+        REFINEMENT_ITERATIONS("refinement_iterations_total", "Refinement iterations of the blocks"),
+        BLOCK_SPLITS("block_splits_total", "Blocks split by the memory governor"),
+        RASTER_CACHE_HITS("raster_cache_hits_total", "Tile rasters reused from the previous block"),
+        RASTER_CACHE_MISSES("raster_cache_misses_total", "Tile rasters made from the coverages"),
+        COVERAGE_LOADS("coverage_loads_total", "GeoTIFF coverages read from the disk"),
+        WATER_MASK_TRANSFORM_FAILURES("water_mask_transform_failures_total", "Water mask points that failed to transform to the water mask raster, classified as land"),
+        BYTES_WRITTEN("bytes_written_total", "Stored bytes of the tile writes, the halo rewrites included (not the size of the output)");
+
+        @Getter
+        private final String metricName;
+        @Getter
+        private final String help;
+
+        Counter(String metricName, String help) {
+            this.metricName = metricName;
+            this.help = help;
+        }
+    }
+
+    /**
+     * Fixed buckets histogram of durations
+     */
+    private static class Histogram {
+        private final AtomicLongArray bucketCounts = new AtomicLongArray(BLOCK_SECONDS_BUCKETS.length);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        private void observe(long nanos) {
+            double seconds = nanos / 1e9;
+            for (int i = 0; i < BLOCK_SECONDS_BUCKETS.length; i++) {
+                if (seconds <= BLOCK_SECONDS_BUCKETS[i]) {
+                    bucketCounts.incrementAndGet(i);
+                    break;
+                }
+            }
+            count.increment();
+            sumNanos.add(nanos);
+        }
+    }
+
+    private final long startMillis = System.currentTimeMillis();
+    @Getter
+    @Setter
+    private volatile int currentDepth = NO_DEPTH;
+    private final Map<Phase, Map<Integer, LongAdder>> phaseNanos = new EnumMap<>(Phase.class);
+    private final Map<Counter, Map<Integer, LongAdder>> counters = new EnumMap<>(Counter.class);
+    private final Map<Integer, Histogram> blockDurations = new ConcurrentSkipListMap<>();
+
+    TilingMetrics() {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(phase, new ConcurrentSkipListMap<>());
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public static synchronized TilingMetrics getInstance() {
+        if (instance == null) {
+            instance = new TilingMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Adds the time since startNanos (System.nanoTime()) to the phase
+     */
+    public void addPhaseTime(Phase phase, int depth, long startNanos) {
+        phaseNanos.get(phase).computeIfAbsent(depth, k -> new LongAdder()).add(System.nanoTime() - startNanos);
+    }
+
+    public void increment(Counter counter, int depth) {
+        add(counter, depth, 1);
+    }
+
+    public void add(Counter counter, int depth, long value) {
+        counters.get(counter).computeIfAbsent(depth, k -> new LongAdder()).add(value);
+    }
+
+    /**
+     * Records the duration of a block of the depth, since startNanos (System.nanoTime())
+     */
+    public void observeBlock(int depth, long startNanos) {
+        blockDurations.computeIfAbsent(depth, k -> new Histogram()).observe(System.nanoTime() - startNanos);
+    }
+
+    public long getCount(Counter counter, int depth) {
+        LongAdder value = counters.get(counter).get(depth);
+        return value != null ? value.sum() : 0;
+    }
+
+    public double getPhaseSeconds(Phase phase, int depth) {
+        LongAdder value = phaseNanos.get(phase).get(depth);
+        return value != null ? value.sum() / 1e9 : 0;
+    }
+
+    public long getBlockCount(int depth) {
+        Histogram histogram = blockDurations.get(depth);
+        return histogram != null ? histogram.count.sum() : 0;
+    }
+
+    /**
+     * Writes metrics.json and metrics.prom in the folder
+     */
+    public void writeFiles(File outputFolder, String name, String version) {
+        Path folderPath = outputFolder.toPath();
+        try {
+            Files.createDirectories(folderPath);
+            writeAtomically(folderPath.resolve(JSON_FILE_NAME), toJson(name, version));
+            writeAtomically(folderPath.resolve(PROMETHEUS_FILE_NAME), toPrometheusText(name, version));
+            log.info("[Metrics][I/O] writing the metrics files: {}, {}", JSON_FILE_NAME, PROMETHEUS_FILE_NAME);
+        } catch (IOException e) {
+            log.error("[ERROR][Metrics][I/O] failed to write the metrics files: {}", folderPath, e);
+        }
+    }
+
+    /**
+     * The file is renamed when complete, the node exporter never reads a partial file
+     */
+    private void writeAtomically(Path filePath, String content) throws IOException {
+        Path tempPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        Files.writeString(tempPath, content, StandardCharsets.UTF_8);
+        Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String toJson(String name, String version) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode run = root.putObject("run");
+        run.put("name", name);
+        run.put("version", version);
+        run.put("startTime", startMillis);
+        run.put("durationSeconds", (System.currentTimeMillis() - startMillis) / 1000.0);
+        run.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        run.put("peakHeapBytes", TilingPlan.getPeakHeapBytes()); // since the start of the run
+
+        ArrayNode phases = root.putArray("phases");
+        for (Map.Entry<Phase, Map<Integer, LongAdder>> entry : phaseNanos.entrySet()) {
+            for (Map.Entry<Integer, LongAdder> depthEntry : entry.getValue().entrySet()) {
+                ObjectNode phase = phases.addObject();
+                phase.put("phase", entry.getKey().getLabel());
+                putDepth(phase, depthEntry.getKey());
+                phase.put("seconds", depthEntry.getValue().sum() / 1e9);
+            }
+        }
+
+        ArrayNode counterNodes = root.putArray("counters");
+        for (Map.Entry<Counter, Map<Integer, LongAdder>> entry : counters.entrySet()) {
+            for (Map.Entry<Integer, LongAdder> depthEntry : entry.getValue().entrySet()) {
+                ObjectNode counter = counterNodes.addObject();
+                counter.put("name", entry.getKey().getMetricName());
+                putDepth(counter, depthEntry.getKey());
+                counter.put("value", depthEntry.getValue().sum());
+            }
+        }
+
+        ArrayNode histograms = root.putArray("blockDurations");
+        for (Map.Entry<Integer, Histogram> entry : blockDurations.entrySet()) {
+            Histogram histogram = entry.getValue();
+            ObjectNode histogramNode = histograms.addObject();
+            putDepth(histogramNode, entry.getKey());
+            histogramNode.put("count", histogram.count.sum());
+            histogramNode.put("sumSeconds", histogram.sumNanos.sum() / 1e9);
+            ArrayNode buckets = histogramNode.putArray("buckets");
+            for (int i = 0; i < BLOCK_SECONDS_BUCKETS.length; i++) {
+                ObjectNode bucket = buckets.addObject();
+                bucket.put("le", BLOCK_SECONDS_BUCKETS[i]);
+                bucket.put("count", histogram.bucketCounts.get(i));
+            }
+        }
+        return root.toPrettyString();
+    }
+
+    private void putDepth(ObjectNode node, int depth) {
+        if (depth != NO_DEPTH) {
+            node.put("depth", depth);
+        }
+    }
+
+    public String toPrometheusText(String name, String version) {
+        StringBuilder text = new StringBuilder();
+        appendHeader(text, "run_info", "gauge", "The run of the terrain tiling");
+        text.append(PREFIX).append("run_info{name=\"").append(escapeLabel(name)).append("\",version=\"").append(escapeLabel(version)).append("\"} 1\n");
+        appendHeader(text, "run_start_timestamp_seconds", "gauge", "Start time of the run");
+        text.append(PREFIX).append("run_start_timestamp_seconds ").append(formatDouble(startMillis / 1000.0)).append('\n');
+        appendHeader(text, "run_duration_seconds", "gauge", "Duration of the run");
+        text.append(PREFIX).append("run_duration_seconds ").append(formatDouble((System.currentTimeMillis() - startMillis) / 1000.0)).append('\n');
+
+        appendHeader(text, "phase_seconds_total", "counter", "Time spent in the pipeline phases, summed over the writer threads for encode and write");
+        for (Map.Entry<Phase, Map<Integer, LongAdder>> entry : phaseNanos.entrySet()) {
+            for (Map.Entry<Integer, LongAdder> depthEntry : entry.getValue().entrySet()) {
+                text.append(PREFIX).append("phase_seconds_total{phase=\"").append(entry.getKey().getLabel()).append('"');
+                appendDepthLabel(text, depthEntry.getKey());
+                text.append("} ").append(formatDouble(depthEntry.getValue().sum() / 1e9)).append('\n');
+            }
+        }
+
+        for (Map.Entry<Counter, Map<Integer, LongAdder>> entry : counters.entrySet()) {
+            Counter counter = entry.getKey();
+            appendHeader(text, counter.getMetricName(), "counter", counter.getHelp());
+            for (Map.Entry<Integer, LongAdder> depthEntry : entry.getValue().entrySet()) {
+                text.append(PREFIX).append(counter.getMetricName());
+                if (depthEntry.getKey() != NO_DEPTH) {
+                    text.append("{depth=\"").append(depthEntry.getKey()).append("\"}");
+                }
+                text.append(' ').append(depthEntry.getValue().sum()).append('\n');
+            }
+        }
+
+        appendHeader(text, "block_duration_seconds", "histogram", "Duration of the blocks of tiles");
+        for (Map.Entry<Integer, Histogram> entry : blockDurations.entrySet()) {
+            Histogram histogram = entry.getValue();
+            String depthLabel = "depth=\"" + entry.getKey() + "\"";
+            long cumulative = 0;
+            for (int i = 0; i < BLOCK_SECONDS_BUCKETS.length; i++) {
+                cumulative += histogram.bucketCounts.get(i);
+                text.append(PREFIX).append("block_duration_seconds_bucket{").append(depthLabel).append(",le=\"").append(formatDouble(BLOCK_SECONDS_BUCKETS[i])).append("\"} ").append(cumulative).append('\n');
+            }
+            long count = histogram.count.sum();
+            text.append(PREFIX).append("block_duration_seconds_bucket{").append(depthLabel).append(",le=\"+Inf\"} ").append(count).append('\n');
+            text.append(PREFIX).append("block_duration_seconds_sum{").append(depthLabel).append("} ").append(formatDouble(histogram.sumNanos.sum() / 1e9)).append('\n');
+            text.append(PREFIX).append("block_duration_seconds_count{").append(depthLabel).append("} ").append(count).append('\n');
+        }
+        return text.toString();
+    }
+
+    private void appendHeader(StringBuilder text, String metricName, String type, String help) {
+        text.append("# HELP ").append(PREFIX).append(metricName).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PREFIX).append(metricName).append(' ').append(type).append('\n');
+    }
+
+    private void appendDepthLabel(StringBuilder text, int depth) {
+        if (depth != NO_DEPTH) {
+            text.append(",depth=\"").append(depth).append('"');
+        }
+    }
+
+    private static String formatDouble(double value) {
+        return Double.toString(value);
+    }
+
+    private static String escapeLabel(String value) {
+        if (value == null) {
+            return "unknown";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,267 @@
+package com.gaia3d.quantized.mesh;
+
+import com.gaia3d.io.LittleEndianDataOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantizedMeshEncoderTest {
+
+    private QuantizedMesh createGridMesh(int gridSize) {
+        // (gridSize x gridSize) vertices, 2 triangles per cell
+        int vertexCount = gridSize * gridSize;
+        short[] uBuffer = new short[vertexCount];
+        short[] vBuffer = new short[vertexCount];
+        short[] heightBuffer = new short[vertexCount];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                int idx = row * gridSize + col;
+                uBuffer[idx] = (short) (col * 32767 / (gridSize - 1));
+                vBuffer[idx] = (short) (row * 32767 / (gridSize - 1));
+                heightBuffer[idx] = (short) ((idx * 7919) % 32767);
+            }
+        }
+
+        int triangleCount = (gridSize - 1) * (gridSize - 1) * 2;
+        int[] indices = new int[triangleCount * 3];
+        int i = 0;
+        for (int row = 0; row < gridSize - 1; row++) {
+            for (int col = 0; col < gridSize - 1; col++) {
+                int a = row * gridSize + col;
+                int b = a + 1;
+                int c = a + gridSize;
+                int d = c + 1;
+                indices[i++] = a;
+                indices[i++] = b;
+                indices[i++] = d;
+                indices[i++] = a;
+                indices[i++] = d;
+                indices[i++] = c;
+            }
+        }
+
+        int[] west = new int[gridSize];
+        int[] south = new int[gridSize];
+        int[] east = new int[gridSize];
+        int[] north = new int[gridSize];
+        for (int k = 0; k < gridSize; k++) {
+            west[k] = k * gridSize;
+            south[k] = k;
+            east[k] = k * gridSize + gridSize - 1;
+            north[k] = (gridSize - 1) * gridSize + k;
+        }
+
+        QuantizedMesh quantizedMesh = new QuantizedMesh();
+        quantizedMesh.getHeader().setCenterX(-3000000.0);
+        quantizedMesh.getHeader().setMaximumHeight(1234.5f);
+        quantizedMesh.setVertexCount(vertexCount);
+        quantizedMesh.setTriangleCount(triangleCount);
+        quantizedMesh.setUBuffer(uBuffer);
+        quantizedMesh.setVBuffer(vBuffer);
+        quantizedMesh.setHeightBuffer(heightBuffer);
+        quantizedMesh.setTriangleIndices(indices);
+        quantizedMesh.setWestVertexCount(gridSize);
+        quantizedMesh.setSouthVertexCount(gridSize);
+        quantizedMesh.setEastVertexCount(gridSize);
+        quantizedMesh.setNorthVertexCount(gridSize);
+        quantizedMesh.setWestIndices(west);
+        quantizedMesh.setSouthIndices(south);
+        quantizedMesh.setEastIndices(east);
+        quantizedMesh.setNorthIndices(north);
+
+        byte[] normals = new byte[vertexCount * 2];
+        for (int k = 0; k < normals.length; k++) {
+            normals[k] = (byte) k;
+        }
+        quantizedMesh.setExtensionId((byte) 1);
+        quantizedMesh.setExtensionLength(normals.length);
+        quantizedMesh.setOctEncodedNormals(normals);
+        return quantizedMesh;
+    }
+
+    /**
+     * Renumbers the vertices in the order of their first use by the triangles, as the high-water mark encoding requires
+     */
+    private void renumberVertices(QuantizedMesh quantizedMesh) {
+        int vertexCount = quantizedMesh.getVertexCount();
+        int[] newIndices = new int[vertexCount];
+        Arrays.fill(newIndices, -1);
+        int nextIndex = 0;
+        int[] triangleIndices = quantizedMesh.getTriangleIndices();
+        for (int i = 0; i < triangleIndices.length; i++) {
+            if (newIndices[triangleIndices[i]] < 0) {
+                newIndices[triangleIndices[i]] = nextIndex++;
+            }
+            triangleIndices[i] = newIndices[triangleIndices[i]];
+        }
+        short[][] buffers = {quantizedMesh.getUBuffer(), quantizedMesh.getVBuffer(), quantizedMesh.getHeightBuffer()};
+        for (short[] buffer : buffers) {
+            short[] oldValues = buffer.clone();
+            for (int i = 0; i < vertexCount; i++) {
+                buffer[newIndices[i]] = oldValues[i];
+            }
+        }
+        for (int[] edgeIndices : new int[][]{quantizedMesh.getWestIndices(), quantizedMesh.getSouthIndices(), quantizedMesh.getEastIndices(), quantizedMesh.getNorthIndices()}) {
+            for (int i = 0; i < edgeIndices.length; i++) {
+                edgeIndices[i] = newIndices[edgeIndices[i]];
+            }
+        }
+    }
+
+    private byte[] encodeWithStream(QuantizedMesh quantizedMesh, boolean saveNormals) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream dataOutputStream = new LittleEndianDataOutputStream(byteArrayOutputStream);
+        quantizedMesh.saveDataOutputStream(dataOutputStream, saveNormals);
+        dataOutputStream.close();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private byte[] encodeWithEncoder(QuantizedMesh quantizedMesh, boolean saveNormals) {
+        ByteBuffer encoded = QuantizedMeshEncoder.getInstance().encode(quantizedMesh, saveNormals);
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void sameBytesAsStream16() throws IOException {
+        QuantizedMesh quantizedMesh = createGridMesh(65);
+        for (boolean saveNormals : new boolean[]{false, true}) {
+            byte[] expected = encodeWithStream(quantizedMesh, saveNormals);
+            assertEquals(expected.length, QuantizedMeshEncoder.getEncodedSize(quantizedMesh, saveNormals));
+            assertArrayEquals(expected, encodeWithEncoder(quantizedMesh, saveNormals));
+        }
+    }
+
+    @Test
+    void sameBytesAsStreamWithWaterMask() throws IOException {
+        QuantizedMesh quantizedMesh = createGridMesh(33);
+        byte[] mixedWaterMask = new byte[256 * 256];
+        for (int k = 0; k < mixedWaterMask.length; k += 3) {
+            mixedWaterMask[k] = (byte) 255;
+        }
+        for (byte[] waterMask : new byte[][]{{(byte) 255}, mixedWaterMask}) {
+            quantizedMesh.setWaterMask(waterMask);
+            byte[] expected = encodeWithStream(quantizedMesh, true);
+            assertEquals(expected.length, QuantizedMeshEncoder.getEncodedSize(quantizedMesh, true));
+            assertArrayEquals(expected, encodeWithEncoder(quantizedMesh, true));
+            // the water mask extension is the last one : id 2, length, mask
+            int waterMaskOffset = expected.length - waterMask.length - 5;
+            assertEquals(2, expected[waterMaskOffset]);
+            assertEquals(waterMask.length, ByteBuffer.wrap(expected, waterMaskOffset + 1, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+        }
+    }
+
+    @Test
+    void sameBytesAsStream32() throws IOException {
+        // more than 65536 vertices, the indices are 32 bits
+        QuantizedMesh quantizedMesh = createGridMesh(260);
+        byte[] expected = encodeWithStream(quantizedMesh, true);
+        assertArrayEquals(expected, encodeWithEncoder(quantizedMesh, true));
+    }
+
+    @Test
+    void decodeEncoded() throws IOException {
+        // 16 bits and 32 bits indices, with the normals, the water mask and the metadata extensions
+        for (int gridSize : new int[]{65, 260}) {
+            QuantizedMesh quantizedMesh = createGridMesh(gridSize);
+            renumberVertices(quantizedMesh);
+            quantizedMesh.setWaterMask(new byte[]{(byte) 255});
+            quantizedMesh.setMetadata("{\"available\":[]}".getBytes(StandardCharsets.UTF_8));
+            QuantizedMesh decoded = QuantizedMeshDecoder.getInstance().decode(ByteBuffer.wrap(encodeWithEncoder(quantizedMesh, true)));
+
+            assertEquals(quantizedMesh.getHeader().getCenterX(), decoded.getHeader().getCenterX());
+            assertEquals(quantizedMesh.getHeader().getMaximumHeight(), decoded.getHeader().getMaximumHeight());
+            assertEquals(quantizedMesh.getVertexCount(), decoded.getVertexCount());
+            assertArrayEquals(quantizedMesh.getUBuffer(), decoded.getUBuffer());
+            assertArrayEquals(quantizedMesh.getVBuffer(), decoded.getVBuffer());
+            assertArrayEquals(quantizedMesh.getHeightBuffer(), decoded.getHeightBuffer());
+            assertArrayEquals(quantizedMesh.getTriangleIndices(), decoded.getTriangleIndices());
+            assertArrayEquals(quantizedMesh.getWestIndices(), decoded.getWestIndices());
+            assertArrayEquals(quantizedMesh.getNorthIndices(), decoded.getNorthIndices());
+            assertArrayEquals(quantizedMesh.getOctEncodedNormals(), decoded.getOctEncodedNormals());
+            assertArrayEquals(quantizedMesh.getWaterMask(), decoded.getWaterMask());
+            assertArrayEquals(quantizedMesh.getMetadata(), decoded.getMetadata());
+        }
+    }
+
+    @Test
+    void decodeSkipsUnknownExtensions() throws IOException {
+        QuantizedMesh quantizedMesh = createGridMesh(65);
+        renumberVertices(quantizedMesh);
+        byte[] encoded = encodeWithEncoder(quantizedMesh, true);
+
+        // an unknown extension after the normals
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 5 + 3).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(encoded);
+        buffer.put((byte) 9);
+        buffer.putInt(3);
+        buffer.put(new byte[]{1, 2, 3});
+        buffer.flip();
+        QuantizedMesh decoded = QuantizedMeshDecoder.getInstance().decode(buffer);
+
+        assertEquals(1, decoded.getExtensionId());
+        assertArrayEquals(quantizedMesh.getOctEncodedNormals(), decoded.getOctEncodedNormals());
+    }
+
+    @Test
+    void decodeRejectsInvalidMetadataLength(@TempDir Path tempDir) throws IOException {
+        QuantizedMesh quantizedMesh = createGridMesh(65);
+        renumberVertices(quantizedMesh);
+        byte[] encoded = encodeWithEncoder(quantizedMesh, true);
+
+        // a metadata extension whose json is longer than the extension
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 5 + 4 + 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(encoded);
+        buffer.put((byte) 4);
+        buffer.putInt(4 + 2);
+        buffer.putInt(1000);
+        buffer.put(new byte[]{'{', '}'});
+        Path tilePath = tempDir.resolve("0.terrain");
+        Files.write(tilePath, buffer.array());
+
+        IOException exception = assertThrows(IOException.class, () -> QuantizedMeshDecoder.getInstance().read(tilePath, false));
+        assertTrue(exception.getMessage().contains(tilePath.toString()));
+    }
+
+    @Test
+    void triangleBudgetFitsTheEncodedSize() {
+        // the largest grid under the budget, with the normals, and with or without the water mask and 10 levels of metadata
+        int[][] budgets = {{20000, 0, 0}, {100000, 1, 10}, {200000, 1, 0}};
+        for (int[] budget : budgets) {
+            int maxBytes = budget[0];
+            boolean withWaterMask = budget[1] == 1;
+            int metadataLevels = budget[2];
+            int maxTriangles = QuantizedMesh.estimateMaxTrianglesForBytes(maxBytes, true, withWaterMask, metadataLevels);
+            int gridSize = (int) Math.sqrt(maxTriangles / 2.0) + 1;
+            QuantizedMesh quantizedMesh = createGridMesh(gridSize);
+            assertTrue(quantizedMesh.getTriangleCount() <= maxTriangles);
+            if (withWaterMask) {
+                quantizedMesh.setWaterMask(new byte[256 * 256]);
+            }
+            if (metadataLevels > 0) {
+                StringBuilder json = new StringBuilder("{\"available\":[");
+                for (int level = 0; level < metadataLevels; level++) {
+                    json.append(level > 0 ? "," : "").append("[{\"startX\":123456,\"startY\":65432,\"endX\":123457,\"endY\":65433}]");
+                }
+                quantizedMesh.setMetadata(json.append("]}").toString().getBytes(StandardCharsets.UTF_8));
+            }
+            int encodedSize = QuantizedMeshEncoder.getEncodedSize(quantizedMesh, true);
+            assertTrue(encodedSize <= maxBytes, "encoded " + encodedSize + " bytes, budget " + maxBytes);
+            assertTrue(encodedSize > maxBytes * 0.9, "encoded " + encodedSize + " bytes, budget " + maxBytes);
+        }
+    }
+}
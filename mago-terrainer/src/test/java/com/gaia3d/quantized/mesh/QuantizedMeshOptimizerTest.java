@@ -0,0 +1,195 @@
+package com.gaia3d.quantized.mesh;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantizedMeshOptimizerTest {
+
+    /**
+     * Grid mesh with the vertices and the triangles in random order, like the refinement order
+     */
+    private QuantizedMesh createShuffledGridMesh(int gridSize, long seed) {
+        Random random = new Random(seed);
+        int vertexCount = gridSize * gridSize;
+        int[] vertexOfGridIndex = new int[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            vertexOfGridIndex[i] = i;
+        }
+        shuffle(vertexOfGridIndex, random);
+
+        short[] uBuffer = new short[vertexCount];
+        short[] vBuffer = new short[vertexCount];
+        short[] heightBuffer = new short[vertexCount];
+        byte[] normals = new byte[vertexCount * 2];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                int vertex = vertexOfGridIndex[row * gridSize + col];
+                uBuffer[vertex] = (short) (col * 32767 / (gridSize - 1));
+                vBuffer[vertex] = (short) (row * 32767 / (gridSize - 1));
+                heightBuffer[vertex] = (short) (16000 + 8000 * Math.sin(col * 0.1) * Math.cos(row * 0.07));
+                normals[vertex * 2] = (byte) col;
+                normals[vertex * 2 + 1] = (byte) row;
+            }
+        }
+
+        int triangleCount = (gridSize - 1) * (gridSize - 1) * 2;
+        int[] cells = new int[triangleCount];
+        for (int i = 0; i < triangleCount; i++) {
+            cells[i] = i;
+        }
+        shuffle(cells, random);
+        int[] indices = new int[triangleCount * 3];
+        for (int i = 0; i < triangleCount; i++) {
+            int cell = cells[i] / 2;
+            int row = cell / (gridSize - 1);
+            int col = cell % (gridSize - 1);
+            int a = vertexOfGridIndex[row * gridSize + col];
+            int b = vertexOfGridIndex[row * gridSize + col + 1];
+            int c = vertexOfGridIndex[(row + 1) * gridSize + col];
+            int d = vertexOfGridIndex[(row + 1) * gridSize + col + 1];
+            int[] triangle = (cells[i] % 2 == 0) ? new int[]{a, b, d} : new int[]{a, d, c};
+            System.arraycopy(triangle, 0, indices, i * 3, 3);
+        }
+
+        int[] west = new int[gridSize];
+        int[] south = new int[gridSize];
+        int[] east = new int[gridSize];
+        int[] north = new int[gridSize];
+        for (int k = 0; k < gridSize; k++) {
+            west[k] = vertexOfGridIndex[(gridSize - 1 - k) * gridSize];
+            south[k] = vertexOfGridIndex[k];
+            east[k] = vertexOfGridIndex[k * gridSize + gridSize - 1];
+            north[k] = vertexOfGridIndex[(gridSize - 1) * gridSize + gridSize - 1 - k];
+        }
+
+        QuantizedMesh quantizedMesh = new QuantizedMesh();
+        quantizedMesh.setVertexCount(vertexCount);
+        quantizedMesh.setTriangleCount(triangleCount);
+        quantizedMesh.setUBuffer(uBuffer);
+        quantizedMesh.setVBuffer(vBuffer);
+        quantizedMesh.setHeightBuffer(heightBuffer);
+        quantizedMesh.setTriangleIndices(indices);
+        quantizedMesh.setWestVertexCount(gridSize);
+        quantizedMesh.setSouthVertexCount(gridSize);
+        quantizedMesh.setEastVertexCount(gridSize);
+        quantizedMesh.setNorthVertexCount(gridSize);
+        quantizedMesh.setWestIndices(west);
+        quantizedMesh.setSouthIndices(south);
+        quantizedMesh.setEastIndices(east);
+        quantizedMesh.setNorthIndices(north);
+        quantizedMesh.setExtensionId((byte) 1);
+        quantizedMesh.setExtensionLength(normals.length);
+        quantizedMesh.setOctEncodedNormals(normals);
+        return quantizedMesh;
+    }
+
+    private void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = values[i];
+            values[i] = values[j];
+            values[j] = temp;
+        }
+    }
+
+    /**
+     * The triangles as positions, rotated to start with the smallest vertex key (the winding is kept)
+     */
+    private Set<String> getTriangleKeys(QuantizedMesh quantizedMesh) {
+        Set<String> keys = new HashSet<>();
+        int[] indices = quantizedMesh.getTriangleIndices();
+        for (int i = 0; i < quantizedMesh.getTriangleCount(); i++) {
+            long[] vertexKeys = new long[3];
+            int first = 0;
+            for (int j = 0; j < 3; j++) {
+                vertexKeys[j] = getVertexKey(quantizedMesh, indices[i * 3 + j]);
+                if (vertexKeys[j] < vertexKeys[first]) {
+                    first = j;
+                }
+            }
+            keys.add(vertexKeys[first] + "," + vertexKeys[(first + 1) % 3] + "," + vertexKeys[(first + 2) % 3]);
+        }
+        return keys;
+    }
+
+    private long getVertexKey(QuantizedMesh quantizedMesh, int vertex) {
+        long u = quantizedMesh.getUBuffer()[vertex];
+        long v = quantizedMesh.getVBuffer()[vertex];
+        long height = quantizedMesh.getHeightBuffer()[vertex] & 0xFFFF;
+        long normal = ((quantizedMesh.getOctEncodedNormals()[vertex * 2] & 0xFF) << 8) | (quantizedMesh.getOctEncodedNormals()[vertex * 2 + 1] & 0xFF);
+        return (u << 48) | (v << 32) | (height << 16) | normal;
+    }
+
+    private long[] getEdgeKeys(QuantizedMesh quantizedMesh, int[] edgeIndices) {
+        long[] keys = new long[edgeIndices.length];
+        for (int i = 0; i < edgeIndices.length; i++) {
+            keys[i] = getVertexKey(quantizedMesh, edgeIndices[i]);
+        }
+        return keys;
+    }
+
+    private int getGzipSize(QuantizedMesh quantizedMesh) throws IOException {
+        ByteBuffer encoded = QuantizedMeshEncoder.getInstance().encode(quantizedMesh, true);
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(bytes);
+        }
+        return byteArrayOutputStream.size();
+    }
+
+    @Test
+    void sameGeometry() {
+        QuantizedMesh quantizedMesh = createShuffledGridMesh(33, 7);
+        Set<String> triangleKeys = getTriangleKeys(quantizedMesh);
+        long[] westKeys = getEdgeKeys(quantizedMesh, quantizedMesh.getWestIndices());
+        long[] northKeys = getEdgeKeys(quantizedMesh, quantizedMesh.getNorthIndices());
+
+        QuantizedMeshOptimizer.optimize(quantizedMesh);
+
+        assertEquals(triangleKeys, getTriangleKeys(quantizedMesh));
+        assertArrayEquals(westKeys, getEdgeKeys(quantizedMesh, quantizedMesh.getWestIndices()));
+        assertArrayEquals(northKeys, getEdgeKeys(quantizedMesh, quantizedMesh.getNorthIndices()));
+    }
+
+    @Test
+    void verticesInFirstUseOrder() {
+        QuantizedMesh quantizedMesh = createShuffledGridMesh(33, 11);
+        QuantizedMeshOptimizer.optimize(quantizedMesh);
+
+        int highest = 0;
+        for (int index : quantizedMesh.getTriangleIndices()) {
+            assertTrue(index <= highest);
+            if (index == highest) {
+                highest++;
+            }
+        }
+        assertEquals(quantizedMesh.getVertexCount(), highest);
+    }
+
+    @Test
+    void betterCacheAndSmallerGzip() throws IOException {
+        QuantizedMesh quantizedMesh = createShuffledGridMesh(65, 3);
+        int cacheSize = QuantizedMeshOptimizer.CACHE_SIZE;
+        double acmrBefore = QuantizedMeshOptimizer.getAverageCacheMissRatio(quantizedMesh.getTriangleIndices(), quantizedMesh.getTriangleCount(), cacheSize);
+        int gzipBefore = getGzipSize(quantizedMesh);
+
+        QuantizedMeshOptimizer.optimize(quantizedMesh);
+
+        double acmrAfter = QuantizedMeshOptimizer.getAverageCacheMissRatio(quantizedMesh.getTriangleIndices(), quantizedMesh.getTriangleCount(), cacheSize);
+        int gzipAfter = getGzipSize(quantizedMesh);
+        assertTrue(acmrAfter < 0.8, "ACMR " + acmrAfter);
+        assertTrue(acmrAfter < acmrBefore);
+        assertTrue(gzipAfter < gzipBefore, gzipBefore + " -> " + gzipAfter);
+    }
+}
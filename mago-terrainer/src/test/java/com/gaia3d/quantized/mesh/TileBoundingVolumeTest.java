@@ -0,0 +1,108 @@
+package com.gaia3d.quantized.mesh;
+
+import com.gaia3d.util.CelestialBody;
+import com.gaia3d.util.GlobeUtils;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileBoundingVolumeTest {
+
+    /**
+     * Vertices of a tile grid with a mountain, in world coordinates
+     */
+    private double[] createTilePositions(double minLonDeg, double minLatDeg, double sizeDeg, int gridSize, CelestialBody body) {
+        double[] positions = new double[gridSize * gridSize * 3];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                double lonDeg = minLonDeg + sizeDeg * col / (gridSize - 1);
+                double latDeg = minLatDeg + sizeDeg * row / (gridSize - 1);
+                double height = 500.0 + 2500.0 * Math.sin(Math.PI * col / (gridSize - 1)) * Math.sin(Math.PI * row / (gridSize - 1));
+                double[] positionWC = GlobeUtils.geographicToCartesian(lonDeg, latDeg, height, body);
+                System.arraycopy(positionWC, 0, positions, (row * gridSize + col) * 3, 3);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Same test as Cesium EllipsoidalOccluder.isScaledSpacePointVisible, camera and point in the scaled space
+     */
+    private boolean isOccluded(Vector3d cameraScaled, Vector3d pointScaled) {
+        double vhMagnitudeSquared = cameraScaled.lengthSquared() - 1.0;
+        Vector3d vt = new Vector3d(pointScaled).sub(cameraScaled);
+        double vtDotVc = -vt.dot(cameraScaled);
+        if (vhMagnitudeSquared < 0.0) {
+            return vtDotVc > 0.0;
+        }
+        return vtDotVc > vhMagnitudeSquared && vtDotVc * vtDotVc / vt.lengthSquared() > vhMagnitudeSquared;
+    }
+
+    private Vector3d toScaled(double[] positions, int index, CelestialBody body) {
+        return new Vector3d(positions[index * 3] / body.getEquatorialRadius(), positions[index * 3 + 1] / body.getEquatorialRadius(), positions[index * 3 + 2] / body.getPolarRadius());
+    }
+
+    @Test
+    void boundingSphereContainsAllVertices() {
+        CelestialBody body = CelestialBody.EARTH;
+        double[] positions = createTilePositions(126.5, 36.0, 0.5, 33, body);
+        int count = positions.length / 3;
+        double[] sphere = TileBoundingVolume.getBoundingSphere(positions, count);
+
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = 0; i < count; i++) {
+            double dx = positions[i * 3] - sphere[0];
+            double dy = positions[i * 3 + 1] - sphere[1];
+            double dz = positions[i * 3 + 2] - sphere[2];
+            assertTrue(Math.sqrt(dx * dx + dy * dy + dz * dz) <= sphere[3] + 1e-6);
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], positions[i * 3 + axis]);
+                max[axis] = Math.max(max[axis], positions[i * 3 + axis]);
+            }
+        }
+        // tighter than the half diagonal of the bounding box
+        double halfDiagonal = Math.sqrt(Math.pow(max[0] - min[0], 2) + Math.pow(max[1] - min[1], 2) + Math.pow(max[2] - min[2], 2)) / 2.0;
+        assertTrue(sphere[3] < halfDiagonal, sphere[3] + " >= " + halfDiagonal);
+    }
+
+    @Test
+    void occludedPointHidesAllVertices() {
+        for (CelestialBody body : CelestialBody.values()) {
+            double[] positions = createTilePositions(-10.0, 45.0, 2.0, 17, body);
+            int count = positions.length / 3;
+            double[] sphere = TileBoundingVolume.getBoundingSphere(positions, count);
+            Vector3d occlusionPoint = TileBoundingVolume.getHorizonOcclusionPoint(positions, count, new Vector3d(sphere[0], sphere[1], sphere[2]), body);
+            assertNotNull(occlusionPoint);
+            // the point is in the scaled space, just above the surface
+            assertTrue(occlusionPoint.length() > 1.0 && occlusionPoint.length() < 1.1, body + " " + occlusionPoint.length());
+
+            Random random = new Random(5);
+            int occludedCameras = 0;
+            for (int i = 0; i < 2000; i++) {
+                Vector3d camera = new Vector3d(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize().mul(1.0001 + random.nextDouble() * 2.0);
+                if (!isOccluded(camera, occlusionPoint)) {
+                    continue;
+                }
+                occludedCameras++;
+                for (int j = 0; j < count; j++) {
+                    assertTrue(isOccluded(camera, toScaled(positions, j, body)), body + " vertex " + j + " visible");
+                }
+            }
+            assertTrue(occludedCameras > 100);
+        }
+    }
+
+    @Test
+    void noOcclusionPointForHemisphere() {
+        CelestialBody body = CelestialBody.EARTH;
+        double[] positions = {
+                body.getEquatorialRadius(), 0.0, 0.0,
+                -body.getEquatorialRadius(), 0.0, 0.0,
+                0.0, body.getEquatorialRadius(), 0.0};
+        assertNull(TileBoundingVolume.getHorizonOcclusionPoint(positions, 3, new Vector3d(0.0, 1.0, 0.0), body));
+    }
+}
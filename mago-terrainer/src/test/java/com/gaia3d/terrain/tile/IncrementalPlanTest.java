@@ -0,0 +1,42 @@
+package com.gaia3d.terrain.tile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalPlanTest {
+
+    private Map<String, String> createOptions(int maxDepth) {
+        Map<String, String> options = new TreeMap<>();
+        options.put("minDepth", "0");
+        options.put("maxDepth", String.valueOf(maxDepth));
+        options.put("gzip", "false");
+        return options;
+    }
+
+    @Test
+    void changedOptionsForceFullRun(@TempDir Path tempDir) throws IOException {
+        Path inputPath = Files.createDirectories(tempDir.resolve("input"));
+        Path outputPath = Files.createDirectories(tempDir.resolve("output"));
+
+        IncrementalPlan firstPlan = IncrementalPlan.create(inputPath.toString(), outputPath.toString(), false, createOptions(14));
+        assertTrue(firstPlan.isFullRun());
+        firstPlan.saveManifest(outputPath.toString());
+        Files.writeString(outputPath.resolve("layer.json"), "{}");
+
+        IncrementalPlan samePlan = IncrementalPlan.create(inputPath.toString(), outputPath.toString(), false, createOptions(14));
+        assertFalse(samePlan.isFullRun());
+        assertTrue(samePlan.isUpToDate());
+
+        IncrementalPlan changedPlan = IncrementalPlan.create(inputPath.toString(), outputPath.toString(), false, createOptions(16));
+        assertTrue(changedPlan.isFullRun());
+        assertFalse(changedPlan.isUpToDate());
+    }
+}
@@ -0,0 +1,66 @@
+package com.gaia3d.terrain.tile;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileAvailabilityTest {
+
+    private TileAvailability createAvailability() {
+        // two separate areas at depth 3, and their children at depth 4
+        TileAvailability tileAvailability = new TileAvailability();
+        tileAvailability.addRange(TileRange.of(3, 1, 2, 1, 1));
+        tileAvailability.addRange(TileRange.of(3, 12, 12, 5, 6));
+        tileAvailability.addRange(TileRange.of(4, 2, 5, 2, 3));
+        tileAvailability.addRange(TileRange.of(4, 24, 25, 10, 13));
+        return tileAvailability;
+    }
+
+    private TileIndices createTileIndices(int x, int y, int depth) {
+        TileIndices tileIndices = new TileIndices();
+        tileIndices.set(x, y, depth);
+        return tileIndices;
+    }
+
+    @Test
+    void subtreeAvailabilityIsClipped() {
+        TileAvailability tileAvailability = createAvailability();
+
+        // depth 1 tile (0, 0) covers x 0-3, y 0-3 at depth 3 and x 0-7, y 0-7 at depth 4 : only the area A
+        List<List<TileRange>> subtree = tileAvailability.getSubtreeAvailability(createTileIndices(0, 0, 1), 5);
+        assertEquals(3, subtree.size());
+        assertTrue(subtree.get(0).isEmpty());
+        assertEquals(1, subtree.get(1).size());
+        TileRange depth3 = subtree.get(1).get(0);
+        assertEquals(3, depth3.getTileDepth());
+        assertEquals(1, depth3.getMinTileX());
+        assertEquals(2, depth3.getMaxTileX());
+        TileRange depth4 = subtree.get(2).get(0);
+        assertEquals(2, depth4.getMinTileX());
+        assertEquals(5, depth4.getMaxTileX());
+        assertEquals(2, depth4.getMinTileY());
+        assertEquals(3, depth4.getMaxTileY());
+
+        // depth 2 tile (6, 3) covers x 12-13, y 6-7 at depth 3 : only a part of the area B
+        subtree = tileAvailability.getSubtreeAvailability(createTileIndices(6, 3, 2), 5);
+        assertEquals(2, subtree.size());
+        assertEquals(6, subtree.get(0).get(0).getMinTileY());
+        assertEquals(6, subtree.get(0).get(0).getMaxTileY());
+        assertEquals(12, subtree.get(1).get(0).getMinTileY());
+        assertEquals(13, subtree.get(1).get(0).getMaxTileY());
+
+        // no available tiles in the subtree
+        assertTrue(tileAvailability.getSubtreeAvailability(createTileIndices(3, 0, 2), 5).isEmpty());
+    }
+
+    @Test
+    void metadataJson() {
+        TileAvailability tileAvailability = createAvailability();
+        List<List<TileRange>> subtree = tileAvailability.getSubtreeAvailability(createTileIndices(0, 0, 1), 3);
+        String json = new String(TileAvailability.toMetadataJson(subtree), StandardCharsets.UTF_8);
+        assertEquals("{\"available\":[[],[{\"startX\":1,\"startY\":1,\"endX\":2,\"endY\":1}],[{\"startX\":2,\"startY\":2,\"endX\":5,\"endY\":3}]]}", json);
+    }
+}
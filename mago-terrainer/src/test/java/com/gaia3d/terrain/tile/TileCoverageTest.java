@@ -0,0 +1,71 @@
+package com.gaia3d.terrain.tile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileCoverageTest {
+
+    @Test
+    void rectangularAreaIsOneRectangle() {
+        TileCoverage tileCoverage = new TileCoverage();
+        // added in block order, not in row order
+        for (int x = 13; x >= 10; x--) {
+            for (int y = 5; y <= 8; y++) {
+                tileCoverage.add(6, x, y);
+            }
+        }
+        List<TileRange> rectangles = tileCoverage.getRectangles(6);
+        assertEquals(1, rectangles.size());
+        TileRange rectangle = rectangles.get(0);
+        assertEquals(6, rectangle.getTileDepth());
+        assertEquals(10, rectangle.getMinTileX());
+        assertEquals(13, rectangle.getMaxTileX());
+        assertEquals(5, rectangle.getMinTileY());
+        assertEquals(8, rectangle.getMaxTileY());
+        assertEquals(16, tileCoverage.getTileCount(6));
+    }
+
+    @Test
+    void sparseTilesAreExact() {
+        // two islands and a L shaped area
+        TileCoverage tileCoverage = new TileCoverage();
+        tileCoverage.addRange(TileRange.of(8, 0, 1, 0, 1));
+        tileCoverage.addRange(TileRange.of(8, 100, 100, 50, 50));
+        tileCoverage.addRange(TileRange.of(8, 20, 25, 10, 10));
+        tileCoverage.addRange(TileRange.of(8, 20, 21, 11, 13));
+
+        List<TileRange> rectangles = tileCoverage.getRectangles(8);
+        assertEquals(4, rectangles.size());
+        long tileCount = 0;
+        for (TileRange rectangle : rectangles) {
+            tileCount += (long) (rectangle.getMaxTileX() - rectangle.getMinTileX() + 1) * (rectangle.getMaxTileY() - rectangle.getMinTileY() + 1);
+        }
+        assertEquals(4 + 1 + 6 + 6, tileCount);
+        assertEquals(tileCount, tileCoverage.getTileCount(8));
+
+        assertTrue(tileCoverage.contains(8, 21, 13));
+        assertFalse(tileCoverage.contains(8, 22, 13));
+        assertFalse(tileCoverage.contains(8, 50, 30));
+        assertTrue(tileCoverage.getRectangles(9).isEmpty());
+    }
+
+    @Test
+    void runsAreMerged() {
+        TileCoverage tileCoverage = new TileCoverage();
+        tileCoverage.add(3, 1, 0);
+        tileCoverage.add(3, 3, 0);
+        tileCoverage.add(3, 5, 0);
+        assertEquals(3, tileCoverage.getRectangles(3).size());
+        tileCoverage.add(3, 2, 0);
+        tileCoverage.add(3, 4, 0);
+        tileCoverage.add(3, 3, 0);
+        List<TileRange> rectangles = tileCoverage.getRectangles(3);
+        assertEquals(1, rectangles.size());
+        assertEquals(1, rectangles.get(0).getMinTileX());
+        assertEquals(5, rectangles.get(0).getMaxTileX());
+        assertEquals(5, tileCoverage.getTileCount(3));
+    }
+}
@@ -0,0 +1,77 @@
+package com.gaia3d.terrain.tile;
+
+import com.gaia3d.quantized.mesh.QuantizedMesh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileOutputWriterTest {
+
+    private QuantizedMesh createQuadMesh() {
+        // 4 corner vertices, 2 triangles
+        QuantizedMesh quantizedMesh = new QuantizedMesh();
+        quantizedMesh.setVertexCount(4);
+        quantizedMesh.setTriangleCount(2);
+        quantizedMesh.setUBuffer(new short[]{0, 32767, 0, 32767});
+        quantizedMesh.setVBuffer(new short[]{0, 0, 32767, 32767});
+        quantizedMesh.setHeightBuffer(new short[]{0, 100, 200, 300});
+        quantizedMesh.setTriangleIndices(new int[]{0, 1, 2, 1, 3, 2});
+        quantizedMesh.setWestVertexCount(2);
+        quantizedMesh.setSouthVertexCount(2);
+        quantizedMesh.setEastVertexCount(2);
+        quantizedMesh.setNorthVertexCount(2);
+        quantizedMesh.setWestIndices(new int[]{0, 2});
+        quantizedMesh.setSouthIndices(new int[]{0, 1});
+        quantizedMesh.setEastIndices(new int[]{1, 3});
+        quantizedMesh.setNorthIndices(new int[]{2, 3});
+        return quantizedMesh;
+    }
+
+    /**
+     * Writes the tiles of the block and its halo, as TileMatrix.saveQuantizedMeshes does
+     */
+    private void writeBlock(TileOutputWriter tileOutputWriter, TileRange blockTilesRange, Path outputFolder) throws IOException {
+        for (TileIndices tileIndices : blockTilesRange.expand1().getTileIndices(null)) {
+            String filePath = outputFolder.resolve(tileIndices.getL() + "/" + tileIndices.getX() + "/" + tileIndices.getY() + ".terrain").toString();
+            boolean ownedTile = blockTilesRange.intersects(tileIndices);
+            tileOutputWriter.writeQuantizedMesh(createQuadMesh(), false, tileIndices, filePath, ownedTile, null);
+        }
+    }
+
+    @Test
+    void sizeManifestListsTheHaloTilesOnce(@TempDir Path tempDir) throws IOException {
+        Path manifestPath = tempDir.resolve("tile_sizes.csv");
+        TileOutputWriter tileOutputWriter = new TileOutputWriter(0);
+        tileOutputWriter.setGzipLevel(6);
+        tileOutputWriter.openSizeManifest(manifestPath.toString(), false);
+
+        // adjacent blocks : the column x = 1 is a halo of the right block, the column x = 2 a halo of the left block
+        writeBlock(tileOutputWriter, TileRange.of(5, 0, 1, 0, 1), tempDir);
+        writeBlock(tileOutputWriter, TileRange.of(5, 2, 3, 0, 1), tempDir);
+        tileOutputWriter.close();
+
+        List<String> lines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+        assertEquals("L,X,Y,rawBytes,storedBytes", lines.get(0));
+        assertEquals(8 + 1, lines.size());
+        Set<String> tiles = new HashSet<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] columns = line.split(",");
+            assertTrue(tiles.add(columns[0] + "," + columns[1] + "," + columns[2]), "duplicated row : " + line);
+        }
+        assertTrue(tiles.contains("5,1,0"));
+        assertTrue(tiles.contains("5,2,1"));
+
+        // the halo rewrites are not counted in the gzip totals either
+        int rawSize = Integer.parseInt(lines.get(1).split(",")[3]);
+        assertEquals(8L * rawSize, tileOutputWriter.getRawQuantizedMeshBytes().get());
+    }
+}
@@ -0,0 +1,64 @@
+package com.gaia3d.terrain.tile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileQualityReportTest {
+
+    private TileQualityReport.TileQuality createQuality(double maxError, double rmsError, int iterations, long generationNanos) {
+        TileQualityReport.TileQuality tileQuality = new TileQualityReport.TileQuality();
+        tileQuality.setMaxError(maxError);
+        tileQuality.setRmsError(rmsError);
+        tileQuality.setIterations(iterations);
+        tileQuality.setGenerationNanos(generationNanos);
+        return tileQuality;
+    }
+
+    @Test
+    void bucketsArePowersOfTwo() {
+        assertEquals(0, TileQualityReport.getBucket(0));
+        assertEquals(0, TileQualityReport.getBucket(0.99));
+        assertEquals(0, TileQualityReport.getBucket(Double.NaN));
+        assertEquals(1, TileQualityReport.getBucket(1));
+        assertEquals(2, TileQualityReport.getBucket(3.5));
+        assertEquals(11, TileQualityReport.getBucket(1024));
+        assertEquals(1, TileQualityReport.getUpperBound(0));
+        assertEquals(2048, TileQualityReport.getUpperBound(11));
+    }
+
+    @Test
+    void writesTilesPerDepthAndHistograms(@TempDir Path tempDir) throws IOException {
+        Path folder = tempDir.resolve(TileQualityReport.FOLDER_NAME);
+        TileQualityReport report = new TileQualityReport(folder, false);
+        report.add(5, 10, 3, 120, 200, 4000, 2500, createQuality(1.25, 0.5, 6, 2_000_000));
+        report.add(5, 11, 3, 130, 210, 4100, 2600, createQuality(0.75, 0.25, 6, 3_000_000));
+        report.add(6, 20, 6, 40, 60, 900, 600, createQuality(0, 0, 0, 500_000));
+        report.close();
+
+        List<String> depth5 = Files.readAllLines(folder.resolve("L5.csv"), StandardCharsets.UTF_8);
+        assertEquals(3, depth5.size());
+        assertEquals("L,X,Y,vertices,triangles,rawBytes,storedBytes,maxError,rmsError,iterations,millis", depth5.get(0));
+        assertEquals("5,10,3,120,200,4000,2500,1.250,0.500,6,2.000", depth5.get(1));
+        assertEquals(2, Files.readAllLines(folder.resolve("L6.csv"), StandardCharsets.UTF_8).size());
+
+        List<String> histograms = Files.readAllLines(folder.resolve(TileQualityReport.HISTOGRAMS_FILE_NAME), StandardCharsets.UTF_8);
+        assertTrue(histograms.contains("5,triangles,256,2"));
+        assertTrue(histograms.contains("5,max_error_cm,128,2"));
+        assertTrue(histograms.contains("5,millis,4,2"));
+        assertTrue(histograms.contains("6,max_error_cm,1,1"));
+
+        // a continued run appends to the existing files
+        TileQualityReport continued = new TileQualityReport(folder, true);
+        continued.add(5, 12, 3, 100, 180, 3900, 2400, createQuality(0.5, 0.25, 5, 1_000_000));
+        continued.close();
+        assertEquals(4, Files.readAllLines(folder.resolve("L5.csv"), StandardCharsets.UTF_8).size());
+    }
+}
@@ -0,0 +1,39 @@
+package com.gaia3d.terrain.tile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileWgs84RasterTest {
+
+    @Test
+    void uniformTilesHaveOneByteMask() {
+        boolean[] land = new boolean[16];
+        assertArrayEquals(new byte[]{0}, TileWgs84Raster.makeWaterMask(land, 4, 4));
+
+        boolean[] water = new boolean[16];
+        Arrays.fill(water, true);
+        assertArrayEquals(new byte[]{(byte) 255}, TileWgs84Raster.makeWaterMask(water, 4, 4));
+    }
+
+    @Test
+    void mixedTileMaskIsNorthToSouth() {
+        // 4 x 4 samples from south to north : the 2 south rows are water
+        boolean[] isWater = new boolean[16];
+        for (int idx = 0; idx < 8; idx++) {
+            isWater[idx] = true;
+        }
+        byte[] mask = TileWgs84Raster.makeWaterMask(isWater, 4, 4);
+        int size = TileWgs84Raster.WATER_MASK_SIZE;
+        assertEquals(size * size, mask.length);
+        // the first mask row is the north (land), the last one is the south (water)
+        assertEquals(0, mask[0]);
+        assertEquals(0, mask[size - 1]);
+        assertEquals((byte) 255, mask[(size - 1) * size]);
+        assertEquals((byte) 255, mask[size * size - 1]);
+        assertEquals(0, mask[(size / 2 - 1) * size]);
+        assertEquals((byte) 255, mask[(size / 2) * size]);
+    }
+}
@@ -0,0 +1,97 @@
+package com.gaia3d.terrain.tile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilingJournalTest {
+
+    @Test
+    void resumeSkipsCommittedBlocks(@TempDir Path tempDir) throws IOException {
+        Path outputPath = tempDir.resolve("output");
+        Path tempPath = Files.createDirectories(tempDir.resolve("temp"));
+        TilingJournal journal = TilingJournal.create(outputPath.toString(), tempPath.toString(), 2, 16, false);
+        journal.beginBlock(TileRange.of(2, 0, 3, 0, 3));
+        journal.commitBlock(TileRange.of(2, 0, 3, 0, 3), List.of(TileRange.of(2, 0, 1, 0, 1)));
+        journal.commitDepth(2);
+        journal.commitDepthMosaicSize(3, 8);
+        journal.beginBlock(TileRange.of(3, 0, 7, 0, 7));
+        journal.commitBlock(TileRange.of(3, 0, 7, 0, 7), List.of());
+        // a partial line of a crash
+        Files.writeString(outputPath.resolve(TilingJournal.FILE_NAME), "block,3,8,1", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        assertEquals(tempPath.toString(), TilingJournal.readTempPath(outputPath.toString()));
+        TilingJournal resumed = TilingJournal.load(outputPath.toString(), false);
+        assertNotNull(resumed);
+        assertTrue(resumed.isResumed());
+        assertEquals(2, resumed.getMinTileDepth());
+        assertEquals(16, resumed.getMosaicSize());
+        assertTrue(resumed.isDepthCompleted(2));
+        assertFalse(resumed.isDepthCompleted(3));
+        assertTrue(resumed.isBlockCompleted(TileRange.of(3, 0, 7, 0, 7)));
+        assertFalse(resumed.isBlockCompleted(TileRange.of(3, 8, 15, 0, 7)));
+        assertTrue(resumed.hasCompletedBlocks(3));
+        assertFalse(resumed.hasCompletedBlocks(4));
+        assertEquals(8, resumed.getDepthMosaicSize(3));
+        assertNull(resumed.getDepthMosaicSize(2));
+        assertEquals(1, resumed.getFlatTileRanges(2).size());
+        assertTrue(resumed.getFlatTileRanges(3).isEmpty());
+
+        resumed.delete();
+        assertFalse(Files.exists(outputPath.resolve(TilingJournal.FILE_NAME)));
+        assertNull(TilingJournal.load(outputPath.toString(), false));
+    }
+
+    @Test
+    void interruptedBlockIsUndone(@TempDir Path tempDir) throws IOException {
+        Path outputPath = tempDir.resolve("output");
+        Path tempPath = Files.createDirectories(tempDir.resolve("temp"));
+        Path existingTile = tempPath.resolve("L1_X0_Y0.til");
+        Path createdTile = tempPath.resolve("L1_X1_Y0.til");
+        Files.writeString(existingTile, "committed");
+
+        TilingJournal journal = TilingJournal.create(outputPath.toString(), tempPath.toString(), 0, 16, false);
+        journal.beginBlock(TileRange.of(1, 0, 1, 0, 0));
+        journal.backupBeforeWrite(existingTile.toString());
+        Files.writeString(existingTile, "partial");
+        journal.backupBeforeWrite(existingTile.toString());
+        Files.writeString(existingTile, "partial again");
+        journal.backupBeforeWrite(createdTile.toString());
+        Files.writeString(createdTile, "partial");
+        // crash before the commit
+
+        TilingJournal resumed = TilingJournal.load(outputPath.toString(), false);
+        assertNotNull(resumed);
+        assertFalse(resumed.isBlockCompleted(TileRange.of(1, 0, 1, 0, 0)));
+        assertEquals("committed", Files.readString(existingTile));
+        assertFalse(Files.exists(createdTile));
+    }
+
+    @Test
+    void committedBlockIsNotUndone(@TempDir Path tempDir) throws IOException {
+        Path outputPath = tempDir.resolve("output");
+        Path tempPath = Files.createDirectories(tempDir.resolve("temp"));
+        Path tile = tempPath.resolve("L1_X0_Y0.til");
+        Files.writeString(tile, "before");
+
+        TilingJournal journal = TilingJournal.create(outputPath.toString(), tempPath.toString(), 0, 16, false);
+        TileRange block = TileRange.of(1, 0, 1, 0, 0);
+        journal.beginBlock(block);
+        journal.backupBeforeWrite(tile.toString());
+        Files.writeString(tile, "after");
+        // the block line is written, but the crash happens before the undo is cleared
+        Files.writeString(outputPath.resolve(TilingJournal.FILE_NAME), "block,1,0,1,0,0\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        TilingJournal resumed = TilingJournal.load(outputPath.toString(), false);
+        assertTrue(resumed.isBlockCompleted(block));
+        assertEquals("after", Files.readString(tile));
+    }
+}
@@ -0,0 +1,41 @@
+package com.gaia3d.terrain.tile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilingPlanTest {
+
+    @Test
+    void extrapolateSamples(@TempDir Path tempDir) throws IOException {
+        TilingPlan tilingPlan = new TilingPlan(16, 256, false);
+        tilingPlan.setResizedBytes(1000);
+        // 64 x 32 tiles, 2 sample blocks of 4 x 4 tiles, each writing 6 x 6 tiles with its border
+        TilingPlan.DepthEstimate depth5 = tilingPlan.addDepth(5, TileRange.of(5, 0, 63, 0, 31), 8);
+        depth5.setSetupMillis(500);
+        depth5.addSample(4, 4, 36 * 100, 36 * 100, 36 * 400, 1000, 1000 + 36 * 10);
+        depth5.addSample(4, 4, 36 * 100, 36 * 100, 36 * 400, 1000, 1000 + 36 * 20);
+        TilingPlan.DepthEstimate depth6 = tilingPlan.addDepth(6, TileRange.of(6, 0, 127, 0, 63), 32);
+        depth6.addSample(4, 4, 36 * 200, 36 * 100, 0, 1000, 1000);
+
+        assertEquals(2048, depth5.getTileCount());
+        // the 4 x 2 blocks of 16 x 16 tiles write (64 + 8) x (32 + 4) tiles with their borders
+        assertEquals(500 + 72 * 36 * 100, depth5.getEstimatedMillis());
+        assertEquals(2048 * 100, depth5.getEstimatedOutputBytes());
+        assertEquals(2048 * 400, depth5.getEstimatedChildTempBytes());
+        // the largest sample heap per tile, over the 18 x 18 tiles of a block with its border
+        assertEquals(1000 + 20 * 18 * 18, depth5.getEstimatedBlockHeapBytes(16));
+        assertEquals(18L * 18 * 256 * 256 * 4, tilingPlan.getBlockRasterBytes(depth5));
+        // the temp files of the children of depth 5 are read by depth 6
+        assertEquals(1000 + 2048 * 400, tilingPlan.getEstimatedPeakTempBytes());
+        assertEquals(2048 * 100 + 8192 * 100, tilingPlan.getEstimatedOutputBytes());
+
+        assertTrue(tilingPlan.check(Long.MAX_VALUE / 2, tempDir, tempDir));
+        assertFalse(tilingPlan.check(5000, tempDir, tempDir));
+        assertTrue(tilingPlan.getWarnings().get(0).contains("--mosaicSize 8"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.gaia3d.terrain.tile.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileArchiveTest {
+
+    @Test
+    void hilbertIndexIsUniqueAndAdjacent() {
+        long side = 8;
+        Set<Long> indices = new HashSet<>();
+        long[][] positionByIndex = new long[(int) (side * side)][];
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                long index = TileArchive.hilbertIndex(side, x, y);
+                assertTrue(indices.add(index));
+                positionByIndex[(int) index] = new long[]{x, y};
+            }
+        }
+        // consecutive indices are neighbor tiles
+        for (int i = 1; i < positionByIndex.length; i++) {
+            long dx = Math.abs(positionByIndex[i][0] - positionByIndex[i - 1][0]);
+            long dy = Math.abs(positionByIndex[i][1] - positionByIndex[i - 1][1]);
+            assertEquals(1, dx + dy);
+        }
+    }
+
+    @Test
+    void writeAndRead(@TempDir Path tempDir) throws IOException {
+        Path archivePath = tempDir.resolve(TileArchive.DEFAULT_FILE_NAME);
+        TileArchiveWriter writer = new TileArchiveWriter(archivePath.toString(), false);
+        byte[] flatTile = "flat".getBytes(StandardCharsets.UTF_8);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 4; y++) {
+                byte[] payload = (x % 2 == 0) ? flatTile : ("tile " + x + " " + y).getBytes(StandardCharsets.UTF_8);
+                writer.addTile(2, x, y, ByteBuffer.wrap(payload));
+            }
+        }
+        writer.addTile(0, 1, 0, ByteBuffer.wrap(flatTile));
+        writer.finish("{\"tilejson\":\"2.1.0\"}".getBytes(StandardCharsets.UTF_8));
+        assertFalse(Files.exists(tempDir.resolve(TileArchive.DEFAULT_FILE_NAME + ".spool")));
+
+        try (TileArchiveReader reader = new TileArchiveReader(archivePath)) {
+            assertEquals(33, reader.getTileCount());
+            assertEquals(17, reader.getUniqueTileCount()); // 16 distinct tiles and 1 shared flat tile
+            assertFalse(reader.isGzipTiles());
+            assertArrayEquals(flatTile, reader.getTile(2, 4, 3));
+            assertArrayEquals(flatTile, reader.getTile(0, 1, 0));
+            assertEquals("tile 5 2", new String(reader.getTile(2, 5, 2), StandardCharsets.UTF_8));
+            assertNull(reader.getTile(2, 9, 0));
+            assertNull(reader.getTile(1, 0, 0));
+            assertEquals("{\"tilejson\":\"2.1.0\"}", reader.getLayerJson());
+        }
+    }
+
+    @Test
+    void tileIdToXY() {
+        for (int depth = 0; depth <= 5; depth++) {
+            for (int x = 0; x < (1 << (depth + 1)); x++) {
+                for (int y = 0; y < (1 << depth); y++) {
+                    long tileId = TileArchive.getTileId(depth, x, y);
+                    assertEquals(depth, TileArchive.getDepth(tileId));
+                    assertArrayEquals(new int[]{x, y}, TileArchive.getTileXY(tileId));
+                }
+            }
+        }
+    }
+
+    @Test
+    void replaceArchive(@TempDir Path tempDir) throws IOException {
+        Path archivePath = tempDir.resolve(TileArchive.DEFAULT_FILE_NAME);
+        TileArchiveWriter writer = new TileArchiveWriter(archivePath.toString(), false);
+        for (int x = 0; x < 4; x++) {
+            writer.addTile(1, x, 0, ByteBuffer.wrap(("old " + x).getBytes(StandardCharsets.UTF_8)));
+        }
+        writer.finish(null);
+
+        // copy the previous archive in a new one, then replace one tile
+        try (TileArchiveReader reader = new TileArchiveReader(archivePath)) {
+            TileArchiveWriter newWriter = new TileArchiveWriter(archivePath.toString(), false);
+            for (int i = 0; i < reader.getTileCount(); i++) {
+                newWriter.addTile(reader.getTileIdAt(i), ByteBuffer.wrap(reader.getTileAt(i)));
+            }
+            newWriter.addTile(1, 2, 0, ByteBuffer.wrap("new 2".getBytes(StandardCharsets.UTF_8)));
+            newWriter.finish(null);
+        }
+        assertFalse(Files.exists(tempDir.resolve(TileArchive.DEFAULT_FILE_NAME + ".tmp")));
+
+        try (TileArchiveReader reader = new TileArchiveReader(archivePath)) {
+            assertEquals(4, reader.getTileCount());
+            assertEquals("old 1", new String(reader.getTile(1, 1, 0), StandardCharsets.UTF_8));
+            assertEquals("new 2", new String(reader.getTile(1, 2, 0), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.gaia3d.terrain.tile.geotiff;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaterMaskRasterTest {
+
+    /**
+     * 8 x 8 pixels of 1 degree over lon 10 - 18, lat 40 - 48 : the west half is water
+     */
+    private File createWaterGeoTiff(Path tempDir) throws IOException {
+        float[][] pixels = new float[8][8];
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 4; col++) {
+                pixels[row][col] = 1;
+            }
+        }
+        ReferencedEnvelope envelope = new ReferencedEnvelope(10, 18, 40, 48, DefaultGeographicCRS.WGS84);
+        GridCoverage2D coverage = new GridCoverageFactory().create("water", pixels, envelope);
+        File file = tempDir.resolve("water.tif").toFile();
+        GeoTiffWriter writer = new GeoTiffWriter(file);
+        writer.write(coverage, null);
+        writer.dispose();
+        coverage.dispose(true);
+        return file;
+    }
+
+    @Test
+    void classifiesLandWaterAndOutside(@TempDir Path tempDir) throws IOException {
+        WaterMaskRaster waterMaskRaster = new WaterMaskRaster(createWaterGeoTiff(tempDir).getAbsolutePath());
+        try {
+            double[] lonLatDegs = {
+                    11.5, 44.5, // water
+                    13.9, 40.1, // water, last water column
+                    14.1, 47.9, // land
+                    16.5, 44.5, // land
+                    30.0, 44.5 // outside the raster
+            };
+            boolean[] isWater = new boolean[5];
+            waterMaskRaster.getWater(lonLatDegs, 5, isWater);
+            assertArrayEquals(new boolean[]{true, true, false, false, false}, isWater);
+
+            // no point inside the raster
+            double[] outsideDegs = {-50.0, 0.0, 100.0, -20.0};
+            boolean[] isOutsideWater = {true, true};
+            waterMaskRaster.getWater(outsideDegs, 2, isOutsideWater);
+            assertArrayEquals(new boolean[]{false, false}, isOutsideWater);
+        } finally {
+            waterMaskRaster.dispose();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.gaia3d.terrain.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GzipCompressorTest {
+
+    private byte[] createRawTile() {
+        // a raw tile whose CenterX double starts with the gzip magic bytes
+        byte[] raw = new byte[128];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) (i * 7);
+        }
+        raw[0] = 0x1f;
+        raw[1] = (byte) 0x8b;
+        return raw;
+    }
+
+    private byte[] readAll(byte[] bytes, boolean gzip) throws IOException {
+        try (InputStream inputStream = GzipCompressor.openInputStream(bytes, gzip)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    @Test
+    void magicBytesAloneAreNotGzip() throws IOException {
+        byte[] raw = createRawTile();
+        assertFalse(GzipCompressor.isGzip(ByteBuffer.wrap(raw)));
+        assertArrayEquals(raw, readAll(raw, false));
+        // a raw tile in a gzip tileset is read uncompressed
+        assertArrayEquals(raw, readAll(raw, true));
+    }
+
+    @Test
+    void compressedTileIsDecompressed() throws IOException {
+        byte[] raw = createRawTile();
+        ByteBuffer compressed = GzipCompressor.getInstance(GzipCompressor.DEFAULT_LEVEL).compress(ByteBuffer.wrap(raw));
+        byte[] compressedBytes = new byte[compressed.remaining()];
+        compressed.get(compressedBytes);
+
+        assertTrue(GzipCompressor.isGzip(ByteBuffer.wrap(compressedBytes)));
+        assertArrayEquals(raw, readAll(compressedBytes, true));
+        // without the option, the stored bytes are returned as they are
+        assertArrayEquals(compressedBytes, readAll(compressedBytes, false));
+    }
+}
@@ -0,0 +1,41 @@
+package com.gaia3d.terrain.util;
+
+import com.gaia3d.terrain.structure.TerrainVertex;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerrainLatticeUtilsTest {
+
+    @Test
+    void tileCornersAreLatticePoints() {
+        // tile corners of depth 22 must fall exactly on the lattice
+        double tileAngleDeg = 180.0 / (1 << 22);
+        for (int x = 0; x < 4; x++) {
+            double lonDeg = -180.0 + (1000 + x) * tileAngleDeg;
+            long u = TerrainLatticeUtils.toLatticeU(lonDeg);
+            assertEquals(0, u % (1L << (TerrainLatticeUtils.LATTICE_BITS - 22)));
+        }
+    }
+
+    @Test
+    void driftedVerticesHaveSameKey() {
+        TerrainVertex vertexA = new TerrainVertex();
+        vertexA.setPosition(new Vector3d(126.9780, 37.5665, 10.0));
+        TerrainVertex vertexB = new TerrainVertex();
+        vertexB.setPosition(new Vector3d(126.9780 + 1e-13, 37.5665 - 1e-13, 250.0));
+
+        assertEquals(TerrainLatticeUtils.getLatticeKey(vertexA), TerrainLatticeUtils.getLatticeKey(vertexB));
+        assertEquals(TerrainLatticeUtils.getLatticeKey(vertexA).hashCode(), TerrainLatticeUtils.getLatticeKey(vertexB).hashCode());
+    }
+
+    @Test
+    void snapIsStable() {
+        Vector3d position = TerrainLatticeUtils.snapToLattice(new Vector3d(-45.123456789, 12.987654321, 5.0));
+        Vector3d snappedAgain = TerrainLatticeUtils.snapToLattice(new Vector3d(position));
+        assertEquals(position.x, snappedAgain.x);
+        assertEquals(position.y, snappedAgain.y);
+        assertEquals(5.0, snappedAgain.z);
+    }
+}
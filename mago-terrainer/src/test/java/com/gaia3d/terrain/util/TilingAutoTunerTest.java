@@ -0,0 +1,39 @@
+package com.gaia3d.terrain.util;
+
+import com.gaia3d.terrain.tile.TileRange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilingAutoTunerTest {
+    private static final long TILE_RASTER_BYTES = 256 * 256 * 4;
+
+    @Test
+    void chooseMosaicSizeFromPreviousDepth(@TempDir Path tempDir) throws IOException {
+        // 1 GB heap, no container memory limit, 4 cpus
+        TilingAutoTuner tuner = new TilingAutoTuner(new ContainerResources(-1, 4), 1024L * 1024 * 1024);
+        assertEquals(3, tuner.chooseWriterThreads());
+
+        // not measured yet : the configured size, bounded by the rasters and by the size of the depth
+        assertEquals(16, tuner.chooseMosaicSize(5, TileRange.of(5, 0, 63, 0, 31), 16, TILE_RASTER_BYTES));
+        assertEquals(4, tuner.chooseMosaicSize(2, TileRange.of(2, 0, 3, 0, 1), 16, TILE_RASTER_BYTES));
+
+        // 1000 triangles per tile of 300 bytes, the second block also holds garbage
+        tuner.recordBlock(5, 18 * 18, 18 * 18 * 1000, 18 * 18 * 500, 18 * 18 * (TILE_RASTER_BYTES + 1000 * 300), TILE_RASTER_BYTES);
+        tuner.recordBlock(5, 18 * 18, 18 * 18 * 1000, 18 * 18 * 500, 18 * 18 * (TILE_RASTER_BYTES + 1000 * 400), TILE_RASTER_BYTES);
+        assertEquals(300, tuner.getDepthDensity(5).getBytesPerTriangle(), 0.001);
+        assertEquals(TILE_RASTER_BYTES + 1000 * 300, tuner.estimateTileHeapBytes(6, TILE_RASTER_BYTES), 0.001);
+        // (28 + 2)^2 tiles of 562144 bytes fit in the half of the heap
+        assertEquals(28, tuner.chooseMosaicSize(6, TileRange.of(6, 0, 127, 0, 63), 16, TILE_RASTER_BYTES));
+
+        // the memory governor reduced the size of depth 6 : depth 7 is not larger
+        tuner.finishDepth(6, 14, 3, tempDir);
+        assertEquals(14, tuner.chooseMosaicSize(7, TileRange.of(7, 0, 255, 0, 127), 16, TILE_RASTER_BYTES));
+        assertEquals(2, Files.readAllLines(tempDir.resolve(TilingAutoTuner.FILE_NAME)).size());
+    }
+}
@@ -0,0 +1,50 @@
+package com.gaia3d.terrain.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilingMetricsTest {
+
+    @Test
+    void exportJsonAndPrometheusText(@TempDir Path tempDir) throws IOException {
+        TilingMetrics tilingMetrics = new TilingMetrics();
+        tilingMetrics.addPhaseTime(TilingMetrics.Phase.STANDARDIZE, TilingMetrics.NO_DEPTH, System.nanoTime());
+        tilingMetrics.addPhaseTime(TilingMetrics.Phase.REFINE, 5, System.nanoTime());
+        tilingMetrics.increment(TilingMetrics.Counter.TILES, 5);
+        tilingMetrics.increment(TilingMetrics.Counter.TILES, 5);
+        tilingMetrics.add(TilingMetrics.Counter.BYTES_WRITTEN, 5, 1000);
+        tilingMetrics.add(TilingMetrics.Counter.BYTES_WRITTEN, 6, 500);
+        tilingMetrics.observeBlock(5, System.nanoTime());
+        tilingMetrics.observeBlock(5, System.nanoTime() - 3_000_000_000L);
+
+        assertEquals(2, tilingMetrics.getCount(TilingMetrics.Counter.TILES, 5));
+        assertEquals(0, tilingMetrics.getCount(TilingMetrics.Counter.TILES, 6));
+        assertEquals(2, tilingMetrics.getBlockCount(5));
+
+        tilingMetrics.writeFiles(tempDir.toFile(), "mago-3d-terrainer", "1.0");
+        String text = Files.readString(tempDir.resolve(TilingMetrics.PROMETHEUS_FILE_NAME));
+        assertTrue(text.contains("# TYPE mago_terrainer_tiles_total counter\n"));
+        assertTrue(text.contains("mago_terrainer_tiles_total{depth=\"5\"} 2\n"));
+        assertTrue(text.contains("mago_terrainer_bytes_written_total{depth=\"6\"} 500\n"));
+        assertTrue(text.contains("mago_terrainer_phase_seconds_total{phase=\"standardize\"} "));
+        assertTrue(text.contains("mago_terrainer_phase_seconds_total{phase=\"refine\",depth=\"5\"} "));
+        // the buckets are cumulative : one block under 0.1 s, one of 3 s
+        assertTrue(text.contains("mago_terrainer_block_duration_seconds_bucket{depth=\"5\",le=\"0.1\"} 1\n"));
+        assertTrue(text.contains("mago_terrainer_block_duration_seconds_bucket{depth=\"5\",le=\"5.0\"} 2\n"));
+        assertTrue(text.contains("mago_terrainer_block_duration_seconds_count{depth=\"5\"} 2\n"));
+
+        JsonNode json = new ObjectMapper().readTree(tempDir.resolve(TilingMetrics.JSON_FILE_NAME).toFile());
+        assertEquals("1.0", json.get("run").get("version").asText());
+        assertEquals(3, json.get("counters").size());
+        assertEquals(2, json.get("blockDurations").get(0).get("count").asLong());
+        assertFalse(Files.exists(tempDir.resolve(TilingMetrics.PROMETHEUS_FILE_NAME + ".tmp")));
+    }
+}